@@ -23,7 +23,6 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import static org.structr.agent.ReturnValue.Retry;
 import org.structr.core.Services;
 import org.structr.core.app.StructrApp;
 import org.structr.core.graph.Tx;
@@ -109,17 +108,8 @@ public abstract class Agent<T> extends Thread implements StatusInfo {
 					}
 				}
 
-				if (ret != null && Retry.equals(ret) && currentTask.getRetryCount() < 2) {
-
-					// wait some time
-					try { Thread.sleep(2000); } catch (InterruptedException ex) {}
-
-					synchronized (taskQueue) {
-
-						currentTask.incrementRetryCount();
-						taskQueue.add(currentTask);
-					}
-				}
+				// retry handling and journaling is done by the agent service
+				agentService.notifyTaskFinished(currentTask, ret);
 
 				long endTime = System.nanoTime();
 
@@ -18,6 +18,8 @@
  */
 package org.structr.agent;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
@@ -25,12 +27,20 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Setting;
+import org.structr.api.config.Settings;
 import org.structr.api.service.Command;
 import org.structr.api.service.RunnableService;
 import org.structr.api.service.StructrServices;
@@ -40,18 +50,28 @@ import org.structr.schema.ConfigurationProvider;
 /**
  * The agent service main class.
  *
- *
+ * Queued tasks are dispatched in order of their priority by a thread that
+ * blocks while there is nothing to do. Tasks that can not be assigned
+ * because all agents of their type are saturated wait until an agent
+ * finishes a task. Tasks that return {@link ReturnValue#Retry} are
+ * re-queued with exponential backoff. If enabled, {@link PersistentTask}s
+ * are recorded in a {@link TaskJournal} so they survive a restart.
  */
 public class AgentService extends Thread implements RunnableService {
 
 	private static final Logger logger = LoggerFactory.getLogger(AgentService.class.getName());
 
-	private final int maxAgents                          = 10;    // TODO: make configurable
-	private final Map<String, List<Agent>> runningAgents = new ConcurrentHashMap<>(10, 0.9f, 8);
-	private final Map<String, Class> agentClassCache     = new ConcurrentHashMap<>(10, 0.9f, 8);
-	private final Queue<Task> taskQueue                  = new ConcurrentLinkedQueue<>();
-	private Set<Class> supportedCommands                 = null;
-	private boolean run                                  = false;
+	private final Map<String, List<Agent>> runningAgents          = new ConcurrentHashMap<>(10, 0.9f, 8);
+	private final Map<String, Class> agentClassCache              = new ConcurrentHashMap<>(10, 0.9f, 8);
+	private final Map<String, Queue<QueuedTask>> waitingTasks     = new ConcurrentHashMap<>();
+	private final Map<Task, QueuedTask> assignedTasks             = new ConcurrentHashMap<>();
+	private final PriorityBlockingQueue<QueuedTask> taskQueue     = new PriorityBlockingQueue<>();
+	private final AtomicInteger agentCount                        = new AtomicInteger();
+	private final AtomicLong sequence                             = new AtomicLong();
+	private ScheduledExecutorService retryScheduler               = null;
+	private TaskJournal journal                                   = null;
+	private Set<Class> supportedCommands                          = null;
+	private volatile boolean run                                  = false;
 
 	public AgentService() {
 
@@ -64,11 +84,14 @@ public class AgentService extends Thread implements RunnableService {
 
 	public void processTask(Task task) {
 
-		synchronized (taskQueue) {
+		long journalId = -1L;
 
-			taskQueue.add(task);
-			logger.debug("Task {} added to task queue", task);
+		if (journal != null && task instanceof PersistentTask) {
+			journalId = journal.add((PersistentTask)task);
 		}
+
+		taskQueue.add(new QueuedTask(task, sequence.incrementAndGet(), journalId));
+		logger.debug("Task {} added to task queue", task);
 	}
 
 	@Override
@@ -76,16 +99,38 @@ public class AgentService extends Thread implements RunnableService {
 
 		logger.info("AgentService started");
 
+		// tasks restored from the journal must wait for the service layer
+		while (run && !Services.getInstance().isInitialized()) {
+			try { Thread.sleep(100); } catch (InterruptedException ignore) {}
+		}
+
 		while (run) {
 
-			Task nextTask = taskQueue.poll();
-			if (nextTask != null) {
+			try {
 
-				assignNextAgentForTask(nextTask);
-			}
+				final QueuedTask nextTask = taskQueue.take();
+
+				if (!assignNextAgentForTask(nextTask)) {
+
+					// all agents for this task type are busy, wait until one of them
+					// finishes a task instead of re-queueing the task immediately
+					final Queue<QueuedTask> waiting = getWaitingTasks(nextTask.task.getClass());
+					synchronized (waiting) {
 
-			// let others act
-			try { Thread.sleep(10); } catch(Throwable ignore) {}
+						// try again while holding the lock, all agents may have finished and
+						// released their waiting tasks after the first attempt, which would
+						// leave this task waiting for an unrelated task to finish
+						if (!assignNextAgentForTask(nextTask)) {
+
+							waiting.add(nextTask);
+						}
+					}
+				}
+
+			} catch (InterruptedException iex) {
+
+				// stopService() interrupts us
+			}
 		}
 	}
 
@@ -94,7 +139,10 @@ public class AgentService extends Thread implements RunnableService {
 		List<Agent> agents = getRunningAgentsForTask(agent.getSupportedTaskType());
 
 		synchronized (agents) {
-			agents.add(agent);
+
+			if (!agents.contains(agent)) {
+				agents.add(agent);
+			}
 		}
 	}
 
@@ -103,8 +151,48 @@ public class AgentService extends Thread implements RunnableService {
 		List<Agent> agents = getRunningAgentsForTask(agent.getSupportedTaskType());
 
 		synchronized (agents) {
-			agents.remove(agent);
+
+			if (agents.remove(agent)) {
+				agentCount.decrementAndGet();
+			}
+		}
+
+		// a worker slot is free now, give one waiting task of each type a chance
+		for (final Queue<QueuedTask> waiting : waitingTasks.values()) {
+			releaseWaitingTask(waiting);
+		}
+	}
+
+	/**
+	 * Called by an agent after it has processed a task.
+	 *
+	 * @param task
+	 * @param result the return value of the task, or null if processing failed
+	 */
+	public void notifyTaskFinished(final Task task, final ReturnValue result) {
+
+		final QueuedTask queuedTask = assignedTasks.remove(task);
+
+		if (queuedTask != null) {
+
+			if (ReturnValue.Retry.equals(result) && task.getRetryCount() < Settings.AgentMaxRetries.getValue()) {
+
+				final long delay = Settings.AgentRetryDelay.getValue() * (1L << Math.min(task.getRetryCount(), 16));
+
+				task.incrementRetryCount();
+
+				logger.debug("Retrying task {} in {} ms", task, delay);
+
+				retryScheduler.schedule(() -> taskQueue.add(queuedTask), delay, TimeUnit.MILLISECONDS);
+
+			} else if (journal != null && queuedTask.journalId >= 0) {
+
+				journal.remove(queuedTask.journalId);
+			}
 		}
+
+		// the agent can accept another task now
+		releaseWaitingTask(getWaitingTasks(task.getClass()));
 	}
 
 	public Map<String, Class<? extends Agent>> getAgents() {
@@ -137,13 +225,37 @@ public class AgentService extends Thread implements RunnableService {
 	@Override
 	public void startService() throws Exception {
 
+		retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+
+			final Thread thread = new Thread(r, "AgentServiceRetry");
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
+		if (Settings.AgentJournalEnabled.getValue()) {
+
+			openJournal();
+		}
+
 		run = true;
 		this.start();
 	}
 
 	@Override
 	public void stopService() {
+
 		run = false;
+
+		this.interrupt();
+
+		if (retryScheduler != null) {
+			retryScheduler.shutdownNow();
+		}
+
+		if (journal != null) {
+			journal.close();
+		}
 	}
 
 	@Override
@@ -151,10 +263,14 @@ public class AgentService extends Thread implements RunnableService {
 		return true;
 	}
 
-	private void assignNextAgentForTask(Task nextTask) {
+	private boolean assignNextAgentForTask(final QueuedTask queuedTask) {
+
+		final Task nextTask = queuedTask.task;
+		Class taskClass     = nextTask.getClass();
+		List<Agent> agents  = getRunningAgentsForTask(taskClass);
 
-		Class taskClass    = nextTask.getClass();
-		List<Agent> agents = getRunningAgentsForTask(taskClass);
+		// register task before assignment, the agent may finish it immediately
+		assignedTasks.put(nextTask, queuedTask);
 
 		// need to synchronize on agents
 		synchronized (agents) {
@@ -168,35 +284,96 @@ public class AgentService extends Thread implements RunnableService {
 					// ok, task is assigned
 					logger.debug("Task assigned to agent {}", agent.getName());
 
-					return;
+					return true;
 				}
 			}
-		}
 
-		// FIXME: find better solution for hard limit here!
-		if (agents.size() < maxAgents) {
+			if (agents.size() < getMaxAgents(taskClass) && agentCount.get() < Settings.AgentMaxWorkers.getValue()) {
+
+				// if we get here, task was not assigned to any agent, need to
+				// create a new one.
+				Agent agent = createAgent(nextTask);
+
+				if ((agent != null) && agent.assignTask(nextTask)) {
+
+					agents.add(agent);
+					agentCount.incrementAndGet();
+
+					agent.start();
+
+					return true;
+				}
+
+				if (agent == null) {
 
-			// if we get here, task was not assigned to any agent, need to
-			// create a new one.
-			Agent agent = createAgent(nextTask);
+					logger.warn("No agent found for task {}, discarding task.", taskClass.getName());
 
-			if ((agent != null) && agent.assignTask(nextTask)) {
-				agent.start();
-			} else {
+					// no agent can ever process this task
+					notifyTaskFinished(nextTask, ReturnValue.Abort);
 
-				// re-add task..
-				synchronized (taskQueue) {
-					taskQueue.add(nextTask);
+					return true;
 				}
 			}
-		} else {
+		}
+
+		assignedTasks.remove(nextTask);
+
+		logger.debug("Agents limit reached, task waits for a free agent");
+
+		return false;
+	}
 
-			logger.debug("Overall agents limit reached, re-queueing task");
+	private void releaseWaitingTask(final Queue<QueuedTask> waiting) {
 
-			// re-add task..
-			synchronized (taskQueue) {
-				taskQueue.add(nextTask);
+		final QueuedTask queuedTask;
+
+		synchronized (waiting) {
+			queuedTask = waiting.poll();
+		}
+
+		if (queuedTask != null) {
+			taskQueue.add(queuedTask);
+		}
+	}
+
+	private int getMaxAgents(final Class taskClass) {
+
+		// per-type limit can be configured with <TaskClass>.maxAgents
+		final Setting<Integer> setting = Settings.getIntegerSetting(taskClass.getSimpleName(), "maxAgents");
+		if (setting != null && setting.getValue() != null) {
+
+			return setting.getValue();
+		}
+
+		return Settings.AgentMaxAgents.getValue();
+	}
+
+	private Queue<QueuedTask> getWaitingTasks(final Class taskClass) {
+		return waitingTasks.computeIfAbsent(taskClass.getName(), k -> new PriorityQueue<>());
+	}
+
+	private void openJournal() {
+
+		final File file = new File(Settings.getBasePath() + Settings.AgentJournalPath.getValue());
+
+		try {
+
+			journal = new TaskJournal(file);
+
+			final Map<Long, Task> restored = journal.open();
+			for (final Entry<Long, Task> entry : restored.entrySet()) {
+
+				taskQueue.add(new QueuedTask(entry.getValue(), sequence.incrementAndGet(), entry.getKey()));
 			}
+
+			if (!restored.isEmpty()) {
+				logger.info("Restored {} tasks from task journal {}", restored.size(), file.getAbsolutePath());
+			}
+
+		} catch (IOException ioex) {
+
+			logger.warn("Unable to open task journal {}, queued tasks will not be persisted: {}", file.getAbsolutePath(), ioex.getMessage());
+			journal = null;
 		}
 	}
 
@@ -279,7 +456,24 @@ public class AgentService extends Thread implements RunnableService {
 	 * @return tasks
 	 */
 	public Collection<Task> getTaskQueue() {
-		return (taskQueue);
+
+		final List<Task> tasks = new LinkedList<>();
+
+		for (final QueuedTask queuedTask : taskQueue) {
+			tasks.add(queuedTask.task);
+		}
+
+		for (final Queue<QueuedTask> waiting : waitingTasks.values()) {
+
+			synchronized (waiting) {
+
+				for (final QueuedTask queuedTask : waiting) {
+					tasks.add(queuedTask.task);
+				}
+			}
+		}
+
+		return tasks;
 	}
 
 	/**
@@ -291,18 +485,7 @@ public class AgentService extends Thread implements RunnableService {
 	}
 
 	private List<Agent> getRunningAgentsForTask(Class taskClass) {
-
-		List<Agent> agents = runningAgents.get(taskClass.getName());
-
-		if (agents == null) {
-
-			agents = Collections.synchronizedList(new LinkedList<>());
-
-			// Hashtable is synchronized
-			runningAgents.put(taskClass.getName(), agents);
-		}
-
-		return (agents);
+		return runningAgents.computeIfAbsent(taskClass.getName(), k -> Collections.synchronizedList(new LinkedList<>()));
 	}
 
 	@Override
@@ -320,4 +503,32 @@ public class AgentService extends Thread implements RunnableService {
 	public String getModuleName() {
 		return "agents";
 	}
+
+	// ----- nested classes -----
+	private static class QueuedTask implements Comparable<QueuedTask> {
+
+		private final Task task;
+		private final long sequence;
+		private final long journalId;
+
+		public QueuedTask(final Task task, final long sequence, final long journalId) {
+
+			this.task      = task;
+			this.sequence  = sequence;
+			this.journalId = journalId;
+		}
+
+		@Override
+		public int compareTo(final QueuedTask other) {
+
+			// higher priority first, then in order of submission
+			final int result = Integer.compare(other.task.priority(), task.priority());
+			if (result != 0) {
+
+				return result;
+			}
+
+			return Long.compare(sequence, other.sequence);
+		}
+	}
 }
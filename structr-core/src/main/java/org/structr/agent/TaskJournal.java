@@ -0,0 +1,241 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.agent;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only on-disk journal of queued {@link PersistentTask}s.
+ *
+ * Every queued task is written as an add record, every finished task as
+ * a remove record. When the journal is opened, the tasks without a remove
+ * record are restored and the file is compacted.
+ */
+public class TaskJournal {
+
+	private static final Logger logger = LoggerFactory.getLogger(TaskJournal.class.getName());
+
+	private static final char ADD               = '+';
+	private static final char REMOVE            = '-';
+	private static final int MIN_COMPACTION_GAP = 10000;
+
+	private final Map<Long, String> entries = new LinkedHashMap<>();
+	private final File file;
+	private BufferedWriter writer           = null;
+	private long nextId                     = 0L;
+	private int removedSinceCompaction      = 0;
+
+	public TaskJournal(final File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Opens the journal and returns the tasks that were not finished
+	 * before the journal was closed, mapped by their new journal id.
+	 *
+	 * @return the restored tasks
+	 * @throws IOException
+	 */
+	public synchronized Map<Long, Task> open() throws IOException {
+
+		final Map<Long, Task> tasks = new LinkedHashMap<>();
+
+		if (file.exists()) {
+
+			final Map<Long, String> records = new LinkedHashMap<>();
+
+			try (final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+
+				String line = reader.readLine();
+				while (line != null) {
+
+					try {
+
+						if (line.length() > 1) {
+
+							switch (line.charAt(0)) {
+
+								case ADD:
+									final int pos = line.indexOf('\t');
+									records.put(Long.valueOf(line.substring(1, pos)), line.substring(pos + 1));
+									break;
+
+								case REMOVE:
+									records.remove(Long.valueOf(line.substring(1)));
+									break;
+							}
+						}
+
+					} catch (RuntimeException rex) {
+
+						// an incomplete last line is expected after a crash
+						logger.warn("Ignoring invalid task journal entry {}", line);
+					}
+
+					line = reader.readLine();
+				}
+			}
+
+			for (final String record : records.values()) {
+
+				final Task task = deserialize(record);
+				if (task != null) {
+
+					final long id = nextId++;
+
+					entries.put(id, record);
+					tasks.put(id, task);
+				}
+			}
+
+		} else if (file.getParentFile() != null) {
+
+			file.getParentFile().mkdirs();
+		}
+
+		compact();
+
+		return tasks;
+	}
+
+	public synchronized long add(final PersistentTask task) {
+
+		final long id       = nextId++;
+		final String record = task.getClass().getName() + "\t" + Base64.getEncoder().encodeToString(task.getPersistentState().getBytes(StandardCharsets.UTF_8));
+
+		entries.put(id, record);
+		write(ADD + Long.toString(id) + "\t" + record);
+
+		return id;
+	}
+
+	public synchronized void remove(final long id) {
+
+		if (entries.remove(id) != null) {
+
+			write(REMOVE + Long.toString(id));
+
+			if (++removedSinceCompaction > Math.max(MIN_COMPACTION_GAP, entries.size())) {
+
+				try {
+
+					compact();
+
+				} catch (IOException ioex) {
+					logger.warn("Unable to compact task journal {}: {}", file, ioex.getMessage());
+				}
+			}
+		}
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized void close() {
+
+		if (writer != null) {
+
+			try {
+
+				writer.close();
+
+			} catch (IOException ioex) {
+				logger.warn("Unable to close task journal {}: {}", file, ioex.getMessage());
+			}
+
+			writer = null;
+		}
+	}
+
+	// ----- private methods -----
+	private void compact() throws IOException {
+
+		close();
+
+		final File tmp = new File(file.getPath() + ".tmp");
+
+		try (final BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+
+			for (final Entry<Long, String> entry : entries.entrySet()) {
+
+				out.write(ADD + Long.toString(entry.getKey()) + "\t" + entry.getValue());
+				out.newLine();
+			}
+		}
+
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		writer                 = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+		removedSinceCompaction = 0;
+	}
+
+	private void write(final String line) {
+
+		if (writer != null) {
+
+			try {
+
+				writer.write(line);
+				writer.newLine();
+				writer.flush();
+
+			} catch (IOException ioex) {
+				logger.warn("Unable to write to task journal {}: {}", file, ioex.getMessage());
+			}
+		}
+	}
+
+	private Task deserialize(final String record) {
+
+		final int pos = record.indexOf('\t');
+		if (pos > 0) {
+
+			final String className = record.substring(0, pos);
+
+			try {
+
+				final String state = new String(Base64.getDecoder().decode(record.substring(pos + 1)), StandardCharsets.UTF_8);
+
+				return (Task)Class.forName(className).getConstructor(String.class).newInstance(state);
+
+			} catch (Throwable t) {
+				logger.warn("Unable to restore task of type {} from journal: {}", className, t.getMessage());
+			}
+		}
+
+		return null;
+	}
+}
@@ -123,11 +123,17 @@ public class PagingHelper {
 
 		if (pageSize > 0 && pageSize < Integer.MAX_VALUE) {
 
-			int pageCount = getPageCount(result.getRawResultCount(), pageSize);
+			final Integer resultCount = result.getRawResultCount();
 
-			if (pageCount > 0) {
+			// streamed results are counted while they are serialized
+			if (resultCount != null) {
 
-				result.setPageCount(pageCount);
+				int pageCount = getPageCount(resultCount, pageSize);
+
+				if (pageCount > 0) {
+
+					result.setPageCount(pageCount);
+				}
 			}
 
 			result.setPage(page);
@@ -0,0 +1,270 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.structr.api.config.Settings;
+import org.structr.api.util.Cachable;
+import org.structr.api.util.FixedSizeCache;
+
+/**
+ * Size-bounded cache for the results of permission resolution along
+ * permission-propagating relationships. Entries are stored per node and
+ * principal in a number of independently locked LRU segments.
+ *
+ * Results are tagged with a generation that is read before the
+ * resolution starts. A result is only stored and returned if the
+ * generation has not changed in the meantime, so invalidation is done
+ * by incrementing a counter instead of removing entries. There is a
+ * global generation for modifications that can affect any result and
+ * one generation per principal.
+ */
+public class PermissionResolutionCache {
+
+	private static final int SEGMENTS = 16;
+
+	private static final Map<Long, AtomicLong> principalGenerations = new ConcurrentHashMap<>();
+	private static final FixedSizeCache<Long, CacheEntry>[] segments = createSegments(Settings.PermissionCacheSize.getValue());
+	private static final AtomicLong generation                       = new AtomicLong();
+	private static final AtomicLong invalidations                    = new AtomicLong();
+	private static final AtomicLong evictions                        = new AtomicLong();
+	private static final AtomicLong misses                           = new AtomicLong();
+	private static final AtomicLong hits                             = new AtomicLong();
+
+	/**
+	 * Returns the current generation for the given principal. Must be
+	 * read before permissions are resolved, and passed to {@link #put}
+	 * when the result is stored.
+	 *
+	 * @param principalId
+	 *
+	 * @return the generation
+	 */
+	public static long getGeneration(final long principalId) {
+
+		final AtomicLong principalGeneration = principalGenerations.get(principalId);
+
+		// both counters only increase, so the sum changes whenever one of them does
+		return generation.get() + (principalGeneration != null ? principalGeneration.get() : 0L);
+	}
+
+	/**
+	 * Returns the cached resolution result for the given node, principal and
+	 * permission, or null if the result is not known.
+	 *
+	 * @param nodeId
+	 * @param principalId
+	 * @param permission
+	 *
+	 * @return the cached result or null
+	 */
+	public static Boolean get(final long nodeId, final long principalId, final Permission permission) {
+
+		final CacheEntry entry = getSegment(nodeId).get(nodeId);
+		if (entry != null) {
+
+			final Result result = entry.results.get(principalId);
+			if (result != null && result.generation == getGeneration(principalId)) {
+
+				final Boolean value = result.get(permission);
+				if (value != null) {
+
+					hits.incrementAndGet();
+					return value;
+				}
+			}
+		}
+
+		misses.incrementAndGet();
+
+		return null;
+	}
+
+	/**
+	 * Stores a resolution result if the cache was not invalidated for the
+	 * principal since the given generation was read. A positive result is
+	 * never overwritten by a negative one of the same generation.
+	 *
+	 * @param nodeId
+	 * @param principalId
+	 * @param permission
+	 * @param value
+	 * @param resolvedGeneration the generation read before resolving
+	 */
+	public static void put(final long nodeId, final long principalId, final Permission permission, final boolean value, final long resolvedGeneration) {
+
+		if (resolvedGeneration != getGeneration(principalId)) {
+			return;
+		}
+
+		final CacheEntry entry = getSegment(nodeId).computeIfAbsent(nodeId, k -> new CacheEntry());
+
+		// a result of an older generation is replaced, an invalidation after the check above
+		// leaves the result with an outdated generation which is never returned
+		entry.results.compute(principalId, (k, result) -> result == null || result.generation != resolvedGeneration ? new Result(resolvedGeneration) : result).set(permission, value);
+	}
+
+	/**
+	 * Removes all cached results for the given node.
+	 *
+	 * @param nodeId
+	 */
+	public static void invalidateNode(final long nodeId) {
+
+		getSegment(nodeId).remove(nodeId);
+
+		invalidations.incrementAndGet();
+	}
+
+	/**
+	 * Invalidates all cached results for the given principal.
+	 *
+	 * @param principalId
+	 */
+	public static void invalidatePrincipal(final long principalId) {
+
+		principalGenerations.computeIfAbsent(principalId, k -> new AtomicLong()).incrementAndGet();
+
+		invalidations.incrementAndGet();
+	}
+
+	/**
+	 * Invalidates all cached results. Outdated entries are removed
+	 * when they are accessed or evicted.
+	 */
+	public static void invalidate() {
+
+		generation.incrementAndGet();
+
+		invalidations.incrementAndGet();
+	}
+
+	/**
+	 * Invalidates and removes all cached results.
+	 */
+	public static void clear() {
+
+		invalidate();
+
+		for (final FixedSizeCache<Long, CacheEntry> segment : segments) {
+			segment.clear();
+		}
+	}
+
+	public static Map<String, Long> getStatistics() {
+
+		final Map<String, Long> statistics = new LinkedHashMap<>();
+		long size                          = 0L;
+
+		for (final FixedSizeCache<Long, CacheEntry> segment : segments) {
+			size += segment.size();
+		}
+
+		statistics.put("size",          size);
+		statistics.put("hits",          hits.get());
+		statistics.put("misses",        misses.get());
+		statistics.put("evictions",     evictions.get());
+		statistics.put("invalidations", invalidations.get());
+
+		return statistics;
+	}
+
+	// ----- private methods -----
+	private static FixedSizeCache<Long, CacheEntry>[] createSegments(final int size) {
+
+		final FixedSizeCache<Long, CacheEntry>[] result = new FixedSizeCache[SEGMENTS];
+
+		for (int i=0; i<SEGMENTS; i++) {
+			result[i] = new FixedSizeCache<>(Math.max(1, size / SEGMENTS));
+		}
+
+		return result;
+	}
+
+	private static FixedSizeCache<Long, CacheEntry> getSegment(final long nodeId) {
+		return segments[(int)((nodeId ^ (nodeId >>> 32)) & (SEGMENTS - 1))];
+	}
+
+	// ----- nested classes -----
+	private static class CacheEntry implements Cachable {
+
+		private final Map<Long, Result> results = new ConcurrentHashMap<>();
+
+		@Override
+		public void onRemoveFromCache() {
+			evictions.incrementAndGet();
+		}
+	}
+
+	private static class Result {
+
+		private volatile Boolean read          = null;
+		private volatile Boolean write         = null;
+		private volatile Boolean delete        = null;
+		private volatile Boolean accessControl = null;
+		private final long generation;
+
+		public Result(final long generation) {
+			this.generation = generation;
+		}
+
+		public Boolean get(final Permission permission) {
+
+			if (permission.equals(Permission.read)) {
+				return read;
+			}
+
+			if (permission.equals(Permission.write)) {
+				return write;
+			}
+
+			if (permission.equals(Permission.delete)) {
+				return delete;
+			}
+
+			if (permission.equals(Permission.accessControl)) {
+				return accessControl;
+			}
+
+			return null;
+		}
+
+		public synchronized void set(final Permission permission, final boolean value) {
+
+			if (permission.equals(Permission.read) && !Boolean.TRUE.equals(read)) {
+				read = value;
+			}
+
+			if (permission.equals(Permission.write) && !Boolean.TRUE.equals(write)) {
+				write = value;
+			}
+
+			if (permission.equals(Permission.delete) && !Boolean.TRUE.equals(delete)) {
+				delete = value;
+			}
+
+			if (permission.equals(Permission.accessControl) && !Boolean.TRUE.equals(accessControl)) {
+				accessControl = value;
+			}
+		}
+	}
+}
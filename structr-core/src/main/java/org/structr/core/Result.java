@@ -43,6 +43,7 @@ public class Result<T extends GraphObject> {
 	private String queryTime          = null;
 	private String sortOrder          = null;
 	private String sortKey            = null;
+	private String nextCursor         = null;
 
 	private Integer resultCount       	= null;
 	private Integer pageCount         	= null;
@@ -125,6 +126,20 @@ public class Result<T extends GraphObject> {
 		this.sortKey = sortKey;
 	}
 
+	/**
+	 * Returns the cursor token that points to the next page of a keyset
+	 * paginated result, or null if there are no more elements.
+	 *
+	 * @return the cursor token or null
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursor(final String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+
 	public Integer getRawResultCount() {
 
 		if (resultCount != null) {
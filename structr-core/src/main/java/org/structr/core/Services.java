@@ -25,6 +25,7 @@ import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -50,6 +51,7 @@ import org.structr.common.Permissions;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.ErrorBuffer;
 import org.structr.core.app.StructrApp;
+import org.structr.core.graph.ChangelogStore;
 import org.structr.core.graph.NodeService;
 import org.structr.schema.ConfigurationProvider;
 import org.structr.schema.SchemaService;
@@ -77,6 +79,7 @@ public class Services implements StructrServices {
 	private final Map<Class, Service> serviceCache             = new ConcurrentHashMap<>(10, 0.9f, 8);
 	private final Set<Class> registeredServiceClasses          = new LinkedHashSet<>();
 	private final Set<String> configuredServiceClasses         = new LinkedHashSet<>();
+	private final Map<String, Long> startupTimes               = new LinkedHashMap<>();
 	private LicenseManager licenseManager                      = null;
 	private ConfigurationProvider configuration                = null;
 	private boolean initializationDone                         = false;
@@ -188,6 +191,9 @@ public class Services implements StructrServices {
 
 	private void doInitialize() {
 
+		final long startupStart = System.currentTimeMillis();
+		long phaseStart         = startupStart;
+
 		configurationClass     = Settings.Configuration.getValue();
 		configuredServiceNames = Settings.Services.getValue();
 
@@ -200,11 +206,15 @@ public class Services implements StructrServices {
 			licenseManager = new StructrLicenseManager(Settings.getBasePath() + "license.key");
 		}
 
+		phaseStart = recordStartupTime("License", phaseStart);
+
 		// if configuration is not yet established, instantiate it
 		// this is the place where the service classes get the
 		// opportunity to modify the default configuration
 		getConfigurationProvider();
 
+		phaseStart = recordStartupTime("Class scan", phaseStart);
+
 		// do simple heap size check
 		final Runtime runtime = Runtime.getRuntime();
 		final long max        = runtime.maxMemory() / 1024 / 1024 / 1024;
@@ -225,6 +235,8 @@ public class Services implements StructrServices {
 				if (serviceClass != null) {
 
 					startService(serviceClass);
+
+					phaseStart = recordStartupTime("Service " + serviceClass.getSimpleName(), phaseStart);
 				}
 		}
 
@@ -292,6 +304,13 @@ public class Services implements StructrServices {
 			logger.warn("Exception while executing post-initialization tasks", t);
 		}
 
+		recordStartupTime("Initialization callbacks", phaseStart);
+
+		logger.info("Startup took {} ms", System.currentTimeMillis() - startupStart);
+		for (final Map.Entry<String, Long> entry : startupTimes.entrySet()) {
+
+			logger.info("    {}: {} ms", entry.getKey(), entry.getValue());
+		}
 
 		// Don't use logger here because start/stop scripts rely on this line.
 		System.out.println(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.ms").format(new Date()) + "  ---------------- Initialization complete ----------------");
@@ -301,6 +320,16 @@ public class Services implements StructrServices {
 		initializationDone = true;
 	}
 
+	/**
+	 * Returns the duration of the individual startup phases in milliseconds,
+	 * in the order in which they were executed.
+	 *
+	 * @return a map of phase names to durations
+	 */
+	public Map<String, Long> getStartupTimes() {
+		return Collections.unmodifiableMap(startupTimes);
+	}
+
 	@Override
 	public void registerInitializationCallback(final InitializationCallback callback) {
 
@@ -342,6 +371,9 @@ public class Services implements StructrServices {
 
 			serviceCache.clear();
 
+			// close changelog files
+			ChangelogStore.shutdown();
+
 			// shut down configuration provider
 			configuration.shutdown();
 
@@ -712,4 +744,13 @@ public class Services implements StructrServices {
 
 		return false;
 	}
+
+	private long recordStartupTime(final String phase, final long phaseStart) {
+
+		final long now = System.currentTimeMillis();
+
+		startupTimes.put(phase, now - phaseStart);
+
+		return now;
+	}
 }
@@ -0,0 +1,225 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A query result whose elements are produced lazily while it is being
+ * iterated, so large results can be serialized without holding all
+ * elements in memory.
+ *
+ * The source can only be iterated once. The overall result count is
+ * known after the iteration has finished. Calling {@link #getResults()}
+ * reads the remaining elements into a list, which makes the result behave
+ * like a normal {@link Result}.
+ */
+public class StreamingResult<T extends GraphObject> extends Result<T> {
+
+	private static final Logger logger = LoggerFactory.getLogger(StreamingResult.class.getName());
+
+	private final Iterable<T> source;
+	private final AutoCloseable resource;
+	private final int offset;
+	private final int pageSize;
+	private final boolean countAll;
+	private List<T> materialized = null;
+	private boolean consumed     = false;
+	private boolean exhausted    = false;
+	private int overallCount     = 0;
+	private int count            = 0;
+
+	/**
+	 * @param source the elements to stream, null elements are skipped
+	 * @param resource the resource to close when the stream is exhausted, or null
+	 * @param offset the number of elements to skip
+	 * @param pageSize the maximum number of elements to return
+	 * @param countAll whether the remaining elements should be counted after the page is complete
+	 */
+	public StreamingResult(final Iterable<T> source, final AutoCloseable resource, final int offset, final int pageSize, final boolean countAll) {
+
+		super(Collections.EMPTY_LIST, null, true, false);
+
+		this.source   = source;
+		this.resource = resource;
+		this.offset   = offset;
+		this.pageSize = pageSize;
+		this.countAll = countAll;
+	}
+
+	/**
+	 * Returns an iterator over the elements of this result. The iterator
+	 * instantiates the elements on demand and can only be requested once.
+	 *
+	 * @return an iterator over the elements of this result
+	 */
+	public Iterator<T> stream() {
+
+		if (materialized != null) {
+			return materialized.iterator();
+		}
+
+		if (consumed) {
+			throw new IllegalStateException("Streaming result can only be iterated once");
+		}
+
+		consumed = true;
+
+		final Iterator<T> it = source.iterator();
+
+		return new Iterator<T>() {
+
+			private T next = null;
+
+			@Override
+			public boolean hasNext() {
+
+				if (next == null) {
+					next = fetch(it);
+				}
+
+				return next != null;
+			}
+
+			@Override
+			public T next() {
+
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				final T current = next;
+				next            = null;
+
+				return current;
+			}
+		};
+	}
+
+	/**
+	 * @return whether the complete result has been streamed
+	 */
+	public boolean isExhausted() {
+		return exhausted;
+	}
+
+	@Override
+	public List<T> getResults() {
+
+		if (materialized == null) {
+
+			final List<T> list   = new ArrayList<>();
+			final Iterator<T> it = stream();
+
+			while (it.hasNext()) {
+				list.add(it.next());
+			}
+
+			materialized = list;
+		}
+
+		return materialized;
+	}
+
+	@Override
+	public T get(final int i) {
+		return getResults().get(i);
+	}
+
+	@Override
+	public boolean isEmpty() {
+
+		// unknown before the result is streamed
+		return materialized != null && materialized.isEmpty();
+	}
+
+	@Override
+	public int size() {
+		return materialized != null ? materialized.size() : count;
+	}
+
+	/**
+	 * Returns the overall number of elements, or null if the result has
+	 * not been streamed completely yet. The count is only accurate if
+	 * the result was created with countAll set.
+	 *
+	 * @return the overall result count or null
+	 */
+	@Override
+	public Integer getRawResultCount() {
+		return exhausted ? overallCount : null;
+	}
+
+	@Override
+	public String toString() {
+		return "StreamingResult(" + size() + ")";
+	}
+
+	// ----- private methods -----
+	private T fetch(final Iterator<T> it) {
+
+		if (exhausted) {
+			return null;
+		}
+
+		while (count < pageSize && it.hasNext()) {
+
+			final T element = it.next();
+			if (element != null) {
+
+				if (++overallCount > offset) {
+
+					count++;
+					return element;
+				}
+			}
+		}
+
+		// page complete, count remaining elements if requested
+		if (countAll) {
+
+			while (it.hasNext()) {
+
+				if (it.next() != null) {
+					overallCount++;
+				}
+			}
+		}
+
+		exhausted = true;
+
+		if (resource != null) {
+
+			try {
+				resource.close();
+
+			} catch (Exception ex) {
+				logger.warn("Unable to close streaming result: {}", ex.getMessage());
+			}
+		}
+
+		return null;
+	}
+}
@@ -20,6 +20,7 @@ package org.structr.core.app;
 
 import java.util.List;
 import org.structr.api.Predicate;
+import org.structr.api.search.QueryCursor;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
@@ -36,6 +37,7 @@ import org.structr.core.property.PropertyMap;
 public interface Query<T extends GraphObject> extends Iterable<T> {
 
 	public Result<T> getResult() throws FrameworkException;
+	public Result<T> getResultStream() throws FrameworkException;
 	public List<T> getAsList() throws FrameworkException;
 	public T getFirst() throws FrameworkException;
 
@@ -47,6 +49,7 @@ public interface Query<T extends GraphObject> extends Iterable<T> {
 	public Query<T> order(final boolean descending);
 	public Query<T> pageSize(final int pageSize);
 	public Query<T> page(final int page);
+	public Query<T> cursor(final QueryCursor cursor);
 	public Query<T> publicOnly();
 	public Query<T> includeDeletedAndHidden();
 	public Query<T> publicOnly(final boolean publicOnly);
@@ -20,6 +20,7 @@ package org.structr.core.app;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -98,38 +99,23 @@ public class StructrApp implements App {
 	@Override
 	public <T extends NodeInterface> T create(final Class<T> type, final PropertyMap source) throws FrameworkException {
 
-		if (type == null) {
-			throw new FrameworkException(422, "Empty type (null). Please supply a valid class name in the type property.");
-		}
-
 		final CreateNodeCommand<T> command = command(CreateNodeCommand.class);
-		final PropertyMap properties       = new PropertyMap(source);
-		String finalType                   = type.getSimpleName();
-
-		// try to identify the actual type from input set (creation wouldn't work otherwise anyway)
-		final String typeFromInput = properties.get(NodeInterface.type);
-		if (typeFromInput != null) {
-
-			Class actualType = StructrApp.getConfiguration().getNodeEntityClass(typeFromInput);
-			if (actualType == null) {
 
-				// overwrite type information when creating a node (adhere to type specified by resource!)
-				properties.put(AbstractNode.type, type.getSimpleName());
+		return command.execute(getCreationProperties(type, source));
+	}
 
-			} else if (actualType.isInterface()) {
+	@Override
+	public <T extends NodeInterface> List<T> create(final Class<T> type, final List<PropertyMap> source) throws FrameworkException {
 
-				throw new FrameworkException(422, "Invalid interface type " + type.getSimpleName() + ", please supply a non-interface class name in the type property");
+		final CreateNodeCommand<T> command = command(CreateNodeCommand.class);
+		final List<PropertyMap> properties = new ArrayList<>(source.size());
 
-			} else {
+		for (final PropertyMap map : source) {
 
-				finalType = actualType.getSimpleName();
-			}
+			properties.add(getCreationProperties(type, map));
 		}
 
-		// set type
-		properties.put(AbstractNode.type, finalType);
-
-		return command.execute(properties);
+		return command.executeBatch(properties);
 	}
 
 	@Override
@@ -519,6 +505,41 @@ public class StructrApp implements App {
 	private static final Map<Class, URI> typeIdMap   = new LinkedHashMap<>();
 
 	// ---------- private methods -----
+	private PropertyMap getCreationProperties(final Class type, final PropertyMap source) throws FrameworkException {
+
+		if (type == null) {
+			throw new FrameworkException(422, "Empty type (null). Please supply a valid class name in the type property.");
+		}
+
+		final PropertyMap properties = new PropertyMap(source);
+		String finalType             = type.getSimpleName();
+
+		// try to identify the actual type from input set (creation wouldn't work otherwise anyway)
+		final String typeFromInput = properties.get(NodeInterface.type);
+		if (typeFromInput != null) {
+
+			Class actualType = StructrApp.getConfiguration().getNodeEntityClass(typeFromInput);
+			if (actualType == null) {
+
+				// overwrite type information when creating a node (adhere to type specified by resource!)
+				properties.put(AbstractNode.type, type.getSimpleName());
+
+			} else if (actualType.isInterface()) {
+
+				throw new FrameworkException(422, "Invalid interface type " + type.getSimpleName() + ", please supply a non-interface class name in the type property");
+
+			} else {
+
+				finalType = actualType.getSimpleName();
+			}
+		}
+
+		// set type
+		properties.put(AbstractNode.type, finalType);
+
+		return properties;
+	}
+
 	private synchronized Long getNodeFromCache(final String uuid) {
 
 		if (nodeUuidMap == null) {
@@ -37,6 +37,7 @@ import org.structr.api.graph.RelationshipType;
 import org.structr.api.index.Index;
 import org.structr.cmis.CMISInfo;
 import org.structr.common.GraphObjectComparator;
+import org.structr.common.PermissionPropagation;
 import org.structr.common.PropertyView;
 import org.structr.common.SecurityContext;
 import org.structr.common.ValidationHelper;
@@ -59,6 +60,7 @@ import org.structr.core.graph.NodeService;
 import org.structr.core.graph.RelationshipInterface;
 import org.structr.core.property.IntProperty;
 import org.structr.core.property.Property;
+import org.structr.core.property.FunctionPropertyCache;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
 import org.structr.core.property.RelationshipTypeProperty;
@@ -328,6 +330,8 @@ public abstract class AbstractRelationship<S extends NodeInterface, T extends No
 			return null;
 		}
 
+		FunctionPropertyCache.recordRead(this, key);
+
 		return key.getProperty(securityContext, this, applyConverter, predicate);
 	}
 
@@ -483,6 +487,14 @@ public abstract class AbstractRelationship<S extends NodeInterface, T extends No
 
 	@Override
 	public boolean onModification(SecurityContext securityContext, ErrorBuffer errorBuffer, final ModificationQueue modificationQueue) throws FrameworkException {
+
+		// propagation settings affect the permissions of all nodes along the path
+		if (this instanceof PermissionPropagation) {
+
+			invalidatePermissionResolutionCache(getSourceNodeAsSuperUser());
+			invalidatePermissionResolutionCache(getTargetNodeAsSuperUser());
+		}
+
 		return isValid(errorBuffer);
 	}
 
@@ -845,4 +857,12 @@ public abstract class AbstractRelationship<S extends NodeInterface, T extends No
 
 		return propertyMap;
 	}
+
+	// ----- private methods -----
+	private void invalidatePermissionResolutionCache(final NodeInterface node) {
+
+		if (node instanceof AbstractNode) {
+			((AbstractNode)node).invalidatePermissionResolutionCache();
+		}
+	}
 }
@@ -31,6 +31,7 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.entity.relationship.AbstractChildren;
 import org.structr.core.entity.relationship.AbstractListSiblings;
 import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.graph.TransactionCommand;
 import org.structr.core.property.PropertyMap;
 
 /**
@@ -208,7 +209,21 @@ public abstract class LinkedTreeNode<R extends AbstractChildren<T, T>, S extends
 
 	public T treeGetChild(final int position) {
 
-		for (R rel : getOutgoingRelationships(getChildLinkType())) {
+		final List<R> rels = treeGetChildRelationships();
+
+		// positions are consecutive unless the tree is being modified
+		if (position >= 0 && position < rels.size()) {
+
+			final R rel       = rels.get(position);
+			final Integer pos = rel.getProperty(AbstractChildren.position);
+
+			if (pos != null && pos == position) {
+
+				return (T) rel.getTargetNode();
+			}
+		}
+
+		for (R rel : rels) {
 
 			Integer pos = rel.getProperty(AbstractChildren.position);
 
@@ -249,11 +264,32 @@ public abstract class LinkedTreeNode<R extends AbstractChildren<T, T>, S extends
 	}
 
 	public int treeGetChildCount() {
+
+		final List<? extends RelationshipInterface> cached = TransactionCommand.getChildRelationships(this);
+		if (cached != null) {
+
+			return cached.size();
+		}
+
 		return (int)Iterables.count(getOutgoingRelationships(getChildLinkType()));
 	}
 
+	/**
+	 * Returns the child relationships of this node, ordered by position.
+	 * The ordered list is cached in the current transaction until one of
+	 * the child relationships of this node is modified, so the returned
+	 * list is a copy that may be modified by the caller.
+	 *
+	 * @return the ordered child relationships
+	 */
 	public List<R> treeGetChildRelationships() {
 
+		final List<R> cached = (List<R>)TransactionCommand.getChildRelationships(this);
+		if (cached != null) {
+
+			return new ArrayList<>(cached);
+		}
+
 		// fetch all relationships
 		List<R> childRels = Iterables.toList(getOutgoingRelationships(getChildLinkType()));
 
@@ -276,6 +312,8 @@ public abstract class LinkedTreeNode<R extends AbstractChildren<T, T>, S extends
 
 		});
 
+		TransactionCommand.setChildRelationships(this, new ArrayList<>(childRels));
+
 		return childRels;
 	}
 
@@ -296,6 +334,9 @@ public abstract class LinkedTreeNode<R extends AbstractChildren<T, T>, S extends
 		for (R childRel : childRels) {
 			childRel.setProperty(AbstractChildren.position, position++);
 		}
+
+		// the relationships are now in the order of their positions
+		TransactionCommand.setChildRelationships(this, childRels);
 	}
 
 	private void unlinkNodes(final Class<R> linkType, final T startNode, final T endNode) throws FrameworkException {
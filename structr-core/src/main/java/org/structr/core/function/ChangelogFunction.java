@@ -22,6 +22,7 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -38,6 +39,7 @@ import org.structr.core.GraphObjectMap;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.ChangelogStore;
 import org.structr.core.property.EndNodeProperty;
 import org.structr.core.property.Property;
 import org.structr.core.property.StringProperty;
@@ -83,39 +85,61 @@ public class ChangelogFunction extends Function<Object, Object> {
 
 			if (sources[0] instanceof GraphObject) {
 
-				final String changelog = ((GraphObject) sources[0]).getProperty(GraphObject.structrChangeLog);
+				final GraphObject obj                 = (GraphObject)sources[0];
+				final ChangelogFilter changelogFilter = new ChangelogFilter();
 
-				if (changelog != null && !("".equals(changelog))) {
+				if (sources.length >= 3 && sources[2] != null) {
 
-					final ChangelogFilter changelogFilter = new ChangelogFilter();
+					if (sources[2] instanceof NativeObject) {
 
-					if (sources.length >= 3 && sources[2] != null) {
+						changelogFilter.processJavaScriptConfigurationObject((NativeObject) sources[2]);
 
-						if (sources[2] instanceof NativeObject) {
+					} else {
 
-							changelogFilter.processJavaScriptConfigurationObject((NativeObject) sources[2]);
+						final int maxLength = sources.length;
 
-						} else {
+						for (int i = 2; (i + 2) <= maxLength; i += 2) {
 
-							final int maxLength = sources.length;
+							if (sources[i] != null && sources[i+1] != null) {
+								changelogFilter.addFilterEntry(sources[i].toString(), sources[i+1]);
+							}
 
-							for (int i = 2; (i + 2) <= maxLength; i += 2) {
+						}
 
-								if (sources[i] != null && sources[i+1] != null) {
-									changelogFilter.addFilterEntry(sources[i].toString(), sources[i+1]);
-								}
+						if (maxLength % 2 == 1 && sources[maxLength-1] != null) {
+							logger.warn("Ignoring dangling filterKey: {}", sources[maxLength-1]);
+						}
+					}
+				}
 
-							}
+				if (sources.length >= 2 && Boolean.TRUE.equals(sources[1])) {
+					changelogFilter.setResolveTargets(true);
+				}
 
-							if (maxLength % 2 == 1 && sources[maxLength-1] != null) {
-								logger.warn("Ignoring dangling filterKey: {}", sources[maxLength-1]);
-							}
+				final List<String> changelog = new ArrayList<>();
+
+				// entries written before the changelog store was introduced
+				final String legacyChangelog = obj.getProperty(GraphObject.structrChangeLog);
+				if (legacyChangelog != null && !("".equals(legacyChangelog))) {
+
+					for (final String entry : legacyChangelog.split("\n")) {
+
+						if (!entry.isEmpty()) {
+							changelog.add(entry);
 						}
 					}
+				}
 
-					if (sources.length >= 2 && Boolean.TRUE.equals(sources[1])) {
-						changelogFilter.setResolveTargets(true);
-					}
+				try {
+
+					changelog.addAll(ChangelogStore.getInstance().read(obj.getUuid(), changelogFilter.getTimeFrom(), changelogFilter.getTimeTo()));
+
+				} catch (IOException ioex) {
+
+					logger.warn("Unable to read changelog of {}: {}", obj.getUuid(), ioex.getMessage());
+				}
+
+				if (!changelog.isEmpty()) {
 
 					return changelogFilter.getFilteredChangelog(changelog);
 				}
@@ -212,8 +236,8 @@ public class ChangelogFunction extends Function<Object, Object> {
 
 			assignStringsIfPresent(javascriptConfigObject.get("verb"), _filterVerbs);
 
-			assignLongIfPresent(javascriptConfigObject.get("timeFrom"), _filterTimeFrom);
-			assignLongIfPresent(javascriptConfigObject.get("timeTo"), _filterTimeTo);
+			_filterTimeFrom = getLongIfPresent(javascriptConfigObject.get("timeFrom"), _filterTimeFrom);
+			_filterTimeTo   = getLongIfPresent(javascriptConfigObject.get("timeTo"), _filterTimeTo);
 
 			assignStringsIfPresent(javascriptConfigObject.get("userId"), _filterUserId);
 			assignStringsIfPresent(javascriptConfigObject.get("userName"), _filterUserName);
@@ -228,11 +252,21 @@ public class ChangelogFunction extends Function<Object, Object> {
 
 		}
 
-		private void assignLongIfPresent (final Object possibleLong, Long targetLongReference) {
+		private Long getLongIfPresent (final Object possibleLong, final Long defaultValue) {
 
 			if (possibleLong != null) {
-				targetLongReference = new Double(ScriptRuntime.toNumber(possibleLong)).longValue();
+				return new Double(ScriptRuntime.toNumber(possibleLong)).longValue();
 			}
+
+			return defaultValue;
+		}
+
+		public long getTimeFrom () {
+			return _filterTimeFrom != null ? _filterTimeFrom : Long.MIN_VALUE;
+		}
+
+		public long getTimeTo () {
+			return _filterTimeTo != null ? _filterTimeTo : Long.MAX_VALUE;
 		}
 
 		private void assignStringsIfPresent (final Object possibleListOrString, ArrayList<String> targetListReference) {
@@ -250,7 +284,7 @@ public class ChangelogFunction extends Function<Object, Object> {
 			_resolveTargets = resolve;
 		}
 
-		public List getFilteredChangelog (final String changelog) throws FrameworkException {
+		public List getFilteredChangelog (final List<String> changelog) throws FrameworkException {
 
 			final List list = new ArrayList();
 
@@ -259,7 +293,7 @@ public class ChangelogFunction extends Function<Object, Object> {
 					_filterUserName.isEmpty() && _filterRelType.isEmpty() && _filterRelDir == null && _filterTarget.isEmpty() && _filterKey.isEmpty()
 			);
 
-			for (final String entry : changelog.split("\n")) {
+			for (final String entry : changelog) {
 
 				final JsonObject jsonObj = _jsonParser.parse(entry).getAsJsonObject();
 				final String verb = jsonObj.get("verb").getAsString();
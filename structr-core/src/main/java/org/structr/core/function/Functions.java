@@ -28,7 +28,10 @@ import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.lang3.StringUtils;
+import org.structr.api.config.Settings;
+import org.structr.api.util.FixedSizeCache;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.error.UnlicensedException;
 import org.structr.core.GraphObject;
@@ -60,8 +63,11 @@ import org.structr.schema.action.Function;
  */
 public class Functions {
 
-	private static final Map<String, Function<Object, Object>> functions = new LinkedHashMap<>();
-	public static final String NULL_STRING                               = "___NULL___";
+	private static final Map<String, Function<Object, Object>> functions    = new LinkedHashMap<>();
+	private static final FixedSizeCache<String, Expression> expressionCache = new FixedSizeCache<>(Settings.ExpressionCacheSize.getValue());
+	private static final AtomicLong cacheHits                               = new AtomicLong();
+	private static final AtomicLong cacheMisses                             = new AtomicLong();
+	public static final String NULL_STRING                                  = "___NULL___";
 
 	public static void put(final boolean licensed, final int edition, final String name, final Function<Object, Object> function) {
 
@@ -89,6 +95,53 @@ public class Functions {
 
 	public static Object evaluate(final ActionContext actionContext, final GraphObject entity, final String expression) throws FrameworkException, UnlicensedException {
 
+		Expression root = expressionCache.get(expression);
+		if (root == null) {
+
+			// parse errors are thrown here, so only valid trees end up in the cache
+			root = parse(expression);
+
+			expressionCache.put(expression, root);
+			cacheMisses.incrementAndGet();
+
+		} else {
+
+			cacheHits.incrementAndGet();
+		}
+
+		return root.evaluate(actionContext, entity);
+	}
+
+	public static Map<String, Object> getExpressionCacheStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+		final long hits                      = cacheHits.get();
+		final long misses                    = cacheMisses.get();
+		final long total                     = hits + misses;
+
+		statistics.put("size",     expressionCache.size());
+		statistics.put("hits",     hits);
+		statistics.put("misses",   misses);
+		statistics.put("hitRatio", total > 0 ? (double)hits / (double)total : 0.0);
+
+		return statistics;
+	}
+
+	public static void clearExpressionCache() {
+		expressionCache.clear();
+	}
+
+	/**
+	 * Parses the given StructrScript expression into an expression tree.
+	 * The resulting tree is not modified during evaluation and can be
+	 * shared between threads.
+	 *
+	 * @param expression
+	 * @return the root of the expression tree
+	 * @throws FrameworkException
+	 */
+	public static Expression parse(final String expression) throws FrameworkException {
+
 		final String expressionWithoutNewlines = expression.replace('\n', ' ').replace('\r', ' ');
 		final StreamTokenizer tokenizer = new StreamTokenizer(new StringReader(expressionWithoutNewlines));
 		tokenizer.eolIsSignificant(true);
@@ -214,7 +267,7 @@ public class Functions {
 			throw new FrameworkException(422, "Invalid expression: mismatched closing bracket after " + lastToken);
 		}
 
-		return root.evaluate(actionContext, entity);
+		return root;
 	}
 
 	public static String cleanString(final Object input) {
@@ -0,0 +1,989 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+
+/**
+ * Append-only, segmented on-disk store for the changelog of graph objects.
+ *
+ * Every committed transaction appends one record per modified object,
+ * containing the changelog entries of that object. The in-memory index is
+ * sparse: it holds the time range of each segment and the position and
+ * time range of every block of BLOCK_SIZE consecutive records. Reading the
+ * changelog of an object scans the blocks that overlap the requested time
+ * range, so the memory usage depends on the number of blocks and not on the
+ * number of records or objects.
+ *
+ * Deleting an object appends a tombstone record, the position of the last
+ * tombstone of each deleted object is kept in memory. Sealed segments with
+ * a high ratio of deleted or expired records are rewritten in the background.
+ */
+public class ChangelogStore {
+
+	private static final Logger logger = LoggerFactory.getLogger(ChangelogStore.class.getName());
+
+	private static final String SEGMENT_PREFIX = "changelog-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final int MAX_HEADER_LENGTH = 256;
+	private static final int BLOCK_SIZE        = 64;
+	private static final int TOMBSTONE         = -1;
+
+	private static ChangelogStore instance = null;
+
+	private final ReentrantReadWriteLock lock        = new ReentrantReadWriteLock();
+	private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+	private final Map<String, Long> tombstones       = new HashMap<>();
+	private ScheduledExecutorService compactor       = null;
+	private Segment active                           = null;
+	private long tombstoneCount                      = 0L;
+	private final long maxSegmentSize;
+	private final long retention;
+	private final File directory;
+
+	/**
+	 * @param directory the directory that contains the segment files
+	 * @param maxSegmentSize the size in bytes after which a new segment is started
+	 * @param retention the time in milliseconds after which entries are discarded, or 0
+	 */
+	public ChangelogStore(final File directory, final long maxSegmentSize, final long retention) {
+
+		this.directory      = directory;
+		this.maxSegmentSize = maxSegmentSize;
+		this.retention      = retention;
+	}
+
+	/**
+	 * Returns the changelog store configured in structr.conf, opening it
+	 * on first use.
+	 *
+	 * @return the changelog store
+	 */
+	public static synchronized ChangelogStore getInstance() {
+
+		if (instance == null) {
+
+			final File directory = new File(Settings.getBasePath() + Settings.ChangelogPath.getValue());
+			final long size      = Settings.ChangelogSegmentSize.getValue() * 1024L * 1024L;
+			final long retention = TimeUnit.DAYS.toMillis(Settings.ChangelogRetention.getValue());
+
+			instance = new ChangelogStore(directory, size, retention);
+
+			try {
+
+				instance.open();
+				instance.startCompaction(Settings.ChangelogCompaction.getValue());
+
+			} catch (IOException ioex) {
+
+				logger.error("Unable to open changelog store in {}: {}", directory, ioex.getMessage());
+			}
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Closes the changelog store configured in structr.conf, if it was
+	 * opened.
+	 */
+	public static synchronized void shutdown() {
+
+		if (instance != null) {
+
+			instance.close();
+			instance = null;
+		}
+	}
+
+	/**
+	 * Opens the segment files and rebuilds the index. An incomplete record
+	 * at the end of the last segment is discarded.
+	 *
+	 * @throws IOException
+	 */
+	public void open() throws IOException {
+
+		lock.writeLock().lock();
+		try {
+
+			directory.mkdirs();
+
+			final File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+			if (files != null) {
+
+				for (final File file : files) {
+
+					try {
+
+						final int id = Integer.parseInt(file.getName().substring(SEGMENT_PREFIX.length(), file.getName().length() - SEGMENT_SUFFIX.length()));
+
+						segments.put(id, new Segment(id, file));
+
+					} catch (NumberFormatException nex) {
+						logger.warn("Ignoring unknown file {} in changelog directory", file.getName());
+					}
+				}
+			}
+
+			for (final Segment segment : segments.values()) {
+
+				final long end = scan(segment);
+				if (end < segment.size) {
+
+					logger.warn("Discarding incomplete changelog record at position {} of {}", end, segment.file.getName());
+
+					segment.channel.truncate(end);
+					segment.size = end;
+				}
+			}
+
+			if (segments.isEmpty()) {
+
+				active = createSegment(1);
+
+			} else {
+
+				active = segments.lastEntry().getValue();
+			}
+
+		} finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Stops the background compaction and closes all segment files.
+	 */
+	public void close() {
+
+		if (compactor != null) {
+
+			compactor.shutdownNow();
+			compactor = null;
+		}
+
+		lock.writeLock().lock();
+		try {
+
+			for (final Segment segment : segments.values()) {
+				segment.close();
+			}
+
+			segments.clear();
+			tombstones.clear();
+			active = null;
+
+		} finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Appends the given changelog entries of the object with the given
+	 * UUID. The entries are expected to be newline-separated JSON objects.
+	 *
+	 * @param uuid the UUID of the object
+	 * @param entries the changelog entries
+	 * @throws IOException
+	 */
+	public void append(final String uuid, final String entries) throws IOException {
+
+		if (uuid == null || entries == null || entries.isEmpty()) {
+			return;
+		}
+
+		final byte[] payload = entries.getBytes(StandardCharsets.UTF_8);
+		final long[] range   = getTimeRange(entries);
+
+		lock.writeLock().lock();
+		try {
+
+			getActiveSegment(payload.length).write(header(uuid, range[0], range[1], payload.length), payload, range[0], range[1]);
+
+		} finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Discards the changelog of the object with the given UUID.
+	 *
+	 * @param uuid the UUID of the object
+	 * @throws IOException
+	 */
+	public void remove(final String uuid) throws IOException {
+
+		if (uuid == null) {
+			return;
+		}
+
+		lock.writeLock().lock();
+		try {
+
+			final long now        = System.currentTimeMillis();
+			final Segment segment = getActiveSegment(0);
+			final long position   = segment.write(header(uuid, now, now, TOMBSTONE), new byte[0], now, now);
+
+			tombstones.put(uuid, globalPosition(segment.id, position));
+			tombstoneCount++;
+
+		} finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the changelog entries of the object with the given UUID in
+	 * the order they were written. Only records that contain entries
+	 * between the given timestamps are read, the entries themselves are
+	 * not filtered.
+	 *
+	 * @param uuid the UUID of the object
+	 * @param from the earliest timestamp
+	 * @param to the latest timestamp
+	 * @return the changelog entries
+	 * @throws IOException
+	 */
+	public List<String> read(final String uuid, final long from, final long to) throws IOException {
+
+		final List<String> entries = new ArrayList<>();
+		final long cutoff          = getCutoff();
+		final long start           = Math.max(from, cutoff);
+
+		lock.readLock().lock();
+		try {
+
+			final Long tombstone = tombstones.get(uuid);
+
+			for (final Segment segment : segments.values()) {
+
+				// records before the tombstone of a deleted object are discarded
+				if (tombstone != null && globalPosition(segment.id, segment.size) <= tombstone) {
+					continue;
+				}
+
+				if (segment.maxTime < start || segment.minTime > to) {
+					continue;
+				}
+
+				for (int i=0; i<segment.blocks; i++) {
+
+					if (segment.blockMaxTimes[i] < start || segment.blockMinTimes[i] > to) {
+						continue;
+					}
+
+					readBlock(segment, i, (record, position, data, offset) -> {
+
+						if (record.length > 0 && record.maxTime >= start && record.minTime <= to && uuid.equals(record.uuid) && (tombstone == null || globalPosition(segment.id, position) > tombstone)) {
+
+							for (final String entry : new String(data, offset, record.length, StandardCharsets.UTF_8).split("\n")) {
+
+								if (!entry.isEmpty()) {
+									entries.add(entry);
+								}
+							}
+						}
+					});
+				}
+			}
+
+		} finally {
+
+			lock.readLock().unlock();
+		}
+
+		return entries;
+	}
+
+	/**
+	 * Rewrites sealed segments of which at least half of the content
+	 * belongs to deleted objects or is expired. A segment is only scanned
+	 * again if objects were deleted or records expired since the last run.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void compact() throws IOException {
+
+		final List<Segment> candidates = new ArrayList<>();
+		final List<Segment> sealed     = new ArrayList<>();
+		final long cutoff              = getCutoff();
+		final long currentTombstones;
+
+		lock.readLock().lock();
+		try {
+
+			for (final Segment segment : segments.values()) {
+
+				if (segment != active) {
+					sealed.add(segment);
+				}
+			}
+
+			currentTombstones = tombstoneCount;
+
+		} finally {
+
+			lock.readLock().unlock();
+		}
+
+		for (final Segment segment : sealed) {
+
+			if (segment.checkedTombstones != currentTombstones || segment.minTime < cutoff) {
+
+				lock.readLock().lock();
+				try {
+
+					segment.deadBytes         = countDeadBytes(segment, cutoff);
+					segment.checkedTombstones = currentTombstones;
+
+				} finally {
+
+					lock.readLock().unlock();
+				}
+			}
+
+			if (segment.deadBytes * 2 >= segment.size) {
+				candidates.add(segment);
+			}
+		}
+
+		for (final Segment segment : candidates) {
+			rewrite(segment, cutoff);
+		}
+	}
+
+	public Map<String, Object> getStatistics() {
+
+		final Map<String, Object> stats = new LinkedHashMap<>();
+		long size                       = 0L;
+		long deadBytes                  = 0L;
+		long records                    = 0L;
+
+		lock.readLock().lock();
+		try {
+
+			for (final Segment segment : segments.values()) {
+
+				size      += segment.size;
+				deadBytes += segment.deadBytes;
+				records   += segment.records;
+			}
+
+			stats.put("segments", segments.size());
+			stats.put("records", records);
+			stats.put("tombstones", tombstones.size());
+
+		} finally {
+
+			lock.readLock().unlock();
+		}
+
+		stats.put("size", size);
+		stats.put("deadBytes", deadBytes);
+
+		return stats;
+	}
+
+	// ----- private methods -----
+	private void startCompaction(final int intervalMinutes) {
+
+		if (intervalMinutes > 0) {
+
+			compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+
+				final Thread thread = new Thread(r, "ChangelogCompaction");
+				thread.setDaemon(true);
+
+				return thread;
+			});
+
+			compactor.scheduleWithFixedDelay(() -> {
+
+				try {
+					compact();
+
+				} catch (Throwable t) {
+					logger.warn("Unable to compact changelog: {}", t.getMessage());
+				}
+
+			}, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+		}
+	}
+
+	private Segment getActiveSegment(final int payloadLength) throws IOException {
+
+		if (active == null) {
+			throw new IOException("Changelog store is not open");
+		}
+
+		if (active.size > 0 && active.size + payloadLength > maxSegmentSize) {
+			active = createSegment(active.id + 1);
+		}
+
+		return active;
+	}
+
+	private Segment createSegment(final int id) throws IOException {
+
+		final Segment segment = new Segment(id, new File(directory, segmentName(id)));
+
+		segments.put(id, segment);
+
+		return segment;
+	}
+
+	private long getCutoff() {
+		return retention > 0 ? System.currentTimeMillis() - retention : Long.MIN_VALUE;
+	}
+
+	/**
+	 * Reads all records of the given segment into the sparse index and
+	 * the tombstones, and returns the position after the last complete
+	 * record.
+	 */
+	private long scan(final Segment segment) throws IOException {
+
+		long position = 0L;
+
+		segment.channel.position(0);
+
+		final InputStream in = new BufferedInputStream(Channels.newInputStream(segment.channel));
+
+		while (position < segment.size) {
+
+			final String header = readHeader(in);
+			if (header == null) {
+				break;
+			}
+
+			final Record record = Record.parse(header);
+			if (record == null) {
+				break;
+			}
+
+			if (record.length > 0 && !skip(in, record.length)) {
+				break;
+			}
+
+			segment.index(position, record.minTime, record.maxTime);
+
+			if (record.length == TOMBSTONE) {
+
+				// a tombstone in a later segment takes precedence
+				final Long existing = tombstones.get(record.uuid);
+				if (existing == null || segmentOf(existing) <= segment.id) {
+
+					tombstones.put(record.uuid, globalPosition(segment.id, position));
+				}
+			}
+
+			position += header.length() + 1 + Math.max(0, record.length);
+		}
+
+		return position;
+	}
+
+	/**
+	 * Reads the given block of the given segment and passes each record
+	 * to the given visitor.
+	 */
+	private void readBlock(final Segment segment, final int block, final RecordVisitor visitor) throws IOException {
+
+		final long start  = segment.blockPositions[block];
+		final byte[] data = segment.read(start, (int)(segment.getBlockEnd(block) - start));
+		int position      = 0;
+
+		while (position < data.length) {
+
+			int end = position;
+			while (end < data.length && data[end] != '\n') {
+				end++;
+			}
+
+			if (end == data.length) {
+				break;
+			}
+
+			final Record record = Record.parse(new String(data, position, end - position, StandardCharsets.US_ASCII));
+			if (record == null) {
+				break;
+			}
+
+			final int offset = end + 1;
+			final int length = Math.max(0, record.length);
+
+			if (offset + length > data.length) {
+				break;
+			}
+
+			visitor.visit(record, start + position, data, offset);
+
+			position = offset + length;
+		}
+	}
+
+	private long countDeadBytes(final Segment segment, final long cutoff) throws IOException {
+
+		final long[] deadBytes = new long[1];
+
+		for (int i=0; i<segment.blocks; i++) {
+
+			readBlock(segment, i, (record, position, data, offset) -> {
+
+				if (record.length > 0 && !isLive(record, segment.id, position, cutoff)) {
+					deadBytes[0] += record.length;
+				}
+			});
+		}
+
+		return deadBytes[0];
+	}
+
+	/**
+	 * Copies the records of the given segment that are still live into a
+	 * new file and replaces the segment with it. Tombstones are kept as
+	 * long as older segments exist that may contain records of the deleted
+	 * objects.
+	 */
+	private void rewrite(final Segment segment, final long cutoff) throws IOException {
+
+		final File target = new File(directory, segmentName(segment.id) + ".tmp");
+		final boolean keepTombstones;
+		long targetPosition = 0L;
+		long position       = 0L;
+
+		lock.readLock().lock();
+		try {
+
+			keepTombstones = segments.firstKey() < segment.id;
+
+		} finally {
+
+			lock.readLock().unlock();
+		}
+
+		try (final InputStream in = new BufferedInputStream(Channels.newInputStream(FileChannel.open(segment.file.toPath(), StandardOpenOption.READ)));
+			final FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+			while (true) {
+
+				final String header = readHeader(in);
+				if (header == null) {
+					break;
+				}
+
+				final Record record = Record.parse(header);
+				if (record == null) {
+					break;
+				}
+
+				final byte[] bytes  = (header + "\n").getBytes(StandardCharsets.UTF_8);
+				final byte[] buffer = new byte[Math.max(0, record.length)];
+
+				if (!readFully(in, buffer)) {
+					break;
+				}
+
+				if (record.length == TOMBSTONE) {
+
+					if (keepTombstones) {
+
+						targetPosition += writeFully(out, bytes, targetPosition);
+					}
+
+				} else if (isReferenced(record, segment.id, position, cutoff)) {
+
+					targetPosition += writeFully(out, bytes, targetPosition);
+					targetPosition += writeFully(out, buffer, targetPosition);
+				}
+
+				position += bytes.length + buffer.length;
+			}
+
+			out.force(true);
+		}
+
+		lock.writeLock().lock();
+		try {
+
+			segment.close();
+
+			// the positions of the tombstones in this segment change, the kept ones are read again
+			tombstones.values().removeIf(value -> segmentOf(value) == segment.id);
+
+			if (targetPosition == 0L) {
+
+				segments.remove(segment.id);
+
+				Files.deleteIfExists(target.toPath());
+				Files.deleteIfExists(segment.file.toPath());
+
+			} else {
+
+				Files.move(target.toPath(), segment.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+				final Segment replacement = new Segment(segment.id, segment.file);
+
+				scan(replacement);
+
+				segments.put(segment.id, replacement);
+			}
+
+		} finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	private boolean isLive(final Record record, final int segment, final long position, final long cutoff) {
+
+		if (record.maxTime < cutoff) {
+			return false;
+		}
+
+		final Long tombstone = tombstones.get(record.uuid);
+
+		return tombstone == null || tombstone < globalPosition(segment, position);
+	}
+
+	private boolean isReferenced(final Record record, final int segment, final long position, final long cutoff) {
+
+		lock.readLock().lock();
+		try {
+
+			return isLive(record, segment, position, cutoff);
+
+		} finally {
+
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns a position that orders records across segments.
+	 */
+	private static long globalPosition(final int segment, final long position) {
+		return ((long)segment << 40) | position;
+	}
+
+	private static int segmentOf(final long globalPosition) {
+		return (int)(globalPosition >>> 40);
+	}
+
+	private String segmentName(final int id) {
+		return SEGMENT_PREFIX + String.format("%08d", id) + SEGMENT_SUFFIX;
+	}
+
+	private String header(final String uuid, final long minTime, final long maxTime, final int length) {
+		return uuid + "\t" + minTime + "\t" + maxTime + "\t" + length;
+	}
+
+	private String readHeader(final InputStream in) throws IOException {
+
+		final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		int c                           = in.read();
+
+		while (c != '\n') {
+
+			if (c < 0 || buf.size() > MAX_HEADER_LENGTH) {
+				return null;
+			}
+
+			buf.write(c);
+			c = in.read();
+		}
+
+		return new String(buf.toByteArray(), StandardCharsets.US_ASCII);
+	}
+
+	private boolean skip(final InputStream in, final long count) throws IOException {
+
+		long remaining = count;
+
+		while (remaining > 0) {
+
+			final long skipped = in.skip(remaining);
+			if (skipped <= 0) {
+
+				if (in.read() < 0) {
+					return false;
+				}
+
+				remaining--;
+
+			} else {
+
+				remaining -= skipped;
+			}
+		}
+
+		return true;
+	}
+
+	private boolean readFully(final InputStream in, final byte[] buffer) throws IOException {
+
+		int position = 0;
+
+		while (position < buffer.length) {
+
+			final int count = in.read(buffer, position, buffer.length - position);
+			if (count < 0) {
+				return false;
+			}
+
+			position += count;
+		}
+
+		return true;
+	}
+
+	private static int writeFully(final FileChannel channel, final byte[] data, final long position) throws IOException {
+
+		final ByteBuffer buffer = ByteBuffer.wrap(data);
+		long current            = position;
+
+		while (buffer.hasRemaining()) {
+			current += channel.write(buffer, current);
+		}
+
+		return data.length;
+	}
+
+	/**
+	 * Returns the smallest and the largest timestamp of the given entries.
+	 * The timestamp is the first field of each entry.
+	 */
+	private long[] getTimeRange(final String entries) {
+
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+
+		for (final String entry : entries.split("\n")) {
+
+			final int start = entry.indexOf("\"time\":");
+			if (start >= 0) {
+
+				int end = start + 7;
+				while (end < entry.length() && Character.isDigit(entry.charAt(end))) {
+					end++;
+				}
+
+				try {
+
+					final long time = Long.parseLong(entry.substring(start + 7, end));
+
+					min = Math.min(min, time);
+					max = Math.max(max, time);
+
+				} catch (NumberFormatException nex) {}
+			}
+		}
+
+		if (min > max) {
+
+			final long now = System.currentTimeMillis();
+
+			return new long[] { now, now };
+		}
+
+		return new long[] { min, max };
+	}
+
+	// ----- nested classes -----
+	private static class Record {
+
+		private String uuid  = null;
+		private long minTime = 0L;
+		private long maxTime = 0L;
+		private int length   = 0;
+
+		static Record parse(final String header) {
+
+			final String[] parts = header.split("\t");
+			if (parts.length == 4) {
+
+				try {
+
+					final Record record = new Record();
+
+					record.uuid    = parts[0];
+					record.minTime = Long.parseLong(parts[1]);
+					record.maxTime = Long.parseLong(parts[2]);
+					record.length  = Integer.parseInt(parts[3]);
+
+					return record;
+
+				} catch (NumberFormatException nex) {}
+			}
+
+			return null;
+		}
+	}
+
+	private interface RecordVisitor {
+
+		/**
+		 * @param record the record header
+		 * @param position the position of the record in its segment
+		 * @param data the block data
+		 * @param offset the offset of the payload in the block data
+		 */
+		void visit(final Record record, final long position, final byte[] data, final int offset);
+	}
+
+	private class Segment {
+
+		private final FileChannel channel;
+		private final File file;
+		private final int id;
+		private long[] blockPositions   = new long[1];
+		private long[] blockMinTimes    = new long[1];
+		private long[] blockMaxTimes    = new long[1];
+		private int blocks              = 0;
+		private int records             = 0;
+		private long minTime            = Long.MAX_VALUE;
+		private long maxTime            = Long.MIN_VALUE;
+		private long checkedTombstones  = -1L;
+		private volatile long deadBytes = 0L;
+		private long size               = 0L;
+
+		Segment(final int id, final File file) throws IOException {
+
+			this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			this.size    = channel.size();
+			this.file    = file;
+			this.id      = id;
+		}
+
+		/**
+		 * Appends and indexes a record and returns its position.
+		 */
+		long write(final String header, final byte[] payload, final long recordMinTime, final long recordMaxTime) throws IOException {
+
+			final byte[] headerBytes = (header + "\n").getBytes(StandardCharsets.US_ASCII);
+			final long position      = size;
+
+			writeFully(channel, headerBytes, position);
+			writeFully(channel, payload, position + headerBytes.length);
+
+			index(position, recordMinTime, recordMaxTime);
+
+			size = position + headerBytes.length + payload.length;
+
+			return position;
+		}
+
+		/**
+		 * Adds the record at the given position to the sparse index, a
+		 * new block is started every BLOCK_SIZE records.
+		 */
+		void index(final long position, final long recordMinTime, final long recordMaxTime) {
+
+			if (records % BLOCK_SIZE == 0) {
+
+				if (blocks == blockPositions.length) {
+
+					final int capacity = blocks * 2;
+
+					blockPositions = Arrays.copyOf(blockPositions, capacity);
+					blockMinTimes  = Arrays.copyOf(blockMinTimes, capacity);
+					blockMaxTimes  = Arrays.copyOf(blockMaxTimes, capacity);
+				}
+
+				blockPositions[blocks] = position;
+				blockMinTimes[blocks]  = Long.MAX_VALUE;
+				blockMaxTimes[blocks]  = Long.MIN_VALUE;
+
+				blocks++;
+			}
+
+			final int block = blocks - 1;
+
+			blockMinTimes[block] = Math.min(blockMinTimes[block], recordMinTime);
+			blockMaxTimes[block] = Math.max(blockMaxTimes[block], recordMaxTime);
+			minTime              = Math.min(minTime, recordMinTime);
+			maxTime              = Math.max(maxTime, recordMaxTime);
+
+			records++;
+		}
+
+		long getBlockEnd(final int block) {
+			return block + 1 < blocks ? blockPositions[block + 1] : size;
+		}
+
+		byte[] read(final long offset, final int length) throws IOException {
+
+			final ByteBuffer buffer = ByteBuffer.allocate(length);
+			long position           = offset;
+
+			while (buffer.hasRemaining()) {
+
+				final int count = channel.read(buffer, position);
+				if (count < 0) {
+					throw new EOFException("Unexpected end of changelog segment " + file.getName());
+				}
+
+				position += count;
+			}
+
+			return buffer.array();
+		}
+
+		void close() {
+
+			try {
+				channel.close();
+
+			} catch (IOException ioex) {
+				logger.warn("Unable to close changelog segment {}: {}", file.getName(), ioex.getMessage());
+			}
+		}
+	}
+}
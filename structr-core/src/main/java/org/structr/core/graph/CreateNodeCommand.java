@@ -18,9 +18,13 @@
  */
 package org.structr.core.graph;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -55,6 +59,8 @@ import org.structr.schema.SchemaHelper;
  */
 public class CreateNodeCommand<T extends NodeInterface> extends NodeServiceCommand {
 
+	public static final int CREATE_BATCH_SIZE = 1000;
+
 	public T execute(final Collection<NodeAttribute<?>> attributes) throws FrameworkException {
 
 		PropertyMap properties = new PropertyMap();
@@ -86,134 +92,226 @@ public class CreateNodeCommand<T extends NodeInterface> extends NodeServiceComma
 
 		if (graphDb != null) {
 
-			final NodeFactory<T> nodeFactory = new NodeFactory<>(securityContext);
-			final PropertyMap properties     = new PropertyMap(attributes);
-			final PropertyMap toNotify       = new PropertyMap();
-			final Object typeObject          = properties.get(AbstractNode.type);
-			final Class nodeType             = getTypeOrGeneric(typeObject);
-			final Set<String> labels         = TypeProperty.getLabelsForType(nodeType);
-			final CreationContainer tmp      = new CreationContainer();
-			final Date now                   = new Date();
-			final boolean isCreation         = true;
+			final NodeCreation creation = prepare(user, attributes);
 
-			// use user-supplied UUID?
-			String uuid = properties.get(GraphObject.id);
-			if (uuid == null) {
+			creation.dbNode = createNode(graphDb, user, creation.nodeType, creation.labels, creation.tmp.getData());
 
-				// no, create new one
-				uuid = getNextUuid();
+			node = initialize(user, creation);
+		}
 
-				properties.put(GraphObject.id, uuid);
+		if (node != null) {
 
-			} else {
+			notifyCreation(node);
+		}
 
-				// enable UUID validation
-				securityContext.uuidWasSetManually(true);
-			}
+		return node;
+	}
 
-			// use property keys to set property values on creation dummy
-			// set default values for common properties in creation query
-			GraphObject.id.setProperty(securityContext, tmp, uuid);
-			GraphObject.type.setProperty(securityContext, tmp, nodeType.getSimpleName());
-			AbstractNode.createdDate.setProperty(securityContext, tmp, now);
-			AbstractNode.lastModifiedDate.setProperty(securityContext, tmp, now);
+	/**
+	 * Creates a new node for each of the given property maps. The nodes
+	 * are created with one statement per type and batch of at most
+	 * {@link #CREATE_BATCH_SIZE} nodes, the callbacks and validation of
+	 * the individual nodes are run afterwards.
+	 *
+	 * @param attributes the properties, one map per node
+	 *
+	 * @return the new nodes, in the order of the given property maps
+	 *
+	 * @throws FrameworkException
+	 */
+	public List<T> executeBatch(final List<PropertyMap> attributes) throws FrameworkException {
 
-			// default property values
-			AbstractNode.visibleToPublicUsers.setProperty(securityContext, tmp,        getOrDefault(properties, AbstractNode.visibleToPublicUsers, false));
-			AbstractNode.visibleToAuthenticatedUsers.setProperty(securityContext, tmp, getOrDefault(properties, AbstractNode.visibleToAuthenticatedUsers, false));
-			AbstractNode.hidden.setProperty(securityContext, tmp,                      getOrDefault(properties, AbstractNode.hidden, false));
-			AbstractNode.deleted.setProperty(securityContext, tmp,                     getOrDefault(properties, AbstractNode.deleted, false));
+		final DatabaseService graphDb = (DatabaseService) arguments.get("graphDb");
+		final Principal user          = securityContext.getUser(false);
+		final List<T> nodes           = new ArrayList<>(attributes.size());
+
+		if (graphDb != null) {
 
-			if (user != null) {
+			final Map<Class, List<NodeCreation>> byType = new LinkedHashMap<>();
+			final List<NodeCreation> creations          = new ArrayList<>(attributes.size());
 
-				final String userId = user.getProperty(GraphObject.id);
+			for (final PropertyMap properties : attributes) {
+
+				final NodeCreation creation = prepare(user, properties);
+
+				List<NodeCreation> list = byType.get(creation.nodeType);
+				if (list == null) {
+
+					list = new ArrayList<>();
+					byType.put(creation.nodeType, list);
+				}
 
-				AbstractNode.createdBy.setProperty(securityContext, tmp, userId);
-				AbstractNode.lastModifiedBy.setProperty(securityContext, tmp, userId);
+				list.add(creation);
+				creations.add(creation);
 			}
 
-			// prevent double setting of properties
-			properties.remove(AbstractNode.id);
-			properties.remove(AbstractNode.type);
-			properties.remove(AbstractNode.visibleToPublicUsers);
-			properties.remove(AbstractNode.visibleToAuthenticatedUsers);
-			properties.remove(AbstractNode.hidden);
-			properties.remove(AbstractNode.deleted);
-			properties.remove(AbstractNode.lastModifiedDate);
-			properties.remove(AbstractNode.lastModifiedBy);
-			properties.remove(AbstractNode.createdDate);
-			properties.remove(AbstractNode.createdBy);
+			for (final List<NodeCreation> list : byType.values()) {
 
-			// move properties to creation container that can be set directly on creation
-			tmp.filterIndexableForCreation(securityContext, properties, tmp, toNotify);
+				final Set<String> labels = list.get(0).labels;
 
-			// collect default values and try to set them on creation
-			for (final PropertyKey key : StructrApp.getConfiguration().getPropertySet(nodeType, PropertyView.All)) {
+				for (int i=0; i<list.size(); i+=CREATE_BATCH_SIZE) {
 
-				if (key instanceof AbstractPrimitiveProperty && !tmp.hasProperty(key.jsonName())) {
+					final List<NodeCreation> batch = list.subList(i, Math.min(list.size(), i + CREATE_BATCH_SIZE));
+					final List<Node> dbNodes       = createNodes(graphDb, user, labels, batch);
 
-					final Object defaultValue = key.defaultValue();
-					if (defaultValue != null) {
+					for (int j=0; j<batch.size(); j++) {
 
-						key.setProperty(securityContext, tmp, defaultValue);
+						batch.get(j).dbNode = dbNodes.get(j);
 					}
 				}
 			}
 
-			node = (T) nodeFactory.instantiateWithType(createNode(graphDb, user, nodeType, labels, tmp.getData()), nodeType, null, isCreation);
+			for (final NodeCreation creation : creations) {
+
+				nodes.add(initialize(user, creation));
+			}
+		}
+
+		for (final T node : nodes) {
+
 			if (node != null) {
 
-				TransactionCommand.nodeCreated(user, node);
+				notifyCreation(node);
+			}
+		}
 
-				securityContext.disableModificationOfAccessTime();
-				node.setProperties(securityContext, properties);
-				securityContext.enableModificationOfAccessTime();
+		return nodes;
+	}
 
-				// ensure modification callbacks are called (necessary for validation)
-				for (final Entry<PropertyKey, Object> entry : toNotify.entrySet()) {
+	// ----- private methods -----
+	private NodeCreation prepare(final Principal user, final PropertyMap attributes) throws FrameworkException {
 
-					final PropertyKey key = entry.getKey();
-					final Object value    = entry.getValue();
+		final PropertyMap properties = new PropertyMap(attributes);
+		final PropertyMap toNotify   = new PropertyMap();
+		final Object typeObject      = properties.get(AbstractNode.type);
+		final Class nodeType         = getTypeOrGeneric(typeObject);
+		final Set<String> labels     = TypeProperty.getLabelsForType(nodeType);
+		final CreationContainer tmp  = new CreationContainer();
+		final Date now               = new Date();
 
-					if (!key.isUnvalidated()) {
-						TransactionCommand.nodeModified(securityContext.getCachedUser(), (AbstractNode)node, key, null, value);
-					}
-				}
+		// use user-supplied UUID?
+		String uuid = properties.get(GraphObject.id);
+		if (uuid == null) {
+
+			// no, create new one
+			uuid = getNextUuid();
+
+			properties.put(GraphObject.id, uuid);
+
+		} else {
 
-				properties.clear();
+			// enable UUID validation
+			securityContext.uuidWasSetManually(true);
+		}
+
+		// use property keys to set property values on creation dummy
+		// set default values for common properties in creation query
+		GraphObject.id.setProperty(securityContext, tmp, uuid);
+		GraphObject.type.setProperty(securityContext, tmp, nodeType.getSimpleName());
+		AbstractNode.createdDate.setProperty(securityContext, tmp, now);
+		AbstractNode.lastModifiedDate.setProperty(securityContext, tmp, now);
+
+		// default property values
+		AbstractNode.visibleToPublicUsers.setProperty(securityContext, tmp,        getOrDefault(properties, AbstractNode.visibleToPublicUsers, false));
+		AbstractNode.visibleToAuthenticatedUsers.setProperty(securityContext, tmp, getOrDefault(properties, AbstractNode.visibleToAuthenticatedUsers, false));
+		AbstractNode.hidden.setProperty(securityContext, tmp,                      getOrDefault(properties, AbstractNode.hidden, false));
+		AbstractNode.deleted.setProperty(securityContext, tmp,                     getOrDefault(properties, AbstractNode.deleted, false));
+
+		if (user != null) {
+
+			final String userId = user.getProperty(GraphObject.id);
+
+			AbstractNode.createdBy.setProperty(securityContext, tmp, userId);
+			AbstractNode.lastModifiedBy.setProperty(securityContext, tmp, userId);
+		}
+
+		// prevent double setting of properties
+		properties.remove(AbstractNode.id);
+		properties.remove(AbstractNode.type);
+		properties.remove(AbstractNode.visibleToPublicUsers);
+		properties.remove(AbstractNode.visibleToAuthenticatedUsers);
+		properties.remove(AbstractNode.hidden);
+		properties.remove(AbstractNode.deleted);
+		properties.remove(AbstractNode.lastModifiedDate);
+		properties.remove(AbstractNode.lastModifiedBy);
+		properties.remove(AbstractNode.createdDate);
+		properties.remove(AbstractNode.createdBy);
 
-				// ensure indexing of newly created node
-				node.addToIndex();
+		// move properties to creation container that can be set directly on creation
+		tmp.filterIndexableForCreation(securityContext, properties, tmp, toNotify);
 
-				// invalidate UUID cache
-				StructrApp.invalidate(uuid);
+		// collect default values and try to set them on creation
+		for (final PropertyKey key : StructrApp.getConfiguration().getPropertySet(nodeType, PropertyView.All)) {
+
+			if (key instanceof AbstractPrimitiveProperty && !tmp.hasProperty(key.jsonName())) {
+
+				final Object defaultValue = key.defaultValue();
+				if (defaultValue != null) {
+
+					key.setProperty(securityContext, tmp, defaultValue);
+				}
 			}
 		}
 
+		return new NodeCreation(nodeType, labels, uuid, tmp, properties, toNotify);
+	}
+
+	private T initialize(final Principal user, final NodeCreation creation) throws FrameworkException {
+
+		final NodeFactory<T> nodeFactory = new NodeFactory<>(securityContext);
+		final PropertyMap properties     = creation.properties;
+		final boolean isCreation         = true;
+
+		final T node = (T) nodeFactory.instantiateWithType(creation.dbNode, creation.nodeType, null, isCreation);
 		if (node != null) {
 
-			// notify node of its creation
-			node.onNodeCreation();
+			TransactionCommand.nodeCreated(user, node);
 
-			// iterate post creation transformations
-			final Set<Transformation<GraphObject>> transformations = StructrApp.getConfiguration().getEntityCreationTransformations(node.getClass());
-			for (Transformation<GraphObject> transformation : transformations) {
+			securityContext.disableModificationOfAccessTime();
+			node.setProperties(securityContext, properties);
+			securityContext.enableModificationOfAccessTime();
 
-				transformation.apply(securityContext, node);
+			// ensure modification callbacks are called (necessary for validation)
+			for (final Entry<PropertyKey, Object> entry : creation.toNotify.entrySet()) {
+
+				final PropertyKey key = entry.getKey();
+				final Object value    = entry.getValue();
+
+				if (!key.isUnvalidated()) {
+					TransactionCommand.nodeModified(securityContext.getCachedUser(), (AbstractNode)node, key, null, value);
+				}
 			}
+
+			properties.clear();
+
+			// ensure indexing of newly created node
+			node.addToIndex();
+
+			// invalidate UUID cache
+			StructrApp.invalidate(creation.uuid);
 		}
 
 		return node;
 	}
 
-	// ----- private methods -----
+	private void notifyCreation(final T node) throws FrameworkException {
+
+		// notify node of its creation
+		node.onNodeCreation();
+
+		// iterate post creation transformations
+		final Set<Transformation<GraphObject>> transformations = StructrApp.getConfiguration().getEntityCreationTransformations(node.getClass());
+		for (Transformation<GraphObject> transformation : transformations) {
+
+			transformation.apply(securityContext, node);
+		}
+	}
+
 	private Node createNode(final DatabaseService graphDb, final Principal user, final Class nodeType, final Set<String> labels, final Map<String, Object> properties) throws FrameworkException {
 
-		final Map<String, Object> parameters         = new HashMap<>();
-		final Map<String, Object> ownsProperties     = new HashMap<>();
-		final Map<String, Object> securityProperties = new HashMap<>();
-		final StringBuilder buf                      = new StringBuilder();
-		final String newUuid                         = (String)properties.get("id");
+		final Map<String, Object> parameters = new HashMap<>();
+		final StringBuilder buf              = new StringBuilder();
+		final String newUuid                 = (String)properties.get("id");
 
 		if (user != null && user.shouldSkipSecurityRelationships() == false) {
 
@@ -229,23 +327,10 @@ public class CreateNodeCommand<T extends NodeInterface> extends NodeServiceComma
 			buf.append(" {nodeProperties})<-[s:SECURITY {securityProperties}]-(u)");
 			buf.append(" RETURN n");
 
-			// configure OWNS relationship
-			ownsProperties.put(GraphObject.id.dbName(),                getNextUuid());
-			ownsProperties.put(GraphObject.type.dbName(),              PrincipalOwnsNode.class.getSimpleName());
-			ownsProperties.put(AbstractRelationship.sourceId.dbName(), user.getUuid());
-			ownsProperties.put(AbstractRelationship.targetId.dbName(), newUuid);
-
-			// configure SECURITY relationship
-			securityProperties.put(Security.allowed.dbName(),              new String[] { Permission.read.name(), Permission.write.name(), Permission.delete.name(), Permission.accessControl.name() } );
-			securityProperties.put(GraphObject.id.dbName(),                getNextUuid());
-			securityProperties.put(GraphObject.type.dbName(),              Security.class.getSimpleName());
-			securityProperties.put(AbstractRelationship.sourceId.dbName(), user.getUuid());
-			securityProperties.put(AbstractRelationship.targetId.dbName(), newUuid);
-
 			// store properties in statement
 			parameters.put("userId",             user.getId());
-			parameters.put("ownsProperties",     ownsProperties);
-			parameters.put("securityProperties", securityProperties);
+			parameters.put("ownsProperties",     getOwnsProperties(user, newUuid));
+			parameters.put("securityProperties", getSecurityProperties(user, newUuid));
 
 		} else {
 
@@ -264,7 +349,7 @@ public class CreateNodeCommand<T extends NodeInterface> extends NodeServiceComma
 		// make properties available to Cypher statement
 		parameters.put("nodeProperties", properties);
 
-		final NativeResult result = graphDb.execute(buf.toString(), parameters);
+		final NativeResult result = graphDb.execute(buf.toString(), parameters, getModifiedTypes(user, labels));
 		try {
 
 			if (result.hasNext()) {
@@ -284,6 +369,117 @@ public class CreateNodeCommand<T extends NodeInterface> extends NodeServiceComma
 		throw new RuntimeException("Unable to create new node.");
 	}
 
+	private Set<String> getModifiedTypes(final Principal user, final Set<String> labels) {
+
+		final Set<String> types = new LinkedHashSet<>(labels);
+
+		if (user != null && user.shouldSkipSecurityRelationships() == false) {
+
+			types.add("OWNS");
+			types.add("SECURITY");
+		}
+
+		return types;
+	}
+
+	private List<Node> createNodes(final DatabaseService graphDb, final Principal user, final Set<String> labels, final List<NodeCreation> creations) throws FrameworkException {
+
+		final List<Map<String, Object>> rows = new ArrayList<>(creations.size());
+		final List<Node> nodes               = new ArrayList<>(creations.size());
+
+		try {
+
+			if (user != null && user.shouldSkipSecurityRelationships() == false) {
+
+				final Map<String, Object> parameters = new HashMap<>();
+				final StringBuilder buf              = new StringBuilder();
+
+				buf.append("MATCH (u:Principal) WHERE id(u) = {userId}");
+				buf.append(" UNWIND {rows} AS row");
+				buf.append(" CREATE (u)-[o:OWNS]->(n");
+
+				for (final String label : labels) {
+
+					buf.append(":");
+					buf.append(label);
+				}
+
+				buf.append(")<-[s:SECURITY]-(u)");
+				buf.append(" SET n = row.nodeProperties, o = row.ownsProperties, s = row.securityProperties");
+				buf.append(" RETURN n");
+
+				for (final NodeCreation creation : creations) {
+
+					final Map<String, Object> row = new HashMap<>();
+
+					row.put("nodeProperties",     creation.tmp.getData());
+					row.put("ownsProperties",     getOwnsProperties(user, creation.uuid));
+					row.put("securityProperties", getSecurityProperties(user, creation.uuid));
+
+					rows.add(row);
+				}
+
+				parameters.put("userId", user.getId());
+				parameters.put("rows",   rows);
+
+				try (final NativeResult result = graphDb.execute(buf.toString(), parameters, getModifiedTypes(user, labels))) {
+
+					while (result.hasNext()) {
+
+						final Map<String, Object> data = result.next();
+						nodes.add((Node)data.get("n"));
+					}
+				}
+
+			} else {
+
+				for (final NodeCreation creation : creations) {
+					rows.add(creation.tmp.getData());
+				}
+
+				nodes.addAll(graphDb.createNodes(labels, rows));
+			}
+
+		} catch (DataFormatException dex) {
+			throw new FrameworkException(422, dex.getMessage());
+		} catch (ConstraintViolationException qex) {
+			throw new FrameworkException(422, qex.getMessage());
+		}
+
+		if (nodes.size() != creations.size()) {
+			throw new RuntimeException("Unable to create new nodes.");
+		}
+
+		return nodes;
+	}
+
+	private Map<String, Object> getOwnsProperties(final Principal user, final String newUuid) {
+
+		final Map<String, Object> ownsProperties = new HashMap<>();
+
+		// configure OWNS relationship
+		ownsProperties.put(GraphObject.id.dbName(),                getNextUuid());
+		ownsProperties.put(GraphObject.type.dbName(),              PrincipalOwnsNode.class.getSimpleName());
+		ownsProperties.put(AbstractRelationship.sourceId.dbName(), user.getUuid());
+		ownsProperties.put(AbstractRelationship.targetId.dbName(), newUuid);
+
+		return ownsProperties;
+	}
+
+	private Map<String, Object> getSecurityProperties(final Principal user, final String newUuid) {
+
+		final Map<String, Object> securityProperties = new HashMap<>();
+
+		// configure SECURITY relationship
+		securityProperties.put(Security.allowed.dbName(),              new String[] { Permission.read.name(), Permission.write.name(), Permission.delete.name(), Permission.accessControl.name() } );
+		securityProperties.put(GraphObject.id.dbName(),                getNextUuid());
+		securityProperties.put(GraphObject.type.dbName(),              Security.class.getSimpleName());
+		securityProperties.put(AbstractRelationship.sourceId.dbName(), user.getUuid());
+		securityProperties.put(AbstractRelationship.targetId.dbName(), newUuid);
+
+		return securityProperties;
+	}
+
 	private Class getTypeOrGeneric(final Object typeObject) {
 
 		if (typeObject != null) {
@@ -303,4 +499,26 @@ public class CreateNodeCommand<T extends NodeInterface> extends NodeServiceComma
 
 		return defaultValue;
 	}
+
+	// ----- nested classes -----
+	private static class NodeCreation {
+
+		private Class nodeType         = null;
+		private Set<String> labels     = null;
+		private String uuid            = null;
+		private CreationContainer tmp  = null;
+		private PropertyMap properties = null;
+		private PropertyMap toNotify   = null;
+		private Node dbNode            = null;
+
+		public NodeCreation(final Class nodeType, final Set<String> labels, final String uuid, final CreationContainer tmp, final PropertyMap properties, final PropertyMap toNotify) {
+
+			this.nodeType   = nodeType;
+			this.labels     = labels;
+			this.uuid       = uuid;
+			this.tmp        = tmp;
+			this.properties = properties;
+			this.toNotify   = toNotify;
+		}
+	}
 }
@@ -30,12 +30,14 @@ import org.slf4j.LoggerFactory;
 import org.structr.api.NetworkException;
 import org.structr.api.QueryResult;
 import org.structr.api.graph.Relationship;
+import org.structr.api.util.Iterables;
 import org.structr.common.FactoryDefinition;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.Adapter;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
+import org.structr.core.StreamingResult;
 import org.structr.core.app.StructrApp;
 import org.structr.schema.SchemaHelper;
 
@@ -150,6 +152,38 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 	}
 
+	/**
+	 * Create a result that instantiates the structr nodes lazily while
+	 * it is being iterated. Paging and security checks are the same as
+	 * in {@link #instantiate(QueryResult)}, but the nodes are never held
+	 * in a list. Negative pages need the complete input and are
+	 * instantiated directly.
+	 *
+	 * @param input
+	 * @return result
+	 * @throws org.structr.common.error.FrameworkException
+	 */
+	public Result stream(final QueryResult<S> input) throws FrameworkException {
+
+		if (input != null) {
+
+			final int pageSize = factoryProfile.getPageSize();
+			final int page     = factoryProfile.getPage();
+
+			if (page < 0) {
+				return instantiate(input);
+			}
+
+			final SecurityContext securityContext = factoryProfile.getSecurityContext();
+			final boolean dontCheckCount          = securityContext.ignoreResultCount() || factoryProfile.ignoreResultCount();
+			final int offset                      = pageSize == Integer.MAX_VALUE ? 0 : (page - 1) * pageSize;
+
+			return new StreamingResult<>(Iterables.map(this, input), input, offset, pageSize, !dontCheckCount);
+		}
+
+		return Result.EMPTY_RESULT;
+	}
+
 	/**
 	 * Create structr nodes from all given underlying database nodes
 	 * No paging, but security check
@@ -177,6 +211,17 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 		return nodes;
 	}
 
+	/**
+	 * Stops instantiation as soon as the requested page is complete,
+	 * regardless of the result count setting of the security context.
+	 * The overall count of the result is inaccurate in this case.
+	 *
+	 * @param ignoreResultCount
+	 */
+	public void setIgnoreResultCount(final boolean ignoreResultCount) {
+		factoryProfile.setIgnoreResultCount(ignoreResultCount);
+	}
+
 	@Override
 	public T adapt(S s) {
 		return instantiate(s);
@@ -208,7 +253,7 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 	protected Result page(final QueryResult<S> input, final int offset, final int pageSize) throws FrameworkException {
 
 		final SecurityContext securityContext = factoryProfile.getSecurityContext();
-		final boolean dontCheckCount          = securityContext.ignoreResultCount();
+		final boolean dontCheckCount          = securityContext.ignoreResultCount() || factoryProfile.ignoreResultCount();
 		final List<T> nodes                   = new ArrayList<>();
 		int overallCount                      = 0;
 		int position                          = 0;
@@ -250,6 +295,7 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 		private boolean includeDeletedAndHidden = true;
 		private boolean publicOnly              = false;
+		private boolean ignoreResultCount       = false;
 		private int pageSize                    = DEFAULT_PAGE_SIZE;
 		private int page                        = DEFAULT_PAGE;
 		private SecurityContext securityContext = null;
@@ -349,6 +395,24 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 		}
 
+		/**
+		 * @return the ignoreResultCount
+		 */
+		public boolean ignoreResultCount() {
+
+			return ignoreResultCount;
+
+		}
+
+		/**
+		 * @param ignoreResultCount the ignoreResultCount to set
+		 */
+		public void setIgnoreResultCount(boolean ignoreResultCount) {
+
+			this.ignoreResultCount = ignoreResultCount;
+
+		}
+
 		/**
 		 * @param pageSize the pageSize to set
 		 */
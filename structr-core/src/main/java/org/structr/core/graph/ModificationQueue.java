@@ -19,10 +19,14 @@
 package org.structr.core.graph;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -40,6 +44,10 @@ import org.structr.common.error.ErrorBuffer;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.entity.Principal;
+import org.structr.core.entity.relationship.AbstractChildren;
+import org.structr.core.graph.search.SearchCommand;
+import org.structr.core.property.ElementCounter;
+import org.structr.core.property.FunctionPropertyCache;
 import org.structr.core.property.PropertyKey;
 
 /**
@@ -54,23 +62,70 @@ public class ModificationQueue {
 	private final ConcurrentSkipListMap<String, GraphObjectModificationState> modifications = new ConcurrentSkipListMap<>();
 	private final Collection<ModificationEvent> modificationEvents                          = new ArrayDeque<>(1000);
 	private final Map<String, TransactionPostProcess> postProcesses                         = new LinkedHashMap<>();
+	private final Map<String, Runnable> afterCommitTasks                                    = new LinkedHashMap<>();
 	private final Set<String> alreadyPropagated                                             = new LinkedHashSet<>();
 	private final Set<String> synchronizationKeys                                           = new TreeSet<>();
+	private final Map<String, List<? extends RelationshipInterface>> childRelationships     = new HashMap<>();
+	private final Set<String> relationshipEndNodes                                          = new HashSet<>();
+	private final boolean valueLocking                                                      = "value".equals(Settings.CommitLocking.getValue());
+	private Set<String> lockedKeys                                                          = null;
+	private boolean securityModified                                                        = false;
 
 	/**
-	 * Returns a set containing the different entity types of
-	 * nodes modified in this queue.
+	 * Returns a set containing the synchronization keys of the properties
+	 * modified in this queue that require synchronization. In value locking
+	 * mode, the keys are scoped to the new property value.
 	 *
-	 * @return the types
+	 * @return the synchronization keys
 	 */
 	public Set<String> getSynchronizationKeys() {
 		return synchronizationKeys;
 	}
 
+	/**
+	 * Returns whether this queue uses value-scoped synchronization keys
+	 * (see Settings.CommitLocking).
+	 *
+	 * @return whether value locking is enabled
+	 */
+	public boolean isValueLocking() {
+		return valueLocking;
+	}
+
+	/**
+	 * Returns the synchronization keys that were locked when this
+	 * queue was committed, or null if nothing was locked.
+	 *
+	 * @return the locked keys
+	 */
+	public Set<String> getLockedKeys() {
+		return lockedKeys;
+	}
+
+	public void setLockedKeys(final Set<String> lockedKeys) {
+		this.lockedKeys = lockedKeys;
+	}
+
 	public int getSize() {
 		return modifications.size();
 	}
 
+	/**
+	 * Returns the child relationships of the tree node with the given
+	 * UUID, ordered by position, that were read in this transaction and
+	 * not modified since, or null.
+	 *
+	 * @param parentId the UUID of the parent node
+	 * @return the ordered child relationships or null
+	 */
+	public List<? extends RelationshipInterface> getChildRelationships(final String parentId) {
+		return childRelationships.get(parentId);
+	}
+
+	public void setChildRelationships(final String parentId, final List<? extends RelationshipInterface> rels) {
+		childRelationships.put(parentId, rels);
+	}
+
 	public boolean doInnerCallbacks(final SecurityContext securityContext, final ErrorBuffer errorBuffer) throws FrameworkException {
 
 		long t0                  = System.currentTimeMillis();
@@ -158,40 +213,104 @@ public class ModificationQueue {
 		}
 	}
 
+	/**
+	 * Registers the changelog entries of this transaction to be appended
+	 * after the commit. The changelog store is not transactional, so the
+	 * entries are appended exactly once, even if the outer callbacks are
+	 * retried.
+	 */
 	public void updateChangelog() {
 
 		if (Settings.ChangelogEnabled.getValue() && !modificationEvents.isEmpty()) {
 
-			for (final ModificationEvent ev: modificationEvents) {
+			// copy the events, they are cleared before the task runs
+			final List<ModificationEvent> events = new ArrayList<>(modificationEvents);
+
+			afterCommit("changelog", () -> appendChangelog(events));
+		}
+	}
+
+	/**
+	 * Removes the cached values of function properties that depend on
+	 * the modifications in this queue. Must be called after the
+	 * transaction was committed.
+	 */
+	public void invalidateFunctionPropertyCache() {
+
+		if (modifications.isEmpty()) {
+			return;
+		}
+
+		// the visibility of any entity may have changed
+		if (securityModified) {
+
+			FunctionPropertyCache.clear();
+			return;
+		}
+
+		final Set<Class> modifiedTypes = new LinkedHashSet<>();
+
+		for (final GraphObjectModificationState state : modifications.values()) {
+
+			final GraphObject obj = state.getGraphObject();
+			if (obj != null) {
+
+				modifiedTypes.add(obj.getClass());
+			}
+
+			final String uuid = state.getUuid();
+			if (uuid != null) {
+
+				if (state.isDeleted() || state.isPassivelyDeleted() || relationshipEndNodes.contains(uuid)) {
 
-				if (!ev.isDeleted()) {
+					FunctionPropertyCache.invalidate(uuid, null);
 
-					try {
-						final GraphObject obj = ev.getGraphObject();
-						if (obj != null) {
+				} else if (state.isModified()) {
 
-							final String existingLog = obj.getProperty(GraphObject.structrChangeLog);
-							final String newLog      = ev.getChangeLog();
-							final String newValue    = existingLog != null ? existingLog + newLog : newLog;
+					final Set<String> keys = new HashSet<>();
 
-							obj.unlockSystemPropertiesOnce();
-							obj.setProperty(GraphObject.structrChangeLog, newValue);
-						}
+					for (final PropertyKey key : state.getRemovedProperties().keySet()) {
+						keys.add(key.jsonName());
+					}
+
+					for (final PropertyKey key : state.getModifiedProperties().keySet()) {
+						keys.add(key.jsonName());
+					}
 
-					} catch (Throwable t) {
-						logger.warn("", t);
+					for (final PropertyKey key : state.getNewProperties().keySet()) {
+						keys.add(key.jsonName());
+					}
+
+					if (!keys.isEmpty()) {
+						FunctionPropertyCache.invalidate(uuid, keys);
 					}
 				}
 			}
 		}
+
+		// the results of queries for the modified types may have changed
+		final Set<String> typeNames = new LinkedHashSet<>();
+
+		for (final Class type : modifiedTypes) {
+
+			for (final Class supertype : SearchCommand.typeAndAllSupertypes(type)) {
+				typeNames.add(supertype.getSimpleName());
+			}
+		}
+
+		FunctionPropertyCache.invalidateTypes(typeNames);
 	}
 
 	public void clear() {
 
 		// clear collections afterwards
 		alreadyPropagated.clear();
+		childRelationships.clear();
+		relationshipEndNodes.clear();
 		modifications.clear();
 		modificationEvents.clear();
+
+		securityModified = false;
 	}
 
 	public void create(final Principal user, final NodeInterface node) {
@@ -213,6 +332,8 @@ public class ModificationQueue {
 
 		getState(relationship).create();
 
+		invalidateChildRelationships(relationship);
+
 		final NodeInterface sourceNode = relationship.getSourceNodeAsSuperUser();
 		final NodeInterface targetNode = relationship.getTargetNodeAsSuperUser();
 
@@ -220,6 +341,8 @@ public class ModificationQueue {
 
 			modifyEndNodes(user, sourceNode, targetNode, relationship.getRelType());
 
+			ElementCounter.updateMaterializedCounters(relationship, 1);
+
 			getState(sourceNode).updateChangeLog(user, GraphObjectModificationState.Verb.link, relationship.getType(), relationship.getUuid(), targetNode.getUuid(), GraphObjectModificationState.Direction.out);
 			getState(targetNode).updateChangeLog(user, GraphObjectModificationState.Verb.link, relationship.getType(), relationship.getUuid(), sourceNode.getUuid(), GraphObjectModificationState.Direction.in);
 		}
@@ -241,15 +364,17 @@ public class ModificationQueue {
 		getState(node).modify(user, key, previousValue, newValue);
 
 		if (key != null&& key.requiresSynchronization()) {
-			synchronizationKeys.add(key.getSynchronizationKey());
+			synchronizationKeys.add(getSynchronizationKey(key, newValue));
 		}
 	}
 
 	public void modify(final Principal user, RelationshipInterface relationship, PropertyKey key, Object previousValue, Object newValue) {
 		getState(relationship).modify(user, key, previousValue, newValue);
 
+		invalidateChildRelationships(relationship);
+
 		if (key != null && key.requiresSynchronization()) {
-			synchronizationKeys.add(key.getSynchronizationKey());
+			synchronizationKeys.add(getSynchronizationKey(key, newValue));
 		}
 	}
 
@@ -291,11 +416,15 @@ public class ModificationQueue {
 
 		getState(relationship).delete(passive);
 
+		invalidateChildRelationships(relationship);
+
 		final NodeInterface sourceNode = relationship.getSourceNodeAsSuperUser();
 		final NodeInterface targetNode = relationship.getTargetNodeAsSuperUser();
 
 		modifyEndNodes(user, sourceNode, targetNode, relationship.getRelType());
 
+		ElementCounter.updateMaterializedCounters(relationship, -1);
+
 		getState(sourceNode).updateChangeLog(user, GraphObjectModificationState.Verb.unlink, relationship.getType(), relationship.getUuid(), targetNode.getUuid(), GraphObjectModificationState.Direction.out);
 		getState(targetNode).updateChangeLog(user, GraphObjectModificationState.Verb.unlink, relationship.getType(), relationship.getUuid(), sourceNode.getUuid(), GraphObjectModificationState.Direction.in);
 
@@ -313,6 +442,35 @@ public class ModificationQueue {
 		}
 	}
 
+	public void afterCommit(final String key, final Runnable task) {
+
+		if (!afterCommitTasks.containsKey(key)) {
+
+			this.afterCommitTasks.put(key, task);
+		}
+	}
+
+	/**
+	 * Runs the tasks that were registered to be executed after this
+	 * transaction was committed. Unlike the outer callbacks, these
+	 * tasks run even if callbacks are disabled for the transaction.
+	 */
+	public void doAfterCommitTasks() {
+
+		for (final Runnable task : afterCommitTasks.values()) {
+
+			try {
+
+				task.run();
+
+			} catch (Throwable t) {
+				logger.warn("Unable to execute after commit task: {}", t.getMessage());
+			}
+		}
+
+		afterCommitTasks.clear();
+	}
+
 	public boolean isDeleted(final Node node) {
 
 		final GraphObjectModificationState state = modifications.get("N" + node.getId());
@@ -408,13 +566,57 @@ public class ModificationQueue {
 	}
 
 	// ----- private methods -----
+	private void appendChangelog(final List<ModificationEvent> events) {
+
+		final ChangelogStore store = ChangelogStore.getInstance();
+
+		for (final ModificationEvent ev: events) {
+
+			try {
+
+				if (ev.isDeleted()) {
+
+					store.remove(ev.getUuid());
+
+				} else {
+
+					store.append(ev.getUuid(), ev.getChangeLog());
+				}
+
+			} catch (Throwable t) {
+				logger.warn("", t);
+			}
+		}
+	}
+
+	private void invalidateChildRelationships(final RelationshipInterface relationship) {
+
+		if (relationship instanceof AbstractChildren && !childRelationships.isEmpty()) {
+
+			try {
+
+				childRelationships.remove(relationship.getSourceNodeId());
+
+			} catch (Throwable t) {
+
+				// source node not available anymore
+				childRelationships.clear();
+			}
+		}
+	}
+
 	private void modifyEndNodes(final Principal user, final NodeInterface startNode, final NodeInterface endNode, final RelationshipType relType) {
 
 		// only modify if nodes are accessible
 		if (startNode != null && endNode != null) {
 
+			relationshipEndNodes.add(startNode.getUuid());
+			relationshipEndNodes.add(endNode.getUuid());
+
 			if (RelType.OWNS.equals(relType)) {
 
+				securityModified = true;
+
 				modifyOwner(startNode);
 				modifyOwner(endNode);
 				return;
@@ -422,6 +624,8 @@ public class ModificationQueue {
 
 			if (RelType.SECURITY.equals(relType)) {
 
+				securityModified = true;
+
 				modifySecurity(startNode);
 				modifySecurity(endNode);
 				return;
@@ -484,4 +688,16 @@ public class ModificationQueue {
 	private String hash(final RelationshipInterface rel) {
 		return "R" + rel.getId();
 	}
+
+	private String getSynchronizationKey(final PropertyKey key, final Object value) {
+
+		// compound uniqueness depends on the values of several properties,
+		// so we can only lock on the property itself in this case
+		if (valueLocking && !key.isCompound()) {
+
+			return key.getSynchronizationKey() + "=" + Arrays.deepHashCode(new Object[] { value });
+		}
+
+		return key.getSynchronizationKey();
+	}
 }
@@ -0,0 +1,140 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.structr.api.DatabaseService;
+import org.structr.api.config.Settings;
+import org.structr.api.graph.Direction;
+import org.structr.api.graph.Node;
+import org.structr.core.GraphObject;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.Relation;
+import org.structr.core.property.PropertyKey;
+import org.structr.core.property.RelationProperty;
+import org.structr.schema.ConfigurationProvider;
+
+/**
+ * Loads the relationships that are needed to render the relationship
+ * properties of a view for a list of nodes in one batch per relationship
+ * type, instead of one query per node and property.
+ */
+public class RelationshipPrefetcher {
+
+	/**
+	 * Prefetches the relationships of all relationship properties in the
+	 * given view for all nodes in the given list.
+	 *
+	 * @param objects the objects, non-node objects are ignored
+	 * @param view the view, or null
+	 */
+	public static void prefetch(final Iterable<? extends GraphObject> objects, final String view) {
+
+		if (view == null || !Settings.PrefetchRelationships.getValue()) {
+			return;
+		}
+
+		final ConfigurationProvider config                 = StructrApp.getConfiguration();
+		final Map<Class, List<RelationProperty>> typeCache = new LinkedHashMap<>();
+		final Map<String, Batch> batches                   = new LinkedHashMap<>();
+
+		for (final GraphObject obj : objects) {
+
+			if (obj instanceof NodeInterface) {
+
+				final Node node = ((NodeInterface)obj).getNode();
+				if (node != null) {
+
+					for (final RelationProperty property : getRelationProperties(config, typeCache, obj.getClass(), view)) {
+
+						final Relation relation   = property.getRelation();
+						final Direction direction = "out".equals(property.getDirectionKey()) ? Direction.OUTGOING : Direction.INCOMING;
+						final String key          = direction.name() + relation.name();
+
+						Batch batch = batches.get(key);
+						if (batch == null) {
+
+							batch = new Batch(direction, relation);
+							batches.put(key, batch);
+						}
+
+						batch.nodes.add(node);
+					}
+				}
+			}
+		}
+
+		if (!batches.isEmpty()) {
+
+			final DatabaseService db = StructrApp.getInstance().getDatabaseService();
+
+			for (final Batch batch : batches.values()) {
+
+				// a single node does not need a batch query
+				if (batch.nodes.size() > 1) {
+
+					db.prefetchRelationships(batch.nodes, batch.direction, batch.relation);
+				}
+			}
+		}
+	}
+
+	// ----- private methods -----
+	private static List<RelationProperty> getRelationProperties(final ConfigurationProvider config, final Map<Class, List<RelationProperty>> typeCache, final Class type, final String view) {
+
+		List<RelationProperty> properties = typeCache.get(type);
+		if (properties == null) {
+
+			properties = new LinkedList<>();
+			typeCache.put(type, properties);
+
+			final Set<PropertyKey> keys = config.getPropertySet(type, view);
+			if (keys != null) {
+
+				for (final PropertyKey key : keys) {
+
+					if (key instanceof RelationProperty && ((RelationProperty)key).getRelation() != null) {
+
+						properties.add((RelationProperty)key);
+					}
+				}
+			}
+		}
+
+		return properties;
+	}
+
+	// ----- nested classes -----
+	private static class Batch {
+
+		private final List<Node> nodes = new LinkedList<>();
+		private Direction direction    = null;
+		private Relation relation      = null;
+
+		public Batch(final Direction direction, final Relation relation) {
+
+			this.direction = direction;
+			this.relation  = relation;
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A fixed number of fair semaphores that arbitrary keys are mapped to
+ * by their hash code. The number of semaphores does not grow with the
+ * number of keys, and unrelated keys only contend if they share a stripe.
+ *
+ * Stripes are always acquired in ascending order, so no global lock is
+ * needed to prevent deadlocks between concurrent callers.
+ */
+public class StripedSemaphore {
+
+	private Semaphore[] stripes = null;
+
+	public StripedSemaphore(final int stripeCount) {
+
+		this.stripes = new Semaphore[stripeCount];
+
+		for (int i=0; i<stripeCount; i++) {
+			stripes[i] = new Semaphore(1, true);
+		}
+	}
+
+	public void acquire(final Set<String> keys) throws InterruptedException {
+
+		if (keys != null && !keys.isEmpty()) {
+
+			final Set<Integer> acquired = new TreeSet<>();
+
+			try {
+
+				for (final Integer stripe : getStripes(keys)) {
+
+					stripes[stripe].acquire();
+					acquired.add(stripe);
+				}
+
+			} catch (InterruptedException iex) {
+
+				// release what we already have before giving up
+				for (final Integer stripe : acquired) {
+					stripes[stripe].release();
+				}
+
+				throw iex;
+			}
+		}
+	}
+
+	public void release(final Set<String> keys) {
+
+		if (keys != null && !keys.isEmpty()) {
+
+			for (final Integer stripe : getStripes(keys)) {
+				stripes[stripe].release();
+			}
+		}
+	}
+
+	// ----- private methods -----
+	private Set<Integer> getStripes(final Set<String> keys) {
+
+		final Set<Integer> result = new TreeSet<>();
+
+		for (final String key : keys) {
+
+			if (key != null) {
+
+				result.add((key.hashCode() & 0x7fffffff) % stripes.length);
+			}
+		}
+
+		return result;
+	}
+}
@@ -33,6 +33,7 @@ import java.io.Serializable;
 import java.lang.reflect.Array;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -641,13 +642,12 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 		final RelationshipFactory relFactory = new RelationshipFactory(securityContext);
 		final long internalBatchSize         = batchSize != null ? batchSize : 200;
 		final NodeFactory nodeFactory        = new NodeFactory(securityContext);
-		final String uuidPropertyName        = GraphObject.id.dbName();
 		final Map<String, Node> uuidMap      = new LinkedHashMap<>();
 		final Set<Long> deletedNodes         = new HashSet<>();
 		final Set<Long> deletedRels          = new HashSet<>();
 		final SuperUser superUser            = new SuperUser();
 		double t0                            = System.nanoTime();
-		PropertyContainer currentObject      = null;
+		Map<String, Object> currentObject    = null;
 		String currentKey                    = null;
 		boolean finished                     = false;
 		long totalNodeCount                  = 0;
@@ -657,10 +657,12 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 
 			try (final Tx tx = app.tx(doValidation)) {
 
-				final List<Relationship> rels = new LinkedList<>();
-				final List<Node> nodes        = new LinkedList<>();
-				long nodeCount                = 0;
-				long relCount                 = 0;
+				final List<Relationship> rels            = new LinkedList<>();
+				final List<Node> nodes                   = new LinkedList<>();
+				final List<Map<String, Object>> newNodes = new LinkedList<>();
+				final List<PendingRelationship> newRels  = new LinkedList<>();
+				long nodeCount                           = 0;
+				long relCount                            = 0;
 
 				do {
 
@@ -685,11 +687,12 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 								break;
 							}
 
-							currentObject = graphDb.createNode(Collections.EMPTY_SET, Collections.EMPTY_MAP);
+							// node is created together with the other nodes of this batch
+							currentObject = new LinkedHashMap<>();
 							nodeCount++;
 
 							// store for later use
-							nodes.add((Node)currentObject);
+							newNodes.add(currentObject);
 
 						} else if (objectType == 'R') {
 
@@ -703,6 +706,9 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 							String endId       = (String)deserialize(dis);
 							String relTypeName = (String)deserialize(dis);
 
+							// relationships can only be resolved when all preceding nodes exist
+							createNodes(graphDb, newNodes, nodes, uuidMap);
+
 							Node endNode   = uuidMap.get(endId);
 							Node startNode = uuidMap.get(startId);
 
@@ -716,11 +722,11 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 
 								} else {
 
-									RelationshipType relType = RelationshipType.forName(relTypeName);
-									currentObject = startNode.createRelationshipTo(endNode, relType);
+									// relationship is created together with the other relationships of this batch
+									currentObject = new LinkedHashMap<>();
 
 									// store for later use
-									rels.add((Relationship)currentObject);
+									newRels.add(new PendingRelationship(startNode, endNode, relTypeName, currentObject));
 
 									relCount++;
 								}
@@ -751,22 +757,10 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 								final Object obj = deserialize(dis);
 								if (obj != null && currentObject != null) {
 
-									if (uuidPropertyName.equals(currentKey) && currentObject instanceof Node) {
-
-										final String uuid = (String)obj;
-										uuidMap.put(uuid, (Node)currentObject);
-									}
-
 									if (currentKey.length() != 0) {
 
-										// store object in DB
-										currentObject.setProperty(currentKey, obj);
-
-										// set type label
-										if (currentObject instanceof Node && NodeInterface.type.dbName().equals(currentKey)) {
-
-											((Node) currentObject).addLabel(graphDb.forName(Label.class, (String) obj));
-										}
+										// store property, written to the database when the object is created
+										currentObject.put(currentKey, obj);
 
 									} else {
 
@@ -788,6 +782,10 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 
 				} while (!finished);
 
+				// create the nodes and relationships of this batch with one statement per type
+				createNodes(graphDb, newNodes, nodes, uuidMap);
+				createRelationships(graphDb, newRels, rels);
+
 				totalNodeCount += nodeCount;
 				totalRelCount  += relCount;
 
@@ -847,6 +845,85 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 		logger.info("Import done in {} s", decimalFormat.format(time));
 	}
 
+	private static void createNodes(final DatabaseService graphDb, final List<Map<String, Object>> newNodes, final List<Node> nodes, final Map<String, Node> uuidMap) {
+
+		final Map<String, List<Map<String, Object>>> byType = new LinkedHashMap<>();
+		final String typePropertyName                       = NodeInterface.type.dbName();
+		final String uuidPropertyName                       = GraphObject.id.dbName();
+
+		for (final Map<String, Object> properties : newNodes) {
+
+			final Object type = properties.get(typePropertyName);
+			final String key  = type instanceof String ? (String)type : "";
+
+			List<Map<String, Object>> list = byType.get(key);
+			if (list == null) {
+
+				list = new LinkedList<>();
+				byType.put(key, list);
+			}
+
+			list.add(properties);
+		}
+
+		for (final Entry<String, List<Map<String, Object>>> entry : byType.entrySet()) {
+
+			final String type                          = entry.getKey();
+			final List<Map<String, Object>> properties = new ArrayList<>(entry.getValue());
+			final Set<String> labels                   = type.isEmpty() ? Collections.EMPTY_SET : Collections.singleton(graphDb.forName(Label.class, type).name());
+			final List<Node> created                   = graphDb.createNodes(labels, properties);
+
+			for (int i=0; i<created.size(); i++) {
+
+				final Object uuid = properties.get(i).get(uuidPropertyName);
+				final Node node   = created.get(i);
+
+				if (uuid instanceof String) {
+					uuidMap.put((String)uuid, node);
+				}
+
+				nodes.add(node);
+			}
+		}
+
+		newNodes.clear();
+	}
+
+	private static void createRelationships(final DatabaseService graphDb, final List<PendingRelationship> newRels, final List<Relationship> rels) {
+
+		final Map<String, List<PendingRelationship>> byType = new LinkedHashMap<>();
+
+		for (final PendingRelationship rel : newRels) {
+
+			List<PendingRelationship> list = byType.get(rel.type);
+			if (list == null) {
+
+				list = new LinkedList<>();
+				byType.put(rel.type, list);
+			}
+
+			list.add(rel);
+		}
+
+		for (final Entry<String, List<PendingRelationship>> entry : byType.entrySet()) {
+
+			final List<Node> startNodes                = new ArrayList<>();
+			final List<Node> endNodes                  = new ArrayList<>();
+			final List<Map<String, Object>> properties = new ArrayList<>();
+
+			for (final PendingRelationship rel : entry.getValue()) {
+
+				startNodes.add(rel.startNode);
+				endNodes.add(rel.endNode);
+				properties.add(rel.properties);
+			}
+
+			rels.addAll(graphDb.createRelationships(startNodes, endNodes, RelationshipType.forName(entry.getKey()), properties));
+		}
+
+		newRels.clear();
+	}
+
 	private static Object readObject(final DataInputStream inputStream, final byte type) throws IOException {
 
 		switch (type) {
@@ -1088,15 +1165,20 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 			return from.getEndNode();
 		}
 	}
-}
-
-
-
-
-
-
-
 
+	private static class PendingRelationship {
 
+		private Map<String, Object> properties = null;
+		private Node startNode                 = null;
+		private Node endNode                   = null;
+		private String type                    = null;
 
+		public PendingRelationship(final Node startNode, final Node endNode, final String type, final Map<String, Object> properties) {
 
+			this.startNode  = startNode;
+			this.endNode    = endNode;
+			this.type       = type;
+			this.properties = properties;
+		}
+	}
+}
@@ -21,10 +21,14 @@ package org.structr.core.graph;
 
 import java.util.Collection;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.ConstraintViolationException;
+import org.structr.api.DataFormatException;
 import org.structr.api.DatabaseService;
 import org.structr.api.NetworkException;
 import org.structr.api.NotInTransactionException;
@@ -53,6 +57,7 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 	private static final ThreadLocal<TransactionCommand> currentCommand = new ThreadLocal<>();
 	private static final ThreadLocal<TransactionReference> transactions = new ThreadLocal<>();
 	private static final MultiSemaphore                    semaphore    = new MultiSemaphore();
+	private static final StripedSemaphore                  stripes      = new StripedSemaphore(1024);
 
 	public TransactionCommand beginTx() throws FrameworkException {
 
@@ -108,13 +113,27 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 				throw new FrameworkException(422, "Unable to commit transaction, validation failed", errorBuffer);
 			}
 
-			// 2. fetch all types of entities modified in this tx
-			Set<String> synchronizationKeys = modificationQueue.getSynchronizationKeys();
+			// 2. fetch all synchronization keys of properties modified in this tx, the
+			//    set is copied so that exactly these keys are released in finishTx
+			final Set<String> synchronizationKeys = new TreeSet<>(modificationQueue.getSynchronizationKeys());
 
 			// we need to protect the validation and indexing part of every transaction
 			// from being entered multiple times in the presence of validators
-			// 3. acquire semaphores for each modified type
-			try { semaphore.acquire(synchronizationKeys); } catch (InterruptedException iex) { return; }
+			// 3. acquire semaphores for each synchronization key
+			try {
+
+				if (modificationQueue.isValueLocking()) {
+
+					stripes.acquire(synchronizationKeys);
+
+				} else {
+
+					semaphore.acquire(synchronizationKeys);
+				}
+
+				modificationQueue.setLockedKeys(synchronizationKeys);
+
+			} catch (InterruptedException iex) { return; }
 
 			// do validation under the protection of the semaphores for each type
 			if (doValidation && !modificationQueue.doValidation(securityContext, errorBuffer, doValidation)) {
@@ -135,8 +154,18 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 			try {
 				tx.success();
 
+			} catch (DataFormatException | ConstraintViolationException ex) {
+
+				// writing buffered properties failed, the commit must not be acknowledged
+				tx.failure();
+				throw new FrameworkException(422, "Unable to commit transaction: " + ex.getMessage());
+
 			} catch (Throwable t) {
+
 				logger.error("Unable to commit transaction", t);
+
+				tx.failure();
+				throw new FrameworkException(500, "Unable to commit transaction: " + t.getMessage());
 			}
 		}
 	}
@@ -152,7 +181,7 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 
 				modificationQueue = queues.get();
 
-				final Set<String> synchronizationKeys = modificationQueue.getSynchronizationKeys();
+				final Set<String> synchronizationKeys = modificationQueue.getLockedKeys();
 
 				// cleanup
 				queues.remove();
@@ -166,7 +195,14 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 				} finally {
 
 					// release semaphores as the transaction is now finished
-					semaphore.release(synchronizationKeys);	// careful: this can be null
+					if (modificationQueue.isValueLocking()) {
+
+						stripes.release(synchronizationKeys);	// careful: this can be null
+
+					} else {
+
+						semaphore.release(synchronizationKeys);	// careful: this can be null
+					}
 				}
 
 			} else {
@@ -213,6 +249,27 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 		return null;
 	}
 
+	public static void afterCommit(final String key, final Runnable task) {
+
+		TransactionCommand command = currentCommand.get();
+		if (command != null) {
+
+			ModificationQueue modificationQueue = command.getModificationQueue();
+			if (modificationQueue != null) {
+
+				modificationQueue.afterCommit(key, task);
+
+			} else {
+
+				logger.error("Got empty changeSet from command!");
+			}
+
+		} else {
+
+			logger.error("Trying to register after commit task while outside of transaction!");
+		}
+	}
+
 	public static void postProcess(final String key, final TransactionPostProcess process) {
 
 		TransactionCommand command = currentCommand.get();
@@ -405,6 +462,57 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 		return currentCommand.get() != null;
 	}
 
+	/**
+	 * Returns the ordered child relationships of the given tree node that
+	 * were cached in the current transaction, or null.
+	 *
+	 * @param parent the parent node
+	 * @return the ordered child relationships or null
+	 */
+	public static List<? extends RelationshipInterface> getChildRelationships(final NodeInterface parent) {
+
+		final ModificationQueue modificationQueue = queues.get();
+		if (modificationQueue != null) {
+
+			return modificationQueue.getChildRelationships(parent.getUuid());
+		}
+
+		return null;
+	}
+
+	/**
+	 * Caches the ordered child relationships of the given tree node in
+	 * the current transaction. The cache entry is removed when one of the
+	 * child relationships is created, modified or deleted.
+	 *
+	 * @param parent the parent node
+	 * @param rels the ordered child relationships
+	 */
+	public static void setChildRelationships(final NodeInterface parent, final List<? extends RelationshipInterface> rels) {
+
+		final ModificationQueue modificationQueue = queues.get();
+		if (modificationQueue != null) {
+
+			modificationQueue.setChildRelationships(parent.getUuid(), rels);
+		}
+	}
+
+	/**
+	 * Returns whether the current transaction contains modifications.
+	 *
+	 * @return whether the current transaction contains modifications
+	 */
+	public static boolean hasModifications() {
+
+		final ModificationQueue modificationQueue = queues.get();
+		if (modificationQueue != null) {
+
+			return modificationQueue.getSize() > 0;
+		}
+
+		return false;
+	}
+
 	public static boolean isDeleted(final Node node) {
 
 		if (!inTransaction()) {
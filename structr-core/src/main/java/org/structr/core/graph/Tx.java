@@ -76,6 +76,10 @@ public class Tx implements AutoCloseable {
 
 		final ModificationQueue modificationQueue = cmd.finishTx();
 
+		if (success && modificationQueue != null) {
+			modificationQueue.invalidateFunctionPropertyCache();
+		}
+
 		if (success && guard.compareAndSet(false, true)) {
 
 			boolean retry  = true;
@@ -113,6 +117,10 @@ public class Tx implements AutoCloseable {
 
 			guard.set(false);
 		}
+
+		if (success && modificationQueue != null) {
+			modificationQueue.doAfterCommitTasks();
+		}
 	}
 
 	public void setSource(final TransactionSource source) {
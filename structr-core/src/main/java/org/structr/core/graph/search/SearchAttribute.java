@@ -22,6 +22,7 @@ import java.util.LinkedHashSet;
 import java.util.Set;
 import org.structr.api.Predicate;
 import org.structr.api.search.Occurrence;
+import org.structr.api.search.QueryCursor;
 import org.structr.api.search.QueryPredicate;
 import org.structr.api.search.SortType;
 import org.structr.core.GraphObject;
@@ -42,6 +43,8 @@ public abstract class SearchAttribute<T> extends NodeAttribute<T> implements Pre
 	private Occurrence occur           = null;
 	private PropertyKey sortKey        = null;
 	private boolean sortDescending     = false;
+	private QueryCursor cursor         = null;
+	private boolean streaming          = false;
 
 	public abstract boolean includeInResult(GraphObject entity);
 
@@ -89,6 +92,14 @@ public abstract class SearchAttribute<T> extends NodeAttribute<T> implements Pre
 		this.sortDescending = sortDescending;
 	}
 
+	public void setCursor(final QueryCursor cursor) {
+		this.cursor = cursor;
+	}
+
+	public void setStreaming(final boolean streaming) {
+		this.streaming = streaming;
+	}
+
 	// ----- interface Predicate<GraphObject> -----
 	@Override
 	public boolean accept(final GraphObject obj) {
@@ -142,4 +153,14 @@ public abstract class SearchAttribute<T> extends NodeAttribute<T> implements Pre
 	public boolean sortDescending() {
 		return sortDescending;
 	}
+
+	@Override
+	public QueryCursor getCursor() {
+		return cursor;
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return streaming;
+	}
 }
@@ -33,6 +33,7 @@ import org.structr.api.QueryResult;
 import org.structr.api.graph.PropertyContainer;
 import org.structr.api.index.Index;
 import org.structr.api.search.Occurrence;
+import org.structr.api.search.QueryCursor;
 import org.structr.common.GraphObjectComparator;
 import org.structr.common.PagingHelper;
 import org.structr.common.SecurityContext;
@@ -49,6 +50,7 @@ import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.NodeServiceCommand;
 import org.structr.core.graph.RelationshipInterface;
 import org.structr.core.property.AbstractPrimitiveProperty;
+import org.structr.core.property.FunctionPropertyCache;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
 import org.structr.schema.ConfigurationProvider;
@@ -94,6 +96,8 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 	private boolean doNotSort                    = false;
 	private int pageSize                         = Integer.MAX_VALUE;
 	private int page                             = 1;
+	private QueryCursor cursor                   = null;
+	private boolean streaming                    = false;
 
 	public abstract Factory<S, T> getFactory(final SecurityContext securityContext, final boolean includeDeletedAndHidden, final boolean publicOnly, final int pageSize, final int page);
 	public abstract boolean isRelationshipSearch();
@@ -106,7 +110,13 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 			return Result.EMPTY_RESULT;
 		}
 
-		final Factory<S, T> factory  = getFactory(securityContext, includeDeletedAndHidden, publicOnly, pageSize, page);
+		// cached function property values depend on the result of this query
+		if (FunctionPropertyCache.isRecording()) {
+			recordQueryTypes();
+		}
+
+		// keyset pagination always starts at the cursor position
+		final Factory<S, T> factory  = getFactory(securityContext, includeDeletedAndHidden, publicOnly, pageSize, cursor != null ? 1 : page);
 		boolean hasGraphSources      = false;
 		boolean hasSpatialSource     = false;
 
@@ -189,6 +199,11 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 			}
 		}
 
+		// the cursor position can only be evaluated by the database
+		if (cursor != null && (hasEmptySearchFields || hasGraphSources || hasSpatialSource)) {
+			throw new FrameworkException(400, "Cursor pagination is not supported for this query");
+		}
+
 		// only do "normal" query if no other sources are present
 		// use filters to filter sources otherwise
 		if (!hasSpatialSource && !sources.isEmpty()) {
@@ -204,12 +219,29 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 				rootGroup.sortDescending(sortDescending);
 			}
 
+			if (cursor != null) {
+
+				cursor.setPageSize(pageSize);
+				rootGroup.setCursor(cursor);
+				factory.setIgnoreResultCount(true);
+			}
+
 			final Index<S> index = getIndex();
 			if (index != null) {
 
+				// results that are post-processed below must be read completely
+				final boolean stream = streaming && cursor == null && !hasEmptySearchFields && !hasGraphSources && !hasSpatialSource;
+
+				rootGroup.setStreaming(stream);
+
 				// do query
 				final QueryResult hits = getIndex().query(rootGroup);
-				intermediateResult     = factory.instantiate(hits);
+				intermediateResult     = stream ? factory.stream(hits) : factory.instantiate(hits);
+
+				if (cursor != null && intermediateResult.size() >= pageSize) {
+
+					intermediateResult.setNextCursor(getNextCursor(intermediateResult));
+				}
 			}
 		}
 
@@ -272,6 +304,20 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		}
 	}
 
+	private String getNextCursor(final Result<T> result) {
+
+		final GraphObject last            = result.get(result.size() - 1);
+		final PropertyContainer container = last.getPropertyContainer();
+		final String sortKeyName          = rootGroup.getSortKey();
+		Object sortValue                  = null;
+
+		if (sortKeyName != null && container.hasProperty(sortKeyName)) {
+			sortValue = container.getProperty(sortKeyName);
+		}
+
+		return new QueryCursor(sortValue, last.getUuid()).toToken();
+	}
+
 	private Set<GraphObject> mergeSources(List<SourceSearchAttribute> sources) {
 
 		final Set<GraphObject> mergedResult = new LinkedHashSet<>();
@@ -316,6 +362,22 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		return doSearch();
 	}
 
+	/**
+	 * Returns a result that is instantiated while it is being iterated,
+	 * see {@link org.structr.core.StreamingResult}. Queries that can not
+	 * be evaluated by the index alone return a normal result.
+	 *
+	 * @return the result
+	 * @throws FrameworkException
+	 */
+	@Override
+	public Result<T> getResultStream() throws FrameworkException {
+
+		streaming = true;
+
+		return doSearch();
+	}
+
 	@Override
 	public List<T> getAsList() throws FrameworkException {
 
@@ -398,6 +460,12 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		return this;
 	}
 
+	@Override
+	public org.structr.core.app.Query<T> cursor(final QueryCursor cursor) {
+		this.cursor = cursor;
+		return this;
+	}
+
 	@Override
 	public org.structr.core.app.Query<T> publicOnly() {
 		this.publicOnly = true;
@@ -783,6 +851,43 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 	}
 
 	// ----- private methods ----
+	private void recordQueryTypes() {
+
+		final Set<String> types = new LinkedHashSet<>();
+
+		// relationship types are not recorded by name
+		if (!isRelationshipSearch()) {
+			collectQueryTypes(rootGroup, types);
+		}
+
+		// queries without type or for a base type can return entities of any type
+		if (types.isEmpty() || !Collections.disjoint(types, baseTypes)) {
+
+			FunctionPropertyCache.recordQuery(null);
+
+		} else {
+
+			for (final String type : types) {
+				FunctionPropertyCache.recordQuery(type);
+			}
+		}
+	}
+
+	private void collectQueryTypes(final SearchAttributeGroup group, final Set<String> types) {
+
+		for (final SearchAttribute attr : group.getSearchAttributes()) {
+
+			if (attr instanceof SearchAttributeGroup) {
+
+				collectQueryTypes((SearchAttributeGroup)attr, types);
+
+			} else if (attr instanceof TypeSearchAttribute && !Occurrence.FORBIDDEN.equals(attr.getOccurrence())) {
+
+				types.add((String)((TypeSearchAttribute)attr).getValue());
+			}
+		}
+	}
+
 	private void assertPropertyIsIndexed(final PropertyKey key) {
 
 		if (key != null && !key.isIndexed() && key instanceof AbstractPrimitiveProperty) {
@@ -39,7 +39,6 @@ public class BatchExpression extends Expression {
 	private Expression batchExpression = null;
 	private Expression sizeExpression  = null;
 	private boolean background         = false;
-	private int batchSize              = -1;
 
 	public BatchExpression() {
 		super("batch");
@@ -75,8 +74,9 @@ public class BatchExpression extends Expression {
 		final Object value = sizeExpression.evaluate(ctx, entity);
 		if (value != null && value instanceof Number) {
 
-			// store batch size for children to use
-			this.batchSize = ((Number)value).intValue();
+			// store batch size for children to use (in the context, not in the tree,
+			// because parsed expression trees are cached and shared between threads)
+			ctx.setBatchSize(this, ((Number)value).intValue());
 
 			// initialize holders to store results from worker thread (must be final)
 			final StaticValue<FrameworkException> exception = new StaticValue<>(null);
@@ -121,7 +121,7 @@ public class BatchExpression extends Expression {
 	}
 
 	@Override
-	public int getBatchSize() {
-		return batchSize;
+	public int getBatchSize(final ActionContext ctx) {
+		return ctx.getBatchSize(this);
 	}
 }
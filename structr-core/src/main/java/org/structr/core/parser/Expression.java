@@ -85,10 +85,10 @@ public abstract class Expression {
 		return parent != null && parent.isBatched();
 	}
 
-	public int getBatchSize() {
+	public int getBatchSize(final ActionContext ctx) {
 
 		if (parent != null) {
-			return parent.getBatchSize();
+			return parent.getBatchSize(ctx);
 		}
 
 		return -1;
@@ -18,28 +18,77 @@
  */
 package org.structr.core.property;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.NativeResult;
 import org.structr.api.Predicate;
+import org.structr.api.graph.Node;
 import org.structr.api.search.SortType;
+import org.structr.common.PropertyView;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
+import org.structr.core.app.StructrApp;
 import org.structr.core.converter.PropertyConverter;
+import org.structr.core.entity.Relation;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.graph.TransactionCommand;
 
 /**
  * A read-only property that returns the number of elements in a collection returned from a given property.
  *
+ * By default, the elements are counted by reading the collection property,
+ * which instantiates and checks the permissions of every element. For
+ * collections that are based on a relationship, the elements can instead be
+ * counted by the database ({@link Strategy#Database}), or be maintained in
+ * a node property that is updated when relationships are created or deleted
+ * ({@link Strategy#Materialized}). Both strategies count all related nodes,
+ * regardless of their visibility.
+ *
  *
  */
 public class ElementCounter extends AbstractReadOnlyProperty<Integer> {
 
+	private static final Logger logger                                          = LoggerFactory.getLogger(ElementCounter.class.getName());
+	private static final Map<Class, List<ElementCounter>> materializedCounters = new ConcurrentHashMap<>();
+
+	public enum Strategy {
+		Instantiate, Database, Materialized
+	}
+
 	private Property<? extends Iterable> collectionProperty = null;
+	private Strategy strategy                               = Strategy.Instantiate;
 
 	public ElementCounter(String name, Property<? extends Iterable> collectionProperty) {
+		this(name, collectionProperty, Strategy.Instantiate);
+	}
+
+	public ElementCounter(String name, Property<? extends Iterable> collectionProperty, final Strategy strategy) {
 		super(name);
 
 		this.collectionProperty = collectionProperty;
+
+		if (collectionProperty instanceof RelationProperty && ((RelationProperty)collectionProperty).getRelation() != null) {
+
+			this.strategy = strategy;
+
+		} else if (strategy != Strategy.Instantiate) {
+
+			logger.warn("Count property {} can only use strategy {} for relationship properties, using default strategy.", name, strategy);
+		}
+	}
+
+	public Strategy getStrategy() {
+		return strategy;
 	}
 
 	@Override
@@ -54,6 +103,23 @@ public class ElementCounter extends AbstractReadOnlyProperty<Integer> {
 
 		if(obj != null) {
 
+			switch (strategy) {
+
+				case Materialized:
+
+					final Object value = obj.getPropertyContainer().getProperty(dbName());
+					if (value instanceof Number) {
+
+						return ((Number)value).intValue();
+					}
+
+					// not materialized yet
+					return countInDatabase(obj);
+
+				case Database:
+					return countInDatabase(obj);
+			}
+
 			Object toCount = obj.getProperty(collectionProperty);
 			if(toCount != null) {
 
@@ -78,6 +144,150 @@ public class ElementCounter extends AbstractReadOnlyProperty<Integer> {
 		return count;
 	}
 
+	/**
+	 * Updates the materialized counters of the start and end node of the
+	 * given relationship. Must be called after a relationship was created
+	 * or before it is deleted. Errors are propagated, so that the current
+	 * transaction fails.
+	 *
+	 * @param relationship the relationship
+	 * @param delta 1 for a created, -1 for a deleted relationship
+	 */
+	public static void updateMaterializedCounters(final RelationshipInterface relationship, final int delta) {
+
+		final NodeInterface sourceNode = relationship.getSourceNodeAsSuperUser();
+		final NodeInterface targetNode = relationship.getTargetNodeAsSuperUser();
+
+		if (sourceNode != null) {
+			updateMaterializedCounters(sourceNode, relationship, "out", delta);
+		}
+
+		if (targetNode != null) {
+			updateMaterializedCounters(targetNode, relationship, "in", delta);
+		}
+	}
+
+	/**
+	 * Clears the cached materialized count properties per type, must be
+	 * called when the schema changes.
+	 */
+	public static void clearCache() {
+		materializedCounters.clear();
+	}
+
+	// ----- private methods -----
+	private static void updateMaterializedCounters(final NodeInterface node, final RelationshipInterface relationship, final String direction, final int delta) {
+
+		for (final ElementCounter counter : getMaterializedCounters(node.getClass())) {
+
+			if (counter.counts(relationship, direction)) {
+
+				counter.update(node, delta);
+			}
+		}
+	}
+
+	private static List<ElementCounter> getMaterializedCounters(final Class type) {
+
+		return materializedCounters.computeIfAbsent(type, k -> {
+
+			final List<ElementCounter> counters = new ArrayList<>();
+
+			for (final PropertyKey key : StructrApp.getConfiguration().getPropertySet(type, PropertyView.All)) {
+
+				if (key instanceof ElementCounter && ((ElementCounter)key).strategy == Strategy.Materialized) {
+
+					counters.add((ElementCounter)key);
+				}
+			}
+
+			// most types have no materialized counters
+			return counters.isEmpty() ? Collections.emptyList() : counters;
+		});
+	}
+
+	private boolean counts(final RelationshipInterface relationship, final String direction) {
+
+		final RelationProperty relationProperty = (RelationProperty)collectionProperty;
+
+		return direction.equals(relationProperty.getDirectionKey()) && relationProperty.getRelation().getClass().equals(relationship.getClass());
+	}
+
+	private void update(final NodeInterface node, final int delta) {
+
+		final Node dbNode = node.getNode();
+
+		if (dbNode == null || TransactionCommand.isDeleted(dbNode)) {
+			return;
+		}
+
+		final String key                  = "n.`" + dbName() + "`";
+		final Map<String, Object> params  = new HashMap<>();
+
+		params.put("id",           node.getId());
+		params.put("delta",        delta);
+		params.put("initialDelta", Math.min(0, delta));
+
+		// read and write the value in a single statement, which locks the node, so that concurrent
+		// transactions can not lose updates. a deleted relationship is still counted by the database.
+		final String statement = "MATCH (n) WHERE ID(n) = {id} SET " + key + " = CASE"
+			+ " WHEN " + key + " IS NULL THEN size(" + getPattern() + ") + {initialDelta}"
+			+ " WHEN " + key + " + {delta} < 0 THEN 0"
+			+ " ELSE " + key + " + {delta} END"
+			+ " RETURN " + key + " AS count";
+
+		try (final NativeResult result = StructrApp.getInstance().getDatabaseService().execute(statement, params, TypeProperty.getLabelsForType(node.getClass()))) {
+
+			if (result.hasNext()) {
+
+				final Object count = result.next().get("count");
+				if (count instanceof Number) {
+
+					// update the cached value of the node, the node is locked by this transaction now
+					dbNode.setProperty(dbName(), ((Number)count).intValue());
+				}
+			}
+
+		} catch (RuntimeException rex) {
+
+			// fail the transaction, it would otherwise be committed with a wrong count,
+			// retryable errors like deadlocks are propagated unchanged
+			logger.warn("Unable to update count property {} of {}: {}", jsonName(), node.getUuid(), rex.getMessage());
+			throw rex;
+		}
+	}
+
+	private String getPattern() {
+
+		final RelationProperty relationProperty = (RelationProperty)collectionProperty;
+		final Relation relation                 = relationProperty.getRelation();
+		final boolean outgoing                  = "out".equals(relationProperty.getDirectionKey());
+		final String otherLabel                 = (outgoing ? relation.getTargetType() : relation.getSourceType()).getSimpleName();
+
+		return outgoing ? "(n)-[:`" + relation.name() + "`]->(:`" + otherLabel + "`)" : "(n)<-[:`" + relation.name() + "`]-(:`" + otherLabel + "`)";
+	}
+
+	private int countInDatabase(final GraphObject obj) {
+
+		final Map<String, Object> params = new HashMap<>();
+
+		params.put("id", obj.getId());
+
+		try (final NativeResult result = StructrApp.getInstance().getDatabaseService().execute("MATCH (n) WHERE ID(n) = {id} RETURN size(" + getPattern() + ") AS count", params)) {
+
+			if (result.hasNext()) {
+
+				final Object count = result.next().get("count");
+				if (count instanceof Number) {
+
+					return ((Number)count).intValue();
+				}
+			}
+		}
+
+		return 0;
+	}
+
 	@Override
 	public Class relatedType() {
 		return null;
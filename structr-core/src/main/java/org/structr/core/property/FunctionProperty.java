@@ -26,10 +26,18 @@ import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.converter.PropertyConverter;
+import org.structr.core.graph.TransactionCommand;
 import org.structr.core.script.Scripting;
 import org.structr.schema.action.ActionContext;
 
 /**
+ * A property whose value is computed by a script.
+ *
+ * If caching is enabled, computed values are stored in the
+ * {@link FunctionPropertyCache} until a property that was read by the
+ * script, or an entity of a type that was queried by the script, is
+ * modified. Values are computed without the cache in
+ * transactions that contain modifications, and if a predicate is given.
  *
  *
  */
@@ -37,8 +45,21 @@ public class FunctionProperty<T> extends Property<T> {
 
 	private static final Logger logger = LoggerFactory.getLogger(FunctionProperty.class.getName());
 
+	private boolean cachingEnabled = false;
+
 	public FunctionProperty(final String name) {
+		this(name, false);
+	}
+
+	public FunctionProperty(final String name, final boolean cachingEnabled) {
+
 		super(name);
+
+		this.cachingEnabled = cachingEnabled;
+	}
+
+	public boolean isCachingEnabled() {
+		return cachingEnabled;
 	}
 
 	@Override
@@ -72,6 +93,32 @@ public class FunctionProperty<T> extends Property<T> {
 				// don't ignore predicate
 				actionContext.setPredicate(predicate);
 
+				if (cachingEnabled && predicate == null && !TransactionCommand.hasModifications()) {
+
+					final String cacheKey                    = FunctionPropertyCache.getCacheKey(securityContext, obj, this);
+					final FunctionPropertyCache.Entry cached = FunctionPropertyCache.get(cacheKey);
+
+					if (cached != null) {
+						return (T)cached.getValue();
+					}
+
+					final FunctionPropertyCache.Recording recording = FunctionPropertyCache.startRecording();
+					T value                                         = null;
+
+					try {
+
+						value = (T)Scripting.evaluate(actionContext, obj, "${".concat(readFunction).concat("}"), "getProperty(" + jsonName + ")");
+
+					} finally {
+
+						FunctionPropertyCache.stopRecording();
+					}
+
+					FunctionPropertyCache.put(cacheKey, value, recording);
+
+					return value;
+				}
+
 				return (T)Scripting.evaluate(actionContext, obj, "${".concat(readFunction).concat("}"), "getProperty(" + jsonName + ")");
 
 			} else {
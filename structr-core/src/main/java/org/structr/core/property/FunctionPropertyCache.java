@@ -0,0 +1,480 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.property;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.structr.api.config.Settings;
+import org.structr.api.util.Cachable;
+import org.structr.api.util.FixedSizeCache;
+import org.structr.common.SecurityContext;
+import org.structr.core.GraphObject;
+import org.structr.core.entity.Principal;
+
+/**
+ * Cache for the values of function properties with caching enabled.
+ *
+ * Values are cached per entity, property and principal. While a value is
+ * computed, the property keys read by the function and the types of the
+ * queries it runs are recorded. The value is removed from the cache when
+ * one of these keys is modified in a committed transaction, when a
+ * relationship of an entity it depends on is created or deleted, or when
+ * an entity of a queried type is created, modified or deleted.
+ *
+ * A value whose dependencies are invalidated while it is computed is not
+ * cached, all other values are not affected by concurrent transactions.
+ */
+public class FunctionPropertyCache {
+
+	private static final String TYPE_PREFIX                       = "type:";
+	private static final String ANY_TYPE                          = "*";
+
+	private static final FixedSizeCache<String, Entry> cache      = new FixedSizeCache<>(Settings.FunctionCacheSize.getValue());
+	private static final Map<String, Set<String>> dependents      = new ConcurrentHashMap<>();
+	private static final Set<Recording> activeRecordings          = ConcurrentHashMap.newKeySet();
+	private static final ThreadLocal<Deque<Recording>> recorder   = ThreadLocal.withInitial(ArrayDeque::new);
+	private static final Object lock                              = new Object();
+	private static final AtomicLong hits                          = new AtomicLong();
+	private static final AtomicLong misses                        = new AtomicLong();
+	private static final AtomicLong invalidations                 = new AtomicLong();
+	private static final AtomicLong discarded                     = new AtomicLong();
+
+	/**
+	 * Returns the cache key for the given property of the given object,
+	 * as seen by the principal of the given security context.
+	 *
+	 * @param securityContext
+	 * @param obj
+	 * @param key
+	 * @return the cache key
+	 */
+	public static String getCacheKey(final SecurityContext securityContext, final GraphObject obj, final PropertyKey key) {
+
+		final StringBuilder buf = new StringBuilder(obj.getUuid()).append(".").append(key.jsonName()).append(".");
+
+		if (securityContext == null || securityContext.isSuperUser()) {
+
+			buf.append("superuser");
+
+		} else {
+
+			final Principal user = securityContext.getCachedUser();
+			if (user != null) {
+
+				buf.append(user.getUuid());
+
+			} else {
+
+				buf.append("anonymous");
+			}
+		}
+
+		return buf.toString();
+	}
+
+	/**
+	 * Returns the cached value for the given cache key and adds its
+	 * dependencies to the current recording, if any.
+	 *
+	 * @param cacheKey
+	 * @return the cache entry, or null
+	 */
+	public static Entry get(final String cacheKey) {
+
+		final Entry entry = cache.get(cacheKey);
+		if (entry != null) {
+
+			hits.incrementAndGet();
+
+			// nested function property
+			final Recording current = recorder.get().peek();
+			if (current != null) {
+
+				current.dependencies.addAll(entry.dependencies);
+
+				// the entry may have been invalidated before its dependencies were added
+				if (cache.get(cacheKey) != entry) {
+					current.stale = true;
+				}
+			}
+
+		} else {
+
+			misses.incrementAndGet();
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Starts recording the property keys that are read and the queries
+	 * that are run in the current thread.
+	 *
+	 * @return the recording to pass to {@link #put}
+	 */
+	public static Recording startRecording() {
+
+		final Recording recording = new Recording();
+
+		recorder.get().push(recording);
+		activeRecordings.add(recording);
+
+		return recording;
+	}
+
+	/**
+	 * Stops the current recording and returns it.
+	 *
+	 * @return the recording
+	 */
+	public static Recording stopRecording() {
+
+		final Deque<Recording> stack = recorder.get();
+		final Recording recorded     = stack.pop();
+
+		// nested function property, must be done before the recording
+		// is removed so that no invalidation can be missed
+		final Recording parent = stack.peek();
+		if (parent != null) {
+
+			parent.dependencies.addAll(recorded.dependencies);
+
+			if (recorded.stale) {
+				parent.stale = true;
+			}
+		}
+
+		activeRecordings.remove(recorded);
+
+		return recorded;
+	}
+
+	/**
+	 * Indicates whether a recording is active in the current thread.
+	 *
+	 * @return whether reads and queries are recorded
+	 */
+	public static boolean isRecording() {
+		return !activeRecordings.isEmpty() && !recorder.get().isEmpty();
+	}
+
+	/**
+	 * Records a read of the given property key, called for every property
+	 * read so it returns immediately if nothing is recorded. Must be called
+	 * before the value is read.
+	 *
+	 * @param obj
+	 * @param key
+	 */
+	public static void recordRead(final GraphObject obj, final PropertyKey key) {
+
+		if (!activeRecordings.isEmpty() && !GraphObject.id.equals(key)) {
+
+			final Recording current = recorder.get().peek();
+			if (current != null) {
+
+				current.dependencies.add(obj.getUuid() + "." + key.jsonName());
+			}
+		}
+	}
+
+	/**
+	 * Records a query for the given type. The result of a query can change
+	 * without a change of the entities that were read, so the value depends
+	 * on all entities of the type.
+	 *
+	 * @param type the simple name of the queried type, or null if the query can return entities of any type
+	 */
+	public static void recordQuery(final String type) {
+
+		if (!activeRecordings.isEmpty()) {
+
+			final Recording current = recorder.get().peek();
+			if (current != null) {
+
+				current.dependencies.add(TYPE_PREFIX + (type != null ? type : ANY_TYPE));
+			}
+		}
+	}
+
+	/**
+	 * Caches a computed value, unless one of its dependencies was
+	 * invalidated while it was computed.
+	 *
+	 * @param cacheKey
+	 * @param value
+	 * @param recording the stopped recording returned by {@link #startRecording}
+	 */
+	public static void put(final String cacheKey, final Object value, final Recording recording) {
+
+		synchronized (lock) {
+
+			if (recording.stale) {
+
+				discarded.incrementAndGet();
+				return;
+			}
+
+			final Entry entry = new Entry(cacheKey, value, new HashSet<>(recording.dependencies));
+
+			for (final String indexKey : entry.indexKeys) {
+				dependents.computeIfAbsent(indexKey, k -> ConcurrentHashMap.newKeySet()).add(cacheKey);
+			}
+
+			cache.put(cacheKey, entry);
+		}
+	}
+
+	/**
+	 * Removes all cached values that depend on the given property keys of
+	 * the entity with the given UUID.
+	 *
+	 * @param uuid the UUID of the modified entity
+	 * @param keys the names of the modified keys, or null to remove all values that depend on the entity
+	 */
+	public static void invalidate(final String uuid, final Collection<String> keys) {
+
+		synchronized (lock) {
+
+			final Set<String> cacheKeys = dependents.get(uuid);
+			if (cacheKeys != null) {
+
+				for (final String cacheKey : cacheKeys.toArray(new String[0])) {
+
+					final Entry entry = cache.get(cacheKey);
+					if (entry == null) {
+
+						cacheKeys.remove(cacheKey);
+
+					} else if (keys == null || entry.dependsOn(uuid, keys)) {
+
+						remove(cacheKey, entry);
+					}
+				}
+			}
+
+			// values that are computed right now
+			for (final Recording recording : activeRecordings) {
+
+				if (recording.dependsOn(uuid, keys)) {
+					recording.stale = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes all cached values that depend on a query for one of the
+	 * given types or for any type.
+	 *
+	 * @param types the simple names of the type and all supertypes of a modified entity
+	 */
+	public static void invalidateTypes(final Collection<String> types) {
+
+		final List<String> indexKeys = new ArrayList<>();
+
+		for (final String type : types) {
+			indexKeys.add(TYPE_PREFIX + type);
+		}
+
+		indexKeys.add(TYPE_PREFIX + ANY_TYPE);
+
+		synchronized (lock) {
+
+			for (final String indexKey : indexKeys) {
+
+				final Set<String> cacheKeys = dependents.get(indexKey);
+				if (cacheKeys != null) {
+
+					for (final String cacheKey : cacheKeys.toArray(new String[0])) {
+
+						final Entry entry = cache.get(cacheKey);
+						if (entry == null) {
+
+							cacheKeys.remove(cacheKey);
+
+						} else {
+
+							remove(cacheKey, entry);
+						}
+					}
+				}
+			}
+
+			// values that are computed right now
+			for (final Recording recording : activeRecordings) {
+
+				for (final String indexKey : indexKeys) {
+
+					if (recording.dependencies.contains(indexKey)) {
+						recording.stale = true;
+					}
+				}
+			}
+		}
+	}
+
+	public static void clear() {
+
+		synchronized (lock) {
+
+			for (final Recording recording : activeRecordings) {
+				recording.stale = true;
+			}
+
+			cache.clear();
+			dependents.clear();
+		}
+	}
+
+	public static Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+		final long hitCount                  = hits.get();
+		final long missCount                 = misses.get();
+		final long total                     = hitCount + missCount;
+
+		statistics.put("size",          cache.size());
+		statistics.put("hits",          hitCount);
+		statistics.put("misses",        missCount);
+		statistics.put("hitRatio",      total > 0 ? (double)hitCount / (double)total : 0.0);
+		statistics.put("invalidations", invalidations.get());
+		statistics.put("discarded",     discarded.get());
+
+		return statistics;
+	}
+
+	// ----- private methods -----
+	private static void remove(final String cacheKey, final Entry entry) {
+
+		cache.remove(cacheKey);
+		entry.onRemoveFromCache();
+
+		invalidations.incrementAndGet();
+	}
+
+	// ----- nested classes -----
+	public static class Recording {
+
+		private final Set<String> dependencies = ConcurrentHashMap.newKeySet();
+		private volatile boolean stale         = false;
+
+		private Recording() {}
+
+		public Set<String> getDependencies() {
+			return dependencies;
+		}
+
+		private boolean dependsOn(final String uuid, final Collection<String> keys) {
+
+			if (keys == null) {
+
+				final String prefix = uuid + ".";
+
+				for (final String dependency : dependencies) {
+
+					if (dependency.startsWith(prefix)) {
+						return true;
+					}
+				}
+
+				return false;
+			}
+
+			for (final String key : keys) {
+
+				if (dependencies.contains(uuid + "." + key)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+
+	public static class Entry implements Cachable {
+
+		private final Set<String> dependencies;
+		private final Set<String> indexKeys;
+		private final String cacheKey;
+		private final Object value;
+
+		private Entry(final String cacheKey, final Object value, final Set<String> dependencies) {
+
+			this.dependencies = dependencies;
+			this.indexKeys    = new HashSet<>();
+			this.cacheKey     = cacheKey;
+			this.value        = value;
+
+			// the entity the value belongs to
+			indexKeys.add(cacheKey.substring(0, cacheKey.indexOf(".")));
+
+			for (final String dependency : dependencies) {
+
+				if (dependency.startsWith(TYPE_PREFIX)) {
+
+					indexKeys.add(dependency);
+
+				} else {
+
+					indexKeys.add(dependency.substring(0, dependency.indexOf(".")));
+				}
+			}
+		}
+
+		public Object getValue() {
+			return value;
+		}
+
+		@Override
+		public void onRemoveFromCache() {
+
+			for (final String indexKey : indexKeys) {
+
+				dependents.computeIfPresent(indexKey, (k, cacheKeys) -> {
+
+					cacheKeys.remove(cacheKey);
+
+					return cacheKeys.isEmpty() ? null : cacheKeys;
+				});
+			}
+		}
+
+		private boolean dependsOn(final String uuid, final Collection<String> keys) {
+
+			for (final String key : keys) {
+
+				if (dependencies.contains(uuid + "." + key)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+}
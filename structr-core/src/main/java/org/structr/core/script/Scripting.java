@@ -31,16 +31,19 @@ import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.lang3.StringUtils;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ContextFactory;
 import org.mozilla.javascript.Script;
 import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
 import org.mozilla.javascript.Undefined;
 import org.renjin.script.RenjinScriptEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.error.UnlicensedException;
 import org.structr.core.GraphObject;
@@ -59,6 +62,8 @@ public class Scripting {
 	private static final Logger logger                       = LoggerFactory.getLogger(Scripting.class.getName());
 	private static final Pattern ScriptEngineExpression      = Pattern.compile("^\\$\\{(\\w+)\\{(.*)\\}\\}$", Pattern.DOTALL);
 	private static final Map<String, Script> compiledScripts = Collections.synchronizedMap(new LRUMap<>(10000));
+	private static final ContextFactory contextFactory       = new ContextFactory();
+	private static volatile ScriptableObject sharedScope     = null;
 
 	public static String replaceVariables(final ActionContext actionContext, final GraphObject entity, final Object rawValue) throws FrameworkException {
 
@@ -213,7 +218,7 @@ public class Scripting {
 			scriptingContext.setGenerateObserverCount(false);
 			scriptingContext.setGeneratingDebug(true);
 
-			final Scriptable scope = scriptingContext.initStandardObjects();
+			final Scriptable scope             = createScope(scriptingContext);
 			final StructrScriptable scriptable = new StructrScriptable(actionContext, entity, scriptingContext);
 
 			scriptable.setParentScope(scope);
@@ -312,7 +317,7 @@ public class Scripting {
 
 	public static Context setupJavascriptContext() {
 
-		final Context scriptingContext = new ContextFactory().enterContext();
+		final Context scriptingContext = contextFactory.enterContext();
 
 		// enable some optimizations..
 		scriptingContext.setLanguageVersion(Context.VERSION_1_2);
@@ -327,6 +332,62 @@ public class Scripting {
 		Context.exit();
 	}
 
+	/**
+	 * Creates the top-level scope for a script evaluation. If a shared
+	 * scope is enabled, the standard objects are initialized only once
+	 * into a sealed scope that serves as the prototype of a lightweight
+	 * per-evaluation scope, so scripts cannot modify the standard objects
+	 * of other evaluations.
+	 *
+	 * @param context
+	 * @return the scope
+	 */
+	private static Scriptable createScope(final Context context) {
+
+		if (Settings.SharedScriptScope.getValue()) {
+
+			final ScriptableObject shared = getSharedScope(context);
+			final Scriptable scope        = context.newObject(shared);
+
+			scope.setPrototype(shared);
+			scope.setParentScope(null);
+
+			return scope;
+		}
+
+		return context.initStandardObjects();
+	}
+
+	private static ScriptableObject getSharedScope(final Context context) {
+
+		if (sharedScope == null) {
+
+			synchronized (Scripting.class) {
+
+				if (sharedScope == null) {
+
+					final ScriptableObject scope = context.initStandardObjects(null, true);
+
+					// force all lazily loaded standard objects (RegExp, the Java
+					// packages, JavaImporter, XML etc.) to load, they would
+					// otherwise be created in the sealed shared scope
+					for (final Object id : scope.getAllIds()) {
+
+						if (id instanceof String) {
+							ScriptableObject.getProperty(scope, (String)id);
+						}
+					}
+
+					scope.sealObject();
+
+					sharedScope = scope;
+				}
+			}
+		}
+
+		return sharedScope;
+	}
+
 	private static String embedInFunction(final ActionContext actionContext, final String source) {
 
 		final StringBuilder buf = new StringBuilder();
@@ -341,13 +402,16 @@ public class Scripting {
 
 	private static Script compileOrGetCached(final Context context, final String source, final String sourceName, final int lineNo) {
 
+		// key by digest so the cache does not hold on to the source code
+		final String key = DigestUtils.sha256Hex(source);
+
 		synchronized (compiledScripts) {
 
-			Script script = compiledScripts.get(source);
+			Script script = compiledScripts.get(key);
 			if (script == null) {
 
 				script = context.compileString(source, sourceName, lineNo, null);
-				compiledScripts.put(source, script);
+				compiledScripts.put(key, script);
 			}
 
 			return script;
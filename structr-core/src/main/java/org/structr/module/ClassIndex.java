@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.module;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent index of the classes that were registered from each scanned
+ * module JAR, keyed by the modification time and size of the JAR file. On
+ * subsequent starts, JARs with an unchanged fingerprint do not need to be
+ * scanned again.
+ */
+public class ClassIndex {
+
+	private static final Logger logger = LoggerFactory.getLogger(ClassIndex.class.getName());
+	private static final int VERSION   = 2;
+
+	private final Gson gson     = new GsonBuilder().setPrettyPrinting().create();
+	private IndexData data      = new IndexData();
+	private File file           = null;
+	private boolean modified    = false;
+
+	public ClassIndex(final File file) {
+		this.file = file;
+	}
+
+	public void load() {
+
+		if (file.exists()) {
+
+			try (final Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+
+				final IndexData loaded = gson.fromJson(reader, IndexData.class);
+				if (loaded != null && loaded.version == VERSION && loaded.resources != null) {
+
+					data = loaded;
+				}
+
+			} catch (IOException | JsonParseException ex) {
+
+				logger.warn("Unable to read class index {}, rebuilding: {}", file.getAbsolutePath(), ex.getMessage());
+			}
+		}
+	}
+
+	public void store() {
+
+		if (!modified) {
+			return;
+		}
+
+		try {
+
+			final File parent = file.getAbsoluteFile().getParentFile();
+			if (parent != null) {
+				parent.mkdirs();
+			}
+
+			// write to a temporary file first so a crash never leaves a truncated index
+			final File tmp = new File(file.getAbsolutePath() + ".tmp");
+
+			try (final Writer writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+				gson.toJson(data, writer);
+			}
+
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+			modified = false;
+
+		} catch (IOException ioex) {
+
+			logger.warn("Unable to write class index {}: {}", file.getAbsolutePath(), ioex.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the indexed resource for the given path if its fingerprint
+	 * matches, or null.
+	 *
+	 * @param path
+	 * @param fingerprint
+	 * @return the indexed resource or null
+	 */
+	public Resource get(final String path, final String fingerprint) {
+
+		final Resource resource = data.resources.get(path);
+		if (resource != null && fingerprint.equals(resource.fingerprint)) {
+
+			return resource;
+		}
+
+		return null;
+	}
+
+	public void put(final String path, final String fingerprint, final String moduleName, final Set<String> classes) {
+
+		final Resource resource = new Resource();
+
+		resource.fingerprint = fingerprint;
+		resource.moduleName  = moduleName;
+		resource.classes     = new LinkedHashSet<>(classes);
+
+		data.resources.put(path, resource);
+		modified = true;
+	}
+
+	/**
+	 * Removes the entries of resources that are not in the given set.
+	 *
+	 * @param paths the paths of the resources that still exist
+	 */
+	public void retain(final Set<String> paths) {
+		modified |= data.resources.keySet().retainAll(paths);
+	}
+
+	/**
+	 * Returns the fingerprint of the given file, which consists of its
+	 * modification time and size, so the file does not need to be read.
+	 *
+	 * @param file
+	 * @return the fingerprint
+	 */
+	public static String fingerprint(final File file) {
+		return Long.toHexString(file.lastModified()) + "-" + Long.toHexString(file.length());
+	}
+
+	// ----- nested classes -----
+	public static class Resource {
+
+		private String fingerprint  = null;
+		private String moduleName   = null;
+		private Set<String> classes = null;
+
+		public String getModuleName() {
+			return moduleName;
+		}
+
+		public Set<String> getClasses() {
+			return classes;
+		}
+	}
+
+	private static class IndexData {
+
+		private int version                      = VERSION;
+		private Map<String, Resource> resources  = new LinkedHashMap<>();
+	}
+}
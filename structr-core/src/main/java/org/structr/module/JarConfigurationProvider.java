@@ -52,6 +52,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.agent.Agent;
+import org.structr.api.config.Settings;
 import org.structr.api.service.LicenseManager;
 import org.structr.api.service.Service;
 import org.structr.common.DefaultFactoryDefinition;
@@ -999,24 +1000,75 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 	// ----- private methods -----
 	private void scanResources() {
 
-		Set<String> resourcePaths = getResourcesToScan();
-		for (String resourcePath : resourcePaths) {
+		final Set<String> resourcePaths = getResourcesToScan();
+		final ClassIndex index          = Settings.ClassIndexEnabled.getValue() ? new ClassIndex(new File(Settings.getBasePath() + Settings.ClassIndexPath.getValue())) : null;
+		int indexed                     = 0;
 
-			scanResource(resourcePath);
+		if (index != null) {
+			index.load();
 		}
 
-		logger.info("{} JARs scanned", resourcePaths.size());
+		for (final String resourcePath : resourcePaths) {
 
+			if (scanResource(resourcePath, index)) {
+				indexed++;
+			}
+		}
+
+		if (index != null) {
+
+			index.retain(resourcePaths);
+			index.store();
+
+			logger.info("{} JARs scanned, {} of them from class index", resourcePaths.size(), indexed);
+
+		} else {
+
+			logger.info("{} JARs scanned", resourcePaths.size());
+		}
 	}
 
-	private void scanResource(final String resourceName) {
+	/**
+	 * Scans the given resource and registers its classes. JAR files whose
+	 * fingerprint is found in the given class index are not scanned, only
+	 * the classes recorded in the index are verified and loaded.
+	 *
+	 * @return whether the classes of the resource were taken from the index
+	 */
+	private boolean scanResource(final String resourceName, final ClassIndex index) {
 
 		try {
 
+			final boolean isArchive = resourceName.endsWith(".jar") || resourceName.endsWith(".war");
+			final String fingerprint = index != null && isArchive ? ClassIndex.fingerprint(new File(resourceName)) : null;
+
+			if (fingerprint != null) {
+
+				final ClassIndex.Resource indexed = index.get(resourceName, fingerprint);
+				if (indexed != null) {
+
+					final String moduleName = indexed.getModuleName();
+
+					// only load modules that are licensed
+					if (moduleName != null && (licenseManager == null || licenseManager.isModuleLicensed(moduleName))) {
+
+						importClasses(verifyClasses(resourceName, indexed.getClasses()));
+					}
+
+					return true;
+				}
+			}
+
 			final StructrModuleInfo module = loadResource(resourceName);
 			if (module != null) {
 
-				importResource(module);
+				final Set<String> relevantClasses = importClasses(module.getClasses());
+
+				// only index resources that were actually scanned, i.e. modules that are licensed
+				if (fingerprint != null && (module.getName() == null || !module.getClasses().isEmpty())) {
+
+					index.put(resourceName, fingerprint, module.getName(), relevantClasses);
+				}
 
 			} else {
 
@@ -1025,11 +1077,18 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 		} catch (IOException ignore) {}
 
+		return false;
 	}
 
-	private void importResource(final StructrModuleInfo module) throws IOException {
+	/**
+	 * Loads and registers the given classes.
+	 *
+	 * @return the names of the classes that were registered as entities,
+	 * services, agents or modules
+	 */
+	private Set<String> importClasses(final Set<String> classes) {
 
-		final Set<String> classes = module.getClasses();
+		final Set<String> relevantClasses = new LinkedHashSet<>();
 
 		for (final String name : classes) {
 
@@ -1045,18 +1104,21 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 				if (NodeInterface.class.isAssignableFrom(clazz)) {
 
 					registerEntityType(clazz);
+					relevantClasses.add(className);
 				}
 
 				// register entity classes
 				if (AbstractRelationship.class.isAssignableFrom(clazz) && !(Modifier.isAbstract(modifiers))) {
 
 					registerEntityType(clazz);
+					relevantClasses.add(className);
 				}
 
 				// register services
 				if (Service.class.isAssignableFrom(clazz) && !(Modifier.isAbstract(modifiers))) {
 
 					Services.getInstance().registerServiceClass(clazz);
+					relevantClasses.add(className);
 				}
 
 				// register agents
@@ -1067,11 +1129,14 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 					agentClassCache.put(simpleName, clazz);
 					agentPackages.add(fullName.substring(0, fullName.lastIndexOf(".")));
+					relevantClasses.add(className);
 				}
 
 				// register modules
 				if (StructrModule.class.isAssignableFrom(clazz) && !(Modifier.isAbstract(modifiers))) {
 
+					relevantClasses.add(className);
+
 					try {
 
 						// we need to make sure that a module is initialized exactly once
@@ -1098,6 +1163,45 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 				logger.debug("Error trying to load class " + className, t);
 			}
 		}
+
+		return relevantClasses;
+	}
+
+	/**
+	 * Returns the classes of the given JAR whose code signers are valid. Only
+	 * the entries of the given classes are read, which is necessary to get
+	 * their signers.
+	 */
+	private Set<String> verifyClasses(final String resource, final Set<String> classes) throws IOException {
+
+		if (licenseManager == null) {
+			return classes;
+		}
+
+		final Set<String> verified = new LinkedHashSet<>();
+
+		try (final JarFile jarFile = new JarFile(new File(resource), true)) {
+
+			for (final String name : classes) {
+
+				final String className = StringUtils.removeStart(name, ".");
+				final JarEntry entry   = jarFile.getJarEntry(className.replace('.', '/') + ".class");
+
+				if (entry != null) {
+
+					// cat entry > /dev/null (necessary to get signers below)
+					IOUtils.copy(jarFile.getInputStream(entry), new ByteArrayOutputStream(65535));
+
+					// verify module
+					if (licenseManager.isValid(entry.getCodeSigners())) {
+
+						verified.add(className);
+					}
+				}
+			}
+		}
+
+		return verified;
 	}
 
 	private StructrModuleInfo loadResource(String resource) throws IOException {
@@ -1118,6 +1222,8 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 						final String name = attrs.getValue("Structr-Module-Name");
 
+						ret.setName(name);
+
 						// only scan and load modules that are licensed
 						if (name != null && (licenseManager == null || licenseManager.isModuleLicensed(name))) {
 
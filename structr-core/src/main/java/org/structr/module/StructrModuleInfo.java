@@ -32,6 +32,7 @@ public class StructrModuleInfo {
 	private final Set<String> resources  = new LinkedHashSet<>();
 	private final Set<String> libraries  = new LinkedHashSet<>();
 	private String modulePath            = null;
+	private String name                  = null;
 
 	public StructrModuleInfo(String modulePath) {
 		this.modulePath = modulePath;
@@ -41,6 +42,14 @@ public class StructrModuleInfo {
 		return modulePath ;
 	}
 
+	public String getName() {
+		return name;
+	}
+
+	public void setName(final String name) {
+		this.name = name;
+	}
+
 	public Set<String> getClasses() {
 		return rawClasses;
 	}
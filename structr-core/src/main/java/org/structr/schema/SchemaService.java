@@ -52,6 +52,8 @@ import org.structr.core.entity.SchemaRelationshipNode;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.Tx;
 import org.structr.core.graph.search.SearchCommand;
+import org.structr.core.property.ElementCounter;
+import org.structr.core.property.FunctionPropertyCache;
 import org.structr.core.property.PropertyKey;
 import org.structr.schema.compiler.NodeExtender;
 
@@ -142,6 +144,9 @@ public class SchemaService implements Service {
 						// clear propagating relationship cache
 						SchemaRelationshipNode.clearPropagatingRelationshipTypes();
 
+						// function properties may have been changed
+						FunctionPropertyCache.clear();
+
 						// compile all classes at once and register
 						final Map<String, Class> newTypes = nodeExtender.compile(errorBuffer);
 
@@ -183,6 +188,9 @@ public class SchemaService implements Service {
 						// inject views in configuration provider
 						config.registerDynamicViews(dynamicViews);
 
+						// count properties of the new types are determined on demand
+						ElementCounter.clearCache();
+
 						if (Services.calculateHierarchy() || !Services.isTesting()) {
 
 							calculateHierarchy();
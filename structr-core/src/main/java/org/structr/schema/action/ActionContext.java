@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -40,6 +41,7 @@ import org.structr.core.GraphObject;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.graph.Tx;
+import org.structr.core.parser.Expression;
 import org.structr.core.script.Scripting;
 import org.structr.schema.parser.DatePropertyParser;
 
@@ -61,6 +63,7 @@ public class ActionContext {
 	protected ErrorBuffer errorBuffer         = new ErrorBuffer();
 	protected StringBuilder outputBuffer      = new StringBuilder();
 	protected Locale locale                   = Locale.getDefault();
+	protected Map<Expression, Integer> batchSizes = new IdentityHashMap<>();
 	private boolean javaScriptContext         = false;
 
 	public ActionContext(final SecurityContext securityContext) {
@@ -89,6 +92,7 @@ public class ActionContext {
 		this.constants       = other.constants;
 		this.securityContext = other.securityContext;
 		this.locale          = other.locale;
+		this.batchSizes      = other.batchSizes;
 	}
 
 	public SecurityContext getSecurityContext() {
@@ -103,6 +107,21 @@ public class ActionContext {
 		return false;
 	}
 
+	public int getBatchSize(final Expression expression) {
+
+		final Integer batchSize = batchSizes.get(expression);
+		if (batchSize != null) {
+
+			return batchSize;
+		}
+
+		return -1;
+	}
+
+	public void setBatchSize(final Expression expression, final int batchSize) {
+		batchSizes.put(expression, batchSize);
+	}
+
 	public Object getConstant(final String name) {
 		return constants.get(name);
 	}
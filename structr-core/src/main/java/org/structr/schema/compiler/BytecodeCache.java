@@ -0,0 +1,366 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.schema.compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.core.Services;
+import org.structr.core.entity.AbstractNode;
+
+/**
+ * Content-addressed cache for the byte code of dynamic types. Each entry
+ * is stored under a key that is derived from the source code of a single
+ * compilation unit and the environment it was compiled in, together with
+ * its own API hash and the API hashes of the dynamic types it depends on.
+ */
+public class BytecodeCache {
+
+	private static final Logger logger       = LoggerFactory.getLogger(BytecodeCache.class.getName());
+	private static final String SUFFIX       = ".bin";
+	private static final int VERSION         = 2;
+	private static String currentEnvironment = null;
+
+	private File directory     = null;
+	private String environment = null;
+
+	/**
+	 * Creates a cache in the given directory for byte code that was
+	 * compiled in the given environment.
+	 *
+	 * @param directory the cache directory, or null to disable the on-disk cache
+	 * @param environment the environment description
+	 */
+	public BytecodeCache(final File directory, final String environment) {
+
+		this.directory   = directory;
+		this.environment = environment;
+	}
+
+	/**
+	 * Creates the cache that is configured in the settings, for the
+	 * environment of the running instance.
+	 *
+	 * @return the cache
+	 */
+	public static BytecodeCache fromSettings() {
+
+		if (Settings.SchemaCacheEnabled.getValue()) {
+
+			return new BytecodeCache(new File(Settings.getFullSettingPath(Settings.SchemaCachePath)), getEnvironment());
+		}
+
+		return new BytecodeCache(null, "");
+	}
+
+	/**
+	 * Returns the cache key for the given source code.
+	 *
+	 * @param source
+	 * @return the key
+	 */
+	public String getKey(final String source) {
+		return DigestUtils.sha256Hex(environment + source);
+	}
+
+	public Entry load(final String key) {
+
+		final File file = getFile(key);
+		if (file != null && file.exists()) {
+
+			try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+				if (in.readInt() == VERSION) {
+
+					final Entry entry = new Entry(key);
+
+					entry.apiHash = in.readUTF();
+
+					final int dependencyCount = in.readInt();
+					for (int i=0; i<dependencyCount; i++) {
+
+						entry.dependencies.put(in.readUTF(), in.readUTF());
+					}
+
+					final int classCount = in.readInt();
+					for (int i=0; i<classCount; i++) {
+
+						final String name  = in.readUTF();
+						final byte[] bytes = new byte[in.readInt()];
+
+						in.readFully(bytes);
+
+						entry.classes.put(name, bytes);
+					}
+
+					return entry;
+				}
+
+			} catch (IOException ioex) {
+
+				logger.warn("Unable to read cached byte code from {}: {}", file.getAbsolutePath(), ioex.getMessage());
+			}
+		}
+
+		return null;
+	}
+
+	public void store(final Entry entry) {
+
+		final File file = getFile(entry.getKey());
+		if (file != null) {
+
+			final File tmp = new File(file.getAbsolutePath() + ".tmp");
+
+			file.getParentFile().mkdirs();
+
+			try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+
+				out.writeInt(VERSION);
+				out.writeUTF(entry.apiHash != null ? entry.apiHash : "");
+
+				out.writeInt(entry.dependencies.size());
+				for (final Map.Entry<String, String> dependency : entry.dependencies.entrySet()) {
+
+					out.writeUTF(dependency.getKey());
+					out.writeUTF(dependency.getValue());
+				}
+
+				out.writeInt(entry.classes.size());
+				for (final Map.Entry<String, byte[]> compiled : entry.classes.entrySet()) {
+
+					out.writeUTF(compiled.getKey());
+					out.writeInt(compiled.getValue().length);
+					out.write(compiled.getValue());
+				}
+
+			} catch (IOException ioex) {
+
+				logger.warn("Unable to write cached byte code to {}: {}", file.getAbsolutePath(), ioex.getMessage());
+				tmp.delete();
+
+				return;
+			}
+
+			try {
+
+				Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+			} catch (IOException ioex) {
+
+				logger.warn("Unable to write cached byte code to {}: {}", file.getAbsolutePath(), ioex.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Removes all entries except the ones with the given keys from the
+	 * cache directory.
+	 *
+	 * @param keys
+	 */
+	public void retain(final Set<String> keys) {
+
+		if (directory != null) {
+
+			final File[] files = directory.listFiles((d, name) -> name.endsWith(SUFFIX));
+			if (files != null) {
+
+				for (final File file : files) {
+
+					final String name = file.getName();
+
+					if (!keys.contains(name.substring(0, name.length() - SUFFIX.length()))) {
+						file.delete();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Describes the environment the byte code was compiled in. Cached
+	 * byte code becomes invalid when the Java version or any of the
+	 * classes it was compiled against change, i.e. when a JAR or class
+	 * directory on the class path or a module resource is modified.
+	 *
+	 * @return the environment description
+	 */
+	public static synchronized String getEnvironment() {
+
+		if (currentEnvironment == null) {
+
+			final Set<String> paths = new LinkedHashSet<>();
+			final StringBuilder buf = new StringBuilder();
+
+			buf.append(System.getProperty("java.version"));
+			buf.append(AbstractNode.class.getPackage().getImplementationVersion());
+
+			try {
+
+				final CodeSource codeSource = AbstractNode.class.getProtectionDomain().getCodeSource();
+				if (codeSource != null) {
+
+					paths.add(new File(codeSource.getLocation().toURI()).getAbsolutePath());
+				}
+
+			} catch (Throwable t) {
+				logger.debug("Unable to determine location of Structr classes", t);
+			}
+
+			for (final String path : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+
+				if (!path.isEmpty()) {
+					paths.add(new File(path).getAbsolutePath());
+				}
+			}
+
+			for (final String resource : Services.getInstance().getResources()) {
+				paths.add(new File(resource).getAbsolutePath());
+			}
+
+			for (final String path : paths) {
+
+				buf.append(path);
+				appendFingerprint(buf, new File(path));
+			}
+
+			currentEnvironment = DigestUtils.sha256Hex(buf.toString());
+		}
+
+		return currentEnvironment;
+	}
+
+	// ----- private methods -----
+	private File getFile(final String key) {
+
+		if (directory != null) {
+
+			return new File(directory, key + SUFFIX);
+		}
+
+		return null;
+	}
+
+	private static void appendFingerprint(final StringBuilder buf, final File file) {
+
+		if (file.isDirectory()) {
+
+			final File[] children = file.listFiles();
+			if (children != null) {
+
+				Arrays.sort(children);
+
+				for (final File child : children) {
+
+					buf.append(child.getName());
+					appendFingerprint(buf, child);
+				}
+			}
+
+		} else {
+
+			buf.append(file.lastModified());
+			buf.append(file.length());
+		}
+	}
+
+	// ----- nested classes -----
+	/**
+	 * The compiled classes of a single compilation unit.
+	 */
+	public static class Entry {
+
+		private final Map<String, String> dependencies = new LinkedHashMap<>();
+		private final Map<String, byte[]> classes      = new LinkedHashMap<>();
+		private String apiHash                         = null;
+		private String key                             = null;
+
+		public Entry(final String key) {
+			this.key = key;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		/**
+		 * Returns the API hash of the compiled classes of this entry.
+		 *
+		 * @return the API hash
+		 */
+		public String getApiHash() {
+			return apiHash;
+		}
+
+		public void setApiHash(final String apiHash) {
+			this.apiHash = apiHash;
+		}
+
+		/**
+		 * Returns the dynamic types this entry was compiled against,
+		 * mapped to the API hash they had at that time.
+		 *
+		 * @return the dependencies
+		 */
+		public Map<String, String> getDependencies() {
+			return dependencies;
+		}
+
+		public Map<String, byte[]> getClasses() {
+			return classes;
+		}
+
+		/**
+		 * Indicates whether the byte code of this entry can be used with
+		 * the given API hashes of the current dynamic types.
+		 *
+		 * @param apiHashes
+		 * @return whether this entry is still valid
+		 */
+		public boolean isValid(final Map<String, String> apiHashes) {
+
+			for (final Map.Entry<String, String> dependency : dependencies.entrySet()) {
+
+				if (!dependency.getValue().equals(apiHashes.get(dependency.getKey()))) {
+					return false;
+				}
+			}
+
+			return !classes.isEmpty();
+		}
+	}
+}
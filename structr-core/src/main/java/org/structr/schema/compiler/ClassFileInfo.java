@@ -0,0 +1,337 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.schema.compiler;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads the parts of a class file that are needed for incremental
+ * compilation: the super types, the types referenced in the constant pool
+ * and the API of the class, i.e. the signatures of all non-private
+ * members and the values of compile-time constants, which are inlined
+ * into the classes that use them.
+ */
+public class ClassFileInfo {
+
+	private static final int ACC_PUBLIC     = 0x0001;
+	private static final int ACC_PRIVATE    = 0x0002;
+	private static final int ACC_PROTECTED  = 0x0004;
+	private static final int ACC_STATIC     = 0x0008;
+	private static final int ACC_FINAL      = 0x0010;
+	private static final int ACC_VARARGS    = 0x0080;
+	private static final int ACC_INTERFACE  = 0x0200;
+	private static final int ACC_ABSTRACT   = 0x0400;
+	private static final int ACC_SYNTHETIC  = 0x1000;
+	private static final int ACC_ANNOTATION = 0x2000;
+	private static final int ACC_ENUM       = 0x4000;
+
+	private static final int CLASS_FLAGS    = ACC_PUBLIC | ACC_FINAL | ACC_INTERFACE | ACC_ABSTRACT | ACC_ANNOTATION | ACC_ENUM;
+	private static final int FIELD_FLAGS    = ACC_PUBLIC | ACC_PROTECTED | ACC_STATIC | ACC_FINAL | ACC_ENUM;
+	private static final int METHOD_FLAGS   = ACC_PUBLIC | ACC_PROTECTED | ACC_STATIC | ACC_FINAL | ACC_VARARGS | ACC_ABSTRACT;
+
+	private final List<String> superTypes = new ArrayList<>();
+	private final List<String> members    = new ArrayList<>();
+	private final List<String> strings    = new ArrayList<>();
+	private String name                   = null;
+	private String declaration            = null;
+
+	private ClassFileInfo() {}
+
+	/**
+	 * Reads the given class file.
+	 *
+	 * @param classFile the byte code
+	 * @return the class file info
+	 *
+	 * @throws IOException if the class file is invalid
+	 */
+	public static ClassFileInfo read(final byte[] classFile) throws IOException {
+
+		final ClassFileInfo info = new ClassFileInfo();
+
+		info.parse(classFile);
+
+		return info;
+	}
+
+	/**
+	 * Returns the binary name of the class.
+	 *
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the binary names of the super class and the interfaces.
+	 *
+	 * @return the super types
+	 */
+	public List<String> getSuperTypes() {
+		return superTypes;
+	}
+
+	/**
+	 * Returns a description of the API of this class, which changes when
+	 * a change of the class requires the classes that use it to be
+	 * recompiled. Private and synthetic members are not part of the API,
+	 * and neither is the order of the members.
+	 *
+	 * @return the API description
+	 */
+	public String getApi() {
+
+		final StringBuilder buf = new StringBuilder(declaration);
+
+		for (final String member : members) {
+
+			buf.append("\n");
+			buf.append(member);
+		}
+
+		return buf.toString();
+	}
+
+	/**
+	 * Returns the names of the types in the given package that are
+	 * referenced anywhere in the constant pool of this class.
+	 *
+	 * @param packageName the package
+	 * @return the simple names of the referenced top-level types
+	 */
+	public Set<String> getReferencedTypes(final String packageName) {
+
+		final String path       = packageName.replace('.', '/').concat("/");
+		final Set<String> types = new LinkedHashSet<>();
+
+		for (final String value : strings) {
+
+			int pos = value.indexOf(path);
+
+			while (pos >= 0) {
+
+				final int start = pos + path.length();
+				int end         = start;
+
+				while (end < value.length() && Character.isJavaIdentifierPart(value.charAt(end)) && value.charAt(end) != '$') {
+					end++;
+				}
+
+				if (end > start) {
+					types.add(value.substring(start, end));
+				}
+
+				pos = value.indexOf(path, end);
+			}
+		}
+
+		return types;
+	}
+
+	// ----- private methods -----
+	private void parse(final byte[] classFile) throws IOException {
+
+		try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile))) {
+
+			if (in.readInt() != 0xCAFEBABE) {
+				throw new IOException("Invalid class file");
+			}
+
+			// minor and major version
+			in.skipBytes(4);
+
+			final int count          = in.readUnsignedShort();
+			final Object[] constants = new Object[count];
+			final int[] references   = new int[count];
+
+			for (int i=1; i<count; i++) {
+
+				final int tag = in.readUnsignedByte();
+
+				switch (tag) {
+
+					case 1:		// Utf8
+						constants[i] = in.readUTF();
+						strings.add((String)constants[i]);
+						break;
+
+					case 3:		// Integer
+						constants[i] = in.readInt();
+						break;
+
+					case 4:		// Float
+						constants[i] = in.readFloat();
+						break;
+
+					case 5:		// Long
+						constants[i] = in.readLong();
+						i++;
+						break;
+
+					case 6:		// Double
+						constants[i] = in.readDouble();
+						i++;
+						break;
+
+					case 7:		// Class
+					case 8:		// String
+						references[i] = in.readUnsignedShort();
+						break;
+
+					case 16:	// MethodType
+					case 19:	// Module
+					case 20:	// Package
+						in.skipBytes(2);
+						break;
+
+					case 15:	// MethodHandle
+						in.skipBytes(3);
+						break;
+
+					case 9:		// Fieldref
+					case 10:	// Methodref
+					case 11:	// InterfaceMethodref
+					case 12:	// NameAndType
+					case 17:	// Dynamic
+					case 18:	// InvokeDynamic
+						in.skipBytes(4);
+						break;
+
+					default:
+						throw new IOException("Unknown constant pool entry " + tag);
+				}
+			}
+
+			final int access              = in.readUnsignedShort();
+			final String thisName         = getClassName(constants, references, in.readUnsignedShort());
+			final String superName        = getClassName(constants, references, in.readUnsignedShort());
+			final List<String> interfaces = new ArrayList<>();
+
+			if (superName != null) {
+				superTypes.add(superName);
+			}
+
+			final int interfaceCount = in.readUnsignedShort();
+			for (int i=0; i<interfaceCount; i++) {
+
+				interfaces.add(getClassName(constants, references, in.readUnsignedShort()));
+			}
+
+			superTypes.addAll(interfaces);
+
+			name = thisName;
+
+			readMembers(in, constants, references, "field", FIELD_FLAGS);
+			readMembers(in, constants, references, "method", METHOD_FLAGS);
+
+			final String signature = readAttributes(in, constants, references, null);
+
+			Collections.sort(interfaces);
+			Collections.sort(members);
+
+			declaration = "class " + (access & CLASS_FLAGS) + " " + thisName + " extends " + superName + " implements " + interfaces + (signature != null ? " " + signature : "");
+		}
+	}
+
+	private void readMembers(final DataInputStream in, final Object[] constants, final int[] references, final String kind, final int flags) throws IOException {
+
+		final int count = in.readUnsignedShort();
+
+		for (int i=0; i<count; i++) {
+
+			final int access          = in.readUnsignedShort();
+			final String memberName   = (String)constants[in.readUnsignedShort()];
+			final String descriptor   = (String)constants[in.readUnsignedShort()];
+			final StringBuilder extra = new StringBuilder();
+			final String signature    = readAttributes(in, constants, references, extra);
+
+			if ((access & (ACC_PRIVATE | ACC_SYNTHETIC)) == 0) {
+
+				members.add(kind + " " + (access & flags) + " " + memberName + " " + descriptor + (signature != null ? " " + signature : "") + extra);
+			}
+		}
+	}
+
+	/**
+	 * Reads the attributes of a class or member, appends the constant
+	 * value and the declared exceptions to the given buffer and returns
+	 * the generic signature, if present.
+	 */
+	private String readAttributes(final DataInputStream in, final Object[] constants, final int[] references, final StringBuilder extra) throws IOException {
+
+		final int count  = in.readUnsignedShort();
+		String signature = null;
+
+		for (int i=0; i<count; i++) {
+
+			final String attributeName = (String)constants[in.readUnsignedShort()];
+			final int length           = in.readInt();
+
+			if ("Signature".equals(attributeName)) {
+
+				signature = (String)constants[in.readUnsignedShort()];
+
+			} else if ("ConstantValue".equals(attributeName) && extra != null) {
+
+				final int index    = in.readUnsignedShort();
+				final Object value = references[index] > 0 ? constants[references[index]] : constants[index];
+
+				extra.append(" = ");
+				extra.append(value);
+
+			} else if ("Exceptions".equals(attributeName) && extra != null) {
+
+				final List<String> exceptions = new ArrayList<>();
+				final int exceptionCount      = in.readUnsignedShort();
+
+				for (int j=0; j<exceptionCount; j++) {
+					exceptions.add(getClassName(constants, references, in.readUnsignedShort()));
+				}
+
+				Collections.sort(exceptions);
+
+				extra.append(" throws ");
+				extra.append(exceptions);
+
+			} else {
+
+				in.skipBytes(length);
+			}
+		}
+
+		return signature;
+	}
+
+	private String getClassName(final Object[] constants, final int[] references, final int index) {
+
+		if (index == 0) {
+			return null;
+		}
+
+		return ((String)constants[references[index]]).replace('/', '.');
+	}
+}
@@ -20,19 +20,24 @@ package org.structr.schema.compiler;
 
 import java.io.IOException;
 import java.security.SecureClassLoader;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.tools.FileObject;
 import javax.tools.ForwardingJavaFileManager;
 import javax.tools.JavaFileObject;
 import javax.tools.JavaFileObject.Kind;
 import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
 
 /**
  *
  *
  */
-public class ClassFileManager extends ForwardingJavaFileManager {
+public class ClassFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
 
 	/**
 	 * Instance of JavaClassObject that will store the compiled byte code of
@@ -40,6 +45,14 @@ public class ClassFileManager extends ForwardingJavaFileManager {
 	 */
 	private final Map<String, JavaClassObject> objects = new LinkedHashMap<>();
 
+	/**
+	 * Already compiled classes that are visible to the compiler, and the
+	 * classes written by the compiler in the current task.
+	 */
+	private final Map<String, JavaClassObject> classPath = new LinkedHashMap<>();
+	private final Map<String, JavaClassObject> output    = new LinkedHashMap<>();
+	private String classPathPackage                      = null;
+
 	/**
 	 * Will initialize the manager with the specified standard java file
 	 * manager
@@ -94,7 +107,69 @@ public class ClassFileManager extends ForwardingJavaFileManager {
 		JavaClassObject obj = new JavaClassObject(className, kind);
 		
 		objects.put(className, obj);
+		output.put(className, obj);
 		
 		return obj;
 	}
+
+	/**
+	 * Makes the given compiled classes of the given package visible to
+	 * the next compilation task and to the class loaders returned by
+	 * this manager, and resets the output of the previous task.
+	 *
+	 * @param packageName
+	 * @param classes
+	 */
+	public void prepare(final String packageName, final Collection<JavaClassObject> classes) {
+
+		classPathPackage = packageName;
+
+		classPath.clear();
+		output.clear();
+
+		for (final JavaClassObject obj : classes) {
+
+			classPath.put(obj.getBinaryName(), obj);
+			objects.put(obj.getBinaryName(), obj);
+		}
+	}
+
+	/**
+	 * Returns the classes that were written by the compiler since the
+	 * last call to prepare().
+	 *
+	 * @return the compiled classes
+	 */
+	public Map<String, JavaClassObject> getOutput() {
+		return output;
+	}
+
+	@Override
+	public Iterable<JavaFileObject> list(final Location location, final String packageName, final Set<Kind> kinds, final boolean recurse) throws IOException {
+
+		final Iterable<JavaFileObject> files = super.list(location, packageName, kinds, recurse);
+
+		if (StandardLocation.CLASS_PATH.equals(location) && packageName.equals(classPathPackage) && kinds.contains(Kind.CLASS) && !classPath.isEmpty()) {
+
+			final List<JavaFileObject> result = new ArrayList<>(classPath.values());
+
+			for (final JavaFileObject file : files) {
+				result.add(file);
+			}
+
+			return result;
+		}
+
+		return files;
+	}
+
+	@Override
+	public String inferBinaryName(final Location location, final JavaFileObject file) {
+
+		if (file instanceof JavaClassObject) {
+			return ((JavaClassObject)file).getBinaryName();
+		}
+
+		return super.inferBinaryName(location, file);
+	}
 }
\ No newline at end of file
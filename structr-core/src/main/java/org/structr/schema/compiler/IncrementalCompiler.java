@@ -0,0 +1,482 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.schema.compiler;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.tools.Diagnostic;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.error.DiagnosticErrorToken;
+import org.structr.common.error.ErrorBuffer;
+
+/**
+ * Compiles the compilation units of a package incrementally. A unit is
+ * passed to the compiler when its source changed, or when the API of one
+ * of the units it was compiled against changed. All other units are taken
+ * from the previous compilation or from the byte code cache.
+ *
+ * The API hash of a unit is calculated from the signatures of its
+ * compiled classes and the API hashes of its super types, so a change to
+ * a method body does not cause the units that use it to be recompiled.
+ * The API of a recompiled unit is only known after compilation, so the
+ * units whose dependencies changed their API are compiled in further
+ * rounds until no API changes anymore.
+ */
+public class IncrementalCompiler {
+
+	private static final Logger logger            = LoggerFactory.getLogger(IncrementalCompiler.class.getName());
+	private static final Pattern identifierPattern = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+
+	private final Map<String, BytecodeCache.Entry> units = new LinkedHashMap<>();
+	private final Set<String> compiledUnits              = new LinkedHashSet<>();
+	private JavaCompiler compiler                        = null;
+	private ClassFileManager fileManager                 = null;
+	private String packageName                           = null;
+	private String prefix                                = null;
+
+	public IncrementalCompiler(final String packageName) {
+
+		this.compiler    = ToolProvider.getSystemJavaCompiler();
+		this.fileManager = new ClassFileManager(compiler.getStandardFileManager(null, null, null));
+		this.packageName = packageName;
+		this.prefix      = packageName.concat(".");
+	}
+
+	/**
+	 * Returns a class loader for the classes of the last compilation.
+	 *
+	 * @return the class loader
+	 */
+	public ClassLoader getClassLoader() {
+		return fileManager.getClassLoader(null);
+	}
+
+	/**
+	 * Returns the names of the compilation units that were passed to the
+	 * compiler in the last call to compile().
+	 *
+	 * @return the compiled units
+	 */
+	public Set<String> getCompiledUnits() {
+		return compiledUnits;
+	}
+
+	/**
+	 * Compiles the given sources and loads their top-level classes. If the
+	 * classes can not be loaded together with the reused byte code, all
+	 * sources are compiled again.
+	 *
+	 * @param sources the source code of each compilation unit, by simple class name
+	 * @param errorBuffer the error buffer for compilation errors
+	 * @param cache the byte code cache
+	 *
+	 * @return the loaded classes, or null if the sources could not be compiled
+	 */
+	public Map<String, Class> compile(final Map<String, String> sources, final ErrorBuffer errorBuffer, final BytecodeCache cache) {
+
+		final Map<String, BytecodeCache.Entry> result = compile(sources, errorBuffer, cache, false);
+		if (result == null) {
+
+			return null;
+		}
+
+		Map<String, Class> classes = load(sources);
+		if (classes == null && compiledUnits.size() < sources.size()) {
+
+			logger.info("Unable to load incrementally compiled classes, compiling all units.");
+
+			if (compile(sources, errorBuffer, cache, true) == null) {
+				return null;
+			}
+
+			classes = load(sources);
+		}
+
+		if (classes != null) {
+
+			// store compiled units, remove outdated ones
+			for (final String className : compiledUnits) {
+				cache.store(units.get(className));
+			}
+
+			cache.retain(units.values().stream().map(BytecodeCache.Entry::getKey).collect(Collectors.toSet()));
+		}
+
+		return classes;
+	}
+
+	// ----- private methods -----
+	private Map<String, BytecodeCache.Entry> compile(final Map<String, String> sources, final ErrorBuffer errorBuffer, final BytecodeCache cache, final boolean full) {
+
+		final Map<String, BytecodeCache.Entry> result = new LinkedHashMap<>();
+		final Map<String, Set<String>> dependencies   = getDependencies(sources);
+		final Set<String> pending                     = new LinkedHashSet<>();
+		int rounds                                    = 0;
+
+		compiledUnits.clear();
+
+		for (final Entry<String, String> entry : sources.entrySet()) {
+
+			final String className = entry.getKey();
+			final String key       = cache.getKey(entry.getValue());
+
+			BytecodeCache.Entry unit = full ? null : units.get(className);
+
+			if (unit == null || !key.equals(unit.getKey())) {
+				unit = full ? null : cache.load(key);
+			}
+
+			if (unit != null && !unit.getClasses().isEmpty() && unit.getApiHash() != null) {
+
+				result.put(className, unit);
+
+			} else {
+
+				pending.add(className);
+			}
+		}
+
+		while (!pending.isEmpty()) {
+
+			// each round recompiles units whose dependencies changed their API,
+			// which can only happen as often as there are units
+			if (++rounds > sources.size()) {
+
+				logger.warn("Incremental compilation did not converge, compiling all units.");
+				return full ? null : compile(sources, errorBuffer, cache, true);
+			}
+
+			final List<CharSequenceJavaFileObject> jfiles = new ArrayList<>();
+			final List<JavaClassObject> reused            = new ArrayList<>();
+
+			for (final String className : pending) {
+
+				result.remove(className);
+				jfiles.add(new CharSequenceJavaFileObject(className, sources.get(className)));
+			}
+
+			for (final BytecodeCache.Entry unit : result.values()) {
+
+				for (final Entry<String, byte[]> compiled : unit.getClasses().entrySet()) {
+					reused.add(new JavaClassObject(compiled.getKey(), compiled.getValue()));
+				}
+			}
+
+			fileManager.prepare(packageName, reused);
+
+			logger.debug("Compiling {} of {} units in round {}...", jfiles.size(), sources.size(), rounds);
+
+			if (!compiler.getTask(new StringWriter(), fileManager, new Listener(errorBuffer), null, null, jfiles).call()) {
+
+				// compilation errors are reported to the error buffer
+				return null;
+			}
+
+			final Map<String, BytecodeCache.Entry> compiled = new LinkedHashMap<>();
+
+			// collect output
+			for (final JavaClassObject obj : fileManager.getOutput().values()) {
+
+				final String className = getCompilationUnitName(obj.getBinaryName());
+				final String source    = sources.get(className);
+
+				if (source != null) {
+
+					BytecodeCache.Entry unit = compiled.get(className);
+					if (unit == null) {
+
+						unit = new BytecodeCache.Entry(cache.getKey(source));
+						compiled.put(className, unit);
+					}
+
+					unit.getClasses().put(obj.getBinaryName(), obj.getBytes());
+				}
+			}
+
+			result.putAll(compiled);
+			compiledUnits.addAll(pending);
+
+			final Map<String, ClassFileInfo> infos = new LinkedHashMap<>();
+
+			try {
+
+				for (final Entry<String, BytecodeCache.Entry> entry : compiled.entrySet()) {
+
+					for (final Entry<String, byte[]> classFile : entry.getValue().getClasses().entrySet()) {
+						infos.put(classFile.getKey(), ClassFileInfo.read(classFile.getValue()));
+					}
+				}
+
+			} catch (IOException ioex) {
+
+				logger.warn("Unable to read compiled class: {}", ioex.getMessage());
+				return full ? null : compile(sources, errorBuffer, cache, true);
+			}
+
+			// API hashes of the new units
+			for (final String className : compiled.keySet()) {
+				getApiHash(className, result, infos, new LinkedHashSet<>());
+			}
+
+			// dependencies of the new units, from the source code and from
+			// the byte code, which can reference types that are not mentioned
+			for (final Entry<String, BytecodeCache.Entry> entry : compiled.entrySet()) {
+
+				final String className         = entry.getKey();
+				final BytecodeCache.Entry unit = entry.getValue();
+				final Set<String> referenced   = new TreeSet<>(dependencies.get(className));
+
+				for (final String binaryName : unit.getClasses().keySet()) {
+					referenced.addAll(infos.get(binaryName).getReferencedTypes(packageName));
+				}
+
+				referenced.remove(className);
+
+				for (final String dependency : referenced) {
+
+					final BytecodeCache.Entry dependencyUnit = result.get(dependency);
+					if (dependencyUnit != null) {
+
+						unit.getDependencies().put(dependency, dependencyUnit.getApiHash());
+					}
+				}
+			}
+
+			pending.clear();
+
+			// units that were compiled against a different API
+			for (final Entry<String, BytecodeCache.Entry> entry : result.entrySet()) {
+
+				if (!isValid(entry.getValue(), result)) {
+					pending.add(entry.getKey());
+				}
+			}
+		}
+
+		final List<JavaClassObject> classes = new ArrayList<>();
+
+		for (final BytecodeCache.Entry unit : result.values()) {
+
+			for (final Entry<String, byte[]> compiled : unit.getClasses().entrySet()) {
+				classes.add(new JavaClassObject(compiled.getKey(), compiled.getValue()));
+			}
+		}
+
+		// make the classes of all units available to the class loader
+		fileManager.prepare(packageName, classes);
+
+		units.clear();
+		units.putAll(result);
+
+		return result;
+	}
+
+	private Map<String, Class> load(final Map<String, String> sources) {
+
+		final Map<String, Class> classes = new LinkedHashMap<>();
+		final ClassLoader loader         = fileManager.getClassLoader(null);
+
+		for (final String className : sources.keySet()) {
+
+			final String fqcn = prefix.concat(className);
+
+			try {
+
+				classes.put(fqcn, loader.loadClass(fqcn));
+
+			} catch (Throwable t) {
+
+				logger.warn("Unable to load class {}: {}", new Object[] { fqcn, t.toString() });
+				logger.warn("", t);
+
+				return null;
+			}
+		}
+
+		return classes;
+	}
+
+	private boolean isValid(final BytecodeCache.Entry unit, final Map<String, BytecodeCache.Entry> result) {
+
+		for (final Entry<String, String> dependency : unit.getDependencies().entrySet()) {
+
+			final BytecodeCache.Entry dependencyUnit = result.get(dependency.getKey());
+
+			if (dependencyUnit == null || !dependency.getValue().equals(dependencyUnit.getApiHash())) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Calculates the API hash of a newly compiled unit from the API of
+	 * its classes and the API hashes of its super types, because the
+	 * inherited members are part of the API of a type as well.
+	 */
+	private String getApiHash(final String className, final Map<String, BytecodeCache.Entry> result, final Map<String, ClassFileInfo> infos, final Set<String> visited) {
+
+		final BytecodeCache.Entry unit = result.get(className);
+		if (unit == null) {
+
+			return "";
+		}
+
+		if (unit.getApiHash() == null && visited.add(className)) {
+
+			final Set<String> apis       = new TreeSet<>();
+			final Set<String> superTypes = new TreeSet<>();
+
+			for (final String binaryName : unit.getClasses().keySet()) {
+
+				// anonymous and local classes are not part of the API
+				if (!isAnonymousOrLocal(binaryName)) {
+
+					final ClassFileInfo info = infos.get(binaryName);
+
+					apis.add(info.getApi());
+
+					for (final String superType : info.getSuperTypes()) {
+
+						if (superType.startsWith(prefix)) {
+							superTypes.add(getCompilationUnitName(superType));
+						}
+					}
+				}
+			}
+
+			superTypes.remove(className);
+
+			final StringBuilder buf = new StringBuilder();
+
+			for (final String api : apis) {
+				buf.append(api);
+			}
+
+			for (final String superType : superTypes) {
+
+				buf.append(superType);
+				buf.append(getApiHash(superType, result, infos, visited));
+			}
+
+			unit.setApiHash(DigestUtils.sha256Hex(buf.toString()));
+		}
+
+		return StringUtils.defaultString(unit.getApiHash());
+	}
+
+	/**
+	 * Returns the units of the package that each compilation unit
+	 * references in its source code.
+	 */
+	private Map<String, Set<String>> getDependencies(final Map<String, String> sources) {
+
+		final Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+
+		for (final Entry<String, String> entry : sources.entrySet()) {
+
+			final String className       = entry.getKey();
+			final Set<String> referenced = new TreeSet<>();
+			final Matcher matcher        = identifierPattern.matcher(entry.getValue());
+
+			while (matcher.find()) {
+
+				final String identifier = matcher.group();
+
+				if (!identifier.equals(className) && sources.containsKey(identifier)) {
+					referenced.add(identifier);
+				}
+			}
+
+			dependencies.put(className, referenced);
+		}
+
+		return dependencies;
+	}
+
+	private String getCompilationUnitName(final String binaryName) {
+
+		String name = StringUtils.removeStart(binaryName, prefix);
+
+		final int pos = name.indexOf("$");
+		if (pos > 0) {
+
+			name = name.substring(0, pos);
+		}
+
+		return name;
+	}
+
+	private boolean isAnonymousOrLocal(final String binaryName) {
+
+		final int pos = binaryName.lastIndexOf("$");
+
+		return pos > 0 && pos < binaryName.length() - 1 && Character.isDigit(binaryName.charAt(pos + 1));
+	}
+
+	// ----- nested classes -----
+	private static class Listener implements DiagnosticListener<JavaFileObject> {
+
+		private ErrorBuffer errorBuffer = null;
+
+		public Listener(final ErrorBuffer errorBuffer) {
+			this.errorBuffer = errorBuffer;
+		}
+
+		@Override
+		public void report(Diagnostic<? extends JavaFileObject> diagnostic) {
+
+			if (diagnostic.getKind().equals(Kind.ERROR)) {
+
+				final JavaFileObject obj = diagnostic.getSource();
+				String name              = "unknown";
+
+				if (obj != null && obj instanceof CharSequenceJavaFileObject) {
+					name = ((CharSequenceJavaFileObject)obj).getClassName();
+				}
+
+				errorBuffer.add(new DiagnosticErrorToken(name, diagnostic));
+
+				// log also to log file
+				logger.warn("Unable to compile dynamic entity {}: {}", new Object[] { name, diagnostic.getMessage(Locale.ENGLISH) });
+			}
+		}
+	}
+}
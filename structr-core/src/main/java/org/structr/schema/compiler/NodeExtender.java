@@ -18,29 +18,12 @@
  */
 package org.structr.schema.compiler;
 
-import java.io.StringWriter;
-import java.io.Writer;
-import java.util.ArrayList;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeMap;
-import java.util.stream.Collectors;
-import javax.tools.Diagnostic;
-import javax.tools.Diagnostic.Kind;
-import javax.tools.DiagnosticListener;
-import javax.tools.JavaCompiler;
-import javax.tools.JavaFileManager;
-import javax.tools.JavaFileObject;
-import javax.tools.ToolProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.config.Settings;
-import org.structr.common.error.DiagnosticErrorToken;
 import org.structr.common.error.ErrorBuffer;
 import org.structr.core.Services;
 import org.structr.core.app.StructrApp;
@@ -55,19 +38,16 @@ public class NodeExtender {
 
 	private static final Logger logger   = LoggerFactory.getLogger(NodeExtender.class.getName());
 
-	private static final JavaCompiler compiler       = ToolProvider.getSystemJavaCompiler();
-	private static final JavaFileManager fileManager = new ClassFileManager(compiler.getStandardFileManager(null, null, null));
-	private static final ClassLoader classLoader     = fileManager.getClassLoader(null);
-	private static final Map<String, Class> classes  = new TreeMap<>();
+	private static final IncrementalCompiler compiler = new IncrementalCompiler(JarConfigurationProvider.DYNAMIC_TYPES_PACKAGE);
+	private static final ClassLoader classLoader      = compiler.getClassLoader();
+	private static final Map<String, Class> classes   = new TreeMap<>();
 
-	private List<JavaFileObject> jfiles  = null;
-	private Set<String> fqcns            = null;
+	private Map<String, String> sources  = null;
 	private String initiatedBySessionId  = null;
 
 	public NodeExtender() {
 
-		jfiles      = new ArrayList<>();
-		fqcns       = new LinkedHashSet<>();
+		sources = new LinkedHashMap<>();
 	}
 
 	public static ClassLoader getClassLoader() {
@@ -86,10 +66,7 @@ public class NodeExtender {
 
 		if (className != null && content != null) {
 
-			final String packageName = JarConfigurationProvider.DYNAMIC_TYPES_PACKAGE;
-
-			jfiles.add(new CharSequenceJavaFileObject(className, content));
-			fqcns.add(packageName.concat(".".concat(className)));
+			sources.put(className, content);
 
 			if (Settings.LogSchemaOutput.getValue()) {
 
@@ -99,37 +76,24 @@ public class NodeExtender {
 		}
 	}
 
+	/**
+	 * Compiles the added sources. Only the compilation units whose
+	 * source changed, or that depend on a type whose API changed, are
+	 * passed to the compiler, all other units are taken from the byte
+	 * code cache.
+	 *
+	 * @param errorBuffer
+	 * @return the dynamic classes
+	 * @throws ClassNotFoundException
+	 */
 	public synchronized Map<String, Class> compile(final ErrorBuffer errorBuffer) throws ClassNotFoundException {
 
-		final Writer errorWriter     = new StringWriter();
-		final List<Class> newClasses = new LinkedList<>();
-
-		if (!jfiles.isEmpty()) {
-
-			logger.debug("Compiling {} dynamic entities...", jfiles.size());
-
-			Boolean success = compiler.getTask(errorWriter, fileManager, new Listener(errorBuffer), null, null, jfiles).call();
-
-			if (success) {
-
-				final ClassLoader loader = fileManager.getClassLoader(null);
-
-				for (final String fqcn : fqcns) {
-
-					try {
-
-						newClasses.add(loader.loadClass(fqcn));
+		if (!sources.isEmpty()) {
 
-					} catch (Throwable t) {
+			synchronized (NodeExtender.class) {
 
-						logger.warn("Unable to load dynamic entity {}: {}", new Object[] { fqcn, t.toString() });
-						logger.warn("", t);
-
-						success = false;
-					}
-				}
-
-				if (success) {
+				final Map<String, Class> newClasses = compiler.compile(sources, errorBuffer, BytecodeCache.fromSettings());
+				if (newClasses != null) {
 
 					for (final Class oldType : classes.values()) {
 						StructrApp.getConfiguration().unregisterEntityType(oldType);
@@ -139,22 +103,24 @@ public class NodeExtender {
 					classes.clear();
 
 					// add new classes to map
-					for (final Class newType : newClasses) {
-						classes.put(newType.getName(), newType);
-					}
+					classes.putAll(newClasses);
 
-					logger.info("Successfully compiled {} dynamic entities: {}", new Object[] { jfiles.size(), jfiles.stream().map(f -> f.getName().replaceFirst("/", "")).collect(Collectors.joining(", ")) });
+					if (compiler.getCompiledUnits().isEmpty()) {
+
+						logger.info("Loaded {} dynamic entities from cache", sources.size());
+
+					} else {
+
+						logger.info("Successfully compiled {} of {} dynamic entities: {}", new Object[] { compiler.getCompiledUnits().size(), sources.size(), String.join(", ", compiler.getCompiledUnits()) });
+					}
 
 					final Map<String, Object> data = new LinkedHashMap();
 					data.put("success", true);
 					TransactionCommand.simpleBroadcast("SCHEMA_COMPILED", data, getInitiatedBySessionId());
 
 					Services.getInstance().setOverridingSchemaTypesAllowed(false);
-
 				}
-
 			}
-
 		}
 
 		return classes;
@@ -167,32 +133,4 @@ public class NodeExtender {
 	public void setInitiatedBySessionId (final String initiatedBySessionId) {
 		this.initiatedBySessionId = initiatedBySessionId;
 	}
-
-	private static class Listener implements DiagnosticListener<JavaFileObject> {
-
-		private ErrorBuffer errorBuffer = null;
-
-		public Listener(final ErrorBuffer errorBuffer) {
-			this.errorBuffer = errorBuffer;
-}
-
-		@Override
-		public void report(Diagnostic<? extends JavaFileObject> diagnostic) {
-
-			if (diagnostic.getKind().equals(Kind.ERROR)) {
-
-				final JavaFileObject obj = diagnostic.getSource();
-				String name        = "unknown";
-
-				if (obj != null && obj instanceof CharSequenceJavaFileObject) {
-					name = ((CharSequenceJavaFileObject)obj).getClassName();
-				}
-
-				errorBuffer.add(new DiagnosticErrorToken(name, diagnostic));
-
-				// log also to log file
-				logger.warn("Unable to compile dynamic entity {}: {}", new Object[] { name, diagnostic.getMessage(Locale.ENGLISH) });
-			}
-		}
-	}
 }
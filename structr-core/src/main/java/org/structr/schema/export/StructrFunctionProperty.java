@@ -33,9 +33,10 @@ import org.structr.schema.json.JsonSchema;
  */
 public class StructrFunctionProperty extends StructrStringProperty implements JsonFunctionProperty {
 
-	protected String readFunction  = null;
-	protected String writeFunction = null;
-	protected String contentType   = null;
+	protected String readFunction    = null;
+	protected String writeFunction   = null;
+	protected String contentType     = null;
+	protected boolean cachingEnabled = false;
 
 	public StructrFunctionProperty(final StructrTypeDefinition parent, final String name) {
 
@@ -71,6 +72,18 @@ public class StructrFunctionProperty extends StructrStringProperty implements Js
 		return writeFunction;
 	}
 
+	@Override
+	public JsonFunctionProperty setCachingEnabled(final boolean cachingEnabled) {
+
+		this.cachingEnabled = cachingEnabled;
+		return this;
+	}
+
+	@Override
+	public boolean isCachingEnabled() {
+		return cachingEnabled;
+	}
+
 	@Override
 	public JsonFunctionProperty setContentType(String contentType) {
 
@@ -96,6 +109,10 @@ public class StructrFunctionProperty extends StructrStringProperty implements Js
 			map.put(JsonSchema.KEY_WRITE_FUNCTION, writeFunction);
 		}
 
+		if (cachingEnabled) {
+			map.put(JsonSchema.KEY_CACHING_ENABLED, true);
+		}
+
 		return map;
 	}
 
@@ -130,6 +147,19 @@ public class StructrFunctionProperty extends StructrStringProperty implements Js
 			}
 		}
 
+		final Object cachingEnabledValue = source.get(JsonSchema.KEY_CACHING_ENABLED);
+		if (cachingEnabledValue != null) {
+
+			if (cachingEnabledValue instanceof Boolean) {
+
+				this.cachingEnabled = (Boolean)cachingEnabledValue;
+
+			} else {
+
+				throw new IllegalStateException("Invalid cachingEnabled for property " + name + ", expected boolean.");
+			}
+		}
+
 		final Object contentTypeValue = source.get(JsonSchema.KEY_CONTENT_TYPE);
 		if (contentTypeValue != null) {
 
@@ -152,6 +182,7 @@ public class StructrFunctionProperty extends StructrStringProperty implements Js
 
 		setReadFunction(property.getReadFunction());
 		setWriteFunction(property.getWriteFunction());
+		setCachingEnabled(property.isCachingEnabled());
 		setContentType(property.getSourceContentType());
 	}
 
@@ -183,6 +214,7 @@ public class StructrFunctionProperty extends StructrStringProperty implements Js
 
 		property.setProperty(SchemaProperty.readFunction,  readFunction);
 		property.setProperty(SchemaProperty.writeFunction, writeFunction);
+		property.setProperty(SchemaProperty.cachingEnabled, cachingEnabled);
 
 		return property;
 	}
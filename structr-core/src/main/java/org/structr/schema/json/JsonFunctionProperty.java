@@ -30,6 +30,9 @@ public interface JsonFunctionProperty extends JsonStringProperty {
 	public JsonFunctionProperty setWriteFunction(final String writeFunction);
 	public String getWriteFunction();
 
+	public JsonFunctionProperty setCachingEnabled(final boolean cachingEnabled);
+	public boolean isCachingEnabled();
+
 	@Override
 	public JsonFunctionProperty setContentType(final String contentType);
 	@Override
@@ -18,6 +18,7 @@
  */
 package org.structr.schema.parser;
 
+import org.apache.commons.lang3.StringUtils;
 import org.structr.common.error.ErrorBuffer;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.error.InvalidPropertySchemaToken;
@@ -72,6 +73,28 @@ public class CountPropertyParser extends PropertySourceGenerator {
 //			return;
 		}
 
-		auxType = ", " + expression + "Property";
+		// optional strategy: "property, database" or "property, materialized"
+		final String[] parts = expression.split("[, ]+");
+		final String property = parts[0].trim();
+
+		if (parts.length > 1) {
+
+			final String strategy = StringUtils.capitalize(parts[1].trim().toLowerCase());
+
+			try {
+
+				ElementCounter.Strategy.valueOf(strategy);
+
+			} catch (IllegalArgumentException iex) {
+
+				throw new FrameworkException(422, "Invalid count property expression.", new InvalidPropertySchemaToken(SchemaNode.class.getSimpleName(), expression, "invalid_count_strategy", "Unknown count strategy " + parts[1] + ", expected one of instantiate, database or materialized."));
+			}
+
+			auxType = ", " + property + "Property, ElementCounter.Strategy." + strategy;
+
+		} else {
+
+			auxType = ", " + property + "Property";
+		}
 	}
 }
@@ -55,6 +55,11 @@ public class FunctionPropertyParser extends PropertySourceGenerator {
 
 	@Override
 	public String getPropertyParameters() {
+
+		if (source.isCachingEnabled()) {
+			return ", true";
+		}
+
 		return "";
 	}
 
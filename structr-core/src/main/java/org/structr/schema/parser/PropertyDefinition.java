@@ -40,4 +40,5 @@ public interface PropertyDefinition {
 	public String getContentType();
 	public String getReadFunction();
 	public String getWriteFunction();
+	public boolean isCachingEnabled();
 }
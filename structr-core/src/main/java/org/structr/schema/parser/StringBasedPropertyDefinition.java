@@ -177,6 +177,11 @@ public class StringBasedPropertyDefinition implements PropertyDefinition {
 		return writeFunction;
 	}
 
+	@Override
+	public boolean isCachingEnabled() {
+		return false;
+	}
+
 	public static String substringBetween(final String source, final String prefix, final String suffix) {
 
 		final int pos1 = source.indexOf(prefix);
@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.agent;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class TaskJournalTest {
+
+	private File directory = null;
+	private File file      = null;
+
+	@Before
+	public void createDirectory() throws IOException {
+
+		directory = Files.createTempDirectory("structr-journal").toFile();
+		file      = new File(directory, "tasks.journal");
+	}
+
+	@After
+	public void deleteDirectory() {
+
+		for (final File child : directory.listFiles()) {
+			child.delete();
+		}
+
+		directory.delete();
+	}
+
+	@Test
+	public void test01RestoreUnfinishedTasks() throws IOException {
+
+		final TaskJournal journal = new TaskJournal(file);
+
+		assertEquals("New journal should be empty", 0, journal.open().size());
+
+		final long first = journal.add(new TestTask("first"));
+		journal.add(new TestTask("second\twith\nspecial characters"));
+		journal.add(new TestTask("third"));
+
+		journal.remove(first);
+		journal.close();
+
+		final Map<Long, Task> restored = new TaskJournal(file).open();
+		final List<String> states      = new ArrayList<>();
+
+		for (final Task task : restored.values()) {
+			states.add(((TestTask)task).getPersistentState());
+		}
+
+		assertEquals("Invalid number of restored tasks", 2, restored.size());
+		assertEquals("Invalid restored task", "second\twith\nspecial characters", states.get(0));
+		assertEquals("Invalid restored task", "third", states.get(1));
+	}
+
+	@Test
+	public void test02IgnoreIncompleteEntries() throws IOException {
+
+		final TaskJournal journal = new TaskJournal(file);
+
+		journal.open();
+		journal.add(new TestTask("complete"));
+		journal.close();
+
+		// simulate a crash while writing the last entry
+		try (final FileWriter writer = new FileWriter(file, true)) {
+			writer.write("+17");
+		}
+
+		final TaskJournal reopened = new TaskJournal(file);
+
+		assertEquals("Incomplete entry should be ignored", 1, reopened.open().size());
+		assertEquals("Journal should be compacted after opening", 1, Files.readAllLines(file.toPath()).size());
+
+		reopened.close();
+	}
+
+	// ----- nested classes -----
+	public static class TestTask extends AbstractTask<String> implements PersistentTask<String> {
+
+		public TestTask(final String state) {
+			super("TestTask", null, state);
+		}
+
+		@Override
+		public String getPersistentState() {
+			return getWorkObjects().get(0);
+		}
+	}
+}
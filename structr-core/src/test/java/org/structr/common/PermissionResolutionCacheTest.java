@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class PermissionResolutionCacheTest {
+
+	@Before
+	public void clearCache() {
+		PermissionResolutionCache.clear();
+	}
+
+	@Test
+	public void test01StoreAndRetrieve() {
+
+		assertNull("Empty cache should not contain a result", PermissionResolutionCache.get(1L, 100L, Permission.read));
+
+		PermissionResolutionCache.put(1L, 100L, Permission.read, true, PermissionResolutionCache.getGeneration(100L));
+		PermissionResolutionCache.put(1L, 100L, Permission.write, false, PermissionResolutionCache.getGeneration(100L));
+
+		assertEquals("Invalid cached result", Boolean.TRUE,  PermissionResolutionCache.get(1L, 100L, Permission.read));
+		assertEquals("Invalid cached result", Boolean.FALSE, PermissionResolutionCache.get(1L, 100L, Permission.write));
+		assertNull("Unresolved permission should not have a result", PermissionResolutionCache.get(1L, 100L, Permission.delete));
+		assertNull("Result of other principal should not be visible", PermissionResolutionCache.get(1L, 101L, Permission.read));
+
+		// a positive result is never overwritten by a negative one
+		PermissionResolutionCache.put(1L, 100L, Permission.read, false, PermissionResolutionCache.getGeneration(100L));
+		assertEquals("Positive result was overwritten", Boolean.TRUE, PermissionResolutionCache.get(1L, 100L, Permission.read));
+	}
+
+	@Test
+	public void test02InvalidatePrincipal() {
+
+		PermissionResolutionCache.put(1L, 100L, Permission.read, true, PermissionResolutionCache.getGeneration(100L));
+		PermissionResolutionCache.put(2L, 100L, Permission.read, true, PermissionResolutionCache.getGeneration(100L));
+		PermissionResolutionCache.put(1L, 101L, Permission.read, true, PermissionResolutionCache.getGeneration(101L));
+
+		PermissionResolutionCache.invalidatePrincipal(100L);
+
+		assertNull("Result of invalidated principal still cached", PermissionResolutionCache.get(1L, 100L, Permission.read));
+		assertNull("Result of invalidated principal still cached", PermissionResolutionCache.get(2L, 100L, Permission.read));
+		assertEquals("Result of other principal was removed", Boolean.TRUE, PermissionResolutionCache.get(1L, 101L, Permission.read));
+	}
+
+	@Test
+	public void test03InvalidateNode() {
+
+		PermissionResolutionCache.put(1L, 100L, Permission.read, true, PermissionResolutionCache.getGeneration(100L));
+		PermissionResolutionCache.put(2L, 100L, Permission.read, true, PermissionResolutionCache.getGeneration(100L));
+
+		PermissionResolutionCache.invalidateNode(1L);
+
+		assertNull("Result of invalidated node still cached", PermissionResolutionCache.get(1L, 100L, Permission.read));
+		assertEquals("Result of other node was removed", Boolean.TRUE, PermissionResolutionCache.get(2L, 100L, Permission.read));
+	}
+
+	@Test
+	public void test04InvalidateAll() {
+
+		PermissionResolutionCache.put(1L, 100L, Permission.read, true, PermissionResolutionCache.getGeneration(100L));
+		PermissionResolutionCache.put(2L, 101L, Permission.read, true, PermissionResolutionCache.getGeneration(101L));
+
+		PermissionResolutionCache.invalidate();
+
+		assertNull("Result still cached after invalidation", PermissionResolutionCache.get(1L, 100L, Permission.read));
+		assertNull("Result still cached after invalidation", PermissionResolutionCache.get(2L, 101L, Permission.read));
+
+		// results of the current generation are stored again
+		PermissionResolutionCache.put(1L, 100L, Permission.read, false, PermissionResolutionCache.getGeneration(100L));
+		assertEquals("Invalid cached result", Boolean.FALSE, PermissionResolutionCache.get(1L, 100L, Permission.read));
+	}
+
+	@Test
+	public void test05InvalidationDuringResolution() {
+
+		// generations are read before the resolution starts
+		final long generation100 = PermissionResolutionCache.getGeneration(100L);
+		final long generation101 = PermissionResolutionCache.getGeneration(101L);
+
+		// invalidation while resolving
+		PermissionResolutionCache.invalidatePrincipal(100L);
+
+		PermissionResolutionCache.put(1L, 100L, Permission.read, true, generation100);
+		PermissionResolutionCache.put(1L, 101L, Permission.read, true, generation101);
+
+		assertNull("Result resolved before an invalidation should not be stored", PermissionResolutionCache.get(1L, 100L, Permission.read));
+		assertEquals("Result of other principal should be stored", Boolean.TRUE, PermissionResolutionCache.get(1L, 101L, Permission.read));
+
+		final long generation = PermissionResolutionCache.getGeneration(101L);
+
+		PermissionResolutionCache.invalidate();
+
+		PermissionResolutionCache.put(2L, 101L, Permission.read, true, generation);
+
+		assertNull("Result resolved before an invalidation should not be stored", PermissionResolutionCache.get(2L, 101L, Permission.read));
+	}
+}
@@ -26,6 +26,7 @@ import org.slf4j.LoggerFactory;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
+import org.structr.core.entity.Group;
 import org.structr.core.entity.ResourceAccess;
 import org.structr.core.entity.SchemaNode;
 import org.structr.core.entity.SchemaRelationshipNode;
@@ -238,6 +239,129 @@ public class PermissionResolutionTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void test02NestedGroupRevocation() {
+
+		TestUser user1 = null;
+		Group group1   = null;
+		Group group2   = null;
+		Class type1    = null;
+		Class type2    = null;
+
+		try (final Tx tx = app.tx()) {
+
+			// create a test user in a nested group
+			user1  = app.create(TestUser.class, "user1");
+			group1 = app.create(Group.class, "group1");
+			group2 = app.create(Group.class, "group2");
+
+			group1.addMember(user1);
+			group2.addMember(group1);
+
+			// create schema setup with permission propagation
+			final SchemaNode t1 = app.create(SchemaNode.class, "Type1");
+			final SchemaNode t2 = app.create(SchemaNode.class, "Type2");
+
+			app.create(SchemaRelationshipNode.class,
+				new NodeAttribute<>(SchemaRelationshipNode.sourceNode, t1),
+				new NodeAttribute<>(SchemaRelationshipNode.targetNode, t2),
+				new NodeAttribute<>(SchemaRelationshipNode.relationshipType, "RELATED"),
+				new NodeAttribute<>(SchemaRelationshipNode.sourceMultiplicity, "1"),
+				new NodeAttribute<>(SchemaRelationshipNode.targetMultiplicity, "1"),
+				new NodeAttribute<>(SchemaRelationshipNode.sourceJsonName, "source"),
+				new NodeAttribute<>(SchemaRelationshipNode.targetJsonName, "target"),
+				new NodeAttribute<>(SchemaRelationshipNode.permissionPropagation, Direction.Out),
+				new NodeAttribute<>(SchemaRelationshipNode.readPropagation, Propagation.Add)
+			);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		// create and link objects, make object of type 1 visible to the outer group
+		try (final Tx tx = app.tx()) {
+
+			type1 = StructrApp.getConfiguration().getNodeEntityClass("Type1");
+			type2 = StructrApp.getConfiguration().getNodeEntityClass("Type2");
+
+			final PropertyKey key         = StructrApp.getConfiguration().getPropertyKeyForJSONName(type1, "target");
+			final NodeInterface instance1 = app.create(type1, "instance1OfType1");
+			final NodeInterface instance2 = app.create(type2, "instance1OfType2");
+
+			instance1.setProperty(key, instance2);
+			instance1.grant(Permission.read, group2);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		// user1 should see the propagated object, this also fills the permission resolution cache
+		final App userApp = StructrApp.getInstance(SecurityContext.getInstance(user1, AccessMode.Backend));
+		try (final Tx tx = userApp.tx()) {
+
+			Assert.assertNotNull("User1 should be able to find instance of type Type2", userApp.nodeQuery(type2).getFirst());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		// remove the inner group from the outer group, which revokes access for user1
+		try (final Tx tx = app.tx()) {
+
+			group2.removeMember(group1);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = userApp.tx()) {
+
+			Assert.assertNull("User1 should NOT be able to find instance of type Type1", userApp.nodeQuery(type1).getFirst());
+			Assert.assertNull("User1 should NOT be able to find instance of type Type2", userApp.nodeQuery(type2).getFirst());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		// add the inner group again, which grants access to user1
+		try (final Tx tx = app.tx()) {
+
+			group2.addMember(group1);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = userApp.tx()) {
+
+			Assert.assertNotNull("User1 should be able to find instance of type Type2", userApp.nodeQuery(type2).getFirst());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
 	// ----- private methods -----
 	public static void clearResourceAccess() {
 
@@ -510,6 +510,64 @@ public class SearchAndSortingTest extends StructrTest {
 
 	}
 
+	@Test
+	public void test10QueryCacheWithCreatedNodes() {
+
+		try  {
+
+			createTestNodes(TestOne.class, 2);
+
+			// fill the query cache for the type
+			try (final Tx tx = app.tx()) {
+
+				assertEquals("Invalid type query result", 2, app.nodeQuery(TestOne.class).getAsList().size());
+
+				tx.success();
+			}
+
+			// the created node must be visible to a type query in the same transaction
+			try (final Tx tx = app.tx()) {
+
+				app.create(TestOne.class, "created");
+
+				assertEquals("Created node not found in the same transaction", 3, app.nodeQuery(TestOne.class).getAsList().size());
+
+				tx.success();
+			}
+
+			// and in a later transaction
+			try (final Tx tx = app.tx()) {
+
+				assertEquals("Created node not found in a later transaction", 3, app.nodeQuery(TestOne.class).getAsList().size());
+
+				tx.success();
+			}
+
+			// a native write statement must invalidate the cache as well
+			try (final Tx tx = app.tx()) {
+
+				app.cypher("MATCH (n:TestOne) WHERE n.name = 'created' SET n.name = 'modified'", Collections.emptyMap());
+
+				assertEquals("Native write not visible in the same transaction", 1, app.nodeQuery(TestOne.class).andName("modified").getAsList().size());
+
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals("Native write not visible in a later transaction", 1, app.nodeQuery(TestOne.class).andName("modified").getAsList().size());
+				assertEquals("Native write not visible in a later transaction", 0, app.nodeQuery(TestOne.class).andName("created").getAsList().size());
+
+				tx.success();
+			}
+
+		} catch (FrameworkException ex) {
+
+			logger.error(ex.toString());
+			fail("Unexpected exception");
+		}
+	}
+
 	@Test
 	public void test01SortByName() {
 
@@ -19,6 +19,7 @@
 package org.structr.core.entity;
 
 import java.util.List;
+import org.structr.core.property.ElementCounter;
 import org.structr.core.property.EndNode;
 import org.structr.core.property.EndNodes;
 import org.structr.core.property.Property;
@@ -37,4 +38,7 @@ public class TestTen extends AbstractNode {
 
 	public static final Property<TestTen> testParent           = new StartNode<>("testParent", TenTenOneToOne.class);
 	public static final Property<TestTen> testChild            = new EndNode<>("testChild", TenTenOneToOne.class);
+
+	public static final Property<Integer> childCountDatabase     = new ElementCounter("childCountDatabase", tenTenChildren, ElementCounter.Strategy.Database);
+	public static final Property<Integer> childCountMaterialized = new ElementCounter("childCountMaterialized", tenTenChildren, ElementCounter.Strategy.Materialized);
 }
@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class ChangelogStoreTest {
+
+	private File directory = null;
+
+	@Before
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("structr-changelog").toFile();
+	}
+
+	@After
+	public void deleteDirectory() {
+
+		for (final File child : directory.listFiles()) {
+			child.delete();
+		}
+
+		directory.delete();
+	}
+
+	@Test
+	public void test01AppendAndReopen() throws IOException {
+
+		final ChangelogStore store = new ChangelogStore(directory, 1024, 0);
+
+		store.open();
+		store.append("a", entry(1000, "first") + entry(1001, "second"));
+		store.append("b", entry(1002, "other"));
+		store.append("a", entry(2000, "third"));
+
+		assertEquals(Arrays.asList(entry(1000, "first").trim(), entry(1001, "second").trim(), entry(2000, "third").trim()), store.read("a", Long.MIN_VALUE, Long.MAX_VALUE));
+		assertEquals("Time range should skip records outside of the range", Arrays.asList(entry(2000, "third").trim()), store.read("a", 1500, 2500));
+
+		store.close();
+
+		final ChangelogStore reopened = new ChangelogStore(directory, 1024, 0);
+
+		reopened.open();
+
+		assertEquals(3, reopened.read("a", Long.MIN_VALUE, Long.MAX_VALUE).size());
+		assertEquals(1, reopened.read("b", Long.MIN_VALUE, Long.MAX_VALUE).size());
+
+		reopened.close();
+	}
+
+	@Test
+	public void test02RemoveAndCompact() throws IOException {
+
+		final ChangelogStore store = new ChangelogStore(directory, 200, 0);
+
+		store.open();
+
+		for (int i=0; i<20; i++) {
+
+			store.append("removed", entry(i, "removed entry " + i));
+			store.append("kept", entry(i, "kept entry " + i));
+		}
+
+		store.remove("removed");
+
+		final int segments = (Integer)store.getStatistics().get("segments");
+
+		store.compact();
+
+		assertEquals(Collections.emptyList(), store.read("removed", Long.MIN_VALUE, Long.MAX_VALUE));
+		assertEquals(20, store.read("kept", Long.MIN_VALUE, Long.MAX_VALUE).size());
+		assertEquals("Compaction should not change the number of segments", segments, store.getStatistics().get("segments"));
+
+		store.close();
+
+		final ChangelogStore reopened = new ChangelogStore(directory, 200, 0);
+
+		reopened.open();
+
+		assertEquals(Collections.emptyList(), reopened.read("removed", Long.MIN_VALUE, Long.MAX_VALUE));
+		assertEquals(20, reopened.read("kept", Long.MIN_VALUE, Long.MAX_VALUE).size());
+		assertEquals(entry(19, "kept entry 19").trim(), reopened.read("kept", 19, 19).get(0));
+
+		reopened.close();
+	}
+
+	@Test
+	public void test03ReopenWithManySegments() throws IOException {
+
+		final ChangelogStore store = new ChangelogStore(directory, 512, 0);
+
+		store.open();
+
+		for (int i=0; i<100; i++) {
+
+			for (int j=0; j<30; j++) {
+
+				store.append("object" + j, entry(i * 100 + j, "entry " + i + " of object " + j));
+			}
+		}
+
+		for (int j=0; j<3; j++) {
+			store.remove("object" + j);
+		}
+
+		store.close();
+
+		final ChangelogStore reopened = new ChangelogStore(directory, 512, 0);
+
+		reopened.open();
+
+		assertTrue("Store should have many segments", (Integer)reopened.getStatistics().get("segments") > 100);
+		assertEquals("Invalid number of tombstones", 3, reopened.getStatistics().get("tombstones"));
+
+		for (int j=0; j<3; j++) {
+			assertEquals("Removed object should not have a changelog", Collections.emptyList(), reopened.read("object" + j, Long.MIN_VALUE, Long.MAX_VALUE));
+		}
+
+		for (int j=3; j<30; j++) {
+
+			final List<String> entries = reopened.read("object" + j, Long.MIN_VALUE, Long.MAX_VALUE);
+
+			assertEquals("Invalid number of entries", 100, entries.size());
+
+			for (int i=0; i<100; i++) {
+				assertEquals("Invalid entry order", entry(i * 100 + j, "entry " + i + " of object " + j).trim(), entries.get(i));
+			}
+		}
+
+		assertEquals("Time range should skip records outside of the range", Arrays.asList(entry(5010, "entry 50 of object 10").trim(), entry(5110, "entry 51 of object 10").trim()), reopened.read("object10", 5000, 5199));
+
+		reopened.compact();
+
+		assertEquals("Compaction should keep the live entries", 100, reopened.read("object29", Long.MIN_VALUE, Long.MAX_VALUE).size());
+		assertEquals("Compaction should keep the live entries", entry(9929, "entry 99 of object 29").trim(), reopened.read("object29", 9929, 9929).get(0));
+
+		reopened.close();
+	}
+
+	private String entry(final long time, final String value) {
+		return "{\"time\":" + time + ",\"verb\":\"change\",\"val\":\"" + value + "\"}\n";
+	}
+}
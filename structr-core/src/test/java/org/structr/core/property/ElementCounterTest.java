@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.property;
+
+import java.util.LinkedList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.StructrTest;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.entity.TestTen;
+import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.Tx;
+
+/**
+ * Tests for the database and materialized count strategies of ElementCounter.
+ */
+public class ElementCounterTest extends StructrTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(ElementCounterTest.class.getName());
+
+	@Test
+	public void testCountStrategies() {
+
+		TestTen parent = null;
+
+		try (final Tx tx = app.tx()) {
+
+			parent = app.create(TestTen.class, "parent");
+
+			parent.setProperty(TestTen.tenTenChildren, createTestNodes(TestTen.class, 3));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			assertEquals("Invalid database count", 3, (int)parent.getProperty(TestTen.childCountDatabase));
+			assertEquals("Invalid materialized count", 3, (int)parent.getProperty(TestTen.childCountMaterialized));
+
+			// remove one child
+			final List<TestTen> children = new LinkedList<>(parent.getProperty(TestTen.tenTenChildren));
+
+			children.remove(0);
+
+			parent.setProperty(TestTen.tenTenChildren, children);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			assertEquals("Invalid database count", 2, (int)parent.getProperty(TestTen.childCountDatabase));
+			assertEquals("Invalid materialized count", 2, (int)parent.getProperty(TestTen.childCountMaterialized));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+	}
+
+	@Test
+	public void testConcurrentMaterializedCount() {
+
+		final int threadCount = 10;
+		final int perThread   = 5;
+		TestTen parent        = null;
+
+		try (final Tx tx = app.tx()) {
+
+			parent = app.create(TestTen.class, "parent");
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		final TestTen _parent       = parent;
+		final List<Thread> threads  = new LinkedList<>();
+
+		for (int i=0; i<threadCount; i++) {
+
+			final Thread thread = new Thread(() -> {
+
+				for (int j=0; j<perThread; j++) {
+
+					boolean retry = true;
+
+					while (retry) {
+
+						retry = false;
+
+						try (final Tx tx = app.tx()) {
+
+							app.create(TestTen.class, new NodeAttribute<>(TestTen.tenTenParent, _parent));
+
+							tx.success();
+
+						} catch (Throwable t) {
+
+							// deadlocks are possible because all threads lock the parent node
+							retry = true;
+						}
+					}
+				}
+			});
+
+			threads.add(thread);
+			thread.start();
+		}
+
+		for (final Thread thread : threads) {
+
+			try { thread.join(); } catch (InterruptedException iex) {}
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			assertEquals("Invalid database count", threadCount * perThread, (int)parent.getProperty(TestTen.childCountDatabase));
+			assertEquals("Materialized count lost updates", threadCount * perThread, (int)parent.getProperty(TestTen.childCountMaterialized));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.property;
+
+import java.util.Arrays;
+import java.util.Collections;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the dependency-based invalidation of the function property cache.
+ */
+public class FunctionPropertyCacheTest {
+
+	private static final String entity = "0123456789abcdef0123456789abcdef";
+	private static final String other  = "fedcba9876543210fedcba9876543210";
+
+	@Before
+	public void clearCache() {
+		FunctionPropertyCache.clear();
+	}
+
+	@Test
+	public void testInvalidationByDependency() {
+
+		final String cacheKey = entity + ".fullName.superuser";
+
+		FunctionPropertyCache.put(cacheKey, "Jane Doe", record(entity + ".firstName", other + ".name"));
+
+		assertEquals("Jane Doe", FunctionPropertyCache.get(cacheKey).getValue());
+
+		// unrelated keys must not invalidate the value
+		FunctionPropertyCache.invalidate(entity, Arrays.asList("lastModifiedDate"));
+		FunctionPropertyCache.invalidate(other,  Arrays.asList("firstName"));
+
+		assertNotNull(FunctionPropertyCache.get(cacheKey));
+
+		FunctionPropertyCache.invalidate(other, Arrays.asList("name"));
+
+		assertNull(FunctionPropertyCache.get(cacheKey));
+	}
+
+	@Test
+	public void testInvalidationOfEntity() {
+
+		final String cacheKey = entity + ".count.anonymous";
+
+		FunctionPropertyCache.put(cacheKey, 3, record());
+
+		assertNotNull(FunctionPropertyCache.get(cacheKey));
+
+		FunctionPropertyCache.invalidate(entity, null);
+
+		assertNull(FunctionPropertyCache.get(cacheKey));
+	}
+
+	@Test
+	public void testInvalidationByType() {
+
+		final String projectsKey = entity + ".projects.superuser";
+		final String anyKey      = other + ".all.superuser";
+
+		FunctionPropertyCache.startRecording();
+		FunctionPropertyCache.recordQuery("Project");
+		FunctionPropertyCache.put(projectsKey, 2, FunctionPropertyCache.stopRecording());
+
+		FunctionPropertyCache.startRecording();
+		FunctionPropertyCache.recordQuery(null);
+		FunctionPropertyCache.put(anyKey, 5, FunctionPropertyCache.stopRecording());
+
+		assertNotNull(FunctionPropertyCache.get(projectsKey));
+		assertNotNull(FunctionPropertyCache.get(anyKey));
+
+		// a query for any type depends on all types
+		FunctionPropertyCache.invalidateTypes(Arrays.asList("Task"));
+
+		assertNotNull(FunctionPropertyCache.get(projectsKey));
+		assertNull(FunctionPropertyCache.get(anyKey));
+
+		FunctionPropertyCache.invalidateTypes(Arrays.asList("Project"));
+
+		assertNull(FunctionPropertyCache.get(projectsKey));
+	}
+
+	@Test
+	public void testStaleValueIsDiscarded() {
+
+		final String cacheKey                           = entity + ".fullName.superuser";
+		final FunctionPropertyCache.Recording recording = FunctionPropertyCache.startRecording();
+
+		recording.getDependencies().add(other + ".name");
+
+		// a transaction that modifies a dependency is committed while the value is computed
+		FunctionPropertyCache.invalidate(other, Arrays.asList("name"));
+
+		FunctionPropertyCache.put(cacheKey, "Jane Doe", FunctionPropertyCache.stopRecording());
+
+		assertNull(FunctionPropertyCache.get(cacheKey));
+	}
+
+	@Test
+	public void testUnrelatedInvalidationDoesNotDiscardValue() {
+
+		final String cacheKey                           = entity + ".fullName.superuser";
+		final FunctionPropertyCache.Recording recording = FunctionPropertyCache.startRecording();
+
+		recording.getDependencies().add(entity + ".firstName");
+
+		// a transaction that modifies other entities is committed while the value is computed
+		FunctionPropertyCache.invalidate(other, null);
+		FunctionPropertyCache.invalidateTypes(Collections.singletonList("Task"));
+
+		FunctionPropertyCache.put(cacheKey, "Jane Doe", FunctionPropertyCache.stopRecording());
+
+		assertNotNull(FunctionPropertyCache.get(cacheKey));
+	}
+
+	// ----- private methods -----
+	private FunctionPropertyCache.Recording record(final String... keys) {
+
+		final FunctionPropertyCache.Recording recording = FunctionPropertyCache.startRecording();
+
+		recording.getDependencies().addAll(Arrays.asList(keys));
+
+		return FunctionPropertyCache.stopRecording();
+	}
+}
@@ -39,6 +39,7 @@ import static org.junit.Assert.fail;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.common.AccessMode;
 import org.structr.common.SecurityContext;
 import org.structr.common.StructrTest;
@@ -67,6 +68,7 @@ import org.structr.core.entity.TestTwo;
 import org.structr.core.entity.TestUser;
 import org.structr.core.function.DateFormatFunction;
 import org.structr.core.function.FindFunction;
+import org.structr.core.function.Functions;
 import org.structr.core.function.NumberFormatFunction;
 import org.structr.core.function.ParseDateFunction;
 import org.structr.core.function.RoundFunction;
@@ -2461,4 +2463,165 @@ public class ScriptingTest extends StructrTest {
 			fail("Unexpected exception.");
 		}
 	}
+
+	@Test
+	public void testSharedScriptScope() {
+
+		try (final Tx tx = app.tx()) {
+
+			Settings.SharedScriptScope.setValue(true);
+
+			final ActionContext ctx = new ActionContext(securityContext, null);
+
+			assertEquals("Standard objects should be available in a shared scope", "1,2,3", Scripting.replaceVariables(ctx, null, "${{ return [1, 2, 3].join(','); }}"));
+
+			// globals of one evaluation must not be visible in the next one
+			Scripting.replaceVariables(ctx, null, "${{ leakedGlobal = 'leaked'; }}");
+			assertEquals("Global variables should not leak between evaluations", "undefined", Scripting.replaceVariables(ctx, null, "${{ return typeof leakedGlobal; }}"));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+
+		} finally {
+
+			Settings.SharedScriptScope.setValue(false);
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			Settings.SharedScriptScope.setValue(true);
+
+			final ActionContext ctx = new ActionContext(securityContext, null);
+
+			Scripting.replaceVariables(ctx, null, "${{ Array.prototype.modified = true; }}");
+
+			fail("Standard objects of a shared scope should not be modifiable.");
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			assertEquals("Invalid error code", 422, fex.getStatus());
+
+		} finally {
+
+			Settings.SharedScriptScope.setValue(false);
+		}
+	}
+
+	@Test
+	public void testStructrScriptExpressionCache() {
+
+		final String expression = "concat(retrieve('prefix'), '-', add(retrieve('value'), 1))";
+
+		try (final Tx tx = app.tx()) {
+
+			final long hits           = (Long)Functions.getExpressionCacheStatistics().get("hits");
+			final List<Thread> threads = new LinkedList<>();
+			final List<String> errors  = Collections.synchronizedList(new LinkedList<>());
+
+			for (int i=0; i<8; i++) {
+
+				final int value = i;
+
+				threads.add(new Thread(() -> {
+
+					try {
+
+						for (int j=0; j<100; j++) {
+
+							final ActionContext ctx = new ActionContext(securityContext, null);
+
+							ctx.store("prefix", "thread" + value);
+							ctx.store("value",  j);
+
+							final Object result = Functions.evaluate(ctx, null, expression);
+							if (!("thread" + value + "-" + (j + 1.0)).equals(result)) {
+
+								errors.add("Unexpected result " + result);
+							}
+						}
+
+					} catch (FrameworkException fex) {
+						errors.add(fex.getMessage());
+					}
+				}));
+			}
+
+			threads.forEach(Thread::start);
+
+			for (final Thread thread : threads) {
+				thread.join();
+			}
+
+			assertTrue("Concurrent evaluation of a cached expression should not interfere: " + errors, errors.isEmpty());
+			assertTrue("Cached expression should be reused", (Long)Functions.getExpressionCacheStatistics().get("hits") - hits >= 799);
+
+			tx.success();
+
+		} catch (FrameworkException | InterruptedException ex) {
+
+			ex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
+
+	/**
+	 * Scripts that run with a shared scope must neither see the globals of
+	 * other scripts nor be able to modify the shared standard objects.
+	 */
+	@Test
+	public void testJavascriptSharedScopeIsolation() {
+
+		try {
+
+			Settings.SharedScriptScope.setValue(true);
+
+			try (final Tx tx = app.tx()) {
+
+				final ActionContext ctx = new ActionContext(securityContext, null);
+
+				// globals of one evaluation are not visible in the next
+				Scripting.replaceVariables(ctx, null, "${{ leaked = 'secret'; }}");
+				assertEquals("Global variable leaked through shared scope", "undefined", Scripting.replaceVariables(ctx, null, "${{ return typeof leaked; }}"));
+
+				// the standard objects are sealed
+				try {
+					Scripting.replaceVariables(ctx, null, "${{ Array.prototype.leaked = 'secret'; }}");
+					fail("Shared standard objects should not be modifiable");
+
+				} catch (FrameworkException expected) {}
+
+				try {
+					Scripting.replaceVariables(ctx, null, "${{ Math.max = function() { return 0; }; }}");
+					fail("Shared standard objects should not be modifiable");
+
+				} catch (FrameworkException expected) {}
+
+				assertEquals("Prototype modification leaked through shared scope", "undefined", Scripting.replaceVariables(ctx, null, "${{ return typeof [].leaked; }}"));
+				assertEquals("Standard object was modified through shared scope", "2", Scripting.replaceVariables(ctx, null, "${{ return '' + Math.max(1, 2); }}"));
+
+				// lazily loaded standard objects are usable in every evaluation
+				for (int i=0; i<2; i++) {
+
+					assertEquals("Lazily loaded objects should be available", "true object function", Scripting.replaceVariables(ctx, null, "${{ return /a/.test('a') + ' ' + typeof javax + ' ' + typeof JavaImporter; }}"));
+				}
+
+				tx.success();
+			}
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+
+		} finally {
+
+			Settings.SharedScriptScope.setValue(false);
+		}
+	}
 }
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.module;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ */
+public class ClassIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testStoreAndLoad() throws IOException {
+
+		final File indexFile   = new File(folder.getRoot(), "classindex.json");
+		final ClassIndex index = new ClassIndex(indexFile);
+
+		index.put("/lib/module.jar", "abc-10", "module", new LinkedHashSet<>(Arrays.asList("org.structr.Test1", "org.structr.Test2")));
+		index.store();
+
+		final ClassIndex loaded = new ClassIndex(indexFile);
+		loaded.load();
+
+		final ClassIndex.Resource resource = loaded.get("/lib/module.jar", "abc-10");
+
+		assertNotNull("Indexed resource was not loaded", resource);
+		assertEquals("Invalid module name", "module", resource.getModuleName());
+		assertEquals("Invalid classes", new LinkedHashSet<>(Arrays.asList("org.structr.Test1", "org.structr.Test2")), resource.getClasses());
+		assertNull("Resource with different fingerprint should not be returned", loaded.get("/lib/module.jar", "abc-11"));
+
+		loaded.retain(Collections.emptySet());
+
+		assertNull("Removed resource should not be returned", loaded.get("/lib/module.jar", "abc-10"));
+	}
+
+	@Test
+	public void testFingerprint() throws IOException {
+
+		final File jar           = folder.newFile("test.jar");
+
+		Files.write(jar.toPath(), new byte[] { 1, 2, 3 });
+		jar.setLastModified(1000000L);
+
+		final String fingerprint = ClassIndex.fingerprint(jar);
+
+		assertEquals("Fingerprint of unchanged file should be stable", fingerprint, ClassIndex.fingerprint(jar));
+
+		jar.setLastModified(2000000L);
+
+		assertNotEquals("Fingerprint should change with modification time", fingerprint, ClassIndex.fingerprint(jar));
+
+		Files.write(jar.toPath(), new byte[] { 1, 2, 3, 4 });
+		jar.setLastModified(1000000L);
+
+		assertNotEquals("Fingerprint should change with size", fingerprint, ClassIndex.fingerprint(jar));
+	}
+}
@@ -20,6 +20,7 @@ package org.structr.schema;
 
 import java.util.Arrays;
 import java.util.Date;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ExecutorService;
@@ -32,6 +33,7 @@ import static org.junit.Assert.fail;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.common.StructrTest;
 import org.structr.common.error.ErrorToken;
 import org.structr.common.error.FrameworkException;
@@ -654,6 +656,195 @@ public class ValidationTest extends StructrTest {
 		executor.shutdownNow();
 	}
 
+	@Test
+	public void testConcurrentValidationWithValueLocking() {
+
+		final int count = 100;
+
+		Settings.CommitLocking.setValue("value");
+
+		try (final Tx tx = app.tx()) {
+
+			app.create(SchemaNode.class,
+				new NodeAttribute(SchemaNode.name, "Item"),
+				new NodeAttribute(new StringProperty("_name"), "+String!")
+			);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		final Class type = StructrApp.getConfiguration().getNodeEntityClass("Item");
+		assertNotNull(type);
+
+		try {
+
+			final Runnable tester = new Runnable() {
+
+				@Override
+				public void run() {
+
+					for (int i=0; i<count; i++) {
+
+						// testing must be done in an isolated transaction
+						try (final Tx tx = app.tx()) {
+
+							app.create(type, "Item" + i);
+
+							tx.success();
+
+						} catch (FrameworkException ignore) {}
+					}
+				}
+			};
+
+			// submit three test instances that try to create the same names
+			final ExecutorService executor = Executors.newCachedThreadPool();
+			final Future f1                = executor.submit(tester);
+			final Future f2                = executor.submit(tester);
+			final Future f3                = executor.submit(tester);
+
+			try {
+				f1.get();
+				f2.get();
+				f3.get();
+
+			} catch (Throwable ex) {}
+
+			List<GraphObject> result = null;
+
+			try (final Tx tx = app.tx()) {
+
+				result = app.nodeQuery(type).getAsList();
+
+				tx.success();
+
+			} catch (FrameworkException fex) {
+
+				logger.warn("", fex);
+				fail("Unexpected exception.");
+			}
+
+			// verify that only count entities have been created.
+			assertEquals("Invalid concurrent validation result", count, result.size());
+
+			executor.shutdownNow();
+
+		} finally {
+
+			Settings.CommitLocking.setValue("property");
+		}
+	}
+
+	/**
+	 * Concurrent transactions create the same and distinct values of a
+	 * unique property in each commit locking mode. Every shared value must
+	 * exist exactly once, and no distinct value may be rejected.
+	 */
+	@Test
+	public void testConcurrentUniquenessByLockingMode() {
+
+		final int threadCount = 4;
+		final int count       = 25;
+
+		try (final Tx tx = app.tx()) {
+
+			app.create(SchemaNode.class,
+				new NodeAttribute(SchemaNode.name, "Item"),
+				new NodeAttribute(new StringProperty("_name"), "+String!")
+			);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		final Class type = StructrApp.getConfiguration().getNodeEntityClass("Item");
+		assertNotNull(type);
+
+		try {
+
+			for (final String mode : new String[] { "property", "value" }) {
+
+				Settings.CommitLocking.setValue(mode);
+
+				final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+				final List<Future> futures     = new LinkedList<>();
+
+				for (int t=0; t<threadCount; t++) {
+
+					final String prefix = mode + "-" + t + "-";
+
+					futures.add(executor.submit(() -> {
+
+						for (int i=0; i<count; i++) {
+
+							// all threads try to create the shared value
+							try (final Tx tx = app.tx()) {
+
+								app.create(type, mode + "-shared-" + i);
+
+								tx.success();
+
+							} catch (FrameworkException ignore) {}
+
+							// the distinct value must always be created
+							try (final Tx tx = app.tx()) {
+
+								app.create(type, prefix + i);
+
+								tx.success();
+
+							} catch (FrameworkException fex) {
+								logger.warn("", fex);
+							}
+						}
+					}));
+				}
+
+				for (final Future future : futures) {
+
+					try { future.get(); } catch (Throwable t) {
+						logger.warn("", t);
+					}
+				}
+
+				executor.shutdownNow();
+
+				try (final Tx tx = app.tx()) {
+
+					for (int i=0; i<count; i++) {
+
+						assertEquals("Shared value should exist exactly once in locking mode " + mode, 1, app.nodeQuery(type).andName(mode + "-shared-" + i).getAsList().size());
+
+						for (int t=0; t<threadCount; t++) {
+
+							assertEquals("Distinct value should exist in locking mode " + mode, 1, app.nodeQuery(type).andName(mode + "-" + t + "-" + i).getAsList().size());
+						}
+					}
+
+					tx.success();
+
+				} catch (FrameworkException fex) {
+
+					logger.warn("", fex);
+					fail("Unexpected exception.");
+				}
+			}
+
+		} finally {
+
+			Settings.CommitLocking.setValue("property");
+		}
+	}
+
 	@Test
 	public void testNamePropertyValidation() {
 
@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.schema.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the on-disk byte code cache.
+ */
+public class BytecodeCacheTest {
+
+	private File cacheDirectory = null;
+
+	@Before
+	public void setUp() throws IOException {
+		cacheDirectory = Files.createTempDirectory("structr-bytecode-cache").toFile();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(cacheDirectory);
+	}
+
+	@Test
+	public void test01StoreAndLoad() {
+
+		final BytecodeCache cache       = new BytecodeCache(cacheDirectory, "env");
+		final BytecodeCache.Entry entry = createEntry(cache, "A");
+
+		cache.store(entry);
+
+		final BytecodeCache.Entry loaded = cache.load(entry.getKey());
+
+		assertNotNull("Stored entry should be loaded", loaded);
+		assertEquals("Invalid API hash", "api-A", loaded.getApiHash());
+		assertEquals("Invalid dependencies", entry.getDependencies(), loaded.getDependencies());
+		assertEquals("Invalid classes", Collections.singleton("A"), loaded.getClasses().keySet());
+		assertArrayEquals("Invalid byte code", new byte[] { 1, 2, 3 }, loaded.getClasses().get("A"));
+
+		// the same source is found by its key in a new instance
+		assertNotNull("Stored entry should be loaded", new BytecodeCache(cacheDirectory, "env").load(cache.getKey("class A {}")));
+	}
+
+	@Test
+	public void test02EnvironmentIsPartOfTheKey() {
+
+		final BytecodeCache cache = new BytecodeCache(cacheDirectory, "env");
+		final BytecodeCache other = new BytecodeCache(cacheDirectory, "other");
+
+		cache.store(createEntry(cache, "A"));
+
+		assertFalse("Key should depend on the environment", cache.getKey("class A {}").equals(other.getKey("class A {}")));
+		assertNull("Byte code of another environment should not be loaded", other.load(other.getKey("class A {}")));
+	}
+
+	@Test
+	public void test03Retain() {
+
+		final BytecodeCache cache   = new BytecodeCache(cacheDirectory, "env");
+		final BytecodeCache.Entry a = createEntry(cache, "A");
+		final BytecodeCache.Entry b = createEntry(cache, "B");
+
+		cache.store(a);
+		cache.store(b);
+
+		cache.retain(Collections.singleton(b.getKey()));
+
+		assertNull("Entry that was not retained should be removed", cache.load(a.getKey()));
+		assertNotNull("Retained entry should be kept", cache.load(b.getKey()));
+	}
+
+	@Test
+	public void test04DisabledCache() {
+
+		final BytecodeCache cache       = new BytecodeCache(null, "");
+		final BytecodeCache.Entry entry = createEntry(cache, "A");
+
+		cache.store(entry);
+		cache.retain(Collections.emptySet());
+
+		assertNull("Disabled cache should not load entries", cache.load(entry.getKey()));
+	}
+
+	@Test
+	public void test05EntryValidity() {
+
+		final BytecodeCache cache         = new BytecodeCache(cacheDirectory, "env");
+		final BytecodeCache.Entry entry   = createEntry(cache, "A");
+		final Map<String, String> current = new LinkedHashMap<>();
+
+		current.put("B", "api-B");
+
+		assertTrue("Entry should be valid with the API hashes it was compiled against", entry.isValid(current));
+
+		current.put("B", "api-B2");
+
+		assertFalse("Entry should be invalid when a dependency changed its API", entry.isValid(current));
+
+		current.remove("B");
+
+		assertFalse("Entry should be invalid when a dependency was removed", entry.isValid(current));
+	}
+
+	// ----- private methods -----
+	private BytecodeCache.Entry createEntry(final BytecodeCache cache, final String name) {
+
+		final BytecodeCache.Entry entry = new BytecodeCache.Entry(cache.getKey("class " + name + " {}"));
+
+		entry.setApiHash("api-" + name);
+		entry.getDependencies().put("B", "api-B");
+		entry.getClasses().put(name, new byte[] { 1, 2, 3 });
+
+		return entry;
+	}
+}
@@ -0,0 +1,239 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.schema.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+import org.structr.common.error.ErrorBuffer;
+
+/**
+ * Tests which compilation units the incremental compiler recompiles.
+ */
+public class IncrementalCompilerTest {
+
+	private static final String PACKAGE = "org.structr.test.incremental";
+
+	private File cacheDirectory = null;
+
+	@Before
+	public void setUp() throws IOException {
+		cacheDirectory = Files.createTempDirectory("structr-bytecode-cache").toFile();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(cacheDirectory);
+	}
+
+	@Test
+	public void test01UnchangedSourcesAreNotRecompiled() throws Exception {
+
+		final IncrementalCompiler compiler = new IncrementalCompiler(PACKAGE);
+		final Map<String, String> sources  = getSources("return \"a\";", "");
+
+		compile(compiler, sources);
+		assertCompiled(compiler, "A", "B", "C", "E");
+
+		compile(compiler, sources);
+		assertCompiled(compiler);
+	}
+
+	@Test
+	public void test02BodyChangeDoesNotRecompileDependents() throws Exception {
+
+		final IncrementalCompiler compiler = new IncrementalCompiler(PACKAGE);
+
+		compile(compiler, getSources("return \"a\";", ""));
+
+		final Map<String, Class> classes = compile(compiler, getSources("return \"x\";", ""));
+		assertCompiled(compiler, "A");
+
+		// the reused dependent runs against the new implementation
+		assertEquals("Invalid result", "x", invoke(classes, "B"));
+	}
+
+	@Test
+	public void test03ApiChangeRecompilesDependents() throws Exception {
+
+		final IncrementalCompiler compiler = new IncrementalCompiler(PACKAGE);
+
+		compile(compiler, getSources("return \"a\";", ""));
+		compile(compiler, getSources("return \"a\";", "public int count() { return 1; }"));
+
+		assertCompiled(compiler, "A", "B");
+	}
+
+	@Test
+	public void test04ConstantChangeRecompilesDependents() throws Exception {
+
+		final IncrementalCompiler compiler = new IncrementalCompiler(PACKAGE);
+
+		compile(compiler, getSources("return NAME;", "public static final String NAME = \"a\";"));
+
+		// constants are inlined into the dependents, so their value is part of the API
+		final Map<String, Class> classes = compile(compiler, getSources("return NAME;", "public static final String NAME = \"b\";"));
+
+		assertCompiled(compiler, "A", "B", "C");
+		assertEquals("Invalid result", "b", invoke(classes, "C"));
+	}
+
+	@Test
+	public void test05SuperTypeApiChangeRecompilesDependentsOfSubTypes() throws Exception {
+
+		final IncrementalCompiler compiler = new IncrementalCompiler(PACKAGE);
+		final Map<String, String> sources  = new LinkedHashMap<>();
+
+		sources.put("A", source("public class A { public String value() { return \"a\"; } }"));
+		sources.put("B", source("public class B extends A { }"));
+		sources.put("D", source("public class D { public String value() { return \"\" + new B().value(); } }"));
+
+		compile(compiler, sources);
+
+		// D only references B, but calls a method that B inherits from A
+		sources.put("A", source("public class A { public Object value() { return \"a\"; } }"));
+
+		final Map<String, Class> classes = compile(compiler, sources);
+
+		assertCompiled(compiler, "A", "B", "D");
+		assertEquals("Invalid result", "a", invoke(classes, "D"));
+	}
+
+	@Test
+	public void test06CachedUnitsAreLoadedAfterRestart() throws Exception {
+
+		final Map<String, String> sources = getSources("return \"a\";", "");
+
+		compile(new IncrementalCompiler(PACKAGE), sources);
+
+		// a new compiler has no units in memory
+		final IncrementalCompiler compiler = new IncrementalCompiler(PACKAGE);
+		final Map<String, Class> classes   = compile(compiler, sources);
+
+		assertCompiled(compiler);
+		assertEquals("Invalid result", "a", invoke(classes, "B"));
+
+		// a body change after a restart still only recompiles the changed unit
+		final IncrementalCompiler restarted = new IncrementalCompiler(PACKAGE);
+
+		compile(restarted, getSources("return \"x\";", ""));
+		assertCompiled(restarted, "A");
+	}
+
+	@Test
+	public void test07CompilationErrors() throws Exception {
+
+		final IncrementalCompiler compiler = new IncrementalCompiler(PACKAGE);
+		final ErrorBuffer errorBuffer      = new ErrorBuffer();
+		final Map<String, String> sources  = getSources("return \"a\";", "");
+
+		sources.put("B", source("public class B { public String value() { return new A().missing(); } }"));
+
+		assertNull("Compilation with errors should not return classes", compiler.compile(sources, errorBuffer, new BytecodeCache(cacheDirectory, "test")));
+		assertTrue("Compilation errors should be reported", errorBuffer.hasError());
+	}
+
+	@Test
+	public void test08ClassFileApi() throws Exception {
+
+		final String api = getApi("public class A { private int count; public String value() { return \"a\"; } }");
+
+		assertEquals("Method body should not be part of the API", api, getApi("public class A { private int count; public String value() { return \"b\"; } }"));
+		assertEquals("Private members should not be part of the API", api, getApi("public class A { private long total; public String value() { return \"a\"; } private void helper() {} }"));
+		assertEquals("Member order should not be part of the API", getApi("public class A { public int a; public int b; }"), getApi("public class A { public int b; public int a; }"));
+		assertFalse("Method signature should be part of the API", api.equals(getApi("public class A { private int count; public Object value() { return \"a\"; } }")));
+		assertFalse("Public members should be part of the API", api.equals(getApi("public class A { private int count; public int size; public String value() { return \"a\"; } }")));
+		assertFalse("Constant values should be part of the API", getApi("public class A { public static final int MAX = 1; }").equals(getApi("public class A { public static final int MAX = 2; }")));
+	}
+
+	// ----- private methods -----
+	/**
+	 * A has the given method body and additional members, B calls the
+	 * method of A, C uses the constant NAME if present, and E is not
+	 * related to any of the others.
+	 */
+	private Map<String, String> getSources(final String body, final String members) {
+
+		final Map<String, String> sources = new LinkedHashMap<>();
+
+		sources.put("A", source("public class A { " + members + " public String value() { " + body + " } }"));
+		sources.put("B", source("public class B { public String value() { return new A().value(); } }"));
+		sources.put("C", source("public class C { public String value() { return " + (members.contains("NAME") ? "A.NAME" : "\"c\"") + "; } }"));
+		sources.put("E", source("public class E { public String value() { return \"e\"; } }"));
+
+		return sources;
+	}
+
+	private String source(final String declaration) {
+		return "package " + PACKAGE + ";\n\n" + declaration + "\n";
+	}
+
+	private Map<String, Class> compile(final IncrementalCompiler compiler, final Map<String, String> sources) {
+
+		final ErrorBuffer errorBuffer    = new ErrorBuffer();
+		final Map<String, Class> classes = compiler.compile(sources, errorBuffer, new BytecodeCache(cacheDirectory, "test"));
+
+		assertNotNull("Compilation failed: " + errorBuffer, classes);
+		assertEquals("Invalid number of classes", sources.size(), classes.size());
+
+		return classes;
+	}
+
+	private void assertCompiled(final IncrementalCompiler compiler, final String... expected) {
+
+		final Set<String> compiled = new LinkedHashSet<>(compiler.getCompiledUnits());
+
+		assertEquals("Invalid compiled units", new LinkedHashSet<>(Arrays.asList(expected)), compiled);
+	}
+
+	private String getApi(final String declaration) throws Exception {
+
+		final BytecodeCache cache         = new BytecodeCache(cacheDirectory, "test");
+		final Map<String, String> sources = Collections.singletonMap("A", source(declaration));
+
+		compile(new IncrementalCompiler(PACKAGE), sources);
+
+		final BytecodeCache.Entry entry = cache.load(cache.getKey(sources.get("A")));
+		assertNotNull("Compiled unit should be cached", entry);
+
+		return ClassFileInfo.read(entry.getClasses().get(PACKAGE + ".A")).getApi();
+	}
+
+	private Object invoke(final Map<String, Class> classes, final String className) throws Exception {
+
+		final Class type = classes.get(PACKAGE + "." + className);
+
+		return type.getMethod("value").invoke(type.newInstance());
+	}
+}
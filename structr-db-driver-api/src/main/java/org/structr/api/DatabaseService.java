@@ -18,11 +18,14 @@
  */
 package org.structr.api;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import org.structr.api.graph.Direction;
 import org.structr.api.graph.GraphProperties;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
+import org.structr.api.graph.RelationshipType;
 import org.structr.api.index.Index;
 
 /**
@@ -46,6 +49,31 @@ public interface DatabaseService {
 
 	Node createNode(final Set<String> labels, final Map<String, Object> properties);
 
+	/**
+	 * Creates one node with the given labels for each of the given
+	 * property maps, using a single statement for the whole batch.
+	 *
+	 * @param labels the labels of the new nodes
+	 * @param properties the properties, one map per node
+	 *
+	 * @return the new nodes, in the order of the given property maps
+	 */
+	List<Node> createNodes(final Set<String> labels, final List<Map<String, Object>> properties);
+
+	/**
+	 * Creates one relationship of the given type between the nodes at
+	 * the same position in the given lists, using a single statement for
+	 * the whole batch.
+	 *
+	 * @param startNodes the start nodes
+	 * @param endNodes the end nodes
+	 * @param relationshipType the type of the new relationships
+	 * @param properties the properties, one map per relationship
+	 *
+	 * @return the new relationships, in the order of the given lists
+	 */
+	List<Relationship> createRelationships(final List<Node> startNodes, final List<Node> endNodes, final RelationshipType relationshipType, final List<Map<String, Object>> properties);
+
 	Node getNodeById(final long id);
 	Relationship getRelationshipById(final long id);
 
@@ -58,6 +86,18 @@ public interface DatabaseService {
 
 	GraphProperties getGlobalProperties();
 
+	/**
+	 * Loads the relationships of the given direction and type for all
+	 * given nodes at once, so that subsequent calls to
+	 * {@link Node#getRelationships(Direction, RelationshipType)} on these
+	 * nodes do not need a database round trip each.
+	 *
+	 * @param nodes the nodes
+	 * @param direction the direction, or null for all relationships
+	 * @param relationshipType the relationship type, or null for all types
+	 */
+	void prefetchRelationships(final Iterable<Node> nodes, final Direction direction, final RelationshipType relationshipType);
+
 
 	// ----- index -----
 	Index<Node> nodeIndex();
@@ -67,5 +107,25 @@ public interface DatabaseService {
 	NativeResult execute(final String nativeQuery, final Map<String, Object> parameters);
 	NativeResult execute(final String nativeQuery);
 
+	/**
+	 * Executes the given native query and registers the given labels and
+	 * relationship types as modified in the current transaction, so that
+	 * cached query results for other types stay valid.
+	 *
+	 * @param nativeQuery the query
+	 * @param parameters the parameters
+	 * @param modifiedTypes the labels and relationship types the query modifies
+	 * @return the result
+	 */
+	NativeResult execute(final String nativeQuery, final Map<String, Object> parameters, final Set<String> modifiedTypes);
+
 	void invalidateQueryCache();
+
+	/**
+	 * Returns the hit, miss and eviction counters of the query cache,
+	 * grouped by index and type.
+	 *
+	 * @return the query cache statistics
+	 */
+	Map<String, Map<String, Map<String, Long>>> getQueryCacheStatistics();
 }
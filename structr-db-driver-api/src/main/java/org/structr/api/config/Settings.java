@@ -88,10 +88,15 @@ public class Settings {
 	public static final Setting<Boolean> GzipCompression      = new BooleanSetting(serverGroup, "HTTP Settings", "HttpService.gzip.enabled",        true);
 	public static final Setting<Boolean> ForceHttps           = new BooleanSetting(serverGroup, "HTTP Settings", "HttpService.force.https",         false);
 	public static final Setting<Boolean> Async                = new BooleanSetting(serverGroup, "HTTP Settings", "HttpService.async",               true);
+	public static final Setting<Integer> AsyncRenderThreads   = new IntegerSetting(serverGroup, "HTTP Settings", "HttpService.async.render.threads", 32);
+	public static final Setting<Integer> AsyncRenderQueueSize = new IntegerSetting(serverGroup, "HTTP Settings", "HttpService.async.render.queue",   1000);
+	public static final Setting<Integer> AsyncBufferChunks    = new IntegerSetting(serverGroup, "HTTP Settings", "HttpService.async.buffer.chunks",  16);
 	public static final Setting<Boolean> JsonIndentation      = new BooleanSetting(serverGroup, "HTTP Settings", "json.indentation",                true);
 	public static final Setting<Boolean> HtmlIndentation      = new BooleanSetting(serverGroup, "HTTP Settings", "html.indentation",                true);
 	public static final Setting<Boolean> WsIndentation        = new BooleanSetting(serverGroup, "HTTP Settings", "ws.indentation",                  true);
 	public static final Setting<Integer> SessionTimeout       = new IntegerSetting(serverGroup, "HTTP Settings", "application.session.timeout",     1800);
+	public static final Setting<Integer> SessionCacheSize     = new IntegerSetting(serverGroup, "HTTP Settings", "application.session.cache.size",  10000);
+	public static final Setting<Integer> SessionFlushInterval = new IntegerSetting(serverGroup, "HTTP Settings", "application.session.flush.interval", 10);
 
 	public static final Setting<String> AccessControlMaxAge           = new StringSetting(serverGroup, "CORS Settings", "access.control.max.age",           "3600");
 	public static final Setting<String> AccessControlAllowMethods     = new StringSetting(serverGroup, "CORS Settings", "access.control.allow.methods",     "");
@@ -115,13 +120,31 @@ public class Settings {
 	public static final Setting<Integer> NodeCacheSize         = new IntegerSetting(databaseGroup, "Caching",             "database.cache.node.size",         100000);
 	public static final Setting<Integer> UuidCacheSize         = new IntegerSetting(databaseGroup, "Caching",             "database.cache.uuid.size",         100000);
 	public static final Setting<Integer> QueryCacheSize        = new IntegerSetting(databaseGroup, "Caching",             "database.cache.query.size",        1000);
+	public static final Setting<Integer> QueryCacheMaxResults  = new IntegerSetting(databaseGroup, "Caching",             "database.cache.query.maxresults",  1000);
+	public static final Setting<Integer> FunctionCacheSize     = new IntegerSetting(databaseGroup, "Caching",             "database.cache.function.size",     10000);
+	public static final Setting<Boolean> PrefetchRelationships = new BooleanSetting(databaseGroup, "Caching",             "database.prefetch.relationships",  true);
+	public static final Setting<Boolean> BufferPropertyWrites  = new BooleanSetting(databaseGroup, "Caching",             "database.buffer.properties",       false);
 	public static final Setting<Boolean> CypherDebugLogging    = new BooleanSetting(databaseGroup, "Debugging",           "log.cypher.debug",                 false);
 	public static final Setting<Boolean> SyncDebugging         = new BooleanSetting(databaseGroup, "Sync debugging",      "sync.debug",                       false);
 
 	// application settings
 	public static final Setting<Integer> ResolutionDepth      = new IntegerSetting(applicationGroup, "Security",   "application.security.resolution.depth",       5);
 	public static final Setting<String> OwnerlessNodes        = new StringSetting(applicationGroup,  "Security",   "application.security.ownerless.nodes",        "read");
+	public static final Setting<Integer> PermissionCacheSize  = new IntegerSetting(applicationGroup, "Security",   "application.security.cache.size",             100000);
 	public static final Setting<Boolean> ChangelogEnabled     = new BooleanSetting(applicationGroup, "Changelog",  "application.changelog.enabled",               false);
+	public static final Setting<String> ChangelogPath         = new StringSetting(applicationGroup,  "Changelog",  "application.changelog.path",                  "changelog");
+	public static final Setting<Integer> ChangelogSegmentSize = new IntegerSetting(applicationGroup, "Changelog",  "application.changelog.segment.size",          64);
+	public static final Setting<Integer> ChangelogRetention   = new IntegerSetting(applicationGroup, "Changelog",  "application.changelog.retention.days",        0);
+	public static final Setting<Integer> ChangelogCompaction  = new IntegerSetting(applicationGroup, "Changelog",  "application.changelog.compaction.interval",   60);
+	public static final Setting<String> CommitLocking         = new ChoiceSetting(applicationGroup,  "Transactions", "application.transactions.locking",         "property", "property", "value");
+	public static final Setting<Boolean> SharedScriptScope    = new BooleanSetting(applicationGroup, "Scripting",  "application.scripting.js.sharedscope",        false);
+	public static final Setting<Integer> ExpressionCacheSize  = new IntegerSetting(applicationGroup, "Scripting",  "application.scripting.expression.cache.size", 10000);
+	public static final Setting<Integer> AgentMaxWorkers      = new IntegerSetting(applicationGroup, "Agents",     "application.agents.workers",                  20);
+	public static final Setting<Integer> AgentMaxAgents       = new IntegerSetting(applicationGroup, "Agents",     "application.agents.pertype",                  10);
+	public static final Setting<Integer> AgentMaxRetries      = new IntegerSetting(applicationGroup, "Agents",     "application.agents.retry.max",                2);
+	public static final Setting<Integer> AgentRetryDelay      = new IntegerSetting(applicationGroup, "Agents",     "application.agents.retry.delay",              2000);
+	public static final Setting<Boolean> AgentJournalEnabled  = new BooleanSetting(applicationGroup, "Agents",     "application.agents.journal.enabled",          false);
+	public static final Setting<String> AgentJournalPath      = new StringSetting(applicationGroup,  "Agents",     "application.agents.journal.path",             "agents/tasks.journal");
 	public static final Setting<Boolean> FilesystemEnabled    = new BooleanSetting(applicationGroup, "Filesystem", "application.filesystem.enabled",              false);
 	public static final Setting<Boolean> UniquePaths          = new BooleanSetting(applicationGroup, "Filesystem", "application.filesystem.unique.paths",         true);
 	public static final Setting<String> DefaultChecksums      = new StringSetting(applicationGroup,  "Filesystem", "application.filesystem.checksums.default",    "md5", "List of checksums to be calculated on file creation by default.");
@@ -131,6 +154,7 @@ public class Settings {
 	public static final Setting<Integer> IndexingMaxLength    = new IntegerSetting(applicationGroup, "Filesystem", "application.filesystem.indexing.maxlength",   30);
 	public static final Setting<Boolean> FollowSymlinks       = new BooleanSetting(applicationGroup, "Filesystem", "application.filesystem.mount.followSymlinks", true);
 	public static final Setting<String> DefaultUploadFolder   = new StringSetting(applicationGroup,  "Filesystem", "application.uploads.folder",                  "");
+	public static final Setting<Integer> MinificationDelay    = new IntegerSetting(applicationGroup, "Filesystem", "application.minification.delay",              500);
 	public static final Setting<String> HttpProxyUrl          = new StringSetting(applicationGroup,  "Proxy",      "application.proxy.http.url",                  "");
 	public static final Setting<String> HttpProxyUser         = new StringSetting(applicationGroup,  "Proxy",      "application.proxy.http.username",             "");
 	public static final Setting<String> HttpProxyPassword     = new StringSetting(applicationGroup,  "Proxy",      "application.proxy.http.password",             "");
@@ -149,6 +173,11 @@ public class Settings {
 	public static final Setting<Boolean> JsonRedundancyReduction = new BooleanSetting(advancedGroup, "JSON",   "json.redundancyReduction", true);
 	public static final Setting<Boolean> JsonLenient             = new BooleanSetting(advancedGroup, "JSON",   "json.lenient",             false);
 
+	public static final Setting<Boolean> ClassIndexEnabled       = new BooleanSetting(advancedGroup, "Startup", "classindex.enabled",      true);
+	public static final Setting<String> ClassIndexPath           = new StringSetting(advancedGroup,  "Startup", "classindex.path",         "classindex.json");
+	public static final Setting<Boolean> SchemaCacheEnabled      = new BooleanSetting(advancedGroup, "Startup", "schema.cache.enabled",    true);
+	public static final Setting<String> SchemaCachePath          = new StringSetting(advancedGroup,  "Startup", "schema.cache.path",       "schema-cache");
+
 	public static final Setting<String> GeocodingProvider        = new StringSetting(advancedGroup,  "Geocoding",   "geocoding.provider",            "org.structr.common.geo.GoogleGeoCodingProvider");
 	public static final Setting<String> GeocodingLanguage        = new StringSetting(advancedGroup,  "Geocoding",   "geocoding.language",            "de");
 	public static final Setting<String> GeocodingApiKey          = new StringSetting(advancedGroup,  "Geocoding",   "geocoding.apikey",              "");
@@ -191,6 +220,7 @@ public class Settings {
 	public static final Setting<Boolean> WebsocketUserAutologin    = new BooleanSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.user.autologin",    false);
 	public static final Setting<Boolean> WebsocketUserAutocreate   = new BooleanSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.user.autocreate",   false);
 	public static final Setting<Boolean> WebsocketFrontendAccess   = new BooleanSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.frontendAccess",    false);
+	public static final Setting<Integer> WebsocketOutboundQueueSize = new IntegerSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.outbound.queue.size", 1000);
 
 	public static final Setting<String> CsvServletPath       = new StringSetting(servletsGroup,  "CsvServlet", "CsvServlet.path",              "/structr/csv/*");
 	public static final Setting<String> CsvServletClass      = new StringSetting(servletsGroup,  "CsvServlet", "CsvServlet.class",             "org.structr.rest.servlet.CsvServlet");
@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.search;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of a keyset ("seek") paginated query. A cursor identifies the
+ * last element of the previous page by its sort value and its UUID, so
+ * the next page can be fetched with a range predicate instead of a SKIP
+ * over all preceding elements.
+ *
+ * Cursors are handed to clients as opaque tokens, see {@link #toToken()}
+ * and {@link #fromToken(java.lang.String)}.
+ */
+public class QueryCursor {
+
+	private static final byte TYPE_NULL    = 0;
+	private static final byte TYPE_STRING  = 1;
+	private static final byte TYPE_LONG    = 2;
+	private static final byte TYPE_DOUBLE  = 3;
+	private static final byte TYPE_BOOLEAN = 4;
+
+	private Object sortValue = null;
+	private String id        = null;
+	private int pageSize     = Integer.MAX_VALUE;
+
+	/**
+	 * Creates a cursor that points to the start of the result.
+	 */
+	public QueryCursor() {
+	}
+
+	public QueryCursor(final Object sortValue, final String id) {
+
+		this.sortValue = sortValue;
+		this.id        = id;
+	}
+
+	/**
+	 * Indicates whether this cursor points to an element, i.e. whether
+	 * the query needs to be restricted to the elements that follow it.
+	 *
+	 * @return whether this cursor has a position
+	 */
+	public boolean hasPosition() {
+		return id != null;
+	}
+
+	public Object getSortValue() {
+		return sortValue;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	public void setPageSize(final int pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Encodes this cursor into an URL-safe token.
+	 *
+	 * @return the token
+	 */
+	public String toToken() {
+
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+		try (final DataOutputStream out = new DataOutputStream(bos)) {
+
+			out.writeUTF(id != null ? id : "");
+
+			if (sortValue == null) {
+
+				out.writeByte(TYPE_NULL);
+
+			} else if (sortValue instanceof Double || sortValue instanceof Float) {
+
+				out.writeByte(TYPE_DOUBLE);
+				out.writeDouble(((Number)sortValue).doubleValue());
+
+			} else if (sortValue instanceof Number) {
+
+				out.writeByte(TYPE_LONG);
+				out.writeLong(((Number)sortValue).longValue());
+
+			} else if (sortValue instanceof Boolean) {
+
+				out.writeByte(TYPE_BOOLEAN);
+				out.writeBoolean((Boolean)sortValue);
+
+			} else {
+
+				// writeUTF is limited to 64k bytes
+				final byte[] bytes = sortValue.toString().getBytes(StandardCharsets.UTF_8);
+
+				out.writeByte(TYPE_STRING);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+
+		} catch (IOException ioex) {
+
+			// cannot happen with an in-memory stream
+			throw new IllegalStateException(ioex);
+		}
+
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bos.toByteArray());
+	}
+
+	/**
+	 * Decodes a token that was created by {@link #toToken()}. An empty
+	 * token denotes the start of the result.
+	 *
+	 * @param token the token
+	 * @return the cursor
+	 *
+	 * @throws IllegalArgumentException if the token is malformed
+	 */
+	public static QueryCursor fromToken(final String token) {
+
+		if (token == null || token.isEmpty()) {
+			return new QueryCursor();
+		}
+
+		try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+
+			final String id = in.readUTF();
+			Object sortValue = null;
+
+			switch (in.readByte()) {
+
+				case TYPE_NULL:
+					break;
+
+				case TYPE_STRING:
+
+					final int length = in.readInt();
+					if (length < 0 || length > in.available()) {
+						throw new IllegalArgumentException("Invalid cursor " + token);
+					}
+
+					final byte[] bytes = new byte[length];
+
+					in.readFully(bytes);
+
+					sortValue = new String(bytes, StandardCharsets.UTF_8);
+					break;
+
+				case TYPE_LONG:
+					sortValue = in.readLong();
+					break;
+
+				case TYPE_DOUBLE:
+					sortValue = in.readDouble();
+					break;
+
+				case TYPE_BOOLEAN:
+					sortValue = in.readBoolean();
+					break;
+
+				default:
+					throw new IllegalArgumentException("Invalid cursor " + token);
+			}
+
+			if (id.isEmpty()) {
+				throw new IllegalArgumentException("Invalid cursor " + token);
+			}
+
+			return new QueryCursor(sortValue, id);
+
+		} catch (IOException ioex) {
+
+			throw new IllegalArgumentException("Invalid cursor " + token, ioex);
+		}
+	}
+}
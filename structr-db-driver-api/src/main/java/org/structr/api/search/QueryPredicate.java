@@ -39,4 +39,20 @@ public interface QueryPredicate {
 	String getSortKey();
 	SortType getSortType();
 	boolean sortDescending();
+
+	/**
+	 * The keyset pagination cursor for this query, or null if the
+	 * result should be paged by offset.
+	 *
+	 * @return the cursor or null
+	 */
+	QueryCursor getCursor();
+
+	/**
+	 * Whether the result of this query will be read only once, in order.
+	 * Streaming results are fetched lazily and not cached by the index.
+	 *
+	 * @return whether the result is streamed
+	 */
+	boolean isStreaming();
 }
@@ -20,6 +20,7 @@ package org.structr.api.util;
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.function.Function;
 import org.apache.commons.collections4.map.LRUMap;
 
 /**
@@ -47,6 +48,10 @@ public class FixedSizeCache<K, V> {
 		return cache.get(key);
 	}
 
+	public synchronized V computeIfAbsent(final K key, final Function<? super K, ? extends V> mappingFunction) {
+		return cache.computeIfAbsent(key, mappingFunction);
+	}
+
 	public synchronized void remove(final K key) {
 		cache.remove(key);
 	}
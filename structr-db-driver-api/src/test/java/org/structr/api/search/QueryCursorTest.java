@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class QueryCursorTest {
+
+	@Test
+	public void testRoundTrip() {
+
+		testRoundTrip("name äöü");
+		testRoundTrip(42L);
+		testRoundTrip(3.5);
+		testRoundTrip(true);
+		testRoundTrip(null);
+	}
+
+	@Test
+	public void testLargeSortValue() {
+
+		final StringBuilder buf = new StringBuilder();
+
+		// larger than the 64k limit of writeUTF
+		for (int i=0; i<70000; i++) {
+			buf.append("ä");
+		}
+
+		testRoundTrip(buf.toString());
+	}
+
+	@Test
+	public void testInvalidToken() {
+
+		final String token = new QueryCursor("value", "0123456789abcdef0123456789abcdef").toToken();
+
+		try {
+
+			QueryCursor.fromToken(token.substring(0, token.length() - 4));
+			fail("Truncated token should be rejected");
+
+		} catch (IllegalArgumentException iex) {
+		}
+	}
+
+	// ----- private methods -----
+	private void testRoundTrip(final Object sortValue) {
+
+		final QueryCursor cursor = QueryCursor.fromToken(new QueryCursor(sortValue, "0123456789abcdef0123456789abcdef").toToken());
+
+		assertEquals("0123456789abcdef0123456789abcdef", cursor.getId());
+		assertEquals(sortValue, cursor.getSortValue());
+	}
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.structr.ldap;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the durations of the most recent LDAP searches and computes
+ * latency percentiles from them.
+ */
+class SearchStatistics {
+
+	private static final int SAMPLE_COUNT = 1000;
+
+	private final long[] samples = new long[SAMPLE_COUNT];
+	private long count           = 0L;
+
+	/**
+	 * Records the given duration and returns the total number of searches
+	 * recorded so far.
+	 *
+	 * @param nanos the duration in nanoseconds
+	 * @return the number of recorded searches
+	 */
+	public synchronized long add(final long nanos) {
+
+		samples[(int)(count % SAMPLE_COUNT)] = nanos;
+
+		return ++count;
+	}
+
+	@Override
+	public synchronized String toString() {
+
+		final int size      = (int)Math.min(count, SAMPLE_COUNT);
+		final long[] sorted = Arrays.copyOf(samples, size);
+
+		if (size == 0) {
+			return "no samples";
+		}
+
+		Arrays.sort(sorted);
+
+		return "p50=" + millis(sorted, 0.50) + " ms, p90=" + millis(sorted, 0.90) + " ms, p99=" + millis(sorted, 0.99) + " ms, max=" + millis(sorted, 1.0) + " ms";
+	}
+
+	// ----- private methods -----
+	private long millis(final long[] sorted, final double percentile) {
+
+		final int index = (int)Math.ceil(percentile * sorted.length) - 1;
+
+		return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, index)]);
+	}
+}
@@ -20,10 +20,13 @@
 package org.structr.ldap;
 
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.directory.api.ldap.model.constants.SchemaConstants;
@@ -46,13 +49,16 @@ import org.apache.directory.api.ldap.model.message.SearchScope;
 import org.apache.directory.api.ldap.model.name.Dn;
 import org.apache.directory.api.ldap.model.name.Rdn;
 import org.apache.directory.api.ldap.model.schema.AttributeType;
+import org.apache.directory.api.ldap.model.schema.MatchingRule;
 import org.apache.directory.api.ldap.model.schema.SchemaManager;
 import org.apache.directory.api.ldap.model.schema.registries.ObjectClassRegistry;
 import org.apache.directory.server.core.api.entry.ClonedServerEntry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
@@ -61,12 +67,18 @@ import org.structr.core.graph.Tx;
 import org.structr.ldap.api.LDAPAttribute;
 import org.structr.ldap.api.LDAPNode;
 import org.structr.ldap.api.LDAPValue;
+import org.structr.ldap.entity.LDAPAttributeImpl;
 import org.structr.ldap.entity.LDAPNodeImpl;
+import org.structr.ldap.entity.LDAPValueImpl;
 
 
 public class StructrLDAPWrapper {
 
-	private static final Logger logger = LoggerFactory.getLogger(StructrLDAPWrapper.class.getName());
+	private static final Logger logger                            = LoggerFactory.getLogger(StructrLDAPWrapper.class.getName());
+	private static final Set<String> normalizedPartitions         = Collections.newSetFromMap(new ConcurrentHashMap<>());
+	private static final Map<String, SearchStatistics> statistics = new ConcurrentHashMap<>();
+	private static final int STATISTICS_INTERVAL                  = 100;
+
 	private SecurityContext securityContext = null;
 	private SchemaManager schemaManager     = null;
 	private String partitionId              = null;
@@ -136,7 +148,14 @@ public class StructrLDAPWrapper {
 								oid  = type.getOid();
 							}
 
-							newChild.createAttribute(oid, attr.getUpId(), attr);
+							final LDAPAttribute newAttribute = newChild.createAttribute(oid, attr.getUpId(), attr);
+							if (newAttribute != null) {
+
+								// store normalized values for indexed equality lookups
+								for (final LDAPValue value : newAttribute.getValues()) {
+									value.setNormalizedValue(normalize(oid, value.getStringValue()));
+								}
+							}
 						}
 
 					} else {
@@ -201,6 +220,9 @@ public class StructrLDAPWrapper {
 
 	public List<Entry> filter(final Dn dn, final ExprNode filter, final SearchScope scope) throws LdapException {
 
+		final long t0 = System.nanoTime();
+		String mode   = "scan";
+
 		try (final Tx tx = app().tx()) {
 
 			final LDAPNode entry = find(dn);
@@ -208,7 +230,17 @@ public class StructrLDAPWrapper {
 
 			if (entry != null) {
 
-				result = filter(entry, filter, scope, 0);
+				// try to resolve the filter with indexed queries first
+				final Set<LDAPNode> candidates = SearchScope.OBJECT.equals(scope) ? null : findCandidates(filter);
+				if (candidates != null) {
+
+					result = filter(entry, candidates, filter, scope);
+					mode   = "index";
+
+				} else {
+
+					result = filter(entry, filter, scope, 0);
+				}
 			}
 
 			tx.success();
@@ -219,6 +251,10 @@ public class StructrLDAPWrapper {
 
 		} catch (FrameworkException fex) {
 			handleException(fex);
+
+		} finally {
+
+			recordSearchTime(mode, System.nanoTime() - t0);
 		}
 
 		return Collections.emptyList();
@@ -328,6 +364,262 @@ public class StructrLDAPWrapper {
 		return list;
 	}
 
+	private List<Entry> filter(final LDAPNode base, final Set<LDAPNode> candidates, final ExprNode filter, final SearchScope scope) throws FrameworkException, LdapException {
+
+		final boolean oneLevel = SearchScope.ONELEVEL.equals(scope);
+		final List<Entry> list = new LinkedList<>();
+
+		for (final LDAPNode candidate : candidates) {
+
+			// candidates are a superset, verify scope and filter for each of them
+			if (isInScope(base, candidate, oneLevel) && matches(candidate, filter)) {
+				list.add(getEntry(candidate));
+			}
+		}
+
+		return list;
+	}
+
+	private boolean isInScope(final LDAPNode base, final LDAPNode node, final boolean oneLevel) {
+
+		if (oneLevel) {
+
+			return isSameNode(base, node.getParent());
+		}
+
+		// subtree scope includes the base entry itself
+		LDAPNode current = node;
+		while (current != null) {
+
+			if (isSameNode(base, current)) {
+				return true;
+			}
+
+			current = current.getParent();
+		}
+
+		return false;
+	}
+
+	private boolean isSameNode(final LDAPNode node1, final LDAPNode node2) {
+		return node1 != null && node2 != null && node1.getUuid().equals(node2.getUuid());
+	}
+
+	private Set<LDAPNode> findCandidates(final ExprNode filter) throws FrameworkException {
+
+		if (Settings.getOrCreateBooleanSetting("ldap", "search", "fullscan").getValue() || !LDAPNodeImpl.class.isAssignableFrom(type)) {
+			return null;
+		}
+
+		ensureNormalizedValues();
+
+		return getCandidates(filter);
+	}
+
+	/**
+	 * Returns the set of nodes that can possibly match the given filter,
+	 * or null if the filter cannot be resolved with indexed queries.
+	 */
+	private Set<LDAPNode> getCandidates(final ExprNode filter) throws FrameworkException {
+
+		if (filter instanceof SimpleNode) {
+
+			final SimpleNode simpleNode = (SimpleNode)filter;
+
+			if (AssertionType.EQUALITY.equals(simpleNode.getAssertionType())) {
+
+				final String oid   = new DefaultAttribute(simpleNode.getAttributeType()).getId();
+				final String value = normalize(oid, simpleNode.getValue().getString());
+
+				return getNodes(app().nodeQuery(LDAPValueImpl.class).and(LDAPValueImpl.normalizedValue, value).getAsList(), oid);
+			}
+
+			// other assertion types never match, see evaluateSimpleNode
+			return new LinkedHashSet<>();
+
+		} else if (filter instanceof SubstringNode) {
+
+			final SubstringNode substringNode = (SubstringNode)filter;
+			final String oid                  = new DefaultAttribute(substringNode.getAttributeType()).getId();
+			final String initial              = substringNode.getInitial();
+
+			if (initial != null && !initial.isEmpty()) {
+
+				// index-backed prefix lookup on the lower case value, the
+				// scan compares the lower case value with the pattern too
+				final Map<String, Object> params = new LinkedHashMap<>();
+
+				params.put("prefix", initial.toLowerCase());
+
+				return getNodes(app().cypher("MATCH (n:LDAPValueImpl) WHERE n.lowerCaseValue STARTS WITH {prefix} RETURN n", params), oid);
+			}
+
+			// fragments without a fixed start cannot be looked up in an index, a
+			// CONTAINS query would scan all values, so all nodes that have the
+			// attribute are candidates
+			return getNodesWithAttribute(oid);
+
+		} else if (filter instanceof PresenceNode) {
+
+			return getNodesWithAttribute(new DefaultAttribute(((PresenceNode)filter).getAttributeType()).getId());
+
+		} else if (filter instanceof OrNode) {
+
+			final Set<LDAPNode> result = new LinkedHashSet<>();
+
+			for (final ExprNode child : ((OrNode)filter).getChildren()) {
+
+				final Set<LDAPNode> candidates = getCandidates(child);
+				if (candidates == null) {
+
+					// one unsupported branch makes the whole union unknown
+					return null;
+				}
+
+				result.addAll(candidates);
+			}
+
+			return result;
+
+		} else if (filter instanceof AndNode) {
+
+			Set<LDAPNode> result = null;
+
+			for (final ExprNode child : ((AndNode)filter).getChildren()) {
+
+				final Set<LDAPNode> candidates = getCandidates(child);
+				if (candidates != null) {
+
+					if (result == null) {
+
+						result = candidates;
+
+					} else {
+
+						result.retainAll(candidates);
+					}
+				}
+			}
+
+			return result;
+		}
+
+		return null;
+	}
+
+	private Set<LDAPNode> getNodes(final List<? extends GraphObject> values, final String oid) {
+
+		final Set<LDAPNode> nodes = new LinkedHashSet<>();
+
+		for (final GraphObject value : values) {
+
+			final LDAPAttributeImpl attribute = value.getProperty(LDAPValueImpl.parent);
+			if (attribute != null && oid.equals(attribute.getOid())) {
+
+				final LDAPNodeImpl node = attribute.getProperty(LDAPAttributeImpl.parent);
+				if (node != null) {
+
+					nodes.add(node);
+				}
+			}
+		}
+
+		return nodes;
+	}
+
+	private Set<LDAPNode> getNodesWithAttribute(final String oid) throws FrameworkException {
+
+		final Set<LDAPNode> nodes = new LinkedHashSet<>();
+
+		for (final LDAPAttributeImpl attribute : app().nodeQuery(LDAPAttributeImpl.class).and(LDAPAttributeImpl.oid, oid).getAsList()) {
+
+			final LDAPNodeImpl node = attribute.getProperty(LDAPAttributeImpl.parent);
+			if (node != null) {
+
+				nodes.add(node);
+			}
+		}
+
+		return nodes;
+	}
+
+	private String normalize(final String oid, final String value) {
+
+		if (value != null) {
+
+			try {
+
+				final AttributeType attributeType = schemaManager.getAttributeType(oid);
+				if (attributeType != null) {
+
+					final MatchingRule equality = attributeType.getEquality();
+					if (equality != null && equality.getNormalizer() != null) {
+
+						return equality.getNormalizer().normalize(value);
+					}
+				}
+
+			} catch (LdapException lex) {
+				logger.debug("Unable to normalize value for attribute {}: {}", oid, lex.getMessage());
+			}
+		}
+
+		return value;
+	}
+
+	private void ensureNormalizedValues() throws FrameworkException {
+
+		if (normalizedPartitions.contains(partitionId)) {
+			return;
+		}
+
+		synchronized (normalizedPartitions) {
+
+			if (!normalizedPartitions.contains(partitionId)) {
+
+				int count = 0;
+
+				// values stored before normalized values existed need to be backfilled once
+				for (final LDAPValueImpl value : app().nodeQuery(LDAPValueImpl.class).and(LDAPValueImpl.normalizedValue, null).getAsList()) {
+
+					final LDAPAttributeImpl attribute = value.getProperty(LDAPValueImpl.parent);
+					if (attribute != null) {
+
+						value.setNormalizedValue(normalize(attribute.getOid(), value.getStringValue()));
+						count++;
+					}
+				}
+
+				// lower case values are used for indexed substring lookups
+				for (final LDAPValueImpl value : app().nodeQuery(LDAPValueImpl.class).and(LDAPValueImpl.lowerCaseValue, null).getAsList()) {
+
+					final String stringValue = value.getStringValue();
+					if (stringValue != null) {
+
+						value.setProperty(LDAPValueImpl.lowerCaseValue, stringValue.toLowerCase());
+						count++;
+					}
+				}
+
+				if (count > 0) {
+					logger.info("Normalized {} LDAP attribute values for indexed search", count);
+				}
+
+				normalizedPartitions.add(partitionId);
+			}
+		}
+	}
+
+	private void recordSearchTime(final String mode, final long nanos) {
+
+		final SearchStatistics stats = statistics.computeIfAbsent(mode, k -> new SearchStatistics());
+		final long count             = stats.add(nanos);
+
+		if (count % STATISTICS_INTERVAL == 0) {
+			logger.info("LDAP search latency ({}, {} searches): {}", mode, count, stats);
+		}
+	}
+
 	private boolean matches(final LDAPNode node, final ExprNode filter) throws FrameworkException, LdapInvalidAttributeValueException {
 
 		if (filter instanceof SimpleNode) {
@@ -26,4 +26,7 @@ public interface LDAPValue {
 
 	public String getStringValue();
 	public void setStringValue(final String value) throws FrameworkException;
+
+	public String getNormalizedValue();
+	public void setNormalizedValue(final String value) throws FrameworkException;
 }
@@ -86,6 +86,7 @@ public class LDAPAttributeImpl extends AbstractNode implements LDAPAttribute {
 		return StructrApp.getInstance(securityContext).create(LDAPValueImpl.class,
 			new NodeAttribute<>(LDAPValueImpl.parent, this),
 			new NodeAttribute<>(LDAPValueImpl.value, value),
+			new NodeAttribute<>(LDAPValueImpl.lowerCaseValue, value != null ? value.toLowerCase() : null),
 			new NodeAttribute<>(AbstractNode.visibleToPublicUsers, true),
 			new NodeAttribute<>(AbstractNode.visibleToAuthenticatedUsers, true)
 		);
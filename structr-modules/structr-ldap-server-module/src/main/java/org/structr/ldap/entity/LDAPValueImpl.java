@@ -34,6 +34,8 @@ public class LDAPValueImpl extends AbstractNode implements LDAPValue {
 
 	public static final Property<LDAPAttributeImpl> parent = new StartNode<>("parent", LDAPValues.class);
 	public static final Property<String> value             = new StringProperty("value");
+	public static final Property<String> normalizedValue   = new StringProperty("normalizedValue").indexed();
+	public static final Property<String> lowerCaseValue    = new StringProperty("lowerCaseValue").indexed();
 
 	public static final View publicView = new View(LDAPValueImpl.class, PropertyView.Public,
 		value
@@ -50,6 +52,18 @@ public class LDAPValueImpl extends AbstractNode implements LDAPValue {
 
 	@Override
 	public void setStringValue(final String value) throws FrameworkException {
+
 		setProperty(LDAPValueImpl.value, value);
+		setProperty(LDAPValueImpl.lowerCaseValue, value != null ? value.toLowerCase() : null);
+	}
+
+	@Override
+	public String getNormalizedValue() {
+		return getProperty(LDAPValueImpl.normalizedValue);
+	}
+
+	@Override
+	public void setNormalizedValue(final String value) throws FrameworkException {
+		setProperty(LDAPValueImpl.normalizedValue, value);
 	}
 }
@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.ldap;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.commons.io.FileUtils;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.filter.FilterParser;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+import org.apache.directory.api.ldap.schema.manager.impl.DefaultSchemaManager;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.common.SecurityContext;
+import org.structr.core.Services;
+import org.structr.ldap.entity.LDAPNodeImpl;
+
+/**
+ * Compares the results of indexed searches with the results of a full
+ * scan of the partition.
+ */
+public class LDAPSearchTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(LDAPSearchTest.class.getName());
+
+	private static SchemaManager schemaManager = null;
+	private static StructrLDAPWrapper wrapper  = null;
+	private static String basePath             = null;
+
+	@Test
+	public void testIndexAndScanResultsAreEqual() {
+
+		try {
+
+			add("dc=org",                          "objectClass: domain",             "dc: org");
+			add("ou=people,dc=org",                "objectClass: organizationalUnit", "ou: people");
+			add("cn=Jane Doe,ou=people,dc=org",    "objectClass: person",             "cn: Jane Doe",    "sn: Doe",    "telephoneNumber: 123");
+			add("cn=John Doe,ou=people,dc=org",    "objectClass: person",             "cn: John Doe",    "sn: Doe");
+			add("cn=Max Muster,ou=people,dc=org",  "objectClass: person",             "cn: Max Muster",  "sn: Muster", "telephoneNumber: 456");
+			add("cn=Anna Janssen,ou=people,dc=org", "objectClass: person",            "cn: Anna Janssen", "sn: Janssen");
+
+			// equality
+			assertSameResults("(sn=Doe)",                   2);
+			assertSameResults("(cn=Nobody)",                0);
+
+			// presence
+			assertSameResults("(telephoneNumber=*)",        2);
+
+			// substring
+			assertSameResults("(cn=ja*)",                   1);
+			assertSameResults("(cn=*doe)",                  2);
+			assertSameResults("(cn=*an*)",                  2);
+			assertSameResults("(cn=j*n*oe)",                2);
+
+			// and
+			assertSameResults("(&(sn=Doe)(cn=ja*))",        1);
+			assertSameResults("(&(sn=Doe)(telephoneNumber=*))", 1);
+
+			// or
+			assertSameResults("(|(sn=Muster)(cn=jo*))",     2);
+			assertSameResults("(|(sn=Janssen)(cn=*doe))",   3);
+
+		} catch (Throwable t) {
+
+			logger.warn("", t);
+			fail("Unexpected exception");
+		}
+	}
+
+	// ----- private methods -----
+	private void add(final String dn, final String... attributes) throws Exception {
+		wrapper.add(new DefaultEntry(schemaManager, dn, (Object[])attributes));
+	}
+
+	private void assertSameResults(final String filter, final int expectedCount) throws Exception {
+
+		final Set<String> scanned = search(filter, true);
+		final Set<String> indexed = search(filter, false);
+
+		assertEquals("Invalid number of results for " + filter, expectedCount, scanned.size());
+		assertEquals("Indexed search returned different results for " + filter, scanned, indexed);
+	}
+
+	private Set<String> search(final String filter, final boolean fullScan) throws Exception {
+
+		final Set<String> result = new TreeSet<>();
+
+		Settings.getOrCreateBooleanSetting("ldap", "search", "fullscan").setValue(fullScan);
+
+		final List<Entry> entries = wrapper.filter(new Dn(schemaManager, "dc=org"), FilterParser.parse(schemaManager, filter), SearchScope.SUBTREE);
+		for (final Entry entry : entries) {
+
+			result.add(entry.getDn().getNormName());
+		}
+
+		return result;
+	}
+
+	@BeforeClass
+	public static void startSystem() {
+
+		final long timestamp = new Date().getTime();
+
+		basePath = "/tmp/structr-test-" + timestamp;
+
+		Settings.Services.setValue("NodeService SchemaService");
+		Settings.ConnectionUrl.setValue(Settings.TestingConnectionUrl.getValue());
+
+		Settings.BasePath.setValue(basePath);
+		Settings.DatabasePath.setValue(basePath + "/db");
+		Settings.FilesPath.setValue(basePath + "/files");
+
+		Settings.SuperUserName.setValue("superadmin");
+		Settings.SuperUserPassword.setValue("sehrgeheim");
+
+		final Services services = Services.getInstance();
+
+		// wait for service layer to be initialized
+		do {
+			try {
+				Thread.sleep(100);
+			} catch (Throwable t) {
+			}
+
+		} while (!services.isInitialized());
+
+		try {
+
+			schemaManager = new DefaultSchemaManager();
+			wrapper       = new StructrLDAPWrapper(SecurityContext.getSuperUserInstance(), schemaManager, "test", LDAPNodeImpl.class);
+
+		} catch (Throwable t) {
+
+			logger.warn("", t);
+			fail("Unable to create schema manager");
+		}
+	}
+
+	@AfterClass
+	public static void stopSystem() {
+
+		Settings.getOrCreateBooleanSetting("ldap", "search", "fullscan").setValue(false);
+
+		Services.getInstance().shutdown();
+
+		try {
+			File testDir = new File(basePath);
+			if (testDir.isDirectory()) {
+
+				FileUtils.deleteDirectory(testDir);
+
+			} else {
+
+				testDir.delete();
+			}
+
+		} catch (Throwable t) {
+			logger.warn("", t);
+		}
+	}
+}
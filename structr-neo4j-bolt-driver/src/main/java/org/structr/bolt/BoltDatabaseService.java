@@ -24,9 +24,12 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -51,6 +54,7 @@ import org.structr.api.NotInTransactionException;
 import org.structr.api.QueryResult;
 import org.structr.api.Transaction;
 import org.structr.api.config.Settings;
+import org.structr.api.graph.Direction;
 import org.structr.api.graph.GraphProperties;
 import org.structr.api.graph.Label;
 import org.structr.api.graph.Node;
@@ -232,7 +236,58 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 		// make properties available to Cypher statement
 		map.put("properties", properties);
 
-		return NodeWrapper.newInstance(this, getCurrentTransaction().getNode(buf.toString(), map));
+		final SessionTransaction tx = getCurrentTransaction();
+		final NodeWrapper node      = NodeWrapper.newInstance(this, tx.getNode(buf.toString(), map));
+
+		// new node, invalidate cached query results for its labels
+		tx.modified(node);
+
+		return node;
+	}
+
+	@Override
+	public List<Node> createNodes(final Set<String> labels, final List<Map<String, Object>> properties) {
+
+		final StringBuilder buf       = new StringBuilder("UNWIND {rows} AS row CREATE (n");
+		final List<Node> nodes        = new ArrayList<>(properties.size());
+		final Map<String, Object> map = new HashMap<>();
+
+		if (properties.isEmpty()) {
+			return nodes;
+		}
+
+		for (final String label : labels) {
+
+			buf.append(":");
+			buf.append(label);
+		}
+
+		buf.append(") SET n = row RETURN n");
+
+		// make properties available to Cypher statement
+		map.put("rows", properties);
+
+		final SessionTransaction tx = getCurrentTransaction();
+
+		try (final QueryResult<org.neo4j.driver.v1.types.Node> result = tx.getNodes(buf.toString(), map)) {
+
+			for (final org.neo4j.driver.v1.types.Node n : result) {
+
+				final NodeWrapper node = NodeWrapper.newInstance(this, n);
+
+				// new node, invalidate cached query results for its labels
+				tx.modified(node);
+
+				nodes.add(node);
+			}
+		}
+
+		return nodes;
+	}
+
+	@Override
+	public List<Relationship> createRelationships(final List<Node> startNodes, final List<Node> endNodes, final RelationshipType relationshipType, final List<Map<String, Object>> properties) {
+		return NodeWrapper.createRelationships(this, startNodes, endNodes, relationshipType, properties);
 	}
 
 	@Override
@@ -299,6 +354,11 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 		return QueryUtils.map(new RelationshipRelationshipMapper(this), new RelationshipResultStream(this, new SimpleCypherQuery("MATCH ()-[r:" + type + "]->() RETURN r")));
 	}
 
+	@Override
+	public void prefetchRelationships(final Iterable<Node> nodes, final Direction direction, final RelationshipType relationshipType) {
+		NodeWrapper.prefetchRelationships(this, nodes, direction, relationshipType);
+	}
+
 	@Override
 	public GraphProperties getGlobalProperties() {
 		return this;
@@ -334,6 +394,11 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 		return execute(nativeQuery, Collections.EMPTY_MAP);
 	}
 
+	@Override
+	public NativeResult execute(final String nativeQuery, final Map<String, Object> parameters, final Set<String> modifiedTypes) {
+		return getCurrentTransaction().run(nativeQuery, parameters, modifiedTypes);
+	}
+
 	@Override
 	public void invalidateQueryCache() {
 
@@ -346,6 +411,40 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 		}
 	}
 
+	/**
+	 * Invalidates only the cached query results that depend on the given
+	 * labels or relationship types.
+	 *
+	 * @param labels the modified node labels
+	 * @param relationshipTypes the modified relationship types
+	 */
+	public void invalidateQueryCache(final Set<String> labels, final Set<String> relationshipTypes) {
+
+		if (nodeIndex != null) {
+			nodeIndex.invalidateCache(labels);
+		}
+
+		if (relationshipIndex != null) {
+			relationshipIndex.invalidateCache(relationshipTypes);
+		}
+	}
+
+	@Override
+	public Map<String, Map<String, Map<String, Long>>> getQueryCacheStatistics() {
+
+		final Map<String, Map<String, Map<String, Long>>> statistics = new LinkedHashMap<>();
+
+		if (nodeIndex != null) {
+			statistics.put("nodes", nodeIndex.getCacheStatistics());
+		}
+
+		if (relationshipIndex != null) {
+			statistics.put("relationships", relationshipIndex.getCacheStatistics());
+		}
+
+		return statistics;
+	}
+
 	public SessionTransaction getCurrentTransaction() {
 
 		final SessionTransaction tx = sessions.get();
@@ -19,10 +19,16 @@
 package org.structr.bolt;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.regex.Pattern;
 import org.apache.commons.lang.StringUtils;
 import org.neo4j.driver.v1.Record;
 import org.neo4j.driver.v1.Session;
@@ -38,6 +44,8 @@ import org.neo4j.driver.v1.exceptions.TransientException;
 import org.neo4j.driver.v1.types.Entity;
 import org.neo4j.driver.v1.types.Node;
 import org.neo4j.driver.v1.types.Relationship;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.structr.api.NativeResult;
 import org.structr.api.NotFoundException;
 import org.structr.api.QueryResult;
@@ -46,10 +54,13 @@ import org.structr.api.ConstraintViolationException;
 import org.structr.api.DataFormatException;
 import org.structr.api.NetworkException;
 import org.structr.api.util.QueryUtils;
+import org.structr.bolt.index.AbstractCypherIndex;
 import org.structr.bolt.mapper.RecordLongMapper;
 import org.structr.bolt.mapper.RecordNodeMapper;
 import org.structr.bolt.mapper.RecordRelationshipMapper;
 import org.structr.bolt.wrapper.EntityWrapper;
+import org.structr.bolt.wrapper.NodeWrapper;
+import org.structr.bolt.wrapper.RelationshipWrapper;
 import org.structr.bolt.wrapper.StatementResultWrapper;
 
 /**
@@ -57,12 +68,20 @@ import org.structr.bolt.wrapper.StatementResultWrapper;
  */
 public class SessionTransaction implements org.structr.api.Transaction {
 
-	private final Set<EntityWrapper> modifiedEntities = new HashSet<>();
-	private BoltDatabaseService db                    = null;
-	private Session session                           = null;
-	private Transaction tx                            = null;
-	private boolean closed                            = false;
-	private boolean success                           = false;
+	private static final Logger logger          = LoggerFactory.getLogger(SessionTransaction.class.getName());
+	private static final Pattern WRITE_STATEMENT = Pattern.compile("\\b(CREATE|MERGE|SET|DELETE|REMOVE)\\b", Pattern.CASE_INSENSITIVE);
+
+	private final Map<EntityWrapper, Map<String, Object>> bufferedProperties = new LinkedHashMap<>();
+	private final Set<String> modifiedRelationshipTypes                      = new HashSet<>();
+	private final Set<EntityWrapper> modifiedEntities                        = new HashSet<>();
+	private final Set<String> modifiedLabels                                 = new HashSet<>();
+	private BoltDatabaseService db                                           = null;
+	private Session session                                                  = null;
+	private Transaction tx                                                   = null;
+	private boolean closed                                                   = false;
+	private boolean success                                                  = false;
+	private int bufferedWrites                                               = 0;
+	private int flushStatements                                              = 0;
 
 	public SessionTransaction(final BoltDatabaseService db, final Session session) {
 
@@ -79,6 +98,9 @@ public class SessionTransaction implements org.structr.api.Transaction {
 	@Override
 	public void success() {
 
+		// write buffered properties, errors must occur before the transaction is marked successful
+		flush();
+
 		tx.success();
 
 		// transaction must be marked successfull explicitely
@@ -88,6 +110,30 @@ public class SessionTransaction implements org.structr.api.Transaction {
 	@Override
 	public void close() {
 
+		RuntimeException flushFailure = null;
+
+		if (success && !bufferedProperties.isEmpty()) {
+
+			// properties that were set after success() was called
+			try {
+
+				flush();
+
+			} catch (RuntimeException rex) {
+
+				// roll back and report the failure instead of acknowledging the commit
+				tx.failure();
+				success      = false;
+				flushFailure = rex;
+			}
+		}
+
+		bufferedProperties.clear();
+
+		if (bufferedWrites > 0) {
+			logger.debug("{} property writes buffered in {} statements, {} statements saved", bufferedWrites, flushStatements, getSavedStatements());
+		}
+
 		if (!success) {
 
 			// We need to invalidate all existing references because we cannot
@@ -98,12 +144,6 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		} else {
 
-			if (!modifiedEntities.isEmpty()) {
-
-				// data was written, invalidate query cache
-				db.invalidateQueryCache();
-			}
-
 			// Notify all nodes that are modified in this transaction
 			// so that the relationship caches are rebuilt.
 			for (final EntityWrapper entity : modifiedEntities) {
@@ -131,6 +171,14 @@ public class SessionTransaction implements org.structr.api.Transaction {
 			if (session.isOpen()) {
 				session.close();
 			}
+
+			// invalidate cached query results for the modified types after the commit,
+			// results that other transactions read before the commit must not be kept
+			db.invalidateQueryCache(modifiedLabels, modifiedRelationshipTypes);
+		}
+
+		if (flushFailure != null) {
+			throw flushFailure;
 		}
 	}
 
@@ -164,6 +212,9 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public long getLong(final String statement, final Map<String, Object> map) {
 
+		// make buffered properties visible to the query
+		flush();
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -184,6 +235,9 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public Object getObject(final String statement, final Map<String, Object> map) {
 
+		// make buffered properties visible to the query
+		flush();
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -210,6 +264,9 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public Entity getEntity(final String statement, final Map<String, Object> map) {
 
+		// make buffered properties visible to the query
+		flush();
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -230,6 +287,9 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public Node getNode(final String statement, final Map<String, Object> map) {
 
+		// make buffered properties visible to the query
+		flush();
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -250,6 +310,9 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public Relationship getRelationship(final String statement, final Map<String, Object> map) {
 
+		// make buffered properties visible to the query
+		flush();
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -270,6 +333,9 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public QueryResult<Node> getNodes(final String statement, final Map<String, Object> map) {
 
+		// make buffered properties visible to the query
+		flush();
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -290,6 +356,9 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public QueryResult<Relationship> getRelationships(final String statement, final Map<String, Object> map) {
 
+		// make buffered properties visible to the query
+		flush();
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -310,6 +379,9 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public QueryResult<Long> getIds(final String statement, final Map<String, Object> map) {
 
+		// make buffered properties visible to the query
+		flush();
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -330,6 +402,9 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public QueryResult<String> getStrings(final String statement, final Map<String, Object> map) {
 
+		// make buffered properties visible to the query
+		flush();
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -365,6 +440,31 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public NativeResult run(final String statement, final Map<String, Object> map) {
 
+		// a native write statement can modify entities of any type
+		return run(statement, map, WRITE_STATEMENT.matcher(statement).find() ? Collections.singleton(AbstractCypherIndex.ANY_TYPE) : null);
+	}
+
+	/**
+	 * Runs the given statement and registers the given labels and
+	 * relationship types as modified in this transaction.
+	 *
+	 * @param statement the statement
+	 * @param map the parameters
+	 * @param modifiedTypes the labels and relationship types the statement modifies, or null
+	 * @return the result
+	 */
+	public NativeResult run(final String statement, final Map<String, Object> map, final Set<String> modifiedTypes) {
+
+		if (modifiedTypes != null) {
+
+			for (final String type : modifiedTypes) {
+				labelModified(type);
+			}
+		}
+
+		// make buffered properties visible to the query
+		flush();
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -389,6 +489,123 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public void set(final String statement, final Map<String, Object> map) {
 
+		// make buffered properties visible to the statement
+		flush();
+
+		write(statement, map);
+	}
+
+	/**
+	 * Buffers a property value of the given entity. Buffered values are
+	 * written with one statement per entity type before the next query
+	 * or statement of this transaction is executed, or when the
+	 * transaction is committed. A null value removes the property.
+	 *
+	 * @param wrapper the entity
+	 * @param key the property key
+	 * @param value the value
+	 */
+	public void bufferProperty(final EntityWrapper wrapper, final String key, final Object value) {
+		bufferProperties(wrapper, Collections.singletonMap(key, value));
+	}
+
+	/**
+	 * Buffers the given property values of the given entity. The values
+	 * would otherwise be written in a single statement, so they count as
+	 * one buffered write.
+	 *
+	 * @param wrapper the entity
+	 * @param values the property values
+	 */
+	public void bufferProperties(final EntityWrapper wrapper, final Map<String, Object> values) {
+
+		Map<String, Object> properties = bufferedProperties.get(wrapper);
+		if (properties == null) {
+
+			properties = new HashMap<>();
+			bufferedProperties.put(wrapper, properties);
+		}
+
+		properties.putAll(values);
+
+		bufferedWrites++;
+	}
+
+	/**
+	 * Removes the buffered property values of the given entity, e.g.
+	 * because it is being deleted.
+	 *
+	 * @param wrapper the entity
+	 */
+	public void discardProperties(final EntityWrapper wrapper) {
+		bufferedProperties.remove(wrapper);
+	}
+
+	/**
+	 * Writes all buffered property values. The values of a single entity
+	 * are written with SET n += {properties}, the values of multiple
+	 * entities of the same kind with a single UNWIND statement.
+	 */
+	public void flush() {
+
+		if (bufferedProperties.isEmpty()) {
+			return;
+		}
+
+		final Map<String, List<Map<String, Object>>> rows = new LinkedHashMap<>();
+
+		for (final Entry<EntityWrapper, Map<String, Object>> entry : bufferedProperties.entrySet()) {
+
+			final Map<String, Object> row = new HashMap<>();
+			final String prefix           = entry.getKey().getQueryPrefix();
+
+			row.put("id", entry.getKey().getId());
+			row.put("properties", entry.getValue());
+
+			List<Map<String, Object>> list = rows.get(prefix);
+			if (list == null) {
+
+				list = new LinkedList<>();
+				rows.put(prefix, list);
+			}
+
+			list.add(row);
+		}
+
+		// clear buffer first so that a failing statement is not repeated
+		bufferedProperties.clear();
+
+		for (final Entry<String, List<Map<String, Object>>> entry : rows.entrySet()) {
+
+			final List<Map<String, Object>> list = entry.getValue();
+			final String prefix                  = entry.getKey();
+
+			if (list.size() == 1) {
+
+				write(prefix + " WHERE ID(n) = {id} SET n += {properties}", list.get(0));
+
+			} else {
+
+				write("UNWIND {rows} AS row " + prefix + " WHERE ID(n) = row.id SET n += row.properties", Collections.singletonMap("rows", list));
+			}
+
+			flushStatements++;
+		}
+	}
+
+	/**
+	 * Returns the number of statements that were saved in this transaction
+	 * by buffering property values.
+	 *
+	 * @return the number of saved statements
+	 */
+	public int getSavedStatements() {
+		return bufferedWrites - flushStatements;
+	}
+
+	// ----- private methods -----
+	private void write(final String statement, final Map<String, Object> map) {
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -437,12 +654,45 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public void modified(final EntityWrapper wrapper) {
 
-		// data was written, invalidate query cache
-		db.invalidateQueryCache();
+		final Set<String> labels            = new HashSet<>();
+		final Set<String> relationshipTypes = new HashSet<>();
 
+		if (wrapper instanceof NodeWrapper) {
+
+			labels.addAll(((NodeWrapper)wrapper).getLabelNames());
+		}
+
+		if (wrapper instanceof RelationshipWrapper) {
+
+			relationshipTypes.add(((RelationshipWrapper)wrapper).getType().name());
+		}
+
+		modifiedRelationshipTypes.addAll(relationshipTypes);
+		modifiedLabels.addAll(labels);
 		modifiedEntities.add(wrapper);
 	}
 
+	/**
+	 * Registers a label that was added to or removed from a node in this
+	 * transaction. Label changes affect node queries as well as relationship
+	 * queries that are restricted by source or target label.
+	 *
+	 * @param label the name of the label
+	 */
+	public void labelModified(final String label) {
+
+		modifiedRelationshipTypes.add(label);
+		modifiedLabels.add(label);
+	}
+
+	public Set<String> getModifiedLabels() {
+		return modifiedLabels;
+	}
+
+	public Set<String> getModifiedRelationshipTypes() {
+		return modifiedRelationshipTypes;
+	}
+
 	// ----- public static methods -----
 	public static RuntimeException translateClientException(final ClientException cex) {
 
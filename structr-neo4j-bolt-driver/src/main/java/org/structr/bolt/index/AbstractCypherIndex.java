@@ -18,17 +18,25 @@
  */
 package org.structr.bolt.index;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.QueryResult;
+import org.structr.api.config.Settings;
 import org.structr.api.graph.PropertyContainer;
 import org.structr.api.index.Index;
 import org.structr.api.search.ArrayQuery;
@@ -37,14 +45,15 @@ import org.structr.api.search.ExactQuery;
 import org.structr.api.search.FulltextQuery;
 import org.structr.api.search.GroupQuery;
 import org.structr.api.search.NotEmptyQuery;
+import org.structr.api.search.QueryCursor;
 import org.structr.api.search.QueryPredicate;
 import org.structr.api.search.RangeQuery;
 import org.structr.api.search.SpatialQuery;
 import org.structr.api.search.TypeConverter;
 import org.structr.api.search.TypeQuery;
 import org.structr.api.search.UuidQuery;
+import org.structr.api.util.Cachable;
 import org.structr.api.util.FixedSizeCache;
-import org.structr.api.util.Iterables;
 import org.structr.bolt.*;
 import org.structr.bolt.index.converter.BooleanTypeConverter;
 import org.structr.bolt.index.converter.ByteTypeConverter;
@@ -105,18 +114,30 @@ public abstract class AbstractCypherIndex<T extends PropertyContainer> implement
 		CONVERTERS.put(byte.class,    new ByteTypeConverter());
 	}
 
-	protected final FixedSizeCache<Integer, CachedQueryResult> queryCache;
+	/**
+	 * Tag for cached results of queries that are not restricted to a type
+	 * and must therefore be evicted on any modification.
+	 */
+	public static final String ANY_TYPE = "*";
+
+	private final Map<String, Set<QueryCacheKey>> cacheKeysByType = new ConcurrentHashMap<>();
+	private final Map<String, CacheStatistics> cacheStatistics    = new ConcurrentHashMap<>();
+	private final Object cacheLock                                = new Object();
+	protected final FixedSizeCache<QueryCacheKey, CachedQueryResult> queryCache;
 	protected final BoltDatabaseService db;
+	private final int maxCachedResultSize;
 
 	public AbstractCypherIndex(final BoltDatabaseService db, final int queryCacheSize) {
 
-		this.queryCache = new FixedSizeCache<>(queryCacheSize);
-		this.db         = db;
+		this.maxCachedResultSize = Settings.QueryCacheMaxResults.getValue();
+		this.queryCache          = new FixedSizeCache<>(queryCacheSize);
+		this.db                  = db;
 	}
 
 	public abstract QueryResult<T> getResult(final PageableQuery query);
 	public abstract String getQueryPrefix(final String mainType, final String sourceTypeLabel, final String targetTypeLabel);
 	public abstract String getQuerySuffix();
+	public abstract Set<String> getModifiedTypes(final SessionTransaction tx);
 
 	@Override
 	public void add(final PropertyContainer t, final String key, final Object value, final Class typeHint) {
@@ -159,17 +180,143 @@ public abstract class AbstractCypherIndex<T extends PropertyContainer> implement
 			query.sort(predicate.getSortType(), sortKey, predicate.sortDescending());
 		}
 
-		return getResult(query);
+		// keyset paginated queries are evaluated lazily and never cached,
+		// caching would materialize the complete result of each page
+		final QueryCursor cursor = predicate.getCursor();
+		if (cursor != null) {
+
+			query.cursor(cursor);
+
+			return getResult(query);
+		}
+
+		// streamed results are read only once, caching them would
+		// materialize the complete result as well
+		if (predicate.isStreaming()) {
+			return getResult(query);
+		}
+
+		final Set<String> types = getCacheTypes(query);
+
+		// bypass the cache if the current transaction has modified one of the
+		// types this query depends on, cached results would not reflect that
+		if (isModifiedInCurrentTransaction(types)) {
+			return getResult(query);
+		}
+
+		final QueryCacheKey cacheKey = new QueryCacheKey(query.getStatement(), query.getParameters());
+		final CachedQueryResult cached = queryCache.get(cacheKey);
+
+		if (cached != null) {
+
+			for (final String type : types) {
+				getStatistics(type).hits.incrementAndGet();
+			}
+
+			return cached;
+		}
+
+		for (final String type : types) {
+			getStatistics(type).misses.incrementAndGet();
+		}
+
+		// remember the invalidation state of the types before the query is executed
+		// so that a result that was invalidated while being fetched is not cached
+		final long generation       = getGeneration(types);
+		final QueryResult<T> source = getResult(query);
+		final Iterator<T> iterator  = source.iterator();
+		final List<T> buffer        = new ArrayList<>();
+
+		// read at most one element more than the maximum cached result size
+		while (iterator.hasNext() && buffer.size() <= maxCachedResultSize) {
+			buffer.add(iterator.next());
+		}
+
+		if (iterator.hasNext()) {
+
+			// large result, continue lazily without caching
+			return new PartialQueryResult(source, buffer, iterator);
+		}
+
+		final CachedQueryResult result = new CachedQueryResult(cacheKey, types, buffer);
+
+		// generation check and registration must not interleave with an invalidation
+		synchronized (cacheLock) {
+
+			if (generation == getGeneration(types)) {
+
+				for (final String type : types) {
+					cacheKeysByType.computeIfAbsent(type, k -> ConcurrentHashMap.newKeySet()).add(cacheKey);
+				}
+
+				queryCache.put(cacheKey, result);
+			}
+		}
+
+		return result;
 	}
 
 	public void invalidateCache() {
 
-		if (!queryCache.isEmpty()) {
+		synchronized (cacheLock) {
+
+			for (final CacheStatistics statistics : cacheStatistics.values()) {
+				statistics.generation.incrementAndGet();
+			}
+
+			if (!queryCache.isEmpty()) {
 
-			queryCache.clear();
+				queryCache.clear();
+			}
+
+			cacheKeysByType.clear();
 		}
 	}
 
+	/**
+	 * Removes all cached query results that depend on one of the given types
+	 * (labels or relationship types). Results of queries that are not restricted
+	 * to a type are always removed.
+	 *
+	 * @param types the modified types
+	 */
+	public void invalidateCache(final Set<String> types) {
+
+		if (types.isEmpty()) {
+			return;
+		}
+
+		// a native write statement can have modified any type
+		if (types.contains(ANY_TYPE)) {
+
+			invalidateCache();
+			return;
+		}
+
+		for (final String type : types) {
+			invalidateCache(type);
+		}
+
+		invalidateCache(ANY_TYPE);
+	}
+
+	/**
+	 * Returns the number of cache hits, misses and evictions per type.
+	 *
+	 * @return a map of type name to counters
+	 */
+	public Map<String, Map<String, Long>> getCacheStatistics() {
+
+		final Map<String, Map<String, Long>> result = new TreeMap<>();
+
+		for (final Map.Entry<String, CacheStatistics> entry : cacheStatistics.entrySet()) {
+
+			result.put(entry.getKey(), entry.getValue().toMap());
+		}
+
+		return result;
+	}
+
 	// ----- interface QueryFactory -----
 	@Override
 	public boolean createQuery(final QueryFactory parent, final QueryPredicate predicate, final AdvancedCypherQuery query, final boolean isFirst) {
@@ -191,24 +338,115 @@ public abstract class AbstractCypherIndex<T extends PropertyContainer> implement
 		return false;
 	}
 
-	// ----- nested classes -----
-	protected class CachedQueryResult implements QueryResult<T> {
+	// ----- protected methods -----
+	protected Set<String> getCacheTypes(final AdvancedCypherQuery query) {
 
-		private Collection<T> result = null;
+		final Set<String> types = query.getTypeLabels();
+		if (types.isEmpty()) {
 
-		public CachedQueryResult(final Iterable<T> source) {
+			types.add(ANY_TYPE);
+		}
+
+		return types;
+	}
 
-			if (source instanceof Collection) {
+	// ----- private methods -----
+	private void invalidateCache(final String type) {
 
-				this.result = (Collection)source;
+		synchronized (cacheLock) {
 
-			} else {
+			final Set<QueryCacheKey> keys = cacheKeysByType.remove(type);
 
-				this.result = Iterables.toList(source);
+			getStatistics(type).generation.incrementAndGet();
 
+			if (keys != null) {
+
+				for (final QueryCacheKey key : keys) {
+
+					final CachedQueryResult cached = queryCache.get(key);
+					if (cached != null) {
+
+						queryCache.remove(key);
+
+						// remove the key from the sets of the other types as well
+						cached.onRemoveFromCache();
+					}
+				}
+			}
+		}
+	}
+
+	private boolean isModifiedInCurrentTransaction(final Set<String> types) {
+
+		final Set<String> modifiedTypes = getModifiedTypes(db.getCurrentTransaction());
+		if (modifiedTypes.isEmpty()) {
+
+			return false;
+		}
+
+		if (types.contains(ANY_TYPE) || modifiedTypes.contains(ANY_TYPE)) {
+
+			return true;
+		}
+
+		for (final String type : types) {
+
+			if (modifiedTypes.contains(type)) {
+				return true;
 			}
 		}
 
+		return false;
+	}
+
+	private long getGeneration(final Set<String> types) {
+
+		long generation = getStatistics(ANY_TYPE).generation.get();
+
+		for (final String type : types) {
+			generation += getStatistics(type).generation.get();
+		}
+
+		return generation;
+	}
+
+	private CacheStatistics getStatistics(final String type) {
+		return cacheStatistics.computeIfAbsent(type, k -> new CacheStatistics());
+	}
+
+	// ----- nested classes -----
+	private static class CacheStatistics {
+
+		private final AtomicLong generation = new AtomicLong();
+		private final AtomicLong evictions  = new AtomicLong();
+		private final AtomicLong misses     = new AtomicLong();
+		private final AtomicLong hits       = new AtomicLong();
+
+		public Map<String, Long> toMap() {
+
+			final Map<String, Long> map = new LinkedHashMap<>();
+
+			map.put("hits",      hits.get());
+			map.put("misses",    misses.get());
+			map.put("evictions", evictions.get());
+
+			return map;
+		}
+	}
+
+	protected class CachedQueryResult implements QueryResult<T>, Cachable {
+
+		private Collection<T> result    = null;
+		private Set<String> types       = null;
+		private QueryCacheKey cacheKey  = null;
+
+		public CachedQueryResult(final QueryCacheKey cacheKey, final Set<String> types, final Collection<T> result) {
+
+			this.cacheKey = cacheKey;
+			this.types    = types;
+			this.result   = result;
+		}
+
 		@Override
 		public void close() {
 		}
@@ -221,5 +459,115 @@ public abstract class AbstractCypherIndex<T extends PropertyContainer> implement
 		public boolean isEmpty() {
 			return result.isEmpty();
 		}
+
+		@Override
+		public void onRemoveFromCache() {
+
+			for (final String type : types) {
+
+				final Set<QueryCacheKey> keys = cacheKeysByType.get(type);
+				if (keys != null) {
+
+					keys.remove(cacheKey);
+				}
+
+				getStatistics(type).evictions.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Query result that returns the elements that were already read
+	 * before continuing with the remaining elements of the source.
+	 */
+	private class PartialQueryResult implements QueryResult<T> {
+
+		private QueryResult<T> source = null;
+		private Iterator<T> remaining = null;
+		private List<T> buffer        = null;
+
+		public PartialQueryResult(final QueryResult<T> source, final List<T> buffer, final Iterator<T> remaining) {
+
+			this.remaining = remaining;
+			this.source    = source;
+			this.buffer    = buffer;
+		}
+
+		@Override
+		public void close() {
+			source.close();
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+
+			final Iterator<T> buffered = buffer.iterator();
+
+			return new Iterator<T>() {
+
+				@Override
+				public boolean hasNext() {
+					return buffered.hasNext() || remaining.hasNext();
+				}
+
+				@Override
+				public T next() {
+					return buffered.hasNext() ? buffered.next() : remaining.next();
+				}
+			};
+		}
+	}
+
+	/**
+	 * Cache key that consists of the complete statement and its parameters.
+	 */
+	protected static class QueryCacheKey {
+
+		private Map<String, Object> parameters = null;
+		private String statement               = null;
+		private int hashCode                   = 0;
+
+		public QueryCacheKey(final String statement, final Map<String, Object> parameters) {
+
+			this.parameters = new HashMap<>(parameters);
+			this.statement  = statement;
+
+			// parameter values can be arrays, so they are hashed consistently with Objects.deepEquals
+			int parameterHash = 0;
+
+			for (final Map.Entry<String, Object> entry : this.parameters.entrySet()) {
+				parameterHash += entry.getKey().hashCode() ^ Arrays.deepHashCode(new Object[] { entry.getValue() });
+			}
+
+			this.hashCode = 31 * statement.hashCode() + parameterHash;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(final Object other) {
+
+			if (!(other instanceof QueryCacheKey)) {
+				return false;
+			}
+
+			final QueryCacheKey key = (QueryCacheKey)other;
+
+			if (!statement.equals(key.statement) || !parameters.keySet().equals(key.parameters.keySet())) {
+				return false;
+			}
+
+			for (final Map.Entry<String, Object> entry : parameters.entrySet()) {
+
+				if (!Objects.deepEquals(entry.getValue(), key.parameters.get(entry.getKey()))) {
+					return false;
+				}
+			}
+
+			return true;
+		}
 	}
 }
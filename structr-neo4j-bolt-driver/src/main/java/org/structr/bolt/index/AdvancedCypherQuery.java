@@ -20,10 +20,13 @@ package org.structr.bolt.index;
 
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import org.structr.api.search.QueryCursor;
 import org.structr.api.search.SortType;
 
 /**
@@ -39,6 +42,7 @@ public class AdvancedCypherQuery implements PageableQuery {
 	private AbstractCypherIndex<?> index         = null;
 	private boolean sortDescending               = false;
 	private SortType sortType                    = null;
+	private QueryCursor cursor                   = null;
 	private String sortKey                       = null;
 	private int page                             = 0;
 	private int pageSize                         = 0;
@@ -95,10 +99,7 @@ public class AdvancedCypherQuery implements PageableQuery {
 
 				buf.append(index.getQueryPrefix(null, sourceTypeLabel, targetTypeLabel));
 
-				if (buffer.length() > 0) {
-					buf.append(" WHERE ");
-					buf.append(buffer);
-				}
+				appendWhereClause(buf);
 
 				buf.append(index.getQuerySuffix());
 				break;
@@ -107,10 +108,7 @@ public class AdvancedCypherQuery implements PageableQuery {
 
 				buf.append(index.getQueryPrefix(typeLabels.get(0), sourceTypeLabel, targetTypeLabel));
 
-				if (buffer.length() > 0) {
-					buf.append(" WHERE ");
-					buf.append(buffer);
-				}
+				appendWhereClause(buf);
 
 				buf.append(index.getQuerySuffix());
 				break;
@@ -122,10 +120,7 @@ public class AdvancedCypherQuery implements PageableQuery {
 
 					buf.append(index.getQueryPrefix(it.next(), sourceTypeLabel, targetTypeLabel));
 
-					if (buffer.length() > 0) {
-						buf.append(" WHERE ");
-						buf.append(buffer);
-					}
+					appendWhereClause(buf);
 
 					buf.append(index.getQuerySuffix());
 
@@ -166,6 +161,20 @@ public class AdvancedCypherQuery implements PageableQuery {
 			if (sortDescending) {
 				buf.append(" DESC");
 			}
+
+			if (cursor != null) {
+
+				// keyset pagination needs a unique order
+				buf.append(", n.id");
+
+				if (sortDescending) {
+					buf.append(" DESC");
+				}
+			}
+
+		} else if (cursor != null) {
+
+			buf.append(" ORDER BY n.id");
 		}
 
 		buf.append(" SKIP ");
@@ -333,6 +342,45 @@ public class AdvancedCypherQuery implements PageableQuery {
 		this.sortKey        = sortKey;
 	}
 
+	/**
+	 * Restricts this query to the elements that follow the position of
+	 * the given cursor in the sort order of this query. Must be called
+	 * after {@link #sort(org.structr.api.search.SortType, java.lang.String, boolean)}.
+	 *
+	 * @param cursor the cursor
+	 */
+	public void cursor(final QueryCursor cursor) {
+
+		this.cursor   = cursor;
+		this.pageSize = Math.min(pageSize, cursor.getPageSize());
+
+		if (cursor.hasPosition()) {
+
+			parameters.put("cursorId", cursor.getId());
+
+			if (sortKey != null) {
+
+				if (SortType.Default.equals(sortType)) {
+
+					parameters.put("cursorValue", cursor.getSortValue());
+
+				} else {
+
+					// must match the COALESCE in the ORDER BY clause
+					parameters.put("cursorValue", cursor.getSortValue() != null ? cursor.getSortValue() : -1);
+				}
+			}
+		}
+	}
+
+	public QueryCursor getCursor() {
+		return cursor;
+	}
+
+	public Set<String> getTypeLabels() {
+		return new LinkedHashSet<>(typeLabels);
+	}
+
 	public void setSourceType(final String sourceTypeLabel) {
 		this.sourceTypeLabel = sourceTypeLabel;
 	}
@@ -341,6 +389,104 @@ public class AdvancedCypherQuery implements PageableQuery {
 		this.targetTypeLabel = targetTypeLabel;
 	}
 
+	public String getSourceType() {
+		return sourceTypeLabel;
+	}
+
+	public String getTargetType() {
+		return targetTypeLabel;
+	}
+
+	private void appendWhereClause(final StringBuilder buf) {
+
+		final boolean hasPredicates = buffer.length() > 0;
+		final boolean hasCursor     = cursor != null && cursor.hasPosition();
+
+		if (hasPredicates && hasCursor) {
+
+			buf.append(" WHERE (");
+			buf.append(buffer);
+			buf.append(") AND ");
+			appendCursorPredicate(buf);
+
+		} else if (hasPredicates) {
+
+			buf.append(" WHERE ");
+			buf.append(buffer);
+
+		} else if (hasCursor) {
+
+			buf.append(" WHERE ");
+			appendCursorPredicate(buf);
+		}
+	}
+
+	private void appendCursorPredicate(final StringBuilder buf) {
+
+		final String operator = sortDescending ? " < " : " > ";
+
+		if (sortKey == null) {
+
+			buf.append("n.id");
+			buf.append(operator);
+			buf.append("{cursorId}");
+			return;
+		}
+
+		if (SortType.Default.equals(sortType)) {
+
+			final String property = "n.`" + sortKey + "`";
+
+			// null values are sorted last in ascending order
+			// and first in descending order
+			if (cursor.getSortValue() != null) {
+
+				buf.append("(");
+				buf.append(property);
+				buf.append(operator);
+				buf.append("{cursorValue} OR (");
+				buf.append(property);
+				buf.append(" = {cursorValue} AND n.id");
+				buf.append(operator);
+				buf.append("{cursorId})");
+
+				if (!sortDescending) {
+
+					buf.append(" OR ");
+					buf.append(property);
+					buf.append(" IS NULL");
+				}
+
+				buf.append(")");
+
+			} else if (sortDescending) {
+
+				buf.append("(");
+				buf.append(property);
+				buf.append(" IS NOT NULL OR n.id < {cursorId})");
+
+			} else {
+
+				buf.append("(");
+				buf.append(property);
+				buf.append(" IS NULL AND n.id > {cursorId})");
+			}
+
+		} else {
+
+			final String property = "COALESCE(n.`" + sortKey + "`, -1)";
+
+			buf.append("(");
+			buf.append(property);
+			buf.append(operator);
+			buf.append("{cursorValue} OR (");
+			buf.append(property);
+			buf.append(" = {cursorValue} AND n.id");
+			buf.append(operator);
+			buf.append("{cursorId}))");
+		}
+	}
+
 	private int deepHashCode(final Map<String, Object> map) {
 
 		final StringBuilder buf = new StringBuilder();
@@ -18,10 +18,12 @@
  */
 package org.structr.bolt.index;
 
+import java.util.Set;
 import org.structr.api.QueryResult;
 import org.structr.api.graph.Node;
 import org.structr.api.util.QueryUtils;
 import org.structr.bolt.BoltDatabaseService;
+import org.structr.bolt.SessionTransaction;
 import org.structr.bolt.mapper.NodeNodeMapper;
 
 /**
@@ -49,6 +51,11 @@ public class CypherNodeIndex extends AbstractCypherIndex<Node> {
 		return " RETURN DISTINCT n";
 	}
 
+	@Override
+	public Set<String> getModifiedTypes(final SessionTransaction tx) {
+		return tx.getModifiedLabels();
+	}
+
 	@Override
 	public QueryResult<Node> getResult(final PageableQuery query) {
 		return QueryUtils.map(new NodeNodeMapper(db), new NodeResultStream(db, query));
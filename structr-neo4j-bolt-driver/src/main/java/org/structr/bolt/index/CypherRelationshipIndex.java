@@ -18,10 +18,12 @@
  */
 package org.structr.bolt.index;
 
+import java.util.Set;
 import org.structr.api.QueryResult;
 import org.structr.api.graph.Relationship;
 import org.structr.api.util.QueryUtils;
 import org.structr.bolt.BoltDatabaseService;
+import org.structr.bolt.SessionTransaction;
 import org.structr.bolt.mapper.RelationshipRelationshipMapper;
 
 /**
@@ -61,6 +63,27 @@ public class CypherRelationshipIndex extends AbstractCypherIndex<Relationship> {
 		return " RETURN DISTINCT n";
 	}
 
+	@Override
+	protected Set<String> getCacheTypes(final AdvancedCypherQuery query) {
+
+		final Set<String> types = super.getCacheTypes(query);
+
+		// queries that are restricted by source and target label
+		// depend on the labels of the connected nodes as well
+		if (query.getSourceType() != null && query.getTargetType() != null) {
+
+			types.add(query.getSourceType());
+			types.add(query.getTargetType());
+		}
+
+		return types;
+	}
+
+	@Override
+	public Set<String> getModifiedTypes(final SessionTransaction tx) {
+		return tx.getModifiedRelationshipTypes();
+	}
+
 	@Override
 	public QueryResult<Relationship> getResult(final PageableQuery query) {
 		return QueryUtils.map(new RelationshipRelationshipMapper(db), new RelationshipResultStream(db, query));
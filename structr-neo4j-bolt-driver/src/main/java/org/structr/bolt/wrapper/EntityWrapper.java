@@ -30,6 +30,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.NotFoundException;
 import org.structr.api.NotInTransactionException;
+import org.structr.api.config.Settings;
 import org.structr.api.graph.PropertyContainer;
 import org.structr.api.util.Cachable;
 import org.structr.bolt.BoltDatabaseService;
@@ -52,7 +53,7 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 		this.db   = db;
 	}
 
-	protected abstract String getQueryPrefix();
+	public abstract String getQueryPrefix();
 	public abstract void clearCaches();
 
 	@Override
@@ -123,14 +124,22 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 		// only update values if actually different from what is stored
 		if (differentValue(key, value)) {
 
-			final Map<String, Object> map = new HashMap<>();
-			final String query            = getQueryPrefix() + " WHERE ID(n) = {id} SET n.`" + key + "` = {value}";
+			if (Settings.BufferPropertyWrites.getValue()) {
 
-			map.put("id", id);
-			map.put("value", value);
+				// written in one statement with the other buffered values of this transaction
+				tx.bufferProperty(this, key, value);
 
-			// update entity handle
-			tx.set(query, map);
+			} else {
+
+				final Map<String, Object> map = new HashMap<>();
+				final String query            = getQueryPrefix() + " WHERE ID(n) = {id} SET n.`" + key + "` = {value}";
+
+				map.put("id", id);
+				map.put("value", value);
+
+				// update entity handle
+				tx.set(query, map);
+			}
 
 			// update data
 			update(key, value);
@@ -145,16 +154,24 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 
 		assertNotStale();
 
-		final Map<String, Object> map = new HashMap<>();
-		final SessionTransaction tx   = db.getCurrentTransaction();
-		final String query            = getQueryPrefix() + " WHERE ID(n) = {id} SET n += {properties}";
+		final SessionTransaction tx = db.getCurrentTransaction();
 
-		// overwrite a potential "id" property
-		map.put("id", id);
-		map.put("properties", values);
+		if (Settings.BufferPropertyWrites.getValue()) {
+
+			tx.bufferProperties(this, values);
 
-		// execute query
-		tx.set(query, map);
+		} else {
+
+			final Map<String, Object> map = new HashMap<>();
+			final String query            = getQueryPrefix() + " WHERE ID(n) = {id} SET n += {properties}";
+
+			// overwrite a potential "id" property
+			map.put("id", id);
+			map.put("properties", values);
+
+			// execute query
+			tx.set(query, map);
+		}
 
 		// update data
 		update(values);
@@ -167,14 +184,23 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 
 		assertNotStale();
 
-		final SessionTransaction tx   = db.getCurrentTransaction();
-		final Map<String, Object> map = new HashMap<>();
-		final String query            = getQueryPrefix() + " WHERE ID(n) = {id} SET n.`" + key + "` = Null";
+		final SessionTransaction tx = db.getCurrentTransaction();
 
-		map.put("id", id);
+		if (Settings.BufferPropertyWrites.getValue()) {
+
+			// null values remove the property when the buffer is written
+			tx.bufferProperty(this, key, null);
+
+		} else {
+
+			final Map<String, Object> map = new HashMap<>();
+			final String query            = getQueryPrefix() + " WHERE ID(n) = {id} SET n.`" + key + "` = Null";
+
+			map.put("id", id);
 
-		// execute query
-		tx.set(query, map);
+			// execute query
+			tx.set(query, map);
+		}
 
 		// remove key from data
 		data.remove(key);
@@ -200,6 +226,9 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 
 		map.put("id", id);
 
+		// buffered values of a deleted entity don't need to be written
+		tx.discardProperties(this);
+
 		tx.set(getQueryPrefix() + " WHERE ID(n) = {id} DELETE n", map);
 		tx.modified(this);
 
@@ -237,9 +266,12 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 
 			try {
 
+				final T entity = (T)tx.getEntity(getQueryPrefix() + " WHERE ID(n) = {id} RETURN n", map);
+
 				// update data
 				data.clear();
-				update(tx.getEntity(getQueryPrefix() + " WHERE ID(n) = {id} RETURN n", map).asMap());
+				update(entity.asMap());
+				refresh(entity);
 
 			} catch (NoSuchRecordException nex) {
 				throw new NotFoundException(nex);
@@ -249,6 +281,15 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 		}
 	}
 
+	/**
+	 * Called when the data of a stale entity has been reloaded from
+	 * the database, subclasses can refresh their own state here.
+	 *
+	 * @param entity the reloaded entity
+	 */
+	protected void refresh(final T entity) {
+	}
+
 	// ----- private methods -----
 	private void update(final Map<String, Object> values) {
 
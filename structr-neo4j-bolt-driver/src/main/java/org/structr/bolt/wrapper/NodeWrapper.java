@@ -18,6 +18,7 @@
  */
 package org.structr.bolt.wrapper;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -25,7 +26,11 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.structr.api.NativeResult;
+import org.structr.api.QueryResult;
 import org.structr.api.graph.Direction;
 import org.structr.api.graph.Label;
 import org.structr.api.graph.Node;
@@ -43,10 +48,15 @@ import org.structr.bolt.mapper.RelationshipRelationshipMapper;
 public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> implements Node {
 
 	private final Map<String, Map<String, List<Relationship>>> relationshipCache = new HashMap<>();
+	private final Set<String> labels                                             = ConcurrentHashMap.newKeySet();
 	private static FixedSizeCache<Long, NodeWrapper> nodeCache                   = null;
+	private static final int PREFETCH_BATCH_SIZE                                 = 1000;
 
 	private NodeWrapper(final BoltDatabaseService db, final org.neo4j.driver.v1.types.Node node) {
+
 		super(db, node);
+
+		Iterables.addAll(labels, node.labels());
 	}
 
 	public static void initialize(final int cacheSize) {
@@ -54,7 +64,7 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 	}
 
 	@Override
-	protected String getQueryPrefix() {
+	public String getQueryPrefix() {
 		return "MATCH (n)";
 	}
 
@@ -69,6 +79,13 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		relationshipCache.clear();
 	}
 
+	@Override
+	protected void refresh(final org.neo4j.driver.v1.types.Node node) {
+
+		labels.clear();
+		Iterables.addAll(labels, node.labels());
+	}
+
 	@Override
 	public Relationship createRelationshipTo(final Node endNode, final RelationshipType relationshipType) {
 		return createRelationshipTo(endNode, relationshipType, Collections.EMPTY_MAP);
@@ -100,7 +117,12 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		((NodeWrapper)endNode).relationshipCache.clear();
 		relationshipCache.clear();
 
-		return RelationshipWrapper.newInstance(db, rel);
+		final RelationshipWrapper relationship = RelationshipWrapper.newInstance(db, rel);
+
+		// new relationship, invalidate cached query results for its type
+		tx.modified(relationship);
+
+		return relationship;
 	}
 
 	@Override
@@ -114,7 +136,10 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		map.put("id", id);
 
 		tx.set("MATCH (n) WHERE ID(n) = {id} SET n :" + label.name(), map);
+		tx.labelModified(label.name());
 		tx.modified(this);
+
+		labels.add(label.name());
 	}
 
 	@Override
@@ -128,7 +153,10 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		map.put("id", id);
 
 		tx.set("MATCH (n) WHERE ID(n) = {id} REMOVE n:" + label.name(), map);
+		tx.labelModified(label.name());
 		tx.modified(this);
+
+		labels.remove(label.name());
 	}
 
 	@Override
@@ -150,6 +178,16 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		return result;
 	}
 
+	/**
+	 * Returns the names of the labels of this node as known to this
+	 * wrapper, without a database round trip.
+	 *
+	 * @return the label names
+	 */
+	public Set<String> getLabelNames() {
+		return labels;
+	}
+
 	@Override
 	public boolean hasRelationshipTo(final RelationshipType type, final Node targetNode) {
 
@@ -334,6 +372,169 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		}
 	}
 
+	/**
+	 * Loads the relationships of the given direction and type for all
+	 * given nodes with one query per batch of nodes, and stores them in
+	 * the relationship cache of each node. Nodes that already have the
+	 * relationships in their cache are skipped.
+	 *
+	 * @param db
+	 * @param nodes
+	 * @param direction
+	 * @param relationshipType
+	 */
+	public static void prefetchRelationships(final BoltDatabaseService db, final Iterable<Node> nodes, final Direction direction, final RelationshipType relationshipType) {
+
+		// BOTH without a type is cached under the same key as all relationships
+		final Direction localDirection         = Direction.BOTH.equals(direction) && relationshipType == null ? null : direction;
+		final Map<Long, AssociationList> lists = new LinkedHashMap<>();
+		final Map<Long, NodeWrapper> wrappers  = new HashMap<>();
+
+		for (final Node node : nodes) {
+
+			if (node instanceof NodeWrapper) {
+
+				final NodeWrapper wrapper = (NodeWrapper)node;
+
+				if (!wrapper.stale && wrapper.getList(localDirection, relationshipType) == null) {
+
+					lists.put(wrapper.getId(), wrapper.new AssociationList());
+					wrappers.put(wrapper.getId(), wrapper);
+				}
+			}
+		}
+
+		if (lists.isEmpty()) {
+			return;
+		}
+
+		final SessionTransaction tx = db.getCurrentTransaction();
+		final List<Long> ids        = new ArrayList<>(lists.keySet());
+		final String type           = relationshipType != null ? ":" + relationshipType.name() : "";
+		final String pattern;
+
+		if (Direction.OUTGOING.equals(localDirection)) {
+
+			pattern = "(n)-[r" + type + "]->()";
+
+		} else if (Direction.INCOMING.equals(localDirection)) {
+
+			pattern = "(n)<-[r" + type + "]-()";
+
+		} else {
+
+			pattern = "(n)-[r" + type + "]-()";
+		}
+
+		for (int i=0; i<ids.size(); i+=PREFETCH_BATCH_SIZE) {
+
+			final Map<String, Object> map = new HashMap<>();
+
+			map.put("ids", ids.subList(i, Math.min(ids.size(), i + PREFETCH_BATCH_SIZE)));
+
+			try (final NativeResult result = tx.run("UNWIND {ids} AS id MATCH " + pattern + " WHERE ID(n) = id RETURN id, r", map)) {
+
+				while (result.hasNext()) {
+
+					final Map<String, Object> row = result.next();
+					final Object id               = row.get("id");
+					final Object rel              = row.get("r");
+
+					if (id instanceof Number && rel instanceof Relationship) {
+
+						final AssociationList list = lists.get(((Number)id).longValue());
+						if (list != null) {
+
+							list.add((Relationship)rel);
+						}
+					}
+				}
+			}
+		}
+
+		for (final Entry<Long, AssociationList> entry : lists.entrySet()) {
+
+			wrappers.get(entry.getKey()).setList(localDirection, relationshipType, entry.getValue());
+		}
+	}
+
+	/**
+	 * Creates one relationship of the given type between the nodes at the
+	 * same position in the given lists with a single statement. Like
+	 * {@link #createRelationshipTo(Node, RelationshipType, Map)}, this
+	 * merges relationships that already exist between two nodes.
+	 *
+	 * @param db
+	 * @param startNodes
+	 * @param endNodes
+	 * @param relationshipType
+	 * @param properties
+	 *
+	 * @return the new relationships
+	 */
+	public static List<Relationship> createRelationships(final BoltDatabaseService db, final List<Node> startNodes, final List<Node> endNodes, final RelationshipType relationshipType, final List<Map<String, Object>> properties) {
+
+		final SessionTransaction tx          = db.getCurrentTransaction();
+		final List<Map<String, Object>> rows = new ArrayList<>(startNodes.size());
+		final List<Relationship> result      = new ArrayList<>(startNodes.size());
+		final Map<String, Object> map        = new HashMap<>();
+
+		for (int i=0; i<startNodes.size(); i++) {
+
+			final NodeWrapper startNode   = (NodeWrapper)startNodes.get(i);
+			final NodeWrapper endNode     = (NodeWrapper)endNodes.get(i);
+			final Map<String, Object> row = new HashMap<>();
+
+			startNode.assertNotStale();
+			endNode.assertNotStale();
+
+			row.put("id1", startNode.getId());
+			row.put("id2", endNode.getId());
+			row.put("relProperties", properties != null ? properties.get(i) : Collections.EMPTY_MAP);
+
+			rows.add(row);
+		}
+
+		if (rows.isEmpty()) {
+			return result;
+		}
+
+		map.put("rows", rows);
+
+		try (final QueryResult<org.neo4j.driver.v1.types.Relationship> rels = tx.getRelationships(
+			"UNWIND {rows} AS row "
+				+ "MATCH (n), (m) WHERE ID(n) = row.id1 AND ID(m) = row.id2 "
+				+ "MERGE (n)-[r:" + relationshipType.name() + "]->(m) "
+				+ "SET r += row.relProperties RETURN r",
+			map)) {
+
+			for (final org.neo4j.driver.v1.types.Relationship rel : rels) {
+
+				final RelationshipWrapper relationship = RelationshipWrapper.newInstance(db, rel);
+
+				// new relationship, invalidate cached query results for its type
+				tx.modified(relationship);
+
+				result.add(relationship);
+			}
+		}
+
+		for (int i=0; i<startNodes.size(); i++) {
+
+			final NodeWrapper startNode = (NodeWrapper)startNodes.get(i);
+			final NodeWrapper endNode   = (NodeWrapper)endNodes.get(i);
+
+			tx.modified(startNode);
+			tx.modified(endNode);
+
+			// clear caches
+			startNode.relationshipCache.clear();
+			endNode.relationshipCache.clear();
+		}
+
+		return result;
+	}
+
 	// ----- private methods -----
 	private Map<String, List<Relationship>> getCache(final Direction direction) {
 
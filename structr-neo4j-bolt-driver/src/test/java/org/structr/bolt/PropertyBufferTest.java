@@ -0,0 +1,203 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.bolt;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.NativeResult;
+import org.structr.api.Transaction;
+import org.structr.api.config.Settings;
+import org.structr.api.graph.Node;
+
+public class PropertyBufferTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(PropertyBufferTest.class.getName());
+
+	private BoltDatabaseService s = null;
+
+	@Before
+	public void setup() {
+
+		try {
+
+			Settings.DatabasePath.setValue(Files.createTempDirectory("structr-test").toFile().getAbsolutePath());
+			Settings.ConnectionUrl.setValue(Settings.TestingConnectionUrl.getValue());
+
+		} catch (IOException ioex) {
+			logger.warn("", ioex);
+		}
+
+		Settings.BufferPropertyWrites.setValue(true);
+
+		s = new BoltDatabaseService();
+		s.initialize();
+	}
+
+	@After
+	public void teardown() {
+
+		Settings.BufferPropertyWrites.setValue(false);
+
+		s.shutdown();
+	}
+
+	@Test
+	public void testReadYourWrites() {
+
+		final long id = createNode();
+
+		try (final Transaction tx = s.beginTx()) {
+
+			final Node node = s.getNodeById(id);
+
+			node.setProperty("name", "Test");
+
+			Assert.assertEquals("Buffered value not visible to the entity", "Test", node.getProperty("name"));
+			Assert.assertEquals("Buffered value not visible to a query", "Test", getName(id));
+
+			node.setProperty("name", "Test2");
+			node.removeProperty("name");
+
+			Assert.assertNull("Buffered removal not visible to the entity", node.getProperty("name"));
+			Assert.assertNull("Buffered removal not visible to a query", getName(id));
+
+			tx.success();
+		}
+	}
+
+	@Test
+	public void testSavedStatements() {
+
+		final long id = createNode();
+
+		try (final Transaction tx = s.beginTx()) {
+
+			final Node node                   = s.getNodeById(id);
+			final Map<String, Object> values  = new HashMap<>();
+
+			values.put("key1", "value1");
+			values.put("key2", "value2");
+			values.put("key3", "value3");
+
+			// one statement without buffering
+			node.setProperties(values);
+
+			// two statements without buffering
+			node.setProperty("key4", "value4");
+			node.setProperty("key5", "value5");
+
+			tx.success();
+
+			// three statements written in one
+			Assert.assertEquals("Invalid number of saved statements", 2, s.getCurrentTransaction().getSavedStatements());
+		}
+	}
+
+	@Test
+	public void testFlushOnClose() {
+
+		final long id = createNode();
+
+		try (final Transaction tx = s.beginTx()) {
+
+			final Node node = s.getNodeById(id);
+
+			tx.success();
+
+			// buffered after success(), must be written when the transaction is closed
+			node.setProperty("name", "Test");
+		}
+
+		try (final Transaction tx = s.beginTx()) {
+
+			Assert.assertEquals("Buffered value not written on close", "Test", getName(id));
+
+			tx.success();
+		}
+	}
+
+	@Test
+	public void testFlushFailureOnClose() {
+
+		final long id = createNode();
+
+		try {
+
+			try (final Transaction tx = s.beginTx()) {
+
+				final Node node = s.getNodeById(id);
+
+				node.setProperty("name", "Test");
+
+				tx.success();
+
+				// nested maps can not be stored, writing the buffer fails on close
+				node.setProperty("invalid", Collections.singletonMap("key", Collections.singletonMap("key", "value")));
+			}
+
+			fail("Failure to write buffered properties should be reported on close");
+
+		} catch (RuntimeException expected) {
+		}
+
+		try (final Transaction tx = s.beginTx()) {
+
+			Assert.assertNull("Transaction with a failed flush should be rolled back", getName(id));
+
+			tx.success();
+		}
+	}
+
+	// ----- private methods -----
+	private long createNode() {
+
+		try (final Transaction tx = s.beginTx()) {
+
+			final Node node = s.createNode(Collections.EMPTY_SET, Collections.EMPTY_MAP);
+
+			tx.success();
+
+			return node.getId();
+		}
+	}
+
+	private Object getName(final long id) {
+
+		final NativeResult result = s.execute("MATCH (n) WHERE ID(n) = {id} RETURN n.name AS name", Collections.singletonMap("id", id));
+
+		try {
+
+			return result.hasNext() ? result.next().get("name") : null;
+
+		} finally {
+
+			result.close();
+		}
+	}
+}
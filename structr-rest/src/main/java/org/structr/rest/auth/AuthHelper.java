@@ -168,14 +168,25 @@ public class AuthHelper {
 	}
 
 	/**
-	 * Find a {@link Principal} for the given session id
+	 * Find a {@link Principal} for the given session id, the principal
+	 * is cached in {@link SessionPrincipalCache}.
 	 *
 	 * @param sessionId
 	 * @return principal
 	 */
 	public static Principal getPrincipalForSessionId(final String sessionId) {
 
-		return getPrincipalForCredential(Principal.sessionIds, new String[]{ sessionId });
+		Principal principal = SessionPrincipalCache.getPrincipal(sessionId);
+		if (principal == null) {
+
+			principal = getPrincipalForCredential(Principal.sessionIds, new String[]{ sessionId });
+			if (principal != null) {
+
+				SessionPrincipalCache.put(sessionId, principal);
+			}
+		}
+
+		return principal;
 
 	}
 
@@ -195,6 +206,8 @@ public class AuthHelper {
 			SessionHelper.clearSession(session.getId());
 			user.addSessionId(session.getId());
 
+			SessionPrincipalCache.put(session.getId(), user);
+
 			try {
 
 				Actions.call(Actions.NOTIFICATION_LOGIN, user);
@@ -118,6 +118,8 @@ public class SessionHelper {
 	 */
 	public static void clearSession(final String sessionId) {
 
+		SessionPrincipalCache.invalidate(sessionId);
+
 		final App app = StructrApp.getInstance();
 		final Query<Principal> query = app.nodeQuery(Principal.class).and(Principal.sessionIds, new String[]{sessionId}).disableSorting();
 
@@ -0,0 +1,203 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.auth;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jetty.server.session.SessionData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.NativeResult;
+import org.structr.api.config.Settings;
+import org.structr.api.util.FixedSizeCache;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.Principal;
+
+/**
+ * Bounded in-memory mapping of session ids to the id of the principal
+ * the session belongs to, and to the last known session data.
+ *
+ * A cached principal is only returned if the session id is still
+ * contained in its sessionIds property. The property is read from the
+ * database by node id and not from the node cache, so sessions that were
+ * removed from a principal by a logout, a password change or by a write
+ * that bypassed this cache are not resolved from the cache.
+ *
+ * The cached session data is the data last stored or loaded by this
+ * instance.
+ */
+public class SessionPrincipalCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(SessionPrincipalCache.class.getName());
+
+	private static final FixedSizeCache<String, Entry> cache = new FixedSizeCache<>(Settings.SessionCacheSize.getValue());
+	private static final AtomicLong hits                     = new AtomicLong();
+	private static final AtomicLong misses                   = new AtomicLong();
+
+	/**
+	 * Returns the principal for the given session id if it is cached and
+	 * the session id is still valid for it. Must be called in a transaction.
+	 *
+	 * @param sessionId
+	 * @return the principal or null
+	 */
+	public static Principal getPrincipal(final String sessionId) {
+
+		if (sessionId != null) {
+
+			final Entry entry = cache.get(sessionId);
+			if (entry != null) {
+
+				try {
+
+					if (isValid(entry.nodeId, sessionId)) {
+
+						final GraphObject obj = StructrApp.getInstance().getNodeById(entry.principalId);
+						if (obj instanceof Principal) {
+
+							hits.incrementAndGet();
+
+							return (Principal)obj;
+						}
+					}
+
+				} catch (FrameworkException fex) {
+
+					logger.warn("Unable to resolve principal for session {}: {}", sessionId, fex.getMessage());
+				}
+
+				cache.remove(sessionId);
+			}
+
+			misses.incrementAndGet();
+		}
+
+		return null;
+	}
+
+	public static void put(final String sessionId, final Principal principal) {
+
+		final String principalId = principal.getUuid();
+
+		if (sessionId != null && principalId != null) {
+
+			final Entry entry = cache.get(sessionId);
+			if (entry == null || !principalId.equals(entry.principalId)) {
+
+				cache.put(sessionId, new Entry(principalId, principal.getId()));
+			}
+		}
+	}
+
+	/**
+	 * Returns the cached session data of the given session, or null if
+	 * the data was not cached.
+	 *
+	 * @param sessionId
+	 * @return the session data or null
+	 */
+	public static SessionData getSessionData(final String sessionId) {
+
+		final Entry entry = cache.get(sessionId);
+		if (entry != null) {
+
+			return entry.sessionData;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Caches the given session data if the session belongs to a known
+	 * principal and returns whether the data was cached.
+	 *
+	 * @param sessionId
+	 * @param sessionData
+	 * @return whether the session is cached
+	 */
+	public static boolean setSessionData(final String sessionId, final SessionData sessionData) {
+
+		final Entry entry = cache.get(sessionId);
+		if (entry != null) {
+
+			entry.sessionData = sessionData;
+
+			return true;
+		}
+
+		return false;
+	}
+
+	public static void invalidate(final String sessionId) {
+
+		if (sessionId != null) {
+			cache.remove(sessionId);
+		}
+	}
+
+	public static void clear() {
+		cache.clear();
+	}
+
+	public static Map<String, Object> getStatistics() {
+
+		final Map<String, Object> stats = new LinkedHashMap<>();
+		final long hitCount             = hits.get();
+		final long missCount            = misses.get();
+		final long total                = hitCount + missCount;
+
+		stats.put("size", cache.size());
+		stats.put("hits", hitCount);
+		stats.put("misses", missCount);
+		stats.put("hitRatio", total > 0 ? (double)hitCount / (double)total : 0.0);
+
+		return stats;
+	}
+
+	// ----- private methods -----
+	private static boolean isValid(final long nodeId, final String sessionId) {
+
+		final Map<String, Object> params = new HashMap<>();
+
+		params.put("id",        nodeId);
+		params.put("sessionId", sessionId);
+
+		try (final NativeResult result = StructrApp.getInstance().getDatabaseService().execute("MATCH (n) WHERE ID(n) = {id} RETURN {sessionId} IN n.`" + Principal.sessionIds.dbName() + "` AS valid", params)) {
+
+			return result.hasNext() && Boolean.TRUE.equals(result.next().get("valid"));
+		}
+	}
+
+	// ----- nested classes -----
+	private static class Entry {
+
+		private final String principalId;
+		private final long nodeId;
+		private volatile SessionData sessionData = null;
+
+		Entry(final String principalId, final long nodeId) {
+			this.principalId = principalId;
+			this.nodeId      = nodeId;
+		}
+	}
+}
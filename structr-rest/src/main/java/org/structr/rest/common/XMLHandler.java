@@ -25,19 +25,17 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.Characters;
-import javax.xml.stream.events.EndElement;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- *
+ * Streaming XML importer that maps the configured element paths to types.
+ * Only the elements of the object that is currently read are kept in
+ * memory, so the memory usage does not depend on the size of the input.
  */
 public class XMLHandler implements Iterator<Map<String, Object>> {
 
@@ -61,8 +59,12 @@ public class XMLHandler implements Iterator<Map<String, Object>> {
 	private final Map<String, Object> configuration = new LinkedHashMap<>();
 	private Map<String, Object> nextElement         = null;
 	private XMLInputFactory factory                 = null;
-	private XMLEventReader reader                   = null;
+	private XMLStreamReader reader                  = null;
+	private XMLStreamException error                = null;
 	private Element current                         = null;
+	private long elementCount                       = 0L;
+	private long objectCount                        = 0L;
+	private long skipCount                          = 0L;
 
 	public XMLHandler(final Map<String, Object> configuration, final Reader input) throws XMLStreamException {
 
@@ -76,24 +78,72 @@ public class XMLHandler implements Iterator<Map<String, Object>> {
 		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
 		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
 
+		// report text content in one piece
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+
 		// create XML reader
-		this.reader  = factory.createXMLEventReader(input);
+		this.reader  = factory.createXMLStreamReader(input);
+	}
+
+	/**
+	 * Skips the given number of objects at the beginning of the input,
+	 * e.g. to resume an import after the last committed object.
+	 *
+	 * @param count the number of objects to skip
+	 */
+	public void skipObjects(final long count) {
+		this.skipCount = count;
 	}
 
-	public void startDocument() {
+	/**
+	 * Returns the number of objects read so far, including the skipped
+	 * objects.
+	 *
+	 * @return the number of objects
+	 */
+	public long getObjectCount() {
+		return objectCount;
+	}
+
+	/**
+	 * Returns the number of XML elements read so far.
+	 *
+	 * @return the number of elements
+	 */
+	public long getElementCount() {
+		return elementCount;
 	}
 
-	public void endDocument() {
+	/**
+	 * Throws the parse error that ended the iteration, if there was one.
+	 * The exception carries the location of the error in the input, so
+	 * callers must check this after hasNext() returned false to tell a
+	 * complete document from a malformed or truncated one.
+	 *
+	 * @throws XMLStreamException if the input could not be parsed
+	 */
+	public void checkError() throws XMLStreamException {
+
+		if (error != null) {
 
+			if (error.getLocation() != null) {
+				throw error;
+			}
+
+			throw new XMLStreamException(error.getMessage(), reader.getLocation(), error);
+		}
 	}
 
-	public void startElement(final StartElement element) {
+	// ----- private methods -----
+	private void startElement() {
 
-		final String tagName = element.getName().toString();
+		final String tagName = reader.getName().toString();
 
 		current = new Element(current, tagName);
 
-		final Map<String, Object> typeHandler = (Map)configuration.get(current.getPath());
+		elementCount++;
+
+		final Map<String, Object> typeHandler = (Map)configuration.get(current.path);
 		if (typeHandler != null) {
 
 			final Map<String, Object> properties  = (Map)typeHandler.get(PROPERTIES);
@@ -101,30 +151,27 @@ public class XMLHandler implements Iterator<Map<String, Object>> {
 			final Object isRoot                   = typeHandler.get(ISROOT);
 			final Map<String, Object> data        = new LinkedHashMap<>();
 
-			current.isRoot = Boolean.TRUE.equals(isRoot);
+			if (Boolean.TRUE.equals(isRoot)) {
+
+				current.setRoot();
+			}
 
 			// only process attributes if createNode is selected,
 			if (CREATE_NODE.equals(action)) {
 
-				for (final Iterator it = element.getAttributes(); it.hasNext();) {
+				for (int i=0; i<reader.getAttributeCount(); i++) {
 
-					final Object attr = it.next();
+					final String name  = reader.getAttributeName(i).toString();
+					final String value = reader.getAttributeValue(i);
 
-					if (attr instanceof Attribute) {
+					if (properties != null && properties.containsKey(name))  {
 
-						final Attribute attribute = (Attribute)attr;
-						final String name         = attribute.getName().toString();
-						final String value        = attribute.getValue();
+						final String mappedName = (String)properties.get(name);
+						data.put(mappedName, value);
 
-						if (properties != null && properties.containsKey(name))  {
-
-							final String mappedName = (String)properties.get(name);
-							data.put(mappedName, value);
-
-						} else {
+					} else {
 
-							data.put(name, value);
-						}
+						data.put(name, value);
 					}
 				}
 			}
@@ -133,13 +180,14 @@ public class XMLHandler implements Iterator<Map<String, Object>> {
 		}
 	}
 
-	public void endElement(final EndElement element) {
+	private void endElement() {
 
 		if (current != null) {
 
-			if (configuration.containsKey(current.getPath())) {
+			if (current.isRoot) {
 
-				if (current.isRoot) {
+				// skipped objects are read, but not converted
+				if (objectCount++ >= skipCount) {
 
 					// object is complete, can be created
 					handleObject(current);
@@ -151,16 +199,15 @@ public class XMLHandler implements Iterator<Map<String, Object>> {
 		}
 	}
 
-	public void characters(final Characters text) {
+	private void characters() {
 
-		if (current != null && !text.isIgnorableWhiteSpace() && !text.isWhiteSpace()) {
+		if (current != null && current.inObject && !reader.isWhiteSpace()) {
 
-			current.setText(text.getData());
+			current.setText(reader.getText());
 		}
 
 	}
 
-	// ----- private methods -----
 	private void handleObject(final Element element) {
 
 		nextElement = new LinkedHashMap<>();
@@ -170,7 +217,7 @@ public class XMLHandler implements Iterator<Map<String, Object>> {
 
 	private void convertAndTransform(final Element element, final Map<String, Object> entityData) {
 
-		final Map<String, Object> config = (Map)configuration.get(element.getPath());
+		final Map<String, Object> config = (Map)configuration.get(element.path);
 		if (config != null) {
 
 			final String action = (String)config.get(ACTION);
@@ -323,9 +370,11 @@ public class XMLHandler implements Iterator<Map<String, Object>> {
 
 		private Map<String, Object> data = new LinkedHashMap<>();
 		private List<Element> children   = new LinkedList<>();
+		private boolean inObject         = false;
 		private boolean isRoot           = false;
 		private Element parent           = null;
 		private String tagName           = null;
+		private String path              = null;
 		private String text              = null;
 
 		public Element(final Element parent, final String tagName) {
@@ -333,25 +382,41 @@ public class XMLHandler implements Iterator<Map<String, Object>> {
 			this.tagName = tagName;
 
 			if (parent != null) {
-				parent.children.add(this);
+
+				this.path     = parent.path + "/" + tagName;
+				this.inObject = parent.inObject;
+
+				// only elements of an object are needed after they are read
+				if (inObject) {
+					parent.children.add(this);
+				}
+
+			} else {
+
+				this.path = "/" + tagName;
 			}
 		}
 
+		public void setRoot() {
+			this.isRoot   = true;
+			this.inObject = true;
+		}
+
 		public void setData(final Map<String, Object> data) {
 			this.data.putAll(data);
 		}
 
 		public void setText(final String text) {
-			this.text = text;
-		}
 
-		public String getPath() {
+			// text can be reported in several parts
+			if (this.text != null) {
 
-			if (parent != null) {
-				return parent.getPath() + "/" + tagName;
-			}
+				this.text += text;
 
-			return "/" + tagName;
+			} else {
+
+				this.text = text;
+			}
 		}
 	}
 
@@ -360,43 +425,36 @@ public class XMLHandler implements Iterator<Map<String, Object>> {
 	public boolean hasNext() {
 
 		// iterate over input data until an element is created
-		while (reader.hasNext() && nextElement == null) {
+		try {
 
-			try {
-				final XMLEvent event = reader.nextEvent();
+			while (nextElement == null && error == null && reader.hasNext()) {
 
-				switch (event.getEventType()) {
+				switch (reader.next()) {
 
-					case XMLEvent.START_DOCUMENT:
-						startDocument();
+					case XMLStreamConstants.START_ELEMENT:
+						startElement();
 						break;
 
-					case XMLEvent.START_ELEMENT:
-						startElement(event.asStartElement());
+					case XMLStreamConstants.END_ELEMENT:
+						endElement();
 						break;
 
-					case XMLEvent.END_DOCUMENT:
-						endDocument();
-						break;
-
-					case XMLEvent.END_ELEMENT:
-						endElement(event.asEndElement());
-						break;
-
-					case XMLEvent.CHARACTERS:
-					case XMLEvent.CDATA:
-						characters(event.asCharacters());
+					case XMLStreamConstants.CHARACTERS:
+					case XMLStreamConstants.CDATA:
+						characters();
 						break;
 
 				}
-
-			} catch (XMLStreamException strex) {
-				logger.warn(strex.getMessage());
-				break;
 			}
+
+		} catch (XMLStreamException strex) {
+
+			// the reader can not continue after an error, the error is
+			// reported to the caller by checkError()
+			error = strex;
 		}
 
-		// either an element has been created, or the stream is at its end
+		// either an element has been created, or the stream is at its end or broken
 		return nextElement != null;
 	}
 
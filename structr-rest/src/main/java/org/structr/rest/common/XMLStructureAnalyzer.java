@@ -19,19 +19,16 @@
 package org.structr.rest.common;
 
 import java.io.Reader;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,7 +42,7 @@ public class XMLStructureAnalyzer {
 
 	private final Map<String, Object> structure = new LinkedHashMap<>();
 	private XMLInputFactory factory             = null;
-	private XMLEventReader reader               = null;
+	private XMLStreamReader reader              = null;
 	private Element current                     = null;
 	private int analysisCount                   = 0;
 
@@ -61,7 +58,7 @@ public class XMLStructureAnalyzer {
 		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
 
 		// create XML reader
-		this.reader = factory.createXMLEventReader(input);
+		this.reader = factory.createXMLStreamReader(input);
 	}
 
 	public Map<String, Object> getStructure(final int threshold) {
@@ -69,20 +66,22 @@ public class XMLStructureAnalyzer {
 		int level = 0;
 		int exceptionCount = 0;
 
-		while (reader.hasNext() && analysisCount < threshold && exceptionCount < XML_MAX_EXCEPTIONS) {
+		while (analysisCount < threshold && exceptionCount < XML_MAX_EXCEPTIONS) {
 
 			try {
-				final XMLEvent event = reader.nextEvent();
-				final String tagName = getTagName(event);
 
-				switch (event.getEventType()) {
+				if (!reader.hasNext()) {
+					break;
+				}
+
+				switch (reader.next()) {
 
-					case XMLEvent.START_ELEMENT:
-						current = new Element(current, tagName, level++);
-						current.attributes.addAll(getAttributes(event.asStartElement()));
+					case XMLStreamConstants.START_ELEMENT:
+						current = new Element(current, reader.getName().toString(), level++);
+						current.attributes.addAll(getAttributes());
 						break;
 
-					case XMLEvent.END_ELEMENT:
+					case XMLStreamConstants.END_ELEMENT:
 
 						// one level up
 						current = current.parent;
@@ -94,6 +93,9 @@ public class XMLStructureAnalyzer {
 
 							analyze(current, structure);
 							analysisCount++;
+
+							// the structure is merged into the result, analyzed elements can be released
+							current.children.clear();
 						}
 						break;
 				}
@@ -112,20 +114,6 @@ public class XMLStructureAnalyzer {
 	}
 
 	// ----- private methods -----
-	private String getTagName(final XMLEvent event) {
-
-		if (event.isStartElement()) {
-			return event.asStartElement().getName().toString();
-		}
-
-		if (event.isEndElement()) {
-			return event.asEndElement().getName().toString();
-		}
-
-		return null;
-	}
-
-
 	private void analyze(final Element parent, final Map<String, Object> map) {
 
 		Map<String, Object> currentObject = (Map)map.get(parent.tagName);
@@ -155,15 +143,13 @@ public class XMLStructureAnalyzer {
 		}
 	}
 
-	private Set<String> getAttributes(final StartElement startElement) {
+	private Set<String> getAttributes() {
 
 		final Set<String> attributes = new LinkedHashSet<>();
-		final Iterator iterator      = startElement.getAttributes();
 
-		while (iterator.hasNext()) {
+		for (int i=0; i<reader.getAttributeCount(); i++) {
 
-			final Attribute attr = (Attribute)iterator.next();
-			attributes.add(attr.getName().toString());
+			attributes.add(reader.getAttributeName(i).toString());
 		}
 
 		return attributes;
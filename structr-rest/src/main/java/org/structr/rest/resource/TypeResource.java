@@ -25,6 +25,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.search.QueryCursor;
 import org.structr.common.GraphObjectComparator;
 import org.structr.common.PagingHelper;
 import org.structr.common.ResultTransformer;
@@ -52,6 +53,7 @@ import org.structr.core.property.PropertyMap;
 import org.structr.rest.RestMethodResult;
 import org.structr.rest.exception.IllegalPathException;
 import org.structr.rest.exception.NotFoundException;
+import org.structr.rest.servlet.JsonRestServlet;
 import org.structr.schema.SchemaHelper;
 
 //~--- classes ----------------------------------------------------------------
@@ -159,6 +161,11 @@ public class TypeResource extends SortableResource {
 
 			if (virtualType != null) {
 
+				// the transformed result can not be paged by sort value
+				if (getCursor() != null) {
+					throw new FrameworkException(HttpServletResponse.SC_BAD_REQUEST, "Cursor pagination is not supported for virtual types");
+				}
+
 				final Result untransformedResult = query
 					.includeDeletedAndHidden(includeDeletedAndHidden)
 					.publicOnly(publicOnly)
@@ -172,14 +179,23 @@ public class TypeResource extends SortableResource {
 
 			} else {
 
-				return query
+				final QueryCursor cursor = getCursor();
+
+				query
 					.includeDeletedAndHidden(includeDeletedAndHidden)
 					.publicOnly(publicOnly)
 					.sort(actualSortKey)
 					.order(actualSortOrder)
 					.pageSize(pageSize)
 					.page(page)
-					.getResult();
+					.cursor(cursor);
+
+				if (cursor == null && isStreamingRequest()) {
+
+					return query.getResultStream();
+				}
+
+				return query.getResult();
 			}
 
 		} else {
@@ -191,6 +207,41 @@ public class TypeResource extends SortableResource {
 		return new Result(emptyList, null, isCollectionResource(), isPrimitiveArray());
 	}
 
+	/**
+	 * Returns the keyset pagination cursor of the current request, or null
+	 * if the result should be paged by page number.
+	 *
+	 * @return the cursor or null
+	 * @throws FrameworkException if the cursor token is invalid
+	 */
+	protected QueryCursor getCursor() throws FrameworkException {
+
+		final String token = request != null ? request.getParameter(JsonRestServlet.REQUEST_PARAMETER_CURSOR) : null;
+		if (token != null) {
+
+			try {
+
+				return QueryCursor.fromToken(token);
+
+			} catch (IllegalArgumentException iex) {
+
+				throw new FrameworkException(HttpServletResponse.SC_BAD_REQUEST, iex.getMessage());
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Indicates whether the client requested the result to be serialized
+	 * while it is being read from the database.
+	 *
+	 * @return whether the result should be streamed
+	 */
+	protected boolean isStreamingRequest() {
+		return request != null && request.getParameter(JsonRestServlet.REQUEST_PARAMETER_STREAM) != null;
+	}
+
 	@Override
 	public RestMethodResult doPost(final Map<String, Object> propertySet) throws FrameworkException {
 
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.Writer;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -40,11 +41,13 @@ import org.structr.common.SecurityContext;
 import org.structr.common.View;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
+import org.structr.core.StreamingResult;
 import org.structr.core.Value;
 import org.structr.core.app.StructrApp;
 import org.structr.core.converter.PropertyConverter;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.function.Functions;
+import org.structr.core.graph.RelationshipPrefetcher;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
 
@@ -56,6 +59,7 @@ public abstract class StreamingWriter {
 
 	private static final Logger logger                   = LoggerFactory.getLogger(StreamingWriter.class.getName());
 	private static final long MAX_SERIALIZATION_TIME     = TimeUnit.SECONDS.toMillis(300);
+	private static final int STREAMING_FLUSH_INTERVAL    = 100;
 	private static final Set<PropertyKey> idTypeNameOnly = new LinkedHashSet<>();
 
 	static {
@@ -135,12 +139,16 @@ public abstract class StreamingWriter {
 			writer.setIndent("	");
 		}
 
+		// streamed collections are serialized while they are instantiated
+		final boolean streaming = result instanceof StreamingResult && result.isCollection() && !result.isPrimitiveArray();
+
 		// result fields in alphabetical order
-		List<? extends GraphObject> results = result.getResults();
+		List<? extends GraphObject> results = streaming ? null : result.getResults();
 		Integer outputNestingDepth          = result.getOutputNestingDepth();
 		Integer page                        = result.getPage();
 		Integer pageCount                   = result.getPageCount();
 		Integer pageSize                    = result.getPageSize();
+		String nextCursor                   = result.getNextCursor();
 		String queryTime                    = result.getQueryTime();
 		Integer resultCount                 = result.getRawResultCount();
 		String searchString                 = result.getSearchString();
@@ -169,6 +177,10 @@ public abstract class StreamingWriter {
 			writer.name("page_size").value(pageSize);
 		}
 
+		if (nextCursor != null) {
+			writer.name("next_cursor").value(nextCursor);
+		}
+
 		if (queryTime != null) {
 			writer.name("query_time").value(queryTime);
 		}
@@ -177,7 +189,11 @@ public abstract class StreamingWriter {
 			writer.name("result_count").value(resultCount);
 		}
 
-		if (results != null) {
+		if (streaming) {
+
+			streamCollection(securityContext, writer, output, (StreamingResult)result);
+
+		} else if (results != null) {
 
 			if (results.isEmpty() && result.isPrimitiveArray()) {
 
@@ -253,6 +269,9 @@ public abstract class StreamingWriter {
 
 				if (result.isCollection()) {
 
+					// load the relationships of the view for all results at once
+					RelationshipPrefetcher.prefetch(results, localPropertyView);
+
 					writer.name(resultKeyName).beginArray();
 
 					// serialize list of results
@@ -309,6 +328,68 @@ public abstract class StreamingWriter {
 		writer.endDocument();
 	}
 
+	/**
+	 * Serializes the elements of a streaming result while they are read
+	 * from the database and flushes the output periodically, so that the
+	 * client receives the first elements before the query is complete.
+	 * The result count is only known afterwards and is written after the
+	 * result array.
+	 */
+	private void streamCollection(final SecurityContext securityContext, final RestWriter writer, final Writer output, final StreamingResult<? extends GraphObject> result) throws IOException {
+
+		final Iterator<? extends GraphObject> iterator = result.stream();
+		final String localPropertyView                 = propertyView.get(null);
+		final List<GraphObject> batch                  = new ArrayList<>(STREAMING_FLUSH_INTERVAL);
+		final long startTime                           = System.currentTimeMillis();
+		boolean timeout                                = false;
+		int count                                      = 0;
+
+		writer.name(resultKeyName).beginArray();
+
+		while (iterator.hasNext() && !timeout) {
+
+			// read the next batch of elements and load the relationships of the view for all of them at once
+			batch.clear();
+
+			while (iterator.hasNext() && batch.size() < STREAMING_FLUSH_INTERVAL) {
+				batch.add(iterator.next());
+			}
+
+			RelationshipPrefetcher.prefetch(batch, localPropertyView);
+
+			for (final GraphObject obj : batch) {
+
+				root.serialize(writer, obj, localPropertyView, 0);
+				count++;
+
+				// check for timeout
+				if (System.currentTimeMillis() > startTime + MAX_SERIALIZATION_TIME) {
+
+					logger.error("JSON serialization of {} with {} results took more than {} ms, aborted. Please review output view size or adjust timeout.", new Object[] { securityContext.getCompoundRequestURI(), count, MAX_SERIALIZATION_TIME } );
+
+					timeout = true;
+					break;
+				}
+			}
+
+			output.flush();
+		}
+
+		writer.endArray();
+
+		final Integer resultCount = result.getRawResultCount();
+		final Integer pageSize    = result.getPageSize();
+
+		if (resultCount != null && renderResultCount) {
+
+			writer.name("result_count").value(resultCount);
+
+			if (pageSize != null && pageSize > 0) {
+				writer.name("page_count").value((resultCount + pageSize - 1) / pageSize);
+			}
+		}
+	}
+
 	public void setResultKeyName(final String resultKeyName) {
 		this.resultKeyName = resultKeyName;
 	}
@@ -18,13 +18,21 @@
  */
 package org.structr.rest.service;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.lang3.SerializationUtils;
 import org.apache.xerces.impl.dv.util.Base64;
 import org.eclipse.jetty.server.session.AbstractSessionDataStore;
 import org.eclipse.jetty.server.session.SessionData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
@@ -32,39 +40,75 @@ import org.structr.core.entity.Principal;
 import org.structr.core.graph.Tx;
 import org.structr.rest.auth.AuthHelper;
 import org.structr.rest.auth.SessionHelper;
+import org.structr.rest.auth.SessionPrincipalCache;
 
 /**
- *
+ * Session data store that stores the session data of authenticated users
+ * in the user node. Modified session data is collected and written in a
+ * single transaction every application.session.flush.interval seconds.
  *
  */
 public class StructrSessionDataStore extends AbstractSessionDataStore {
 
 	private static final Logger logger = LoggerFactory.getLogger(StructrSessionDataStore.class.getName());
 
+	private final Map<String, SessionData> pendingWrites = new ConcurrentHashMap<>();
+	private ScheduledExecutorService flusher             = null;
 	private final App app;
 	
 	public StructrSessionDataStore() {
 		app = StructrApp.getInstance();
 	}
+
+	@Override
+	protected void doStart() throws Exception {
+
+		super.doStart();
+
+		final int interval = Settings.SessionFlushInterval.getValue();
+		if (interval > 0) {
+
+			flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+
+				final Thread thread = new Thread(r, "SessionDataFlusher");
+				thread.setDaemon(true);
+
+				return thread;
+			});
+
+			flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.SECONDS);
+		}
+	}
+
+	@Override
+	protected void doStop() throws Exception {
+
+		if (flusher != null) {
+
+			flusher.shutdown();
+			flusher.awaitTermination(10, TimeUnit.SECONDS);
+			flusher = null;
+		}
+
+		// write remaining session data
+		flush();
+
+		super.doStop();
+	}
 	
 	@Override
 	public void doStore(final String id, final SessionData data, final long lastSaveTime) throws Exception {
-		
-		try (final Tx tx = app.tx(false, false, false)) {
-		
-			final Principal user = AuthHelper.getPrincipalForSessionId(id);
 
-			// store sessions only for authenticated users
-			if (user != null) {
+		if (flusher != null) {
 
-				user.setProperty(Principal.sessionData, Base64.encode(SerializationUtils.serialize(data)));
-			}
-		
-			tx.success();
-			
-		} catch (FrameworkException ex) {
-			
-			logger.info("Unable to store session data for session id " + id + ".", ex);
+			// the data is written with the next flush, multiple stores of the
+			// same session in the flush interval result in a single write
+			SessionPrincipalCache.setSessionData(id, data);
+			pendingWrites.put(id, data);
+
+		} else {
+
+			write(Collections.singletonMap(id, data));
 		}
 	}
 
@@ -110,11 +154,23 @@ public class StructrSessionDataStore extends AbstractSessionDataStore {
 			// store sessions only for authenticated users
 			if (user != null) {
 
-				final String sessionDataString = user.getProperty(Principal.sessionData);
-				
-				if (sessionDataString != null) {
-				
-					sessionData = SerializationUtils.deserialize(Base64.decode(sessionDataString));
+				sessionData = pendingWrites.get(id);
+
+				if (sessionData == null) {
+
+					sessionData = SessionPrincipalCache.getSessionData(id);
+				}
+
+				if (sessionData == null) {
+
+					final String sessionDataString = user.getProperty(Principal.sessionData);
+
+					if (sessionDataString != null) {
+
+						sessionData = SerializationUtils.deserialize(Base64.decode(sessionDataString));
+
+						SessionPrincipalCache.setSessionData(id, sessionData);
+					}
 				}
 			}
 			
@@ -130,6 +186,8 @@ public class StructrSessionDataStore extends AbstractSessionDataStore {
 
 	@Override
 	public boolean delete(final String id) throws Exception {
+
+		pendingWrites.remove(id);
 		
 		try (final Tx tx = app.tx(false, false, false)) {
 
@@ -146,4 +204,50 @@ public class StructrSessionDataStore extends AbstractSessionDataStore {
 
 		return false;
 	}
+
+	/**
+	 * Writes the session data that was stored since the last flush. The
+	 * data stays queued until it was written successfully.
+	 */
+	public void flush() {
+
+		final Map<String, SessionData> batch = new LinkedHashMap<>(pendingWrites);
+
+		if (!batch.isEmpty() && write(batch)) {
+
+			for (final Map.Entry<String, SessionData> entry : batch.entrySet()) {
+
+				// keep data that was stored during the write
+				pendingWrites.remove(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	// ----- private methods -----
+	private boolean write(final Map<String, SessionData> batch) {
+
+		try (final Tx tx = app.tx(false, false, false)) {
+
+			for (final Map.Entry<String, SessionData> entry : batch.entrySet()) {
+
+				final Principal user = AuthHelper.getPrincipalForSessionId(entry.getKey());
+
+				// store sessions only for authenticated users
+				if (user != null) {
+
+					user.setProperty(Principal.sessionData, Base64.encode(SerializationUtils.serialize(entry.getValue())));
+				}
+			}
+
+			tx.success();
+
+		} catch (Throwable t) {
+
+			logger.info("Unable to store session data for session ids " + batch.keySet() + ".", t);
+
+			return false;
+		}
+
+		return true;
+	}
 }
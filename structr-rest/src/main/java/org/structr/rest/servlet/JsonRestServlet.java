@@ -49,6 +49,7 @@ import org.structr.core.IJsonInput;
 import org.structr.core.JsonInput;
 import org.structr.core.JsonSingleInput;
 import org.structr.core.Result;
+import org.structr.core.StreamingResult;
 import org.structr.core.Services;
 import org.structr.core.Value;
 import org.structr.core.app.App;
@@ -80,22 +81,26 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 
 	public static final int DEFAULT_VALUE_PAGE_SIZE                     = 20;
 	public static final String DEFAULT_VALUE_SORT_ORDER                 = "asc";
+	public static final String REQUEST_PARAMETER_CURSOR                 = "cursor";
 	public static final String REQUEST_PARAMETER_LOOSE_SEARCH           = "loose";
 	public static final String REQUEST_PARAMETER_PAGE_NUMBER            = "page";
 	public static final String REQUEST_PARAMETER_PAGE_SIZE              = "pageSize";
 	public static final String REQUEST_PARAMETER_SORT_KEY               = "sort";
 	public static final String REQUEST_PARAMETER_SORT_ORDER             = "order";
+	public static final String REQUEST_PARAMETER_STREAM                 = "stream";
 	public static final String REQUEST_PARAMTER_OUTPUT_DEPTH            = "outputNestingDepth";
 	public static final Set<String> commonRequestParameters             = new LinkedHashSet<>();
 	private static final Logger logger                                  = LoggerFactory.getLogger(JsonRestServlet.class.getName());
 
 	static {
 
+		commonRequestParameters.add(REQUEST_PARAMETER_CURSOR);
 		commonRequestParameters.add(REQUEST_PARAMETER_LOOSE_SEARCH);
 		commonRequestParameters.add(REQUEST_PARAMETER_PAGE_NUMBER);
 		commonRequestParameters.add(REQUEST_PARAMETER_PAGE_SIZE);
 		commonRequestParameters.add(REQUEST_PARAMETER_SORT_KEY);
 		commonRequestParameters.add(REQUEST_PARAMETER_SORT_ORDER);
+		commonRequestParameters.add(REQUEST_PARAMETER_STREAM);
 		commonRequestParameters.add(REQUEST_PARAMTER_OUTPUT_DEPTH);
 		commonRequestParameters.add("debugLoggingEnabled");
 		commonRequestParameters.add("ignoreResultCount");
@@ -800,6 +805,7 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 			String sortOrder         = request.getParameter(REQUEST_PARAMETER_SORT_ORDER);
 			String sortKeyName       = request.getParameter(REQUEST_PARAMETER_SORT_KEY);
 			String outputDepth       = request.getParameter(REQUEST_PARAMTER_OUTPUT_DEPTH);
+			boolean cursorPaging     = request.getParameter(REQUEST_PARAMETER_CURSOR) != null;
 			boolean sortDescending   = (sortOrder != null && "desc".equals(sortOrder.toLowerCase()));
 			int pageSize             = Services.parseInt(pageSizeParameter, NodeFactory.DEFAULT_PAGE_SIZE);
 			int page                 = Services.parseInt(pageParameter, NodeFactory.DEFAULT_PAGE);
@@ -849,7 +855,24 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 
 				}
 
-				PagingHelper.addPagingParameter(result, pageSize, page);
+				if (cursorPaging) {
+
+					// page numbers and counts are unknown for keyset pagination
+					result.setPageSize(pageSize);
+
+				} else if (result instanceof StreamingResult) {
+
+					// the result count of a streamed result is known after serialization
+					if (pageSize > 0 && pageSize < Integer.MAX_VALUE) {
+
+						result.setPage(page);
+						result.setPageSize(pageSize);
+					}
+
+				} else {
+
+					PagingHelper.addPagingParameter(result, pageSize, page);
+				}
 
 				// timing..
 				double queryTimeEnd = System.nanoTime();
@@ -875,6 +898,8 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 
 					final StreamingHtmlWriter htmlStreamer = new StreamingHtmlWriter(this.propertyView, indentJson, depth);
 
+					htmlStreamer.setRenderResultCount(!cursorPaging);
+
 					// isolate write output
 					try (final Tx tx = app.tx()) {
 
@@ -893,6 +918,8 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 
 					final StreamingJsonWriter jsonStreamer = new StreamingJsonWriter(this.propertyView, indentJson, depth);
 
+					jsonStreamer.setRenderResultCount(!cursorPaging);
+
 					// isolate write output
 					try (final Tx tx = app.tx()) {
 
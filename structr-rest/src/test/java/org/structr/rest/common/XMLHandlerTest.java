@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.common;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLStreamException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Tests the streaming XML handler with complete and truncated input.
+ */
+public class XMLHandlerTest {
+
+	private static final String ITEMS = "<items>\n<item id=\"1\"><name>one</name></item>\n<item id=\"2\"><name>two</name></item>\n<item id=\"3\"><name>three</name></item>\n</items>";
+
+	@Test
+	public void test01WellFormedInput() {
+
+		try {
+
+			final XMLHandler handler             = new XMLHandler(getConfiguration(), new StringReader(ITEMS));
+			final List<Map<String, Object>> data = readAll(handler);
+
+			assertEquals("Invalid number of objects", 3, data.size());
+			assertEquals("Invalid type",  "Item",  data.get(0).get(XMLHandler.TYPE));
+			assertEquals("Invalid id",    "1",     data.get(0).get("id"));
+			assertEquals("Invalid name",  "one",   data.get(0).get("name"));
+			assertEquals("Invalid name",  "three", data.get(2).get("name"));
+			assertEquals("Invalid object count", 3L, handler.getObjectCount());
+
+			// complete input must not report an error
+			handler.checkError();
+
+		} catch (XMLStreamException strex) {
+
+			strex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	@Test
+	public void test02TruncatedInput() {
+
+		// input ends in the middle of the third item
+		final String truncated = ITEMS.substring(0, ITEMS.indexOf("<name>three"));
+
+		try {
+
+			final XMLHandler handler             = new XMLHandler(getConfiguration(), new StringReader(truncated));
+			final List<Map<String, Object>> data = readAll(handler);
+
+			// the complete objects before the error are returned
+			assertEquals("Invalid number of objects", 2, data.size());
+			assertFalse("Handler should not continue after an error", handler.hasNext());
+
+		} catch (XMLStreamException strex) {
+
+			strex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		try {
+
+			final XMLHandler handler = new XMLHandler(getConfiguration(), new StringReader(truncated));
+
+			readAll(handler);
+			handler.checkError();
+
+			fail("Truncated input should report an error");
+
+		} catch (XMLStreamException strex) {
+
+			assertNotNull("Error should contain the location", strex.getLocation());
+			assertTrue("Error should point to the end of the input", strex.getLocation().getLineNumber() >= 4);
+		}
+	}
+
+	@Test
+	public void test03SkipObjects() {
+
+		try {
+
+			final XMLHandler handler = new XMLHandler(getConfiguration(), new StringReader(ITEMS));
+
+			handler.skipObjects(2);
+
+			final List<Map<String, Object>> data = readAll(handler);
+
+			assertEquals("Invalid number of objects", 1, data.size());
+			assertEquals("Invalid id", "3", data.get(0).get("id"));
+			assertEquals("Invalid object count", 3L, handler.getObjectCount());
+
+		} catch (XMLStreamException strex) {
+
+			strex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	// ----- private methods -----
+	private List<Map<String, Object>> readAll(final XMLHandler handler) {
+
+		final List<Map<String, Object>> data = new ArrayList<>();
+
+		while (handler.hasNext()) {
+			data.add(handler.next());
+		}
+
+		return data;
+	}
+
+	private Map<String, Object> getConfiguration() {
+
+		final Map<String, Object> configuration = new LinkedHashMap<>();
+		final Map<String, Object> item          = new LinkedHashMap<>();
+		final Map<String, Object> itemProps     = new LinkedHashMap<>();
+		final Map<String, Object> name          = new LinkedHashMap<>();
+
+		itemProps.put("id", "id");
+
+		item.put(XMLHandler.ACTION,     XMLHandler.CREATE_NODE);
+		item.put(XMLHandler.TYPE,       "Item");
+		item.put(XMLHandler.ISROOT,     true);
+		item.put(XMLHandler.PROPERTIES, itemProps);
+
+		name.put(XMLHandler.ACTION,        XMLHandler.SET_PROPERTY);
+		name.put(XMLHandler.PROPERTY_NAME, "name");
+
+		configuration.put("/items/item",      item);
+		configuration.put("/items/item/name", name);
+
+		return configuration;
+	}
+}
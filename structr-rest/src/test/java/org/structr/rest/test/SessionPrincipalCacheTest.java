@@ -0,0 +1,221 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.test;
+
+import java.util.Collections;
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.xerces.impl.dv.util.Base64;
+import org.eclipse.jetty.server.session.SessionContext;
+import org.eclipse.jetty.server.session.SessionData;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.entity.Principal;
+import org.structr.core.graph.Tx;
+import org.structr.rest.auth.AuthHelper;
+import org.structr.rest.auth.SessionHelper;
+import org.structr.rest.auth.SessionPrincipalCache;
+import org.structr.rest.common.StructrRestTest;
+import org.structr.rest.entity.TestUser;
+import org.structr.rest.service.StructrSessionDataStore;
+
+/**
+ * Tests for the session principal cache and the session data store.
+ */
+public class SessionPrincipalCacheTest extends StructrRestTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(SessionPrincipalCacheTest.class.getName());
+
+	@Test
+	public void testLogout() {
+
+		final TestUser user = createUser("user1", "session1");
+
+		try (final Tx tx = app.tx()) {
+
+			// resolve session to fill the cache
+			assertEquals("Invalid principal for session", user, AuthHelper.getPrincipalForSessionId("session1"));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			SessionHelper.clearSession("session1");
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			assertNull("Session should not be resolved after logout", AuthHelper.getPrincipalForSessionId("session1"));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+	}
+
+	@Test
+	public void testSessionRemovedInDatabase() {
+
+		final TestUser user = createUser("user2", "session2");
+
+		try (final Tx tx = app.tx()) {
+
+			// resolve session to fill the cache
+			assertEquals("Invalid principal for session", user, AuthHelper.getPrincipalForSessionId("session2"));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			// remove the session id without notifying the cache, like another instance would
+			app.cypher("MATCH (n) WHERE ID(n) = {id} SET n.`" + Principal.sessionIds.dbName() + "` = []", Collections.singletonMap("id", user.getId()));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			assertNull("Removed session should not be resolved from the cache", AuthHelper.getPrincipalForSessionId("session2"));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+	}
+
+	@Test
+	public void testSessionDataOfEvictedSession() {
+
+		final StructrSessionDataStore store = new StructrSessionDataStore();
+		final TestUser user                 = createUser("user3", "session3");
+
+		try (final Tx tx = app.tx()) {
+
+			// resolve session to fill the cache
+			assertEquals("Invalid principal for session", user, AuthHelper.getPrincipalForSessionId("session3"));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		// session is evicted from the cache
+		SessionPrincipalCache.clear();
+
+		try {
+
+			store.initialize(new SessionContext("test", null));
+			store.start();
+
+			final SessionData data = new SessionData("session3", "", "", 0L, 0L, 0L, 0L);
+
+			data.setAttribute("key", "value");
+
+			store.doStore("session3", data, 0L);
+			store.flush();
+
+		} catch (Exception ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception");
+
+		} finally {
+
+			try { store.stop(); } catch (Exception ex) {}
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final String stored = user.getProperty(Principal.sessionData);
+
+			assertNotNull("Session data of an evicted session should be stored", stored);
+
+			final SessionData data = SerializationUtils.deserialize(Base64.decode(stored));
+
+			assertEquals("Invalid stored session data", "value", data.getAttribute("key"));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+	}
+
+	// ----- private methods -----
+	private TestUser createUser(final String name, final String sessionId) {
+
+		try (final Tx tx = app.tx()) {
+
+			final TestUser user = app.create(TestUser.class, name);
+
+			user.addSessionId(sessionId);
+
+			tx.success();
+
+			return user;
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		return null;
+	}
+}
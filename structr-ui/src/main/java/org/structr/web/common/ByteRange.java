@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.util.LinkedList;
+import java.util.List;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * A byte range of an HTTP range request.
+ */
+public class ByteRange {
+
+	public static final int MAX_RANGES = 16;
+
+	private long start = 0L;
+	private long end   = 0L;
+
+	public ByteRange(final long start, final long end) {
+
+		this.start = start;
+		this.end   = end;
+	}
+
+	public long getStart() {
+		return start;
+	}
+
+	public long getEnd() {
+		return end;
+	}
+
+	public long getLength() {
+		return end - start + 1;
+	}
+
+	public String getContentRange(final long contentLength) {
+		return String.format("bytes %s-%s/%s", start, end, contentLength);
+	}
+
+	/**
+	 * Parses the value of a Range header for content of the given length.
+	 *
+	 * Returns null if the header is missing, can not be parsed or contains
+	 * more than {@link #MAX_RANGES} ranges, in which case the full content
+	 * should be sent. Returns an empty list if none of the ranges can be
+	 * satisfied.
+	 *
+	 * @param header the value of the Range header
+	 * @param contentLength the length of the content
+	 * @return the satisfiable ranges, or null
+	 */
+	public static List<ByteRange> parse(final String header, final long contentLength) {
+
+		if (StringUtils.isBlank(header) || !header.trim().startsWith("bytes=")) {
+			return null;
+		}
+
+		final String[] parts         = header.trim().substring(6).split(",");
+		final List<ByteRange> ranges = new LinkedList<>();
+
+		if (parts.length > MAX_RANGES) {
+			return null;
+		}
+
+		try {
+
+			for (final String part : parts) {
+
+				final String spec = part.trim();
+				final int pos     = spec.indexOf("-");
+
+				if (pos < 0) {
+					return null;
+				}
+
+				final String startValue = spec.substring(0, pos).trim();
+				final String endValue   = spec.substring(pos + 1).trim();
+
+				// positions are plain digits, signs are not allowed
+				if (!isDigitsOrEmpty(startValue) || !isDigitsOrEmpty(endValue)) {
+					return null;
+				}
+
+				if (startValue.isEmpty()) {
+
+					// suffix range: the last n bytes
+					if (endValue.isEmpty()) {
+						return null;
+					}
+
+					final long suffixLength = Long.parseLong(endValue);
+					if (suffixLength > 0 && contentLength > 0) {
+
+						ranges.add(new ByteRange(Math.max(0, contentLength - suffixLength), contentLength - 1));
+					}
+
+				} else {
+
+					final long start = Long.parseLong(startValue);
+					final long end   = endValue.isEmpty() ? Long.MAX_VALUE : Long.parseLong(endValue);
+
+					if (end < start) {
+
+						// syntactically invalid
+						return null;
+					}
+
+					if (start < contentLength) {
+
+						ranges.add(new ByteRange(start, Math.min(end, contentLength - 1)));
+					}
+				}
+			}
+
+		} catch (NumberFormatException nfex) {
+			return null;
+		}
+
+		return ranges;
+	}
+
+	// ----- private methods -----
+	private static boolean isDigitsOrEmpty(final String value) {
+		return value.isEmpty() || StringUtils.isNumeric(value);
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.Tx;
+import org.structr.web.entity.AbstractMinifiedFile;
+
+/**
+ * Runs the minification of minified files in a background thread.
+ *
+ * Minification requests for the same file that arrive within the
+ * configured delay are coalesced into a single run. The previous minified
+ * content is served until the new content has been written.
+ */
+public class MinificationScheduler {
+
+	private static final Logger logger = LoggerFactory.getLogger(MinificationScheduler.class.getName());
+
+	private static final Map<String, MinificationJob> pendingJobs = new ConcurrentHashMap<>();
+	private static final AtomicLong requested                     = new AtomicLong();
+	private static final AtomicLong completed                     = new AtomicLong();
+	private static final AtomicLong totalTime                     = new AtomicLong();
+	private static final AtomicLong lastTime                      = new AtomicLong();
+	private static ScheduledExecutorService executor              = null;
+
+	/**
+	 * Returns whether minification runs in the background, i.e. whether
+	 * a delay is configured.
+	 *
+	 * @return whether background minification is enabled
+	 */
+	public static boolean isEnabled() {
+		return Settings.MinificationDelay.getValue() > 0;
+	}
+
+	/**
+	 * Schedules the minification of the file with the given UUID. Must
+	 * be called after the transaction that modified the sources was
+	 * committed.
+	 *
+	 * @param uuid the UUID of the minified file
+	 */
+	public static void schedule(final String uuid) {
+
+		requested.incrementAndGet();
+
+		pendingJobs.compute(uuid, (key, previous) -> {
+
+			// coalesce with a pending run that has not started yet
+			if (previous != null) {
+				previous.cancel();
+			}
+
+			final MinificationJob job = new MinificationJob(uuid);
+
+			job.future = getExecutor().schedule(job, Settings.MinificationDelay.getValue(), TimeUnit.MILLISECONDS);
+
+			return job;
+		});
+	}
+
+	public static Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+		final long count                     = completed.get();
+
+		statistics.put("pending",     pendingJobs.size());
+		statistics.put("requested",   requested.get());
+		statistics.put("completed",   count);
+		statistics.put("lastTime",    lastTime.get());
+		statistics.put("averageTime", count > 0 ? totalTime.get() / count : 0L);
+
+		return statistics;
+	}
+
+	// ----- private methods -----
+	private static synchronized ScheduledExecutorService getExecutor() {
+
+		if (executor == null) {
+
+			// one thread, the Closure compiler is expensive enough
+			executor = Executors.newSingleThreadScheduledExecutor(r -> {
+
+				final Thread thread = new Thread(r, "MinificationScheduler");
+				thread.setDaemon(true);
+
+				return thread;
+			});
+		}
+
+		return executor;
+	}
+
+	// ----- nested classes -----
+	private static class MinificationJob implements Runnable {
+
+		private ScheduledFuture future = null;
+		private String uuid            = null;
+
+		public MinificationJob(final String uuid) {
+			this.uuid = uuid;
+		}
+
+		public void cancel() {
+
+			if (future != null) {
+				future.cancel(false);
+			}
+		}
+
+		@Override
+		public void run() {
+
+			pendingJobs.remove(uuid, this);
+
+			final App app = StructrApp.getInstance();
+			final long t0 = System.currentTimeMillis();
+
+			try (final Tx tx = app.tx()) {
+
+				final AbstractMinifiedFile file = app.get(AbstractMinifiedFile.class, uuid);
+				if (file != null) {
+
+					file.minify();
+				}
+
+				tx.success();
+
+			} catch (Throwable t) {
+
+				logger.warn("Unable to minify file {}: {}", uuid, t.getMessage());
+			}
+
+			final long time = System.currentTimeMillis() - t0;
+
+			completed.incrementAndGet();
+			totalTime.addAndGet(time);
+			lastTime.set(time);
+		}
+	}
+}
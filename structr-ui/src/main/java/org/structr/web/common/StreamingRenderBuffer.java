@@ -0,0 +1,173 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bounded buffer for asynchronous streaming of rendered output.
+ *
+ * Rendered strings are collected into UTF-8 encoded chunks which are
+ * stored in a fixed-size ring. When the ring is full, the rendering
+ * thread blocks until the consumer has written out a chunk, so a slow
+ * client cannot cause unbounded memory usage.
+ */
+public class StreamingRenderBuffer extends AsyncBuffer {
+
+	private static final int CHUNK_SIZE = 8192;
+
+	private final StringBuilder current = new StringBuilder(CHUNK_SIZE);
+	private final byte[][] chunks;
+	private Runnable listener           = null;
+	private boolean finished            = false;
+	private boolean aborted             = false;
+	private int head                    = 0;
+	private int count                   = 0;
+
+	public StreamingRenderBuffer(final int capacity) {
+		this.chunks = new byte[Math.max(1, capacity)][];
+	}
+
+	/**
+	 * Sets the callback that is notified when a new chunk is available
+	 * or when rendering has finished.
+	 *
+	 * @param listener
+	 */
+	public void setListener(final Runnable listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public AsyncBuffer append(final String s) {
+
+		if (s != null) {
+
+			current.append(s);
+
+			if (current.length() >= CHUNK_SIZE) {
+				commit();
+			}
+		}
+
+		return this;
+	}
+
+	/**
+	 * Signals the end of the rendering process and makes the remaining
+	 * output available to the consumer.
+	 */
+	public void finish() {
+
+		if (current.length() > 0) {
+			commit();
+		}
+
+		synchronized (this) {
+			finished = true;
+		}
+
+		notifyListener();
+	}
+
+	/**
+	 * Aborts the streaming process, discarding all pending and future
+	 * output and releasing a rendering thread that waits for free space.
+	 */
+	public synchronized void abort() {
+
+		aborted = true;
+		count   = 0;
+
+		notifyAll();
+	}
+
+	/**
+	 * Removes and returns the next chunk, or null if no chunk is
+	 * available at the moment.
+	 *
+	 * @return the next chunk or null
+	 */
+	public synchronized byte[] poll() {
+
+		if (count == 0) {
+			return null;
+		}
+
+		final byte[] chunk = chunks[head];
+
+		chunks[head] = null;
+		head         = (head + 1) % chunks.length;
+
+		count--;
+
+		// wake up rendering thread waiting for free space
+		notifyAll();
+
+		return chunk;
+	}
+
+	/**
+	 * @return whether rendering has finished and all chunks were consumed
+	 */
+	public synchronized boolean isDone() {
+		return (finished && count == 0) || aborted;
+	}
+
+	// ----- private methods -----
+	private void commit() {
+
+		final byte[] chunk = current.toString().getBytes(StandardCharsets.UTF_8);
+
+		current.setLength(0);
+
+		synchronized (this) {
+
+			while (count == chunks.length && !aborted) {
+
+				try {
+
+					wait();
+
+				} catch (InterruptedException iex) {
+
+					Thread.currentThread().interrupt();
+					aborted = true;
+				}
+			}
+
+			if (aborted) {
+				return;
+			}
+
+			chunks[(head + count) % chunks.length] = chunk;
+			count++;
+		}
+
+		notifyListener();
+	}
+
+	private void notifyListener() {
+
+		// must not be called while holding the lock on this buffer
+		if (listener != null) {
+			listener.run();
+		}
+	}
+}
@@ -32,9 +32,11 @@ import org.structr.core.Export;
 import org.structr.core.graph.ModificationEvent;
 import org.structr.core.graph.ModificationQueue;
 import org.structr.core.property.EndNodes;
+import org.structr.core.property.LongProperty;
 import org.structr.core.property.Property;
 import org.structr.core.property.PropertyMap;
 import org.structr.dynamic.File;
+import org.structr.web.common.MinificationScheduler;
 import org.structr.web.entity.relation.MinificationSource;
 
 /**
@@ -46,6 +48,7 @@ public abstract class AbstractMinifiedFile extends File {
 	private static final Logger logger = LoggerFactory.getLogger(AbstractMinifiedFile.class.getName());
 
 	public static final Property<List<FileBase>> minificationSources = new EndNodes<>("minificationSources", MinificationSource.class);
+	public static final Property<Long> minificationTime              = new LongProperty("minificationTime").readOnly();
 
 	@Override
 	public boolean onModification(final SecurityContext securityContext, final ErrorBuffer errorBuffer, final ModificationQueue modificationQueue) throws FrameworkException {
@@ -66,12 +69,18 @@ public abstract class AbstractMinifiedFile extends File {
 
 		if (shouldMinify) {
 
-			try {
-				this.minify();
-			} catch (IOException ex) {
-				logger.warn("Could not automatically minify file", ex);
-			}
+			if (MinificationScheduler.isEnabled()) {
+
+				requestMinification(this);
 
+			} else {
+
+				try {
+					this.minify();
+				} catch (IOException ex) {
+					logger.warn("Could not automatically minify file", ex);
+				}
+			}
 		}
 
 		return super.onModification(securityContext, errorBuffer, modificationQueue);
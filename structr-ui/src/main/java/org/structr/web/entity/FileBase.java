@@ -68,6 +68,7 @@ import org.structr.core.function.Functions;
 import org.structr.core.graph.ModificationEvent;
 import org.structr.core.graph.ModificationQueue;
 import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.TransactionCommand;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.BooleanProperty;
 import org.structr.core.property.ConstantBooleanProperty;
@@ -85,6 +86,7 @@ import org.structr.schema.action.Function;
 import org.structr.schema.action.JavaScriptSource;
 import org.structr.web.common.FileHelper;
 import org.structr.web.common.ImageHelper;
+import org.structr.web.common.MinificationScheduler;
 import org.structr.web.common.RenderContext;
 import org.structr.web.entity.relation.Folders;
 import org.structr.web.entity.relation.MinificationSource;
@@ -301,6 +303,20 @@ public class FileBase extends AbstractFile implements Indexable, Linkable, JavaS
 		}
 	}
 
+	/**
+	 * Requests the background minification of the given file after the
+	 * current transaction was committed.
+	 *
+	 * @param minifiedFile
+	 */
+	protected void requestMinification(final AbstractMinifiedFile minifiedFile) {
+
+		final String uuid = minifiedFile.getUuid();
+
+		// runs after the commit even if callbacks are disabled, e.g. in deployment imports
+		TransactionCommand.afterCommit("minify-" + uuid, () -> MinificationScheduler.schedule(uuid));
+	}
+
 	public void triggerMinificationIfNeeded(ModificationQueue modificationQueue) throws FrameworkException {
 
 		final List<AbstractMinifiedFile> targets = getProperty(minificationTargets);
@@ -324,12 +340,18 @@ public class FileBase extends AbstractFile implements Indexable, Linkable, JavaS
 
 				for (AbstractMinifiedFile minifiedFile : targets) {
 
-					try {
-						minifiedFile.minify();
-					} catch (IOException ex) {
-						logger.warn("Could not automatically update minification target: ".concat(minifiedFile.getName()), ex);
-					}
+					if (MinificationScheduler.isEnabled()) {
+
+						requestMinification(minifiedFile);
 
+					} else {
+
+						try {
+							minifiedFile.minify();
+						} catch (IOException ex) {
+							logger.warn("Could not automatically update minification target: ".concat(minifiedFile.getName()), ex);
+						}
+					}
 				}
 
 			}
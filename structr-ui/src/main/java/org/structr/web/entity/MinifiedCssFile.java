@@ -18,16 +18,14 @@
  */
 package org.structr.web.entity;
 
-import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.common.PropertyView;
@@ -44,8 +42,8 @@ public class MinifiedCssFile extends AbstractMinifiedFile {
 
 	public static final Property<Integer> lineBreak = new IntProperty("lineBreak").defaultValue(-1);
 
-	public static final View defaultView = new View(MinifiedJavaScriptFile.class, PropertyView.Public, minificationSources, lineBreak);
-	public static final View uiView      = new View(MinifiedJavaScriptFile.class, PropertyView.Ui, minificationSources, lineBreak);
+	public static final View defaultView = new View(MinifiedJavaScriptFile.class, PropertyView.Public, minificationSources, lineBreak, minificationTime);
+	public static final View uiView      = new View(MinifiedJavaScriptFile.class, PropertyView.Ui, minificationSources, lineBreak, minificationTime);
 
 	@Override
 	public boolean shouldModificationTriggerMinifcation(ModificationEvent modState) {
@@ -59,18 +57,20 @@ public class MinifiedCssFile extends AbstractMinifiedFile {
 
 		logger.info("Running minify: {}", this.getUuid());
 
-		FileHelper.setFileData(this, getConcatenatedSource().getBytes(), null);
+		final long t0 = System.currentTimeMillis();
 
-		try (FileReader in = new FileReader(this.getFileOnDisk())) {
-			final java.io.File temp = java.io.File.createTempFile("structr-minify", ".tmp");
+		// compress in memory so the file is only written once
+		try (final Reader in = new StringReader(getConcatenatedSource())) {
 
-			try (OutputStreamWriter out = new OutputStreamWriter(new FileOutputStream(temp))) {
-				final CssCompressor compressor = new CssCompressor(in);
-				compressor.compress(out, getProperty(lineBreak));
-			}
+			final StringWriter out         = new StringWriter();
+			final CssCompressor compressor = new CssCompressor(in);
+
+			compressor.compress(out, getProperty(lineBreak));
 
-			FileHelper.setFileData(this, FileUtils.readFileToString(temp).getBytes(), null);
+			FileHelper.setFileData(this, out.toString().getBytes(), null);
 		}
+
+		setProperty(minificationTime, System.currentTimeMillis() - t0);
 	}
 
 
@@ -29,6 +29,7 @@ import com.google.javascript.jscomp.SourceFile;
 import com.google.javascript.jscomp.parsing.parser.util.format.SimpleFormat;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -52,8 +53,10 @@ public class MinifiedJavaScriptFile extends AbstractMinifiedFile {
 	public static final Property<String> warnings                    = new StringProperty("warnings");
 	public static final Property<String> errors                      = new StringProperty("errors");
 
-	public static final View defaultView = new View(MinifiedJavaScriptFile.class, PropertyView.Public, minificationSources, optimizationLevel, warnings, errors);
-	public static final View uiView      = new View(MinifiedJavaScriptFile.class, PropertyView.Ui, minificationSources, optimizationLevel, warnings, errors);
+	public static final View defaultView = new View(MinifiedJavaScriptFile.class, PropertyView.Public, minificationSources, optimizationLevel, warnings, errors, minificationTime);
+	public static final View uiView      = new View(MinifiedJavaScriptFile.class, PropertyView.Ui, minificationSources, optimizationLevel, warnings, errors, minificationTime);
+
+	private static List<SourceFile> builtinExterns = null;
 
 	@Override
 	public boolean shouldModificationTriggerMinifcation(ModificationEvent modState) {
@@ -67,6 +70,7 @@ public class MinifiedJavaScriptFile extends AbstractMinifiedFile {
 
 		logger.info("Running minify: {}", this.getUuid());
 
+		final long t0 = System.currentTimeMillis();
 		final Compiler compiler = new Compiler();
 		final CompilerOptions options = new CompilerOptions();
 		final CompilationLevel selectedLevel = getProperty(optimizationLevel);
@@ -93,17 +97,34 @@ public class MinifiedJavaScriptFile extends AbstractMinifiedFile {
 				}
 			}
 		});
-		compiler.compile(CommandLineRunner.getBuiltinExterns(options), getSourceFileList(), options);
+		compiler.compile(getBuiltinExterns(options), getSourceFileList(), options);
 
-		FileHelper.setFileData(this, compiler.toSource().getBytes(), getProperty(contentType));
+		// keep serving the last good output if compilation failed
+		if (compiler.getErrors().length == 0) {
+			FileHelper.setFileData(this, compiler.toSource().getBytes(), getProperty(contentType));
+		}
 
 		final PropertyMap changedProperties = new PropertyMap();
 		changedProperties.put(warnings, StringUtils.join(compiler.getWarnings(), System.lineSeparator()));
 		changedProperties.put(errors, StringUtils.join(compiler.getErrors(), System.lineSeparator()));
+		changedProperties.put(minificationTime, System.currentTimeMillis() - t0);
 		setProperties(securityContext, changedProperties);
 
 	}
 
+	/**
+	 * Returns the builtin externs, which are the same for all compilation
+	 * levels and are loaded only once.
+	 */
+	private static synchronized List<SourceFile> getBuiltinExterns(final CompilerOptions options) throws IOException {
+
+		if (builtinExterns == null) {
+			builtinExterns = CommandLineRunner.getBuiltinExterns(options);
+		}
+
+		return builtinExterns;
+	}
+
 	private ArrayList<SourceFile> getSourceFileList() throws FrameworkException, IOException {
 
 		ArrayList<SourceFile> sourceList = new ArrayList();
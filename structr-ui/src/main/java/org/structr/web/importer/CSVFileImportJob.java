@@ -28,7 +28,6 @@ import java.util.Map;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.structr.common.AccessMode;
 import org.structr.common.ResultTransformer;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
@@ -36,8 +35,6 @@ import org.structr.core.JsonInput;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.Principal;
-import org.structr.core.graph.Tx;
-import org.structr.core.property.PropertyMap;
 import org.structr.module.StructrModule;
 import org.structr.module.api.APIBuilder;
 import org.structr.rest.common.CsvHelper;
@@ -88,6 +85,8 @@ public class CSVFileImportJob extends FileImportJob {
 			final String quoteChar                   = getOrDefault(configuration.get("quoteChar"), "\"");
 			final String range                       = getOrDefault(configuration.get("range"), "");
 			final Integer commitInterval             = parseInt(configuration.get("commitInterval"), 1000);
+			final Integer transformThreads           = parseInt(configuration.get("transformThreads"), Runtime.getRuntime().availableProcessors());
+			final Integer commitThreads              = parseInt(configuration.get("commitThreads"), 2);
 
 			logger.info("Importing CSV from {} ({}) to {} using {}", filePath, fileUuid, targetType, configuration);
 
@@ -95,15 +94,9 @@ public class CSVFileImportJob extends FileImportJob {
 			final SimpleDateFormat df      = new SimpleDateFormat("yyyyMMddHHMM");
 			final String importTypeName    = "ImportFromCsv" + df.format(System.currentTimeMillis());
 
-			final SecurityContext threadContext = SecurityContext.getInstance(user, AccessMode.Backend);
+			final SecurityContext threadContext = getImportContext();
 			final App app                       = StructrApp.getInstance(threadContext);
 
-			// disable transaction notifications
-			threadContext.disableModificationOfAccessTime();
-			threadContext.ignoreResultCount(true);
-			threadContext.setDoTransactionNotifications(false);
-			threadContext.disableEnsureCardinality();
-
 			try (final InputStream is = getFileInputStream(threadContext)) {
 
 				if (is == null) {
@@ -120,42 +113,15 @@ public class CSVFileImportJob extends FileImportJob {
 				final Character quoteCharacter     = StringUtils.isNotEmpty(quoteChar) ? quoteChar.charAt(0) : null;
 				final Iterable<JsonInput> iterable = CsvHelper.cleanAndParseCSV(threadContext, new InputStreamReader(is, "utf-8"), targetEntityType, fieldSeparator, quoteCharacter, range, reverse(importMappings));
 				final Iterator<JsonInput> iterator = iterable.iterator();
-				int chunks                         = 0;
-				int overallCount                   = 0;
-
-				while (iterator.hasNext()) {
-
-					int count = 0;
-
-					try (final Tx tx = app.tx()) {
-
-						final long chunkStartTime = System.currentTimeMillis();
-
-						while (iterator.hasNext() && count++ < commitInterval) {
-
-							final JsonInput input = iterator.next();
 
-							mapper.transformInput(threadContext, targetEntityType, input);
+				// parse, transform, batch and commit in separate stages
+				final ImportPipeline pipeline      = new ImportPipeline(this, targetEntityType, mapper, commitInterval, transformThreads, commitThreads);
+				final int overallCount             = pipeline.run(iterator);
 
-							app.create(targetEntityType, PropertyMap.inputTypeToJavaType(threadContext, targetEntityType, input));
-
-							overallCount++;
-						}
-
-						tx.success();
-
-						chunks++;
-
-						chunkFinished(chunkStartTime, chunks, commitInterval, overallCount);
-
-					}
-
-					// do this outside of the transaction!
-					shouldPause();
-					if (shouldAbort()) {
-						return;
-					}
+				if (overallCount < 0) {
 
+					// aborted
+					return;
 				}
 
 				importFinished(startTime, overallCount);
@@ -26,6 +26,7 @@ import java.util.Locale;
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.common.AccessMode;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.App;
@@ -112,6 +113,10 @@ abstract class FileImportJob extends ScheduledJob {
 	}
 
 	protected void chunkFinished(final long chunkStartTime, final int currentChunkNo, final int chunkSize, final int overallCount) {
+		chunkFinished(chunkStartTime, currentChunkNo, chunkSize, overallCount, null);
+	}
+
+	protected void chunkFinished(final long chunkStartTime, final int currentChunkNo, final int chunkSize, final int overallCount, final Map<String, Object> stages) {
 
 		processedChunks                   = currentChunkNo;
 
@@ -127,6 +132,14 @@ abstract class FileImportJob extends ScheduledJob {
 		data.put("objectsCreated",   chunkSize);
 		data.put("duration",         formattedDuration);
 		data.put("objectsPerSecond", objectsPerSecond);
+
+		// throughput per stage of a pipelined import
+		if (stages != null) {
+
+			logger.info("{}: Stages: {}", getJobType(), stages);
+			data.put("stages", stages);
+		}
+
 		TransactionCommand.simpleBroadcastGenericMessage(data);
 
 	}
@@ -159,6 +172,39 @@ abstract class FileImportJob extends ScheduledJob {
 		TransactionCommand.simpleBroadcastException(ex, data, true);
 	}
 
+	/**
+	 * Pauses the calling thread while the job is paused.
+	 *
+	 * @return whether the job was aborted
+	 */
+	protected boolean pauseOrAbort() {
+
+		// do this outside of the transaction!
+		shouldPause();
+
+		return shouldAbort();
+	}
+
+	/**
+	 * Creates a security context for the user of this job with
+	 * notifications and access time updates disabled, for use in a
+	 * single import thread.
+	 *
+	 * @return the security context
+	 */
+	protected SecurityContext getImportContext() {
+
+		final SecurityContext ctx = SecurityContext.getInstance(user, AccessMode.Backend);
+
+		// disable transaction notifications
+		ctx.disableModificationOfAccessTime();
+		ctx.ignoreResultCount(true);
+		ctx.setDoTransactionNotifications(false);
+		ctx.disableEnsureCardinality();
+
+		return ctx;
+	}
+
 	protected InputStream getFileInputStream(final SecurityContext ctx) {
 
 		final App app = StructrApp.getInstance(ctx);
@@ -0,0 +1,569 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.importer;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.RetryException;
+import org.structr.common.ResultTransformer;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.JsonInput;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.Principal;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.Tx;
+import org.structr.core.property.PropertyKey;
+import org.structr.core.property.PropertyMap;
+
+/**
+ * Staged import pipeline for file import jobs. The rows are parsed on the
+ * calling thread, transformed by a pool of worker threads, collected into
+ * chunks of the commit interval and committed by several threads
+ * concurrently. The stages are connected by bounded queues, so a slow
+ * stage blocks the stages before it instead of filling up the heap.
+ *
+ * Entities that the workers resolve from the input are handed to the
+ * committers as references and are looked up again by their UUID in the
+ * committing transaction.
+ */
+class ImportPipeline {
+
+	private static final Logger logger   = LoggerFactory.getLogger(ImportPipeline.class.getName());
+	private static final List END        = new ArrayList<>(0);
+	private static final int BLOCK_SIZE  = 100;
+	private static final int MAX_RETRIES = 10;
+
+	private final AtomicReference<Throwable> error = new AtomicReference<>();
+	private final List<Thread> threads             = new ArrayList<>();
+	private final AtomicInteger chunks             = new AtomicInteger();
+	private final AtomicInteger committed          = new AtomicInteger();
+	private final Stage parseStage                 = new Stage("parse", 1);
+	private final Stage transformStage;
+	private final Stage batchStage                 = new Stage("batch", 1);
+	private final Stage commitStage;
+	private final BlockingQueue<List<JsonInput>> parsedQueue;
+	private final BlockingQueue<List<PropertyMap>> transformedQueue;
+	private final BlockingQueue<List<PropertyMap>> chunkQueue;
+	private final ResultTransformer mapper;
+	private final FileImportJob job;
+	private final Class type;
+	private final int commitInterval;
+	private final int transformThreads;
+	private final int commitThreads;
+	private volatile boolean cancelled = false;
+	private long startTime             = 0L;
+
+	public ImportPipeline(final FileImportJob job, final Class type, final ResultTransformer mapper, final int commitInterval, final int transformThreads, final int commitThreads) throws FrameworkException {
+
+		this.job              = job;
+		this.type             = type;
+		this.mapper           = mapper;
+		this.commitInterval   = Math.max(1, commitInterval);
+		this.transformThreads = Math.max(1, transformThreads);
+
+		// every node is connected to the importing user by OWNS and SECURITY,
+		// which locks the user node until the end of each commit, so several
+		// committers would only wait for each other
+		if (commitThreads > 1 && createsSecurityRelationships(job.getImportContext())) {
+
+			logger.info("{}: Committing with one thread, the security relationships of the import user serialize all commits", job.getJobType());
+			this.commitThreads = 1;
+
+		} else {
+
+			this.commitThreads = Math.max(1, commitThreads);
+		}
+
+		this.transformStage   = new Stage("transform", this.transformThreads);
+		this.commitStage      = new Stage("commit", this.commitThreads);
+
+		// blocks of rows between parser and workers, chunks between batcher and committers
+		this.parsedQueue      = new ArrayBlockingQueue<>(this.transformThreads * 4);
+		this.transformedQueue = new ArrayBlockingQueue<>(this.transformThreads * 4);
+		this.chunkQueue       = new ArrayBlockingQueue<>(this.commitThreads * 2);
+	}
+
+	/**
+	 * Runs the pipeline until all rows of the given iterator are committed.
+	 *
+	 * @param iterator the parsed rows
+	 *
+	 * @return the number of committed objects, or -1 if the job was aborted
+	 *
+	 * @throws FrameworkException if one of the stages failed
+	 */
+	public int run(final Iterator<JsonInput> iterator) throws FrameworkException {
+
+		startTime = System.nanoTime();
+
+		for (int i=0; i<transformThreads; i++) {
+			start("transform-" + i, this::transform);
+		}
+
+		start("batch", this::batch);
+
+		for (int i=0; i<commitThreads; i++) {
+			start("commit-" + i, this::commit);
+		}
+
+		boolean aborted = false;
+
+		try {
+
+			while (iterator.hasNext() && !cancelled) {
+
+				final List<JsonInput> block = new ArrayList<>(BLOCK_SIZE);
+				final long t0               = System.nanoTime();
+
+				while (iterator.hasNext() && block.size() < BLOCK_SIZE) {
+					block.add(iterator.next());
+				}
+
+				parseStage.finished(block.size(), t0);
+
+				put(parsedQueue, block);
+
+				// pausing stops the parser, the other stages drain their queues
+				if (job.pauseOrAbort()) {
+
+					aborted   = true;
+					cancelled = true;
+				}
+			}
+
+			for (int i=0; i<transformThreads; i++) {
+				put(parsedQueue, END);
+			}
+
+		} catch (Throwable t) {
+			fail(t);
+		}
+
+		for (final Thread thread : threads) {
+
+			try {
+				thread.join();
+
+			} catch (InterruptedException iex) {
+				fail(iex);
+			}
+		}
+
+		final Throwable t = error.get();
+		if (t != null) {
+
+			if (t instanceof FrameworkException) {
+				throw (FrameworkException)t;
+			}
+
+			final FrameworkException fex = new FrameworkException(500, t.getMessage());
+			fex.initCause(t);
+
+			throw fex;
+		}
+
+		logger.info("{}: Pipeline finished, {}", job.getJobType(), getStageInfo());
+
+		return aborted ? -1 : committed.get();
+	}
+
+	/**
+	 * Returns the throughput of each stage, and the share of time its
+	 * threads were busy. The busiest stage is the bottleneck.
+	 *
+	 * @return the stage information
+	 */
+	public Map<String, Object> getStageInfo() {
+
+		final Map<String, Object> info = new LinkedHashMap<>();
+		final double elapsed           = (System.nanoTime() - startTime) / 1000000000.0;
+
+		for (final Stage stage : new Stage[] { parseStage, transformStage, batchStage, commitStage }) {
+			info.put(stage.name, stage.getInfo(elapsed));
+		}
+
+		return info;
+	}
+
+	// ----- private methods -----
+	private void transform() throws FrameworkException, InterruptedException {
+
+		final SecurityContext securityContext = job.getImportContext();
+		final App app                         = StructrApp.getInstance(securityContext);
+
+		List<JsonInput> block = take(parsedQueue);
+		while (block != null && block != END) {
+
+			final List<PropertyMap> transformed = new ArrayList<>(block.size());
+			final long t0                       = System.nanoTime();
+
+			try (final Tx tx = app.tx()) {
+
+				for (final JsonInput input : block) {
+
+					mapper.transformInput(securityContext, type, input);
+
+					transformed.add(detach(PropertyMap.inputTypeToJavaType(securityContext, type, input)));
+				}
+
+				tx.success();
+			}
+
+			transformStage.finished(transformed.size(), t0);
+
+			put(transformedQueue, transformed);
+
+			block = take(parsedQueue);
+		}
+
+		put(transformedQueue, END);
+	}
+
+	private void batch() throws InterruptedException {
+
+		List<PropertyMap> chunk = new ArrayList<>(commitInterval);
+		int finishedWorkers     = 0;
+
+		while (finishedWorkers < transformThreads) {
+
+			final List<PropertyMap> block = take(transformedQueue);
+			if (block == null) {
+
+				// cancelled
+				return;
+			}
+
+			if (block == END) {
+
+				finishedWorkers++;
+				continue;
+			}
+
+			final long t0 = System.nanoTime();
+
+			for (final PropertyMap properties : block) {
+
+				chunk.add(properties);
+
+				if (chunk.size() >= commitInterval) {
+
+					put(chunkQueue, chunk);
+					chunk = new ArrayList<>(commitInterval);
+				}
+			}
+
+			batchStage.finished(block.size(), t0);
+		}
+
+		if (!chunk.isEmpty()) {
+			put(chunkQueue, chunk);
+		}
+
+		for (int i=0; i<commitThreads; i++) {
+			put(chunkQueue, END);
+		}
+	}
+
+	private void commit() throws FrameworkException, InterruptedException {
+
+		final SecurityContext securityContext = job.getImportContext();
+		final App app                         = StructrApp.getInstance(securityContext);
+
+		List<PropertyMap> chunk = take(chunkQueue);
+		while (chunk != null && chunk != END) {
+
+			final long chunkStartTime = System.currentTimeMillis();
+			final long t0             = System.nanoTime();
+			int retries               = 0;
+			boolean retry             = true;
+
+			while (retry) {
+
+				retry = false;
+
+				try (final Tx tx = app.tx()) {
+
+					final List<PropertyMap> resolved = new ArrayList<>(chunk.size());
+
+					for (final PropertyMap properties : chunk) {
+						resolved.add(attach(app, properties));
+					}
+
+					// create all objects of this chunk at once
+					app.create(type, resolved);
+
+					tx.success();
+
+				} catch (RetryException rex) {
+
+					// conflicting write in a concurrent transaction, the whole chunk was rolled back
+					if (++retries > MAX_RETRIES) {
+						throw rex;
+					}
+
+					logger.info("{}: Retrying chunk after conflicting write ({}/{})", job.getJobType(), retries, MAX_RETRIES);
+					retry = true;
+				}
+			}
+
+			commitStage.finished(chunk.size(), t0);
+
+			final int overallCount = committed.addAndGet(chunk.size());
+
+			synchronized (job) {
+				job.chunkFinished(chunkStartTime, chunks.incrementAndGet(), chunk.size(), overallCount, getStageInfo());
+			}
+
+			chunk = take(chunkQueue);
+		}
+	}
+
+	private boolean createsSecurityRelationships(final SecurityContext securityContext) throws FrameworkException {
+
+		try (final Tx tx = StructrApp.getInstance(securityContext).tx()) {
+
+			final Principal user = securityContext.getUser(false);
+			final boolean result = user != null && !user.shouldSkipSecurityRelationships();
+
+			tx.success();
+
+			return result;
+		}
+	}
+
+	/**
+	 * Replaces the entities in the given properties with references to
+	 * their UUID, the entity instances belong to the worker transaction.
+	 */
+	private PropertyMap detach(final PropertyMap properties) {
+
+		for (final Map.Entry<PropertyKey, Object> entry : properties.entrySet()) {
+
+			final Object value = entry.getValue();
+
+			if (value instanceof GraphObject) {
+
+				entry.setValue(new EntityReference((GraphObject)value));
+
+			} else if (value instanceof Collection && containsEntities((Collection)value)) {
+
+				final Collection collection = (Collection)value;
+				final List<Object> list     = new ArrayList<>(collection.size());
+
+				for (final Object element : collection) {
+					list.add(element instanceof GraphObject ? new EntityReference((GraphObject)element) : element);
+				}
+
+				entry.setValue(list);
+			}
+		}
+
+		return properties;
+	}
+
+	/**
+	 * Resolves the entity references in the given properties in the
+	 * transaction of the given app.
+	 */
+	private PropertyMap attach(final App app, final PropertyMap properties) throws FrameworkException {
+
+		final PropertyMap resolved = new PropertyMap();
+
+		for (final Map.Entry<PropertyKey, Object> entry : properties.entrySet()) {
+
+			final Object value = entry.getValue();
+
+			if (value instanceof EntityReference) {
+
+				resolved.put(entry.getKey(), ((EntityReference)value).resolve(app));
+
+			} else if (value instanceof List && containsReferences((List)value)) {
+
+				final List<Object> list = new ArrayList<>();
+
+				for (final Object element : (List)value) {
+					list.add(element instanceof EntityReference ? ((EntityReference)element).resolve(app) : element);
+				}
+
+				resolved.put(entry.getKey(), list);
+
+			} else {
+
+				resolved.put(entry.getKey(), value);
+			}
+		}
+
+		return resolved;
+	}
+
+	private boolean containsEntities(final Collection collection) {
+
+		for (final Object element : collection) {
+
+			if (element instanceof GraphObject) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private boolean containsReferences(final List list) {
+
+		for (final Object element : list) {
+
+			if (element instanceof EntityReference) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private void start(final String name, final StageRunnable runnable) {
+
+		final Thread thread = new Thread(() -> {
+
+			try {
+				runnable.run();
+
+			} catch (Throwable t) {
+				fail(t);
+			}
+
+		}, job.getJobType() + "-import-" + name);
+
+		threads.add(thread);
+		thread.start();
+	}
+
+	private void fail(final Throwable t) {
+
+		if (error.compareAndSet(null, t)) {
+			logger.warn("{}: Import pipeline failed: {}", job.getJobType(), t.getMessage());
+		}
+
+		cancelled = true;
+	}
+
+	private <T> void put(final BlockingQueue<T> queue, final T item) throws InterruptedException {
+
+		while (!cancelled) {
+
+			if (queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+				return;
+			}
+		}
+	}
+
+	private <T> T take(final BlockingQueue<T> queue) throws InterruptedException {
+
+		while (!cancelled) {
+
+			final T item = queue.poll(100, TimeUnit.MILLISECONDS);
+			if (item != null) {
+
+				return item;
+			}
+		}
+
+		return null;
+	}
+
+	// ----- nested classes -----
+	private interface StageRunnable {
+
+		void run() throws Exception;
+	}
+
+	private static class EntityReference {
+
+		private String uuid  = null;
+		private boolean node = false;
+
+		public EntityReference(final GraphObject obj) {
+
+			this.uuid = obj.getUuid();
+			this.node = obj instanceof NodeInterface;
+		}
+
+		public GraphObject resolve(final App app) throws FrameworkException {
+
+			final GraphObject obj = node ? app.getNodeById(uuid) : app.getRelationshipById(uuid);
+			if (obj == null) {
+
+				throw new FrameworkException(404, "Referenced entity " + uuid + " not found");
+			}
+
+			return obj;
+		}
+	}
+
+	private static class Stage {
+
+		private final AtomicLong objects = new AtomicLong();
+		private final AtomicLong busy    = new AtomicLong();
+		private String name              = null;
+		private int threads              = 0;
+
+		public Stage(final String name, final int threads) {
+
+			this.name    = name;
+			this.threads = threads;
+		}
+
+		public void finished(final int count, final long t0) {
+
+			objects.addAndGet(count);
+			busy.addAndGet(System.nanoTime() - t0);
+		}
+
+		public Map<String, Object> getInfo(final double elapsed) {
+
+			final DecimalFormat decimalFormat = new DecimalFormat("0.00", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+			final Map<String, Object> info    = new LinkedHashMap<>();
+			final double busySeconds          = busy.get() / 1000000000.0;
+
+			info.put("threads",          threads);
+			info.put("objects",          objects.get());
+			info.put("objectsPerSecond", decimalFormat.format(elapsed > 0 ? objects.get() / elapsed : 0.0));
+			info.put("utilization",      decimalFormat.format(elapsed > 0 ? busySeconds / (elapsed * threads) : 0.0));
+
+			return info;
+		}
+	}
+}
@@ -22,12 +22,16 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.util.Iterator;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import javax.xml.stream.XMLStreamException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.structr.common.AccessMode;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.Services;
@@ -81,31 +85,34 @@ public class XMLFileImportJob extends FileImportJob {
 
 		return () -> {
 
+			final Integer batchSize = parseInt(configuration.get("batchSize"), 100);
+			final Integer offset    = parseInt(configuration.get("offset"), 0);
+
 			logger.info("Importing XML from {} ({})..", filePath, fileUuid);
 
-			final SecurityContext threadContext = SecurityContext.getInstance(user, AccessMode.Backend);
+			final SecurityContext threadContext = getImportContext();
 			final App app                       = StructrApp.getInstance(threadContext);
 			int overallCount                    = 0;
 
-			// disable transaction notifications
-			threadContext.disableModificationOfAccessTime();
-			threadContext.ignoreResultCount(true);
-			threadContext.setDoTransactionNotifications(false);
-			threadContext.disableEnsureCardinality();
-
 			try (final InputStream is = getFileInputStream(threadContext)) {
 
 				try (final Reader reader = new InputStreamReader(is)) {
 
 					reportBegin();
 
-					final Iterator<Map<String, Object>> iterator = new XMLHandler(configuration, reader);
-					final int batchSize                          = 100;
-					int chunks                                   = 0;
+					final XMLHandler handler = new XMLHandler(configuration, reader);
+					int chunks               = 0;
+
+					// resume after the objects of a previous run
+					if (offset > 0) {
+
+						logger.info("XML: Skipping {} objects that were imported before", offset);
+						handler.skipObjects(offset);
+					}
 
 					final long startTime = System.currentTimeMillis();
 
-					while (iterator.hasNext()) {
+					while (handler.hasNext()) {
 
 						final long chunkStartTime = System.currentTimeMillis();
 
@@ -113,18 +120,22 @@ public class XMLFileImportJob extends FileImportJob {
 
 						try (final Tx tx = app.tx()) {
 
-							while (iterator.hasNext() && ++count <= batchSize) {
+							final List<PropertyMap> chunk = new ArrayList<>();
 
-								app.create(AbstractNode.class, PropertyMap.inputTypeToJavaType(threadContext, iterator.next()));
+							while (handler.hasNext() && ++count <= batchSize) {
 
-								overallCount++;
+								chunk.add(PropertyMap.inputTypeToJavaType(threadContext, handler.next()));
 							}
 
+							// create all objects of this chunk at once
+							app.create(AbstractNode.class, chunk);
+
 							tx.success();
 
+							overallCount += chunk.size();
 							chunks++;
 
-							chunkFinished(chunkStartTime, chunks, batchSize, overallCount);
+							chunkFinished(chunkStartTime, chunks, chunk.size(), overallCount, getParserInfo(handler, startTime, offset + overallCount));
 
 						}
 
@@ -136,9 +147,14 @@ public class XMLFileImportJob extends FileImportJob {
 
 					}
 
+					// fail the import if the input ended with a parse error
+					handler.checkError();
+
 					importFinished(startTime, overallCount);
 
 				} catch (XMLStreamException | FrameworkException ex) {
+
+					logger.warn("XML: Import failed: {}, it can be resumed with offset {}", ex.getMessage(), offset + overallCount);
 					reportException(ex);
 				}
 
@@ -167,4 +183,22 @@ public class XMLFileImportJob extends FileImportJob {
 	public String getJobExceptionMessageType() {
 		return "FILE_IMPORT_EXCEPTION";
 	}
+
+	// ----- private methods -----
+	private Map<String, Object> getParserInfo(final XMLHandler handler, final long startTime, final int resumeOffset) {
+
+		final DecimalFormat decimalFormat = new DecimalFormat("0.00", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+		final Map<String, Object> stages  = new LinkedHashMap<>();
+		final Map<String, Object> parse   = new LinkedHashMap<>();
+		final long duration               = System.currentTimeMillis() - startTime;
+
+		parse.put("elements",          handler.getElementCount());
+		parse.put("elementsPerSecond", duration > 0 ? decimalFormat.format(handler.getElementCount() / (duration / 1000.0)) : "0.00");
+		parse.put("objects",           handler.getObjectCount());
+		parse.put("resumeOffset",      resumeOffset);
+
+		stages.put("parse", parse);
+
+		return stages;
+	}
 }
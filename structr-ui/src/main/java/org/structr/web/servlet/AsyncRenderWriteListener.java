@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.servlet;
+
+import java.io.IOException;
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.web.common.StreamingRenderBuffer;
+
+/**
+ * Write listener that streams the chunks of a {@link StreamingRenderBuffer}
+ * to the client without blocking.
+ *
+ * Output is written whenever the container signals that writing is possible
+ * or the rendering thread has produced a new chunk. Consuming a chunk wakes
+ * up a rendering thread that waits for free buffer space.
+ */
+public class AsyncRenderWriteListener implements WriteListener, Runnable {
+
+	private static final Logger logger = LoggerFactory.getLogger(AsyncRenderWriteListener.class.getName());
+
+	private final StreamingRenderBuffer buffer;
+	private final AsyncContext async;
+	private final ServletOutputStream out;
+	private final String name;
+	private final long startTime;
+	private long firstByteTime         = -1L;
+	private long renderFinishedTime    = -1L;
+	private long completedTime         = -1L;
+	private boolean completed          = false;
+
+	public AsyncRenderWriteListener(final StreamingRenderBuffer buffer, final AsyncContext async, final ServletOutputStream out, final String name) {
+
+		this.startTime = System.nanoTime();
+		this.buffer    = buffer;
+		this.async     = async;
+		this.out       = out;
+		this.name      = name;
+
+		buffer.setListener(this);
+	}
+
+	@Override
+	public void onWritePossible() throws IOException {
+		drain();
+	}
+
+	@Override
+	public void onError(final Throwable t) {
+
+		logger.warn("Error while streaming page {}: {}", name, t.getMessage());
+
+		buffer.abort();
+		complete();
+	}
+
+	@Override
+	public void run() {
+
+		// called from the rendering thread when new output is available
+		try {
+
+			drain();
+
+		} catch (IOException ioex) {
+
+			onError(ioex);
+		}
+	}
+
+	/**
+	 * Completes the response with the given status code without any output,
+	 * used when the page could not be scheduled for rendering.
+	 *
+	 * @param status the HTTP status code
+	 */
+	public synchronized void reject(final int status) {
+
+		final ServletResponse response = async.getResponse();
+
+		if (!response.isCommitted() && response instanceof HttpServletResponse) {
+			((HttpServletResponse)response).setStatus(status);
+		}
+
+		buffer.abort();
+		complete();
+	}
+
+	public synchronized void renderFinished() {
+		renderFinishedTime = System.nanoTime();
+	}
+
+	/**
+	 * @return the time to first byte in milliseconds, or -1 if no output was written yet
+	 */
+	public synchronized long getTimeToFirstByte() {
+		return firstByteTime >= 0 ? toMillis(firstByteTime - startTime) : -1L;
+	}
+
+	/**
+	 * @return the total render time in milliseconds, or -1 if rendering has not finished yet
+	 */
+	public synchronized long getRenderTime() {
+		return renderFinishedTime >= 0 ? toMillis(renderFinishedTime - startTime) : -1L;
+	}
+
+	/**
+	 * @return the time until the response was completed in milliseconds, or -1 if not completed yet
+	 */
+	public synchronized long getTotalTime() {
+		return completedTime >= 0 ? toMillis(completedTime - startTime) : -1L;
+	}
+
+	// ----- private methods -----
+	private synchronized void drain() throws IOException {
+
+		while (!completed && out.isReady()) {
+
+			final byte[] chunk = buffer.poll();
+			if (chunk != null) {
+
+				if (firstByteTime < 0) {
+					firstByteTime = System.nanoTime();
+				}
+
+				out.write(chunk);
+
+			} else {
+
+				if (buffer.isDone()) {
+					complete();
+				}
+
+				// nothing to write at the moment, the rendering
+				// thread calls us again when output is available
+				return;
+			}
+		}
+	}
+
+	private synchronized void complete() {
+
+		if (!completed) {
+
+			completed     = true;
+			completedTime = System.nanoTime();
+
+			async.complete();
+
+			logger.debug("Page {}: time to first byte {} ms, render time {} ms, total {} ms", name, getTimeToFirstByte(), getRenderTime(), getTotalTime());
+		}
+	}
+
+	private long toMillis(final long nanos) {
+		return nanos / 1000000L;
+	}
+}
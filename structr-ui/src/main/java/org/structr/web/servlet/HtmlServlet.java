@@ -21,7 +21,12 @@ package org.structr.web.servlet;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -36,18 +41,18 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
-import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -55,6 +60,8 @@ import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DateUtils;
+import org.eclipse.jetty.io.EofException;
+import org.eclipse.jetty.server.HttpOutput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.config.Settings;
@@ -75,6 +82,7 @@ import org.structr.core.auth.exception.AuthenticationException;
 import org.structr.core.converter.PropertyConverter;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Principal;
+import org.structr.core.graph.NodeServiceCommand;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
@@ -85,9 +93,11 @@ import org.structr.rest.service.StructrHttpServiceConfig;
 import org.structr.schema.ConfigurationProvider;
 import org.structr.util.Base64;
 import org.structr.web.auth.UiAuthenticator;
+import org.structr.web.common.ByteRange;
 import org.structr.web.common.FileHelper;
 import org.structr.web.common.RenderContext;
 import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.common.StreamingRenderBuffer;
 import org.structr.web.common.StringRenderBuffer;
 import org.structr.web.entity.AbstractFile;
 import org.structr.web.entity.FileBase;
@@ -120,10 +130,12 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 
 	public static final String CUSTOM_RESPONSE_HEADERS      = "HtmlServlet.customResponseHeaders";
 	public static final String OBJECT_RESOLUTION_PROPERTIES = "HtmlServlet.resolveProperties";
+	public static final String RENDER_METRICS_KEY           = "HtmlServlet.renderMetrics";
 
 	private static final List<String> customResponseHeaders        = new LinkedList<>();
 	private static final ThreadLocalMatcher threadLocalUUIDMatcher = new ThreadLocalMatcher("[a-fA-F0-9]{32}");
-	private static final ExecutorService threadPool                = Executors.newCachedThreadPool();
+	private static final long MAPPED_REGION_SIZE                   = 16 * 1024 * 1024;
+	private static final ExecutorService threadPool                = createRenderPool(Settings.AsyncRenderThreads.getValue(), Settings.AsyncRenderQueueSize.getValue());
 
 	private final Pattern FilenameCleanerPattern                      = Pattern.compile("[\n\r]", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
 	private final StructrHttpServiceConfig config                     = new StructrHttpServiceConfig();
@@ -457,87 +469,62 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 						// async or not?
 						if (isAsync && !createsRawData) {
 
-							final AsyncContext async = request.startAsync();
-							final ServletOutputStream out = async.getResponse().getOutputStream();
-							final AtomicBoolean finished = new AtomicBoolean(false);
-							final DOMNode rootNode = rootElement;
+							final AsyncContext async                = request.startAsync();
+							final ServletOutputStream out           = async.getResponse().getOutputStream();
+							final StreamingRenderBuffer buffer      = new StreamingRenderBuffer(Settings.AsyncBufferChunks.getValue());
+							final AsyncRenderWriteListener listener = new AsyncRenderWriteListener(buffer, async, out, rootElement.getName());
+							final DOMNode rootNode                  = rootElement;
 
-							threadPool.submit(new Runnable() {
-
-								@Override
-								public void run() {
-
-									try (final Tx tx = app.tx()) {
+							renderContext.setBuffer(buffer);
+							request.setAttribute(RENDER_METRICS_KEY, listener);
 
-										// render
-										rootNode.render(renderContext, 0);
-										finished.set(true);
+							// start output write listener before rendering, a fast or caller-run
+							// render could otherwise complete the async context before it exists
+							out.setWriteListener(listener);
 
-										tx.success();
+							try {
 
-									} catch (Throwable t) {
+								threadPool.submit(new Runnable() {
 
-										t.printStackTrace();
-										logger.warn("Error while rendering page {}: {}", rootNode.getName(), t.getMessage());
+									@Override
+									public void run() {
 
-										try {
+										try (final Tx tx = app.tx()) {
 
-											response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-											finished.set(true);
+											// render
+											rootNode.render(renderContext, 0);
 
-										} catch (IOException ex) {
-											logger.warn("", ex);
-										}
-									}
-								}
+											tx.success();
 
-							});
+										} catch (Throwable t) {
 
-							// start output write listener
-							out.setWriteListener(new WriteListener() {
+											t.printStackTrace();
+											logger.warn("Error while rendering page {}: {}", rootNode.getName(), t.getMessage());
 
-								@Override
-								public void onWritePossible() throws IOException {
+											try {
 
-									try {
+												response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
 
-										final Queue<String> queue = renderContext.getBuffer().getQueue();
-										while (out.isReady()) {
-
-											String buffer = null;
-
-											synchronized (queue) {
-												buffer = queue.poll();
+											} catch (IOException ex) {
+												logger.warn("", ex);
 											}
 
-											if (buffer != null) {
-
-												out.print(buffer);
-
-											} else {
-
-												if (finished.get()) {
+										} finally {
 
-													async.complete();
+											listener.renderFinished();
+											buffer.finish();
+										}
+									}
 
-													// prevent this block from being called again
-													break;
-												}
+								});
 
-												Thread.sleep(1);
-											}
-										}
+							} catch (RejectedExecutionException rex) {
 
-									} catch (Throwable t) {
-										logger.warn("", t);
-									}
-								}
+								// all render threads are busy and the queue is full
+								logger.warn("Unable to render page {}: render queue is full", rootNode.getName());
 
-								@Override
-								public void onError(Throwable t) {
-									logger.warn("", t);
-								}
-							});
+								listener.reject(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+							}
 
 						} else {
 
@@ -578,6 +565,21 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 		}
 	}
 
+	/**
+	 * Creates the thread pool for asynchronous rendering.
+	 *
+	 * A saturated pool rejects new pages instead of rendering them in the
+	 * container thread: a rendering thread blocks when the buffer of a slow
+	 * client is full, and only the container can drain it.
+	 *
+	 * @param threads the number of render threads
+	 * @param queueSize the maximum number of waiting render tasks
+	 * @return the thread pool
+	 */
+	static ThreadPoolExecutor createRenderPool(final int threads, final int queueSize) {
+		return new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(queueSize), new ThreadPoolExecutor.AbortPolicy());
+	}
+
 	@Override
 	protected void doPost(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
 
@@ -1341,6 +1343,10 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 	}
 
 	private static boolean notModifiedSince(final HttpServletRequest request, HttpServletResponse response, final AbstractNode node, final boolean dontCache) {
+		return notModified(request, response, node, dontCache, null);
+	}
+
+	private static boolean notModified(final HttpServletRequest request, HttpServletResponse response, final AbstractNode node, final boolean dontCache, final String etag) {
 
 		boolean notModified = false;
 		final Date lastModified = node.getLastModifiedDate();
@@ -1371,6 +1377,30 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 
 		}
 
+		if (etag != null) {
+
+			response.setHeader("ETag", etag);
+
+			// If-None-Match takes precedence over If-Modified-Since
+			final String ifNoneMatch = request.getHeader("If-None-Match");
+			if (StringUtils.isNotBlank(ifNoneMatch)) {
+
+				if (lastModified != null) {
+					response.setHeader("Last-Modified", httpDateFormat.format(DateUtils.round(lastModified, Calendar.SECOND)));
+				}
+
+				if (matchesETag(ifNoneMatch, etag)) {
+
+					notModified = true;
+
+					response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+					response.setHeader("Vary", "Accept-Encoding");
+				}
+
+				return notModified;
+			}
+		}
+
 		if (lastModified != null) {
 
 			final Date roundedLastModified = DateUtils.round(lastModified, Calendar.SECOND);
@@ -1433,7 +1463,9 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 			callbackMap.put("requestedFileName", downloadAsFilename);
 		}
 
-		if (!EditMode.WIDGET.equals(edit) && notModifiedSince(request, response, file, false)) {
+		final String etag = getETag(file);
+
+		if (!EditMode.WIDGET.equals(edit) && notModified(request, response, file, false, etag)) {
 
 			out.flush();
 			out.close();
@@ -1457,69 +1489,34 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 			} else {
 
 				// 2b: stream file to response
-				final InputStream in = file.getInputStream();
-				final String contentType = file.getContentType();
+				final String contentType      = file.getContentType() != null ? file.getContentType() : "application/octet-stream";
+				final java.io.File fileOnDisk = file.getFileOnDisk(false);
 
-				if (contentType != null) {
+				response.setContentType(contentType);
 
-					response.setContentType(contentType);
+				// templates are rendered, all other files are sent from disk without copying
+				if (!file.getProperty(FileBase.isTemplate) && fileOnDisk != null && fileOnDisk.isFile()) {
 
-				} else {
-
-					// Default
-					response.setContentType("application/octet-stream");
-				}
-
-				final String range = request.getHeader("Range");
+					try {
 
-				try {
+						callbackMap.put("statusCode", sendFileContent(request, response, out, fileOnDisk, contentType, etag));
 
-					if (StringUtils.isNotEmpty(range)) {
+					} catch (IOException ioex) {
 
-						final long len = file.getSize();
-						long start     = 0;
-						long end       = len - 1;
+						// clients that abort a download are reported by Jetty as
+						// EofException, all other write errors are unexpected
+						if (out instanceof HttpOutput && ioex instanceof EofException) {
 
-						final Matcher matcher = Pattern.compile("bytes=(?<start>\\d*)-(?<end>\\d*)").matcher(range);
+							logger.debug("Unable to send file content: {}", ioex.getMessage());
 
-						if (matcher.matches()) {
-							String startGroup = matcher.group("start");
-							start = startGroup.isEmpty() ? start : Long.valueOf(startGroup);
-							start = Math.max(0, start);
+						} else {
 
-							String endGroup = matcher.group("end");
-							end = endGroup.isEmpty() ? end : Long.valueOf(endGroup);
-							end = end > len - 1 ? len - 1 : end;
+							logger.warn("Unable to send file content: {}", ioex.getMessage());
 						}
 
-						long contentLength = end - start + 1;
-
-						// Tell the client that we support byte ranges
-						response.setHeader("Accept-Ranges", "bytes");
-						response.setHeader("Content-Range", String.format("bytes %s-%s/%s", start, end, len));
-						response.setHeader("Content-Length", String.format("%s", contentLength));
-
-						response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
-						callbackMap.put("statusCode", HttpServletResponse.SC_PARTIAL_CONTENT);
-
-						IOUtils.copyLarge(in, out, start, contentLength);
-
-					} else {
-
-						response.setStatus(HttpServletResponse.SC_OK);
-						callbackMap.put("statusCode", HttpServletResponse.SC_OK);
-
-						IOUtils.copyLarge(in, out);
-					}
-
-				} catch (Throwable t) {
-
-				} finally {
-
-					if (out != null) {
+					} finally {
 
 						try {
-							// 3: output content
 							out.flush();
 							out.close();
 
@@ -1527,11 +1524,9 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 						}
 					}
 
-					if (in != null) {
-						in.close();
-					}
+				} else {
 
-					response.setStatus(HttpServletResponse.SC_OK);
+					streamFileContent(file, request, response, out, callbackMap);
 				}
 			}
 		}
@@ -1551,6 +1546,224 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 		}
 	}
 
+	private void streamFileContent(final FileBase file, final HttpServletRequest request, final HttpServletResponse response, final ServletOutputStream out, final Map<String, Object> callbackMap) throws IOException {
+
+		final InputStream in = file.getInputStream();
+		final String range   = request.getHeader("Range");
+
+		try {
+
+			if (StringUtils.isNotEmpty(range)) {
+
+				final long len = file.getSize();
+				long start     = 0;
+				long end       = len - 1;
+
+				final Matcher matcher = Pattern.compile("bytes=(?<start>\\d*)-(?<end>\\d*)").matcher(range);
+
+				if (matcher.matches()) {
+					String startGroup = matcher.group("start");
+					start = startGroup.isEmpty() ? start : Long.valueOf(startGroup);
+					start = Math.max(0, start);
+
+					String endGroup = matcher.group("end");
+					end = endGroup.isEmpty() ? end : Long.valueOf(endGroup);
+					end = end > len - 1 ? len - 1 : end;
+				}
+
+				long contentLength = end - start + 1;
+
+				// Tell the client that we support byte ranges
+				response.setHeader("Accept-Ranges", "bytes");
+				response.setHeader("Content-Range", String.format("bytes %s-%s/%s", start, end, len));
+				response.setHeader("Content-Length", String.format("%s", contentLength));
+
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				callbackMap.put("statusCode", HttpServletResponse.SC_PARTIAL_CONTENT);
+
+				IOUtils.copyLarge(in, out, start, contentLength);
+
+			} else {
+
+				response.setStatus(HttpServletResponse.SC_OK);
+				callbackMap.put("statusCode", HttpServletResponse.SC_OK);
+
+				IOUtils.copyLarge(in, out);
+			}
+
+		} catch (Throwable t) {
+
+		} finally {
+
+			if (out != null) {
+
+				try {
+					// 3: output content
+					out.flush();
+					out.close();
+
+				} catch (Throwable t) {
+				}
+			}
+
+			if (in != null) {
+				in.close();
+			}
+
+			response.setStatus(HttpServletResponse.SC_OK);
+		}
+	}
+
+	/**
+	 * Sends the content of the given file, or the requested byte ranges
+	 * of it, and returns the status code. Regions of the file are written
+	 * as memory-mapped buffers so that the content is not copied to the
+	 * heap.
+	 */
+	private int sendFileContent(final HttpServletRequest request, final HttpServletResponse response, final ServletOutputStream out, final java.io.File fileOnDisk, final String contentType, final String etag) throws IOException {
+
+		try (final FileChannel channel = FileChannel.open(fileOnDisk.toPath(), StandardOpenOption.READ)) {
+
+			final long length      = channel.size();
+			final String ifRange   = request.getHeader("If-Range");
+			List<ByteRange> ranges = ByteRange.parse(request.getHeader("Range"), length);
+
+			// send the full content if the client's copy is outdated
+			if (ranges != null && ifRange != null && ifRange.startsWith("\"") && !ifRange.equals(etag)) {
+				ranges = null;
+			}
+
+			response.setHeader("Accept-Ranges", "bytes");
+
+			if (ranges == null) {
+
+				response.setStatus(HttpServletResponse.SC_OK);
+				response.setContentLengthLong(length);
+
+				writeRegion(channel, 0, length, out);
+
+				return HttpServletResponse.SC_OK;
+			}
+
+			if (ranges.isEmpty()) {
+
+				response.setHeader("Content-Range", "bytes */" + length);
+				response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+
+				return HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
+			}
+
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+
+			if (ranges.size() == 1) {
+
+				final ByteRange range = ranges.get(0);
+
+				response.setHeader("Content-Range", range.getContentRange(length));
+				response.setContentLengthLong(range.getLength());
+
+				writeRegion(channel, range.getStart(), range.getLength(), out);
+
+			} else {
+
+				// multipart/byteranges, see https://tools.ietf.org/html/rfc7233#appendix-A
+				final String boundary      = "STRUCTR_" + NodeServiceCommand.getNextUuid();
+				final List<byte[]> headers = new LinkedList<>();
+				final byte[] trailer       = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+				long contentLength         = trailer.length;
+
+				for (final ByteRange range : ranges) {
+
+					final byte[] header = ("\r\n--" + boundary + "\r\nContent-Type: " + contentType + "\r\nContent-Range: " + range.getContentRange(length) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+					headers.add(header);
+					contentLength += header.length + range.getLength();
+				}
+
+				response.setContentType("multipart/byteranges; boundary=" + boundary);
+				response.setContentLengthLong(contentLength);
+
+				int index = 0;
+
+				for (final ByteRange range : ranges) {
+
+					out.write(headers.get(index++));
+					writeRegion(channel, range.getStart(), range.getLength(), out);
+				}
+
+				out.write(trailer);
+			}
+
+			return HttpServletResponse.SC_PARTIAL_CONTENT;
+		}
+	}
+
+	private void writeRegion(final FileChannel channel, final long start, final long length, final ServletOutputStream out) throws IOException {
+
+		long position  = start;
+		long remaining = length;
+
+		if (out instanceof HttpOutput) {
+
+			final HttpOutput httpOutput = (HttpOutput)out;
+
+			while (remaining > 0) {
+
+				final long chunk = Math.min(remaining, MAPPED_REGION_SIZE);
+
+				httpOutput.write(channel.map(FileChannel.MapMode.READ_ONLY, position, chunk));
+
+				position  += chunk;
+				remaining -= chunk;
+			}
+
+		} else {
+
+			final WritableByteChannel target = Channels.newChannel(out);
+
+			while (remaining > 0) {
+
+				final long count = channel.transferTo(position, remaining, target);
+				if (count <= 0) {
+					break;
+				}
+
+				position  += count;
+				remaining -= count;
+			}
+		}
+	}
+
+	private static String getETag(final FileBase file) {
+
+		// the content of templates depends on the request
+		if (file.getProperty(FileBase.isTemplate)) {
+			return null;
+		}
+
+		final Long checksum = file.getProperty(FileBase.checksum);
+		if (checksum != null) {
+
+			return "\"" + Long.toHexString(checksum) + "\"";
+		}
+
+		return null;
+	}
+
+	private static boolean matchesETag(final String header, final String etag) {
+
+		for (final String value : header.split(",")) {
+
+			final String tag = StringUtils.removeStart(value.trim(), "W/");
+			if ("*".equals(tag) || etag.equals(tag)) {
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
 	/**
 	 * Check if the given page is visible for the requested site defined by
 	 * a hostname and a port.
@@ -67,6 +67,7 @@ public class StructrWebSocket implements WebSocketListener {
 
 	//~--- fields ---------------------------------------------------------
 	private Session session = null;
+	private WebSocketOutboundQueue outboundQueue = null;
 	private Gson gson = null;
 	private HttpServletRequest request = null;
 	private SecurityContext securityContext = null;
@@ -100,6 +101,7 @@ public class StructrWebSocket implements WebSocketListener {
 		logger.debug("New connection with protocol {}", session.getProtocolVersion());
 
 		this.session = session;
+		this.outboundQueue = new WebSocketOutboundQueue(session, Settings.WebsocketOutboundQueueSize.getValue());
 
 		syncController.registerClient(this);
 
@@ -120,6 +122,10 @@ public class StructrWebSocket implements WebSocketListener {
 
 			syncController.unregisterClient(this);
 
+			if (outboundQueue != null) {
+				outboundQueue.close();
+			}
+
 			// flush and close open uploads
 			for (FileUploadHandler upload : uploads.values()) {
 
@@ -477,6 +483,12 @@ public class StructrWebSocket implements WebSocketListener {
 
 	}
 
+	public WebSocketOutboundQueue getOutboundQueue() {
+
+		return outboundQueue;
+
+	}
+
 	public HttpServletRequest getRequest() {
 
 		return request;
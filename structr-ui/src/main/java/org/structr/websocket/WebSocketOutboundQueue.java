@@ -0,0 +1,207 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.websocket;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded outbound message queue of a single websocket session.
+ *
+ * Messages are sent asynchronously, one at a time, so the thread that
+ * enqueues a message never waits for the client. When the queue of a
+ * slow client is full, the oldest pending message is dropped. A message
+ * that is identical to the last pending message is coalesced with it.
+ */
+public class WebSocketOutboundQueue implements WriteCallback {
+
+	private static final Logger logger = LoggerFactory.getLogger(WebSocketOutboundQueue.class.getName());
+
+	private static final AtomicLong totalSent      = new AtomicLong();
+	private static final AtomicLong totalDropped   = new AtomicLong();
+	private static final AtomicLong totalCoalesced = new AtomicLong();
+	private static final AtomicLong totalFailed    = new AtomicLong();
+
+	private final Deque<String> queue     = new ArrayDeque<>();
+	private final Session session;
+	private final int capacity;
+	private Thread drainingThread         = null;
+	private boolean inFlight              = false;
+	private boolean closed                = false;
+	private int maxDepth                  = 0;
+	private long dropped                  = 0L;
+
+	public WebSocketOutboundQueue(final Session session, final int capacity) {
+
+		this.session  = session;
+		this.capacity = Math.max(1, capacity);
+	}
+
+	/**
+	 * Enqueues the given message and starts sending if no other message
+	 * is currently in flight.
+	 *
+	 * @param message
+	 */
+	public void offer(final String message) {
+
+		synchronized (this) {
+
+			if (closed) {
+				return;
+			}
+
+			if (message.equals(queue.peekLast())) {
+
+				totalCoalesced.incrementAndGet();
+				return;
+			}
+
+			if (queue.size() >= capacity) {
+
+				queue.pollFirst();
+				totalDropped.incrementAndGet();
+
+				if (dropped++ == 0) {
+					logger.warn("Outbound queue of websocket session {} is full, dropping messages for slow client.", session.getRemoteAddress());
+				}
+			}
+
+			queue.addLast(message);
+
+			maxDepth = Math.max(maxDepth, queue.size());
+		}
+
+		drain();
+	}
+
+	public synchronized void close() {
+
+		closed = true;
+		queue.clear();
+	}
+
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	public synchronized int getDepth() {
+		return queue.size();
+	}
+
+	public synchronized int getMaxDepth() {
+		return maxDepth;
+	}
+
+	public static Map<String, Long> getStatistics() {
+
+		final Map<String, Long> statistics = new LinkedHashMap<>();
+
+		statistics.put("sent",      totalSent.get());
+		statistics.put("dropped",   totalDropped.get());
+		statistics.put("coalesced", totalCoalesced.get());
+		statistics.put("failed",    totalFailed.get());
+
+		return statistics;
+	}
+
+	// ----- interface WriteCallback -----
+	@Override
+	public void writeSuccess() {
+
+		totalSent.incrementAndGet();
+
+		synchronized (this) {
+
+			inFlight = false;
+
+			// callback was invoked synchronously from within drain(),
+			// the loop there picks up the next message
+			if (drainingThread == Thread.currentThread()) {
+				return;
+			}
+		}
+
+		drain();
+	}
+
+	@Override
+	public void writeFailed(final Throwable t) {
+
+		totalFailed.incrementAndGet();
+
+		logger.debug("Error sending message to client.", t);
+
+		synchronized (this) {
+
+			inFlight = false;
+
+			if (!session.isOpen()) {
+				close();
+			}
+
+			if (drainingThread == Thread.currentThread()) {
+				return;
+			}
+		}
+
+		drain();
+	}
+
+	// ----- private methods -----
+	private void drain() {
+
+		while (true) {
+
+			final String message;
+
+			synchronized (this) {
+
+				if (closed || inFlight || queue.isEmpty()) {
+
+					if (drainingThread == Thread.currentThread()) {
+						drainingThread = null;
+					}
+
+					return;
+				}
+
+				drainingThread = Thread.currentThread();
+				inFlight       = true;
+				message        = queue.pollFirst();
+			}
+
+			try {
+
+				session.getRemote().sendString(message, this);
+
+			} catch (Throwable t) {
+
+				writeFailed(t);
+			}
+		}
+	}
+}
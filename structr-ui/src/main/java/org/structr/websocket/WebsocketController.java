@@ -20,9 +20,12 @@ package org.structr.websocket;
 
 import com.google.gson.Gson;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -31,7 +34,6 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import org.eclipse.jetty.util.URIUtil;
 import org.eclipse.jetty.websocket.api.Session;
-import org.eclipse.jetty.websocket.api.WebSocketException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.graph.RelationshipType;
@@ -89,14 +91,15 @@ public class WebsocketController implements StructrTransactionListener {
 		// session must be valid to be received by the client
 		webSocketData.setSessionValid(true);
 
-		final String pagePath                        = (String) webSocketData.getNodeData().get("pagePath");
-		final String encodedPath                     = URIUtil.encodePath(pagePath);
-		final List<StructrWebSocket> clientsToRemove = new LinkedList<>();
-		final List<? extends GraphObject> result     = webSocketData.getResult();
-		final String command                         = webSocketData.getCommand();
-		final GraphObject obj                        = webSocketData.getGraphObject();
-
-		String message;
+		final String pagePath                          = (String) webSocketData.getNodeData().get("pagePath");
+		final String encodedPath                       = URIUtil.encodePath(pagePath);
+		final List<StructrWebSocket> clientsToRemove   = new LinkedList<>();
+		final List<? extends GraphObject> result       = webSocketData.getResult();
+		final Map<BitSet, String> messagesByVisibility = new HashMap<>();
+		final String command                           = webSocketData.getCommand();
+		final GraphObject obj                          = webSocketData.getGraphObject();
+		final boolean filterResult                     = result != null && !result.isEmpty() && BroadcastCommands.contains(command);
+		String unfilteredMessage                       = null;
 
 		// create message
 		for (StructrWebSocket socket : clients) {
@@ -106,9 +109,16 @@ public class WebsocketController implements StructrTransactionListener {
 				continue;
 			}
 
-			Session session = socket.getSession();
+			final Session session                      = socket.getSession();
+			final WebSocketOutboundQueue outboundQueue = socket.getOutboundQueue();
+
+			if (outboundQueue != null && outboundQueue.isClosed()) {
+
+				clientsToRemove.add(socket);
+				continue;
+			}
 
-			if (session != null && socket.isAuthenticated()) {
+			if (session != null && outboundQueue != null && socket.isAuthenticated()) {
 
 				final SecurityContext securityContext = socket.getSecurityContext();
 
@@ -135,36 +145,38 @@ public class WebsocketController implements StructrTransactionListener {
 					}
 				}
 
-				if (result != null && !result.isEmpty() && BroadcastCommands.contains(command)) {
+				final String message;
 
-					final WebSocketMessage clientData = webSocketData.copy();
+				if (filterResult) {
 
-					clientData.setResult(filter(securityContext, result));
+					// clients that can see the same subset of the result get the same
+					// message, so it needs to be serialized only once for all of them
+					final BitSet visibility = getVisibility(securityContext, result);
+					String cachedMessage    = messagesByVisibility.get(visibility);
 
-					message = gson.toJson(clientData, WebSocketMessage.class);
-
-				} else {
-
-					message = gson.toJson(webSocketData, WebSocketMessage.class);
-				}
+					if (cachedMessage == null) {
 
-				try {
+						final WebSocketMessage clientData = webSocketData.copy();
 
-					session.getRemote().sendString(message);
+						clientData.setResult(filter(result, visibility));
 
-				} catch (Throwable t) {
+						cachedMessage = gson.toJson(clientData, WebSocketMessage.class);
+						messagesByVisibility.put(visibility, cachedMessage);
+					}
 
-					if (t instanceof WebSocketException) {
+					message = cachedMessage;
 
-						WebSocketException wse = (WebSocketException) t;
+				} else {
 
-						if ("RemoteEndpoint unavailable, current state [CLOSED], expecting [OPEN or CONNECTED]".equals(wse.getMessage())) {
-							clientsToRemove.add(socket);
-						}
+					if (unfilteredMessage == null) {
+						unfilteredMessage = gson.toJson(webSocketData, WebSocketMessage.class);
 					}
 
-					logger.debug("Error sending message to client.", t);
+					message = unfilteredMessage;
 				}
+
+				// sending happens asynchronously, the committing thread does not wait for the client
+				outboundQueue.offer(message);
 			}
 		}
 
@@ -176,12 +188,62 @@ public class WebsocketController implements StructrTransactionListener {
 		}
 	}
 
-	private <T extends GraphObject> List<T> filter(final SecurityContext securityContext, final List<T> all) {
+	/**
+	 * Returns statistics about the outbound message queues of all
+	 * connected clients.
+	 *
+	 * @return a map with queue statistics
+	 */
+	public Map<String, Long> getOutboundQueueStatistics() {
+
+		final Map<String, Long> statistics = new LinkedHashMap<>();
+		long totalDepth                    = 0L;
+		long maxDepth                      = 0L;
+
+		for (final StructrWebSocket socket : clients) {
+
+			final WebSocketOutboundQueue outboundQueue = socket.getOutboundQueue();
+			if (outboundQueue != null) {
+
+				totalDepth += outboundQueue.getDepth();
+				maxDepth    = Math.max(maxDepth, outboundQueue.getMaxDepth());
+			}
+		}
+
+		statistics.put("clients",    (long)clients.size());
+		statistics.put("queueDepth", totalDepth);
+		statistics.put("maxDepth",   maxDepth);
+		statistics.putAll(WebSocketOutboundQueue.getStatistics());
+
+		return statistics;
+	}
+
+	private BitSet getVisibility(final SecurityContext securityContext, final List<? extends GraphObject> all) {
+
+		final BitSet visibility = new BitSet(all.size());
+		int index               = 0;
+
+		for (final GraphObject obj : all) {
+
+			if (securityContext.isVisible((AbstractNode) obj)) {
+
+				visibility.set(index);
+			}
+
+			index++;
+		}
+
+		return visibility;
+	}
+
+	private <T extends GraphObject> List<T> filter(final List<T> all, final BitSet visibility) {
 
 		List<T> filteredResult = new LinkedList<>();
+		int index              = 0;
+
 		for (T obj : all) {
 
-			if (securityContext.isVisible((AbstractNode) obj)) {
+			if (visibility.get(index++)) {
 
 				filteredResult.add(obj);
 			}
@@ -28,6 +28,7 @@ import org.structr.core.auth.exception.AuthenticationException;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Principal;
 import org.structr.rest.auth.SessionHelper;
+import org.structr.rest.auth.SessionPrincipalCache;
 import org.structr.rest.service.HttpService;
 import org.structr.schema.action.Actions;
 import org.structr.websocket.StructrWebSocket;
@@ -92,6 +93,8 @@ public class LoginCommand extends AbstractCommand {
 
 					user.addSessionId(sessionId);
 
+					SessionPrincipalCache.put(sessionId, user);
+
 					// store token in response data
 					webSocketData.getNodeData().clear();
 					webSocketData.setSessionId(sessionId);
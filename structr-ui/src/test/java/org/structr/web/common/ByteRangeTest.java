@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests the parsing of HTTP Range headers.
+ */
+public class ByteRangeTest {
+
+	@Test
+	public void test01SimpleRanges() {
+
+		assertRanges(ByteRange.parse("bytes=0-499", 1000), 0, 499);
+		assertRanges(ByteRange.parse(" bytes=0-0, 10-19 ", 1000), 0, 0, 10, 19);
+
+		// the end is limited to the content length
+		assertRanges(ByteRange.parse("bytes=500-5000", 1000), 500, 999);
+
+		assertEquals("Invalid content range", "bytes 0-499/1000", ByteRange.parse("bytes=0-499", 1000).get(0).getContentRange(1000));
+		assertEquals("Invalid range length", 500L, ByteRange.parse("bytes=0-499", 1000).get(0).getLength());
+	}
+
+	@Test
+	public void test02SuffixRanges() {
+
+		assertRanges(ByteRange.parse("bytes=-500", 1000), 500, 999);
+
+		// a suffix longer than the content selects the whole content
+		assertRanges(ByteRange.parse("bytes=-5000", 1000), 0, 999);
+
+		// an empty suffix can not be satisfied
+		assertRanges(ByteRange.parse("bytes=-0", 1000));
+		assertRanges(ByteRange.parse("bytes=-10", 0));
+	}
+
+	@Test
+	public void test03OpenEndedRanges() {
+
+		assertRanges(ByteRange.parse("bytes=900-", 1000), 900, 999);
+		assertRanges(ByteRange.parse("bytes=0-", 1000), 0, 999);
+		assertRanges(ByteRange.parse("bytes=999-", 1000), 999, 999);
+	}
+
+	@Test
+	public void test04UnsatisfiableRanges() {
+
+		assertRanges(ByteRange.parse("bytes=1000-1100", 1000));
+		assertRanges(ByteRange.parse("bytes=1000-", 1000));
+
+		// satisfiable ranges are kept, the others are dropped
+		assertRanges(ByteRange.parse("bytes=2000-3000, 0-9", 1000), 0, 9);
+	}
+
+	@Test
+	public void test05EndBeforeStart() {
+
+		assertNull("Range with end before start should be ignored", ByteRange.parse("bytes=500-400", 1000));
+		assertNull("Range with end before start should be ignored", ByteRange.parse("bytes=0-9, 500-400", 1000));
+	}
+
+	@Test
+	public void test06TooManyRanges() {
+
+		final StringBuilder buf = new StringBuilder("bytes=");
+
+		for (int i=0; i<ByteRange.MAX_RANGES; i++) {
+
+			if (i > 0) {
+				buf.append(",");
+			}
+
+			buf.append(i * 10).append("-").append(i * 10 + 4);
+		}
+
+		assertEquals("Invalid number of ranges", ByteRange.MAX_RANGES, ByteRange.parse(buf.toString(), 1000).size());
+
+		buf.append(",500-504");
+
+		assertNull("More than MAX_RANGES ranges should be ignored", ByteRange.parse(buf.toString(), 1000));
+	}
+
+	@Test
+	public void test07MalformedHeaders() {
+
+		assertNull("Missing header should be ignored",     ByteRange.parse(null, 1000));
+		assertNull("Empty header should be ignored",       ByteRange.parse("", 1000));
+		assertNull("Unknown unit should be ignored",       ByteRange.parse("items=0-9", 1000));
+		assertNull("Missing dash should be ignored",       ByteRange.parse("bytes=100", 1000));
+		assertNull("Empty range should be ignored",        ByteRange.parse("bytes=-", 1000));
+		assertNull("Invalid start should be ignored",      ByteRange.parse("bytes=abc-100", 1000));
+		assertNull("Invalid end should be ignored",        ByteRange.parse("bytes=0-1x", 1000));
+		assertNull("Negative suffix should be ignored",    ByteRange.parse("bytes=--5", 1000));
+		assertNull("Signed start should be ignored",       ByteRange.parse("bytes=+5-10", 1000));
+		assertNull("Overflowing number should be ignored", ByteRange.parse("bytes=0-99999999999999999999", 1000));
+	}
+
+	// ----- private methods -----
+	private void assertRanges(final List<ByteRange> ranges, final long... bounds) {
+
+		assertTrue("Ranges should not be null", ranges != null);
+		assertEquals("Invalid number of ranges", bounds.length / 2, ranges.size());
+
+		for (int i=0; i<ranges.size(); i++) {
+
+			assertEquals("Invalid range start", bounds[i * 2],     ranges.get(i).getStart());
+			assertEquals("Invalid range end",   bounds[i * 2 + 1], ranges.get(i).getEnd());
+		}
+	}
+}
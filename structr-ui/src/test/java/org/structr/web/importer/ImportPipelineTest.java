@@ -0,0 +1,254 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.importer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.ResultTransformer;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.JsonInput;
+import org.structr.core.Result;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.Principal;
+import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.Tx;
+import org.structr.dynamic.File;
+import org.structr.web.StructrUiTest;
+import org.structr.web.common.FileHelper;
+import org.structr.web.entity.FileBase;
+import org.structr.web.entity.TestFour;
+import org.structr.web.entity.TestOne;
+import org.structr.web.entity.TestThree;
+import org.structr.web.entity.User;
+
+/**
+ * Runs the staged import pipeline end to end.
+ */
+public class ImportPipelineTest extends StructrUiTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(ImportPipelineTest.class.getName());
+
+	@Test
+	public void test01ReferencesAreResolvedInCommitTransaction() {
+
+		final List<String> uuids = new ArrayList<>();
+
+		try (final Tx tx = app.tx()) {
+
+			for (final TestThree three : createTestNodes(TestThree.class, 20)) {
+				uuids.add(three.getUuid());
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		final List<JsonInput> rows = new ArrayList<>();
+
+		for (int i=0; i<uuids.size(); i++) {
+
+			final JsonInput input = new JsonInput();
+
+			input.add("name",              "four" + i);
+			input.add("oneToOneTestThree", uuids.get(i));
+
+			rows.add(input);
+		}
+
+		try {
+
+			final ImportPipeline pipeline = new ImportPipeline(createJob(), TestFour.class, new NoopTransformer(), 5, 2, 2);
+
+			assertEquals("All rows should be imported", 20, pipeline.run(rows.iterator()));
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final List<TestFour> fours = app.nodeQuery(TestFour.class).getAsList();
+
+			assertEquals("All rows should be imported", 20, fours.size());
+
+			for (final TestFour four : fours) {
+
+				final int index       = Integer.valueOf(four.getProperty(TestFour.name).substring(4));
+				final TestThree three = four.getProperty(TestFour.oneToOneTestThree);
+
+				assertNotNull("Reference should be resolved", three);
+				assertEquals("Reference should point to the node of its row", uuids.get(index), three.getUuid());
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+	}
+
+	@Test
+	public void test02FailedBatchIsRolledBack() {
+
+		final List<JsonInput> rows = new ArrayList<>();
+
+		for (int i=0; i<50; i++) {
+
+			final JsonInput input = new JsonInput();
+
+			input.add("name", "row" + i);
+
+			rows.add(input);
+		}
+
+		// rows 24 and 25 are in the third chunk and have the same UUID
+		rows.get(24).add("id", "0123456789abcdef0123456789abcdef");
+		rows.get(25).add("id", "0123456789abcdef0123456789abcdef");
+
+		try {
+
+			final ImportPipeline pipeline = new ImportPipeline(createJob(), TestOne.class, new NoopTransformer(), 10, 2, 2);
+
+			pipeline.run(rows.iterator());
+
+			fail("Import with an invalid chunk should fail");
+
+		} catch (FrameworkException fex) {
+
+			assertEquals("Invalid status code", 422, fex.getStatus());
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final List<TestOne> nodes = app.nodeQuery(TestOne.class).getAsList();
+
+			assertEquals("Only complete chunks should be committed", 0, nodes.size() % 10);
+			assertTrue("The import should stop at the failed chunk", nodes.size() < 50);
+
+			for (final TestOne node : nodes) {
+
+				final int index = Integer.valueOf(node.getProperty(TestOne.name).substring(3));
+
+				assertTrue("No row of the failed chunk should be committed", index < 20 || index >= 30);
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+	}
+
+	// ----- private methods -----
+	private FileImportJob createJob() {
+
+		try (final Tx tx = app.tx()) {
+
+			final Principal user = app.create(User.class,
+				new NodeAttribute<>(AbstractNode.name, "importer"),
+				new NodeAttribute<>(User.isAdmin, true)
+			);
+
+			final FileBase file = FileHelper.createFile(securityContext, "test".getBytes("utf-8"), "text/csv", File.class, "import.csv");
+			final TestImportJob job = new TestImportJob(file, user);
+
+			tx.success();
+
+			return job;
+
+		} catch (IOException | FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		return null;
+	}
+
+	// ----- nested classes -----
+	private static class TestImportJob extends FileImportJob {
+
+		public TestImportJob(final FileBase file, final Principal user) {
+			super(file, user, new LinkedHashMap<>());
+		}
+
+		@Override
+		public boolean runInitialChecks() throws FrameworkException {
+			return true;
+		}
+
+		@Override
+		public Runnable getRunnable() {
+			return null;
+		}
+
+		@Override
+		public String getJobType() {
+			return "TEST";
+		}
+
+		@Override
+		public String getJobStatusType() {
+			return "FILE_IMPORT_STATUS";
+		}
+
+		@Override
+		public String getJobExceptionMessageType() {
+			return "FILE_IMPORT_EXCEPTION";
+		}
+	}
+
+	private static class NoopTransformer implements ResultTransformer {
+
+		@Override
+		public String getSourceType() {
+			return null;
+		}
+
+		@Override
+		public Result transformOutput(final SecurityContext securityContext, final Class sourceType, final Result result) throws FrameworkException {
+			return result;
+		}
+
+		@Override
+		public void transformInput(final SecurityContext securityContext, final Class type, final Map<String, Object> propertySet) throws FrameworkException {
+		}
+
+		@Override
+		public boolean isPrimitiveArray() {
+			return false;
+		}
+	}
+}
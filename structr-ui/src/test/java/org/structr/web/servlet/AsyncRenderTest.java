@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2010-2017 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.structr.web.common.StreamingRenderBuffer;
+
+/**
+ * Tests for asynchronous rendering with a saturated render pool.
+ */
+public class AsyncRenderTest {
+
+	@Test
+	public void testSaturatedPoolRejectsInsteadOfBlocking() throws Exception {
+
+		final ThreadPoolExecutor pool      = HtmlServlet.createRenderPool(1, 1);
+		final StreamingRenderBuffer buffer = new StreamingRenderBuffer(1);
+		final CountDownLatch blocked       = new CountDownLatch(1);
+
+		try {
+
+			// the render thread fills the buffer of a slow client that reads nothing
+			pool.submit(() -> {
+
+				buffer.append(chunk());
+
+				blocked.countDown();
+
+				buffer.append(chunk());
+				buffer.append(chunk());
+				buffer.finish();
+			});
+
+			assertTrue("Render thread did not start", blocked.await(10, TimeUnit.SECONDS));
+
+			// fills the queue
+			pool.submit(() -> {});
+
+			final long start = System.currentTimeMillis();
+
+			try {
+
+				pool.submit(() -> fail("Rejected page must not be rendered"));
+				fail("Saturated render pool should reject new pages");
+
+			} catch (RejectedExecutionException rex) {
+
+				assertTrue("Submitting to a saturated pool must not block the caller", System.currentTimeMillis() - start < 5000);
+			}
+
+			// the slow client reads the output, rendering can finish
+			while (!buffer.isDone()) {
+
+				if (buffer.poll() == null) {
+					Thread.sleep(10);
+				}
+			}
+
+		} finally {
+
+			buffer.abort();
+			pool.shutdown();
+		}
+
+		assertTrue("Render pool did not finish", pool.awaitTermination(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testRejectedPageIsAnsweredWithStatus() {
+
+		final StreamingRenderBuffer buffer    = new StreamingRenderBuffer(1);
+		final ByteArrayOutputStream written   = new ByteArrayOutputStream();
+		final AtomicInteger status            = new AtomicInteger(200);
+		final AtomicBoolean completed         = new AtomicBoolean(false);
+		final HttpServletResponse response    = proxy(HttpServletResponse.class, (name, args) -> {
+
+			switch (name) {
+
+				case "setStatus":
+					status.set((Integer)args[0]);
+					return null;
+
+				case "isCommitted":
+					return false;
+			}
+
+			return null;
+		});
+
+		final AsyncContext async = proxy(AsyncContext.class, (name, args) -> {
+
+			switch (name) {
+
+				case "getResponse":
+					return response;
+
+				case "complete":
+					completed.set(true);
+					return null;
+			}
+
+			return null;
+		});
+
+		final AsyncRenderWriteListener listener = new AsyncRenderWriteListener(buffer, async, new TestOutputStream(written), "test");
+
+		listener.reject(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+
+		assertEquals("Rejected page should be answered with 503", HttpServletResponse.SC_SERVICE_UNAVAILABLE, status.get());
+		assertTrue("Async context should be completed", completed.get());
+		assertTrue("Buffer should be done", buffer.isDone());
+		assertEquals("Rejected page should not have any output", 0, written.size());
+
+		// a late render must not write anything
+		buffer.append(chunk());
+		buffer.finish();
+
+		assertEquals("Rejected page should not have any output", 0, written.size());
+		assertNull("Rejected page should not have any output", buffer.poll());
+	}
+
+	// ----- private methods -----
+	private static String chunk() {
+
+		final StringBuilder buf = new StringBuilder();
+
+		while (buf.length() < 8192) {
+			buf.append("<div>slow client</div>");
+		}
+
+		return buf.toString();
+	}
+
+	private static <T> T proxy(final Class<T> type, final Handler handler) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class[] { type }, (proxy, method, args) -> handler.invoke(method.getName(), args)));
+	}
+
+	private interface Handler {
+		Object invoke(final String name, final Object[] args);
+	}
+
+	private static class TestOutputStream extends ServletOutputStream {
+
+		private final ByteArrayOutputStream out;
+
+		public TestOutputStream(final ByteArrayOutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setWriteListener(final WriteListener listener) {
+		}
+
+		@Override
+		public void write(final int b) {
+			out.write(b);
+		}
+	}
+}